@@ -0,0 +1,100 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.SplittableRandom;
+import java8.util.function.Functions;
+import java8.util.stream.Collectors;
+import java8.util.stream.StreamSupport;
+
+/**
+ * {@code Collectors.groupingBy} and {@code Collectors.toMap} reductions,
+ * compared against the JDK's {@code java.util.stream.Collectors}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollectorsBench {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /** Number of distinct grouping keys */
+    @Param({"16", "65536"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> list;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(42L);
+        list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(rnd.nextInt(keys));
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, Long> groupingByCounting() {
+        return StreamSupport.stream(list, 0, parallel)
+                .collect(Collectors.groupingBy(Functions.identity(), Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> groupingByCounting_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.collect(java.util.stream.Collectors.groupingBy(java.util.function.Function.identity(),
+                java.util.stream.Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingByToList() {
+        return StreamSupport.stream(list, 0, parallel)
+                .collect(Collectors.groupingBy(i -> i & 0xff));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingByToList_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.collect(java.util.stream.Collectors.groupingBy(i -> i & 0xff));
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> toMapMerge() {
+        return StreamSupport.stream(list, 0, parallel)
+                .collect(Collectors.toMap(Functions.identity(), i -> 1, Integer::sum));
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> toMapMerge_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.collect(java.util.stream.Collectors.toMap(java.util.function.Function.identity(),
+                i -> 1, Integer::sum));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.J8Arrays;
+import java8.util.SplittableRandom;
+import java8.util.stream.StreamSupport;
+
+/**
+ * {@code DistinctOps} for ordered and unordered, reference and primitive
+ * streams, compared against the JDK.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistinctBench {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /** Number of distinct values in the input */
+    @Param({"1024", "500000"})
+    public int range;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> list;
+    private int[] ints;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(42L);
+        list = new ArrayList<Integer>(size);
+        ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            int v = rnd.nextInt(range);
+            list.add(v);
+            ints[i] = v;
+        }
+    }
+
+    @Benchmark
+    public long distinctRef() {
+        return StreamSupport.stream(list, 0, parallel).distinct().count();
+    }
+
+    @Benchmark
+    public long distinctRef_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.distinct().count();
+    }
+
+    @Benchmark
+    public long distinctRefUnordered() {
+        return StreamSupport.stream(list, 0, parallel).unordered().distinct().count();
+    }
+
+    @Benchmark
+    public long distinctRefUnordered_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.unordered().distinct().count();
+    }
+
+    @Benchmark
+    public int[] distinctInt() {
+        java8.util.stream.IntStream s = J8Arrays.stream(ints);
+        return (parallel ? s.parallel() : s).distinct().toArray();
+    }
+
+    @Benchmark
+    public int[] distinctInt_jdk() {
+        java.util.stream.IntStream s = java.util.Arrays.stream(ints);
+        return (parallel ? s.parallel() : s).distinct().toArray();
+    }
+}
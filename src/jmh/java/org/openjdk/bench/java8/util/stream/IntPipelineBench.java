@@ -0,0 +1,116 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.IntSummaryStatistics;
+import java8.util.J8Arrays;
+import java8.util.stream.IntStream;
+import java8.util.stream.IntStreams;
+
+/**
+ * Filter-map-reduce chains over an {@code IntPipeline}, compared against
+ * the same chains on the JDK's {@code java.util.stream.IntStream}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntPipelineBench {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private int[] array;
+
+    @Setup
+    public void setup() {
+        array = new int[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = i;
+        }
+    }
+
+    private IntStream source() {
+        IntStream s = J8Arrays.stream(array);
+        return parallel ? s.parallel() : s;
+    }
+
+    private java.util.stream.IntStream jdkSource() {
+        java.util.stream.IntStream s = java.util.Arrays.stream(array);
+        return parallel ? s.parallel() : s;
+    }
+
+    @Benchmark
+    public int sum() {
+        return source().sum();
+    }
+
+    @Benchmark
+    public int sum_jdk() {
+        return jdkSource().sum();
+    }
+
+    @Benchmark
+    public long filterMapSum() {
+        return source().filter(i -> (i & 1) == 0).mapToLong(i -> i * 3L).sum();
+    }
+
+    @Benchmark
+    public long filterMapSum_jdk() {
+        return jdkSource().filter(i -> (i & 1) == 0).mapToLong(i -> i * 3L).sum();
+    }
+
+    @Benchmark
+    public int rangeMapMax() {
+        IntStream s = IntStreams.range(0, size);
+        return (parallel ? s.parallel() : s).map(i -> i ^ 0x5bd1e995).max().getAsInt();
+    }
+
+    @Benchmark
+    public int rangeMapMax_jdk() {
+        java.util.stream.IntStream s = java.util.stream.IntStream.range(0, size);
+        return (parallel ? s.parallel() : s).map(i -> i ^ 0x5bd1e995).max().getAsInt();
+    }
+
+    @Benchmark
+    public IntSummaryStatistics summaryStatistics() {
+        return source().map(i -> i & 0xffff).summaryStatistics();
+    }
+
+    @Benchmark
+    public java.util.IntSummaryStatistics summaryStatistics_jdk() {
+        return jdkSource().map(i -> i & 0xffff).summaryStatistics();
+    }
+
+    @Benchmark
+    public int[] filterToArray() {
+        return source().filter(i -> i % 3 == 0).toArray();
+    }
+
+    @Benchmark
+    public int[] filterToArray_jdk() {
+        return jdkSource().filter(i -> i % 3 == 0).toArray();
+    }
+}
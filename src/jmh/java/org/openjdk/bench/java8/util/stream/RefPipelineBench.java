@@ -0,0 +1,114 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.stream.Collectors;
+import java8.util.stream.StreamSupport;
+
+/**
+ * Filter-map-reduce chains over a {@code ReferencePipeline}, compared
+ * against the same chains on the JDK's {@code java.util.stream}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RefPipelineBench {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> list;
+
+    @Setup
+    public void setup() {
+        list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+    }
+
+    @Benchmark
+    public long filterMapReduce() {
+        return StreamSupport.stream(list, 0, parallel)
+                .filter(i -> (i & 1) == 0)
+                .map(i -> i * 3L)
+                .reduce(0L, Long::sum);
+    }
+
+    @Benchmark
+    public long filterMapReduce_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.filter(i -> (i & 1) == 0)
+                .map(i -> i * 3L)
+                .reduce(0L, Long::sum);
+    }
+
+    @Benchmark
+    public long mapToLongSum() {
+        return StreamSupport.stream(list, 0, parallel)
+                .filter(i -> i % 3 != 0)
+                .mapToLong(i -> i)
+                .sum();
+    }
+
+    @Benchmark
+    public long mapToLongSum_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.filter(i -> i % 3 != 0)
+                .mapToLong(i -> i)
+                .sum();
+    }
+
+    @Benchmark
+    public List<String> mapCollectToList() {
+        return StreamSupport.stream(list, 0, parallel)
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> mapCollectToList_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.map(String::valueOf)
+                .collect(java.util.stream.Collectors.toList());
+    }
+
+    @Benchmark
+    public long count() {
+        return StreamSupport.stream(list, 0, parallel)
+                .filter(i -> (i & 7) == 0)
+                .count();
+    }
+
+    @Benchmark
+    public long count_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.filter(i -> (i & 7) == 0)
+                .count();
+    }
+}
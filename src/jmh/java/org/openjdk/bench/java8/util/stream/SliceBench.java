@@ -0,0 +1,108 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.stream.IntStreams;
+import java8.util.stream.StreamSupport;
+
+/**
+ * {@code SliceOps} ({@code skip} / {@code limit}) on sized and unsized,
+ * ordered and unordered pipelines, compared against the JDK.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SliceBench {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> list;
+
+    @Setup
+    public void setup() {
+        list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+    }
+
+    @Benchmark
+    public long skipLimitSized() {
+        return StreamSupport.stream(list, 0, parallel)
+                .skip(size / 4).limit(size / 2)
+                .mapToLong(i -> i).sum();
+    }
+
+    @Benchmark
+    public long skipLimitSized_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.skip(size / 4).limit(size / 2)
+                .mapToLong(i -> i).sum();
+    }
+
+    @Benchmark
+    public long filterLimit() {
+        return StreamSupport.stream(list, 0, parallel)
+                .filter(i -> (i & 3) == 0).limit(size / 8)
+                .mapToLong(i -> i).sum();
+    }
+
+    @Benchmark
+    public long filterLimit_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.filter(i -> (i & 3) == 0).limit(size / 8)
+                .mapToLong(i -> i).sum();
+    }
+
+    @Benchmark
+    public long unorderedLimit() {
+        return StreamSupport.stream(list, 0, parallel)
+                .unordered().filter(i -> (i & 3) == 0).limit(size / 8)
+                .count();
+    }
+
+    @Benchmark
+    public long unorderedLimit_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.unordered().filter(i -> (i & 3) == 0).limit(size / 8)
+                .count();
+    }
+
+    @Benchmark
+    public long infiniteLimit() {
+        java8.util.stream.IntStream s = IntStreams.iterate(0, i -> i + 1);
+        return (parallel ? s.parallel() : s).limit(size).asLongStream().sum();
+    }
+
+    @Benchmark
+    public long infiniteLimit_jdk() {
+        java.util.stream.IntStream s = java.util.stream.IntStream.iterate(0, i -> i + 1);
+        return (parallel ? s.parallel() : s).limit(size).asLongStream().sum();
+    }
+}
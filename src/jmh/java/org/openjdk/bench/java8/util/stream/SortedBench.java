@@ -0,0 +1,115 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.J8Arrays;
+import java8.util.SplittableRandom;
+import java8.util.stream.Collectors;
+import java8.util.stream.StreamSupport;
+
+/**
+ * {@code SortedOps} for reference and primitive streams, also followed
+ * by a small {@code limit}, compared against the JDK.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SortedBench {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> list;
+    private long[] longs;
+
+    private static final Comparator<Integer> REVERSE = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o2.compareTo(o1);
+        }
+    };
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(42L);
+        list = new ArrayList<Integer>(size);
+        longs = new long[size];
+        for (int i = 0; i < size; i++) {
+            list.add(rnd.nextInt());
+            longs[i] = rnd.nextLong();
+        }
+    }
+
+    @Benchmark
+    public Object[] sortedRef() {
+        return StreamSupport.stream(list, 0, parallel).sorted().toArray();
+    }
+
+    @Benchmark
+    public Object[] sortedRef_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.sorted().toArray();
+    }
+
+    @Benchmark
+    public List<Integer> sortedLimitRef() {
+        return StreamSupport.stream(list, 0, parallel).sorted(REVERSE).limit(100)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> sortedLimitRef_jdk() {
+        java.util.stream.Stream<Integer> s = parallel ? list.parallelStream() : list.stream();
+        return s.sorted(REVERSE).limit(100).collect(java.util.stream.Collectors.toList());
+    }
+
+    @Benchmark
+    public long[] sortedLong() {
+        java8.util.stream.LongStream s = J8Arrays.stream(longs);
+        return (parallel ? s.parallel() : s).sorted().toArray();
+    }
+
+    @Benchmark
+    public long[] sortedLong_jdk() {
+        java.util.stream.LongStream s = java.util.Arrays.stream(longs);
+        return (parallel ? s.parallel() : s).sorted().toArray();
+    }
+
+    @Benchmark
+    public long sortedLongSum() {
+        java8.util.stream.LongStream s = J8Arrays.stream(longs);
+        return (parallel ? s.parallel() : s).map(l -> l >>> 8).sorted().sum();
+    }
+
+    @Benchmark
+    public long sortedLongSum_jdk() {
+        java.util.stream.LongStream s = java.util.Arrays.stream(longs);
+        return (parallel ? s.parallel() : s).map(l -> l >>> 8).sorted().sum();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.bench.java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java8.util.J8Arrays;
+import java8.util.stream.StreamSupport;
+
+/**
+ * {@code WhileOps} ({@code takeWhile} / {@code dropWhile}). There is no
+ * JDK baseline since these operations do not exist in Java 8.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WhileBench {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> list;
+    private int[] ints;
+
+    @Setup
+    public void setup() {
+        list = new ArrayList<Integer>(size);
+        ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+            ints[i] = i;
+        }
+    }
+
+    @Benchmark
+    public long takeWhileRef() {
+        final int bound = size / 2;
+        return StreamSupport.stream(list, 0, parallel)
+                .takeWhile(i -> i < bound).count();
+    }
+
+    @Benchmark
+    public long dropWhileRef() {
+        final int bound = size / 2;
+        return StreamSupport.stream(list, 0, parallel)
+                .dropWhile(i -> i < bound).count();
+    }
+
+    @Benchmark
+    public long takeWhileUnorderedRef() {
+        final int bound = size / 2;
+        return StreamSupport.stream(list, 0, parallel)
+                .unordered().takeWhile(i -> i < bound).count();
+    }
+
+    @Benchmark
+    public long takeWhileInt() {
+        final int bound = size / 2;
+        java8.util.stream.IntStream s = J8Arrays.stream(ints);
+        return (parallel ? s.parallel() : s).takeWhile(i -> i < bound).asLongStream().sum();
+    }
+
+    @Benchmark
+    public long dropWhileInt() {
+        final int bound = size / 2;
+        java8.util.stream.IntStream s = J8Arrays.stream(ints);
+        return (parallel ? s.parallel() : s).dropWhile(i -> i < bound).asLongStream().sum();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.io;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+
+/**
+ * Wraps an {@link IOException} with an unchecked exception. This is a
+ * replacement for the {@code java.io.UncheckedIOException} class that was
+ * added in Java 8.
+ */
+public class UncheckedIOException extends RuntimeException {
+    private static final long serialVersionUID = -8134305061645241065L;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param message the detail message, can be null
+     * @param cause the {@code IOException}
+     * @throws NullPointerException if the cause is {@code null}
+     */
+    public UncheckedIOException(String message, IOException cause) {
+        super(message, requireNonNull(cause));
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param cause the {@code IOException}
+     * @throws NullPointerException if the cause is {@code null}
+     */
+    public UncheckedIOException(IOException cause) {
+        super(requireNonNull(cause));
+    }
+
+    /**
+     * Returns the cause of this exception.
+     *
+     * @return the {@code IOException} which is the cause of this exception.
+     */
+    @Override
+    public IOException getCause() {
+        return (IOException) super.getCause();
+    }
+
+    /**
+     * Called to read the object from a stream.
+     *
+     * @throws InvalidObjectException if the object is invalid or has a cause
+     *         that is not an {@code IOException}
+     */
+    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        Throwable cause = super.getCause();
+        if (!(cause instanceof IOException)) {
+            throw new InvalidObjectException("Cause must be an IOException");
+        }
+    }
+
+    private static IOException requireNonNull(IOException cause) {
+        if (cause == null) {
+            throw new NullPointerException();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+/**
+ * Provides replacements for I/O related classes that were added in Java 8.
+ */
+package java8.io;
@@ -31,6 +31,7 @@ import java8.util.Objects;
 import java8.util.Spliterator;
 import java8.util.Spliterators;
 import java8.util.function.Consumer;
+import java8.util.function.LongSupplier;
 import java8.util.function.Predicate;
 
 /**
@@ -40,6 +41,12 @@ import java8.util.function.Predicate;
  * from {@link Collection}).
  */
 public final class Iterables {
+    /** The size of the first batch of an adaptive spliterator */
+    private static final int DEFAULT_INITIAL_BATCH = 1 << 7;
+
+    /** The maximum batch size of an adaptive spliterator */
+    private static final int MAX_BATCH = 1 << 25;
+
     /**
      * Performs the given action for each element of the passed {@code Iterable}
      * until all elements have been processed or the action throws an
@@ -151,6 +158,43 @@ public final class Iterables {
         return Spliterators.spliteratorUnknownSize(it.iterator(), 0);
     }
 
+    /**
+     * Creates a <em><a href="../util/Spliterator.html#binding">late-binding</a></em>
+     * {@link Spliterator} over the elements described by this
+     * {@code Iterable} that splits well enough for parallel streams even if
+     * the {@code Iterable} is not a {@link Collection}.
+     *
+     * <p>The spliterator takes its elements from the iterable's
+     * {@code Iterator}, which is created when the spliterator is first used,
+     * and splits off arrays of elements whose size adapts to the speed of
+     * the iterator, as described for
+     * {@link Spliterators#adaptiveSpliterator(Iterable, java8.util.function.LongSupplier, int, int, int)}.
+     * If the {@code Iterable} is a {@code Collection} the spliterator is
+     * {@code SIZED} and reports the collection's size, otherwise it has no
+     * initial size estimate. It does not report any other spliterator
+     * characteristics.
+     *
+     * @param <T> the type of elements of the Iterable.
+     * @param it the Iterable for which the Spliterator should be created.
+     * @return a {@code Spliterator} over the elements described by the
+     * passed {@code Iterable}.
+     * @throws NullPointerException if the given iterable is {@code null}
+     */
+    public static <T> Spliterator<T> adaptiveSpliterator(Iterable<? extends T> it) {
+        LongSupplier size = null;
+        if (it instanceof Collection) {
+            final Collection<?> c = (Collection<?>) it;
+            size = new LongSupplier() {
+                @Override
+                public long getAsLong() {
+                    return c.size();
+                }
+            };
+        }
+        return Spliterators.adaptiveSpliterator(it, size, 0, DEFAULT_INITIAL_BATCH,
+                                                MAX_BATCH);
+    }
+
     private Iterables() {
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+import java8.util.function.Consumer;
+import java8.util.function.LongSupplier;
+
+/**
+ * A Spliterator using a given Iterator for element operations whose
+ * {@code trySplit} copies batches of elements into arrays, like the
+ * spliterators of {@link Spliterators#spliteratorUnknownSize(Iterator, int)},
+ * but with a configurable batch size that grows with the speed of the
+ * iterator.
+ * <p>
+ * The first batch has the initial batch size. If taking a batch from the
+ * iterator took less than {@link #GROWTH_NANOS}, the next batch is twice
+ * as large, otherwise it is larger by the initial batch size, up to the
+ * maximum batch size. An iterator over an in-memory structure thus quickly
+ * reaches batches that are large enough to amortize the splitting, while an
+ * expensive iterator (a database cursor, say) keeps handing out small
+ * batches, so that the work is spread over the threads early.
+ * <p>
+ * If a size supplier is given the spliterator is {@code SIZED} (unless it is
+ * {@code CONCURRENT}), reports the supplied size less the number of elements
+ * split off, and never takes a batch larger than the remaining size. The
+ * size is queried, and the iterator of an {@code Iterable} source is
+ * created, when the spliterator is first traversed, split, or queried for
+ * estimated size.
+ *
+ * @param <T> the type of elements
+ */
+final class AdaptiveIteratorSpliterator<T> implements Spliterator<T> {
+    static final int MAX_BATCH = 1 << 25;  // max batch array size;
+
+    /** Batches taken faster than this many nanoseconds grow geometrically */
+    static final long GROWTH_NANOS = 1000L * 1000L;
+
+    private final Iterable<? extends T> iterable; // null OK
+    private Iterator<? extends T> it;
+    private final LongSupplier size; // null if the size is unknown
+    private final int characteristics;
+    private final int initialBatch;
+    private final int maxBatch;
+    private long est = -1L; // size estimate, -1 until bound
+    private int batch;      // size of the next batch
+
+    /**
+     * Creates a late-binding spliterator over the given iterable's
+     * {@link Iterable#iterator()}.
+     */
+    AdaptiveIteratorSpliterator(Iterable<? extends T> iterable, LongSupplier size,
+                                int characteristics, int initialBatch, int maxBatch) {
+        this(iterable, null, size, characteristics, initialBatch, maxBatch);
+    }
+
+    /**
+     * Creates a spliterator over the given iterator.
+     */
+    AdaptiveIteratorSpliterator(Iterator<? extends T> iterator, LongSupplier size,
+                                int characteristics, int initialBatch, int maxBatch) {
+        this(null, iterator, size, characteristics, initialBatch, maxBatch);
+    }
+
+    private AdaptiveIteratorSpliterator(Iterable<? extends T> iterable, Iterator<? extends T> iterator,
+                                        LongSupplier size, int characteristics,
+                                        int initialBatch, int maxBatch) {
+        if (initialBatch < 1 || maxBatch < initialBatch || maxBatch > MAX_BATCH) {
+            throw new IllegalArgumentException("initialBatch: " + initialBatch
+                    + ", maxBatch: " + maxBatch);
+        }
+        this.iterable = iterable;
+        this.it = iterator;
+        this.size = size;
+        if (size == null) {
+            this.characteristics = characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        } else {
+            this.characteristics = (characteristics & Spliterator.CONCURRENT) == 0
+                                   ? characteristics | Spliterator.SIZED | Spliterator.SUBSIZED
+                                   : characteristics;
+        }
+        this.initialBatch = initialBatch;
+        this.maxBatch = maxBatch;
+        this.batch = initialBatch;
+    }
+
+    private Iterator<? extends T> bind() {
+        Iterator<? extends T> i;
+        if ((i = it) == null) {
+            i = it = iterable.iterator();
+        }
+        if (est < 0L) {
+            est = (size != null) ? Math.max(0L, size.getAsLong()) : Long.MAX_VALUE;
+        }
+        return i;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        Iterator<? extends T> i = bind();
+        long s = est;
+        if (s > 1 && i.hasNext()) {
+            int n = batch;
+            if (n > s) {
+                n = (int) s;
+            }
+            Object[] a = new Object[n];
+            int j = 0;
+            long start = System.nanoTime();
+            do {
+                a[j] = i.next();
+            } while (++j < n && i.hasNext());
+            int next = (System.nanoTime() - start < GROWTH_NANOS) ? j << 1 : j + initialBatch;
+            batch = Math.max(initialBatch, Math.min(maxBatch, next));
+            if (size != null) {
+                est -= j;
+                return new Spliterators.ArraySpliterator<>(a, 0, j, characteristics);
+            }
+            return new Spliterators.ArraySpliterator<>(a, 0, j, characteristics, Long.MAX_VALUE / 2);
+        }
+        return null;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        Iterators.forEachRemaining(bind(), action);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        Iterator<? extends T> i = bind();
+        if (i.hasNext()) {
+            action.accept(i.next());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long estimateSize() {
+        bind();
+        return est;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return Spliterators.getExactSizeIfKnown(this);
+    }
+
+    @Override
+    public boolean hasCharacteristics(int characteristics) {
+        return Spliterators.hasCharacteristics(this, characteristics);
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        if (hasCharacteristics(Spliterator.SORTED)) {
+            return null;
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util;
+
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.function.Consumer;
+
+/**
+ * A Spliterator that removes the elements of a {@code BlockingQueue} as it
+ * traverses them and waits for new elements while the queue is empty.
+ * Traversal ends when an element equal to the end-of-stream marker is
+ * taken, when no element arrives within the poll timeout, or when the
+ * traversing thread is interrupted (its interrupt status is then
+ * restored).
+ * <p>
+ * Waiting for an element is done in {@link ForkJoinPool#managedBlock}, so
+ * that a worker thread of a parallel stream that blocks on the queue lets
+ * the pool activate a spare thread instead of reducing its parallelism.
+ * Elements that are already available are removed in batches with
+ * {@link BlockingQueue#drainTo(java.util.Collection, int)}.
+ * <p>
+ * {@code trySplit} waits for at least one element and then removes a batch
+ * of the available elements, whose size grows arithmetically from split to
+ * split, and returns an array spliterator over it. Since split-off batches
+ * always precede the elements remaining in the queue, the encounter order
+ * is the queue's order, which is reported as {@code ORDERED} if requested.
+ * A bounded queue keeps applying backpressure to its producers: at most one
+ * batch per split is held outside the queue.
+ *
+ * @param <E> the type of elements held in the queue
+ */
+final class BlockingQueueSpliterator<E> implements Spliterator<E> {
+    static final int BATCH_UNIT = QueueDrainingSpliterator.BATCH_UNIT;
+    static final int MAX_BATCH = QueueDrainingSpliterator.MAX_BATCH;
+
+    private final BlockingQueue<E> queue;
+    private final long timeoutNanos;
+    private final Object endOfStream; // may be null
+    private final int characteristics;
+    private final Taker taker = new Taker();
+    private int batch; // batch size for splits
+    private boolean done; // true once the end of the stream was reached
+
+    BlockingQueueSpliterator(BlockingQueue<E> queue, long timeout, TimeUnit unit,
+                             E endOfStream, boolean ordered) {
+        this.queue = queue;
+        this.timeoutNanos = Math.max(0L, unit.toNanos(timeout));
+        this.endOfStream = endOfStream;
+        this.characteristics = QueueDrainingSpliterator.CHARACTERISTICS
+                | (ordered ? Spliterator.ORDERED : 0);
+    }
+
+    /**
+     * Waits for the next element, as managed blocking when running in a
+     * ForkJoinPool, and returns it, or {@code null} (and marks this
+     * spliterator done) if the stream has ended.
+     */
+    private E take() {
+        if (done) {
+            return null;
+        }
+        Taker t = taker;
+        try {
+            ForkJoinPool.managedBlock(t);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        E e = t.item;
+        t.item = null;
+        if (e == null || e.equals(endOfStream)) {
+            done = true;
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * Waits for the next element and moves it into {@code a[0]}, followed
+     * by up to {@code max - 1} further elements that are available without
+     * waiting. Stops before the end-of-stream marker.
+     *
+     * @return the number of elements moved into {@code a}
+     */
+    private int takeBatch(Object[] a, int max) {
+        E first = take();
+        if (first == null) {
+            return 0;
+        }
+        a[0] = first;
+        QueueDrainingSpliterator.ArrayFiller filler = new QueueDrainingSpliterator.ArrayFiller(a);
+        filler.size = 1;
+        queue.drainTo(filler, max - 1);
+        int n = filler.size;
+        if (endOfStream != null) {
+            for (int i = 1; i < n; i++) {
+                if (a[i].equals(endOfStream)) {
+                    // anything drained after the marker is dropped
+                    for (int j = i; j < n; j++) {
+                        a[j] = null;
+                    }
+                    done = true;
+                    return i;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        E e = take();
+        if (e != null) {
+            action.accept(e);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        Object[] a = new Object[BATCH_UNIT];
+        int n;
+        while ((n = takeBatch(a, a.length)) > 0) {
+            for (int i = 0; i < n; i++) {
+                @SuppressWarnings("unchecked") E e = (E) a[i];
+                a[i] = null;
+                action.accept(e);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        int n = batch + BATCH_UNIT;
+        if (n > MAX_BATCH) {
+            n = MAX_BATCH;
+        }
+        Object[] a = new Object[n];
+        int j = takeBatch(a, n);
+        if (j == 0) {
+            return null;
+        }
+        batch = j;
+        return Spliterators.spliterator(a, 0, j, characteristics);
+    }
+
+    @Override
+    public long estimateSize() {
+        return done ? 0L : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return -1L;
+    }
+
+    @Override
+    public boolean hasCharacteristics(int characteristics) {
+        return Spliterators.hasCharacteristics(this, characteristics);
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Polls the queue with the timeout, holding the element it got.
+     */
+    private final class Taker implements ForkJoinPool.ManagedBlocker {
+        E item;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (item == null) {
+                item = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            // a timeout ends the wait as well
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return item != null || (item = queue.poll()) != null;
+        }
+    }
+}
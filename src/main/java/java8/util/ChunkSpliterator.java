@@ -0,0 +1,65 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util;
+
+/**
+ * An optional bulk traversal for primitive {@link Spliterator}s whose
+ * elements are held in arrays. Instead of passing the remaining elements to
+ * a consumer one at a time, {@link #forEachChunk(ChunkConsumer)} passes
+ * them as a sequence of array segments, so that the consumer can process
+ * each segment in a tight loop (or copy it with
+ * {@link System#arraycopy(Object, int, Object, int, int)}) that the JIT
+ * compiler can unroll and vectorize.
+ *
+ * <p>A {@code ChunkSpliterator} is implemented by the array spliterators of
+ * {@link Spliterators} and {@link J8Arrays} and by the spliterators of the
+ * buffers that hold the intermediate results of primitive streams. The
+ * sequential terminal operations {@code sum()}, {@code min()},
+ * {@code max()}, {@code summaryStatistics()} and {@code toArray()} of a
+ * primitive stream without intermediate operations use it if the stream's
+ * source spliterator implements it.
+ *
+ * <p>The type parameter is the array type of the spliterator's shape:
+ * {@code int[]} for a {@code Spliterator.OfInt}, {@code long[]} for a
+ * {@code Spliterator.OfLong} and {@code double[]} for a
+ * {@code Spliterator.OfDouble}.
+ *
+ * @param <T_ARR> the type of the arrays holding the elements
+ */
+public interface ChunkSpliterator<T_ARR> {
+
+    /**
+     * An operation that accepts a segment of an array.
+     *
+     * @param <A> the type of the array
+     */
+    public static interface ChunkConsumer<A> {
+        /**
+         * Performs this operation on the elements of the array from index
+         * {@code from} (inclusive) to index {@code to} (exclusive). The
+         * array must not be modified and must not be retained after this
+         * method returns.
+         *
+         * @param array the array holding the elements
+         * @param from the index of the first element
+         * @param to the index after the last element
+         */
+        void accept(A array, int from, int to);
+    }
+
+    /**
+     * Performs the given action for the remaining elements, passing them as
+     * consecutive array segments in encounter order, until all elements have
+     * been processed or the action throws an exception. Afterwards this
+     * spliterator is exhausted, as after
+     * {@link Spliterator#forEachRemaining(java8.util.function.Consumer)
+     * forEachRemaining}. The action may receive empty segments.
+     *
+     * @param action the action
+     * @throws NullPointerException if the specified action is null
+     */
+    void forEachChunk(ChunkConsumer<T_ARR> action);
+}
@@ -214,6 +214,61 @@ final class ImmutableCollections {
         }
     }
 
+    /**
+     * Creates a new Set from a trusted collection that holds no duplicates,
+     * checking for and rejecting null elements.
+     *
+     * <p>A trusted collection is not modified while this method runs. Its
+     * elements are inserted into the Set's internal storage directly, without
+     * an intermediate array.
+     *
+     * @param <E> the Set's element type
+     * @param input the distinct elements
+     * @return the new set
+     */
+    @SuppressWarnings("unchecked")
+    static <E> Set<E> setFromTrustedCollection(Collection<?> input) {
+        int size = input.size(); // implicit nullcheck of input
+        if (size == 0) {
+            return (Set<E>) EMPTY_SET;
+        }
+        Iterator<?> it = input.iterator();
+        switch (size) {
+            case 1:
+                return new Set12<>((E) it.next());
+            case 2:
+                return new Set12<>((E) it.next(), (E) it.next());
+            default:
+                return new SetN<>((Collection<E>) input, size);
+        }
+    }
+
+    /**
+     * Creates a new Map from a trusted map, checking for and rejecting null
+     * keys and values.
+     *
+     * <p>A trusted map is not modified while this method runs. Its mappings
+     * are inserted into the Map's internal storage directly, without an
+     * intermediate array of entries or of keys and values.
+     *
+     * @param <K> the Map's key type
+     * @param <V> the Map's value type
+     * @param input the mappings
+     * @return the new map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Map<K, V> mapFromTrustedMap(Map<?, ?> input) {
+        int size = input.size(); // implicit nullcheck of input
+        if (size == 0) {
+            return (Map<K, V>) EMPTY_MAP;
+        }
+        if (size == 1) {
+            Map.Entry<?, ?> e = input.entrySet().iterator().next();
+            return new Map1<>((K) e.getKey(), (V) e.getValue());
+        }
+        return new MapN<>((Map<K, V>) input, size);
+    }
+
     // ---------- List Implementations ----------
 
     abstract static class AbstractImmutableList<E> extends AbstractImmutableCollection<E>
@@ -854,6 +909,21 @@ final class ImmutableCollections {
             }
         }
 
+        @SuppressWarnings("unchecked")
+        SetN(Collection<? extends E> input, int size) {
+            this.size = size;
+
+            elements = (E[]) new Object[EXPAND_FACTOR * size];
+            for (E e : input) {
+                int idx = probe(e); // implicit nullcheck of e
+                if (idx >= 0) {
+                    throw new IllegalArgumentException("duplicate element: " + e);
+                } else {
+                    elements[-(idx + 1)] = e;
+                }
+            }
+        }
+
         @Override
         public int size() {
             return size;
@@ -1093,6 +1163,27 @@ final class ImmutableCollections {
             }
         }
 
+        MapN(Map<? extends K, ? extends V> input, int size) {
+            this.size = size;
+
+            int len = EXPAND_FACTOR * 2 * size;
+            len = (len + 1) & ~1; // ensure table is even length
+            table = new Object[len];
+
+            for (Map.Entry<? extends K, ? extends V> e : input.entrySet()) {
+                Object k = Objects.requireNonNull(e.getKey());
+                Object v = Objects.requireNonNull(e.getValue());
+                int idx = probe(k);
+                if (idx >= 0) {
+                    throw new IllegalArgumentException("duplicate key: " + k);
+                } else {
+                    int dest = -(idx + 1);
+                    table[dest] = k;
+                    table[dest + 1] = v;
+                }
+            }
+        }
+
         @Override
         public boolean containsKey(Object o) {
             Objects.requireNonNull(o);
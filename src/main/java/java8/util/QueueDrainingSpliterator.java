@@ -0,0 +1,188 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util;
+
+import java.util.AbstractCollection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import java8.util.function.Consumer;
+
+/**
+ * A Spliterator that consumes the elements of a {@code Queue} as it
+ * traverses them: every element it delivers has been removed from the queue.
+ * Traversal ends as soon as the queue is found empty.
+ * <p>
+ * Elements are taken with {@link Queue#poll()}, or in batches with
+ * {@link BlockingQueue#drainTo(java.util.Collection, int)} if the queue is a
+ * {@code BlockingQueue}, which acquires the queue's lock once per batch
+ * rather than once per element. {@code trySplit} removes a batch of
+ * elements, whose size grows arithmetically from split to split, and returns
+ * an array spliterator over it, so several threads can drain the same queue
+ * while producers keep adding to it.
+ * <p>
+ * The {@code Spliterator} reports {@link Spliterator#CONCURRENT} and
+ * {@link Spliterator#NONNULL}. It does not report {@code ORDERED}: the
+ * batches that are split off are processed in parallel with the rest of the
+ * queue.
+ *
+ * @param <E> the type of elements held in the queue
+ */
+final class QueueDrainingSpliterator<E> implements Spliterator<E> {
+    static final int BATCH_UNIT = 1 << 10;  // batch array size increment
+    static final int MAX_BATCH = 1 << 25;  // max batch array size;
+
+    static final int CHARACTERISTICS = Spliterator.CONCURRENT | Spliterator.NONNULL;
+
+    private final Queue<E> queue;
+    private final BlockingQueue<E> blockingQueue; // queue if it is a BlockingQueue, else null
+    private final boolean sizeIsCheap;
+    private int batch; // batch size for splits
+
+    @SuppressWarnings("unchecked")
+    QueueDrainingSpliterator(Queue<E> queue) {
+        this.queue = queue;
+        this.blockingQueue = (queue instanceof BlockingQueue) ? (BlockingQueue<E>) queue : null;
+        // ConcurrentLinkedQueue and friends count their nodes in size()
+        this.sizeIsCheap = queue instanceof LinkedBlockingQueue
+                || queue instanceof ArrayBlockingQueue
+                || queue instanceof LinkedBlockingDeque;
+    }
+
+    /**
+     * Removes up to {@code max} elements from the queue into {@code a},
+     * starting at index {@code 0}.
+     *
+     * @return the number of elements removed
+     */
+    int drain(Object[] a, int max) {
+        if (blockingQueue != null) {
+            ArrayFiller filler = new ArrayFiller(a);
+            blockingQueue.drainTo(filler, max);
+            return filler.size;
+        }
+        int n = 0;
+        E e;
+        while (n < max && (e = queue.poll()) != null) {
+            a[n++] = e;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        E e = queue.poll();
+        if (e != null) {
+            action.accept(e);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        if (blockingQueue == null) {
+            E e;
+            while ((e = queue.poll()) != null) {
+                action.accept(e);
+            }
+            return;
+        }
+        Object[] a = new Object[BATCH_UNIT];
+        int n;
+        while ((n = drain(a, a.length)) > 0) {
+            for (int i = 0; i < n; i++) {
+                @SuppressWarnings("unchecked") E e = (E) a[i];
+                a[i] = null;
+                action.accept(e);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        int n = batch + BATCH_UNIT;
+        if (n > MAX_BATCH) {
+            n = MAX_BATCH;
+        }
+        if (sizeIsCheap) {
+            int size = queue.size();
+            if (size <= 1) {
+                return null;
+            }
+            // leave at least half of the backlog to this spliterator
+            n = Math.min(n, (size + 1) >>> 1);
+        }
+        Object[] a = new Object[n];
+        int j = drain(a, n);
+        if (j == 0) {
+            return null;
+        }
+        batch = j;
+        return Spliterators.spliterator(a, 0, j, CHARACTERISTICS);
+    }
+
+    @Override
+    public long estimateSize() {
+        return sizeIsCheap ? queue.size() : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return -1L;
+    }
+
+    @Override
+    public boolean hasCharacteristics(int characteristics) {
+        return Spliterators.hasCharacteristics(this, characteristics);
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * The target of {@code BlockingQueue.drainTo}, storing the elements in
+     * an array.
+     */
+    static final class ArrayFiller extends AbstractCollection<Object> {
+        private final Object[] array;
+        int size;
+
+        ArrayFiller(Object[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean add(Object e) {
+            array[size++] = e;
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
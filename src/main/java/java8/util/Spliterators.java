@@ -48,6 +48,7 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.Vector;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.DelayQueue;
@@ -55,6 +56,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 
 import build.IgnoreJava8API;
 
@@ -63,6 +65,7 @@ import java8.util.function.Consumer;
 import java8.util.function.DoubleConsumer;
 import java8.util.function.IntConsumer;
 import java8.util.function.LongConsumer;
+import java8.util.function.LongSupplier;
 
 /**
  * Static classes and methods for operating on or creating instances of
@@ -1203,6 +1206,93 @@ public final class Spliterators {
         return new IteratorSpliterator<>(Objects.requireNonNull(iterator), characteristics);
     }
 
+    /**
+     * Creates a {@code Spliterator} using a given {@code Iterator} as the
+     * source of elements, whose {@code trySplit} copies batches of adaptive
+     * size into arrays.
+     *
+     * <p>Like the spliterator of
+     * {@link #spliteratorUnknownSize(Iterator, int)} it splits off arrays of
+     * increasing size, but the first array holds {@code initialBatch}
+     * elements and the size of each following array depends on how fast the
+     * iterator delivered the previous one: it doubles for a fast iterator
+     * and grows by {@code initialBatch} for a slow one, up to
+     * {@code maxBatch}. This lets an iterator over an in-memory structure
+     * reach large batches after a few splits, while an expensive iterator,
+     * such as a cursor over query results, keeps handing out small batches
+     * that parallel tasks can start working on early.
+     *
+     * <p>If {@code size} is not {@code null} the spliterator reports
+     * {@code SIZED} and {@code SUBSIZED} unless {@code CONCURRENT} is
+     * supplied, and reports the supplied size, which is queried when the
+     * spliterator is first used, as its initial size. Splitting and
+     * traversal are undefined if that size is not equal to the actual
+     * number of elements. Otherwise the spliterator has no initial size
+     * estimate.
+     *
+     * <p>The spliterator is not
+     * <em><a href="Spliterator.html#binding">late-binding</a></em> and
+     * inherits the <em>fail-fast</em> properties of the iterator. The
+     * behaviour of splitting and traversal is undefined if the iterator is
+     * operated on after the spliterator is returned.
+     *
+     * @param <T> Type of elements
+     * @param iterator The iterator for the source
+     * @param size Supplies the number of elements in the source, or
+     *        {@code null} if it is unknown
+     * @param characteristics Characteristics of this spliterator's source
+     *        or elements ({@code SIZED} and {@code SUBSIZED}, if supplied
+     *        without a {@code size}, are ignored and are not reported.)
+     * @param initialBatch the number of elements of the first split
+     * @param maxBatch the maximum number of elements of a split
+     * @return A spliterator from an iterator
+     * @throws NullPointerException if the given iterator is {@code null}
+     * @throws IllegalArgumentException if {@code initialBatch < 1}, if
+     *         {@code maxBatch < initialBatch} or if {@code maxBatch} is
+     *         greater than {@code 1 << 25}
+     */
+    public static <T> Spliterator<T> adaptiveSpliterator(Iterator<? extends T> iterator,
+                                                         LongSupplier size,
+                                                         int characteristics,
+                                                         int initialBatch,
+                                                         int maxBatch) {
+        return new AdaptiveIteratorSpliterator<T>(Objects.requireNonNull(iterator), size,
+                                                  characteristics, initialBatch, maxBatch);
+    }
+
+    /**
+     * Creates a <em><a href="Spliterator.html#binding">late-binding</a></em>
+     * {@code Spliterator} over the elements of the given {@code Iterable}
+     * whose {@code trySplit} copies batches of adaptive size into arrays, as
+     * described for
+     * {@link #adaptiveSpliterator(Iterator, LongSupplier, int, int, int)}.
+     * The iterable's iterator is created, and its size is queried, when the
+     * spliterator is first traversed, split, or queried for estimated size.
+     *
+     * @param <T> Type of elements
+     * @param iterable The source of elements
+     * @param size Supplies the number of elements in the source, or
+     *        {@code null} if it is unknown
+     * @param characteristics Characteristics of this spliterator's source
+     *        or elements ({@code SIZED} and {@code SUBSIZED}, if supplied
+     *        without a {@code size}, are ignored and are not reported.)
+     * @param initialBatch the number of elements of the first split
+     * @param maxBatch the maximum number of elements of a split
+     * @return A spliterator over the iterable's elements
+     * @throws NullPointerException if the given iterable is {@code null}
+     * @throws IllegalArgumentException if {@code initialBatch < 1}, if
+     *         {@code maxBatch < initialBatch} or if {@code maxBatch} is
+     *         greater than {@code 1 << 25}
+     */
+    public static <T> Spliterator<T> adaptiveSpliterator(Iterable<? extends T> iterable,
+                                                         LongSupplier size,
+                                                         int characteristics,
+                                                         int initialBatch,
+                                                         int maxBatch) {
+        return new AdaptiveIteratorSpliterator<T>(Objects.requireNonNull(iterable), size,
+                                                  characteristics, initialBatch, maxBatch);
+    }
+
     /**
      * Creates a {@code Spliterator.OfInt} using a given
      * {@code IntStream.IntIterator} as the source of elements, and with a given
@@ -1374,6 +1464,80 @@ public final class Spliterators {
         return new DoubleIteratorSpliterator(Objects.requireNonNull(iterator), characteristics);
     }
 
+    // Queue-draining spliterators
+
+    /**
+     * Creates a {@code Spliterator} that removes the elements of the given
+     * queue as it traverses them. Traversal ends when the queue is found
+     * empty; elements that are added to the queue before that are traversed
+     * as well.
+     *
+     * <p>Elements are removed with {@link Queue#poll()} or, if the queue is a
+     * {@link java.util.concurrent.BlockingQueue BlockingQueue}, in batches
+     * with {@code drainTo}. The spliterator implements {@code trySplit} by
+     * removing a batch of elements, so that a parallel stream can drain a
+     * queue while producers keep adding to it. It reports
+     * {@link Spliterator#CONCURRENT} and {@link Spliterator#NONNULL}; since
+     * split-off batches are processed concurrently with the rest of the
+     * queue, it does not report {@link Spliterator#ORDERED}.
+     *
+     * <p>The queue must not contain {@code null} elements and must be
+     * thread-safe if it is drained by a parallel stream or filled while it
+     * is drained, as {@code ConcurrentLinkedQueue},
+     * {@code LinkedBlockingQueue} or {@code ArrayBlockingQueue} are.
+     *
+     * @param <T> Type of elements
+     * @param queue The queue to drain
+     * @return A spliterator that drains the queue
+     * @throws NullPointerException if the given queue is {@code null}
+     */
+    public static <T> Spliterator<T> drainingSpliterator(Queue<T> queue) {
+        return new QueueDrainingSpliterator<T>(Objects.requireNonNull(queue));
+    }
+
+    /**
+     * Creates a {@code Spliterator} that removes the elements of the given
+     * blocking queue as it traverses them and waits for further elements
+     * while the queue is empty, so that it can describe a queue that is
+     * still being filled. Traversal ends when an element equal to
+     * {@code endOfStream} is taken from the queue (the marker itself is not
+     * traversed), when no element arrives within the given timeout, or when
+     * the traversing thread is interrupted, in which case its interrupt
+     * status is set again.
+     *
+     * <p>A thread that waits for an element does so in
+     * {@link java8.util.concurrent.ForkJoinPool#managedBlock(java8.util.concurrent.ForkJoinPool.ManagedBlocker)
+     * ForkJoinPool.managedBlock}, so waiting workers of a parallel stream do
+     * not starve the pool. Available elements are removed in batches with
+     * {@code drainTo}. The spliterator implements {@code trySplit} by waiting
+     * for and removing a batch of elements. A bounded queue keeps blocking
+     * its producers while the stream falls behind. Elements that are added
+     * after the end-of-stream marker may be removed along with a batch and
+     * are then discarded.
+     *
+     * <p>The spliterator reports {@link Spliterator#CONCURRENT} and
+     * {@link Spliterator#NONNULL}, and {@link Spliterator#ORDERED} if
+     * {@code ordered} is {@code true}; its encounter order is the order in
+     * which the elements are taken from the queue.
+     *
+     * @param <T> Type of elements
+     * @param queue The queue to drain
+     * @param timeout how long to wait for the next element before ending
+     *        the traversal, in units of {@code unit}
+     * @param unit the unit of the {@code timeout} argument
+     * @param endOfStream The element that marks the end of the stream, or
+     *        {@code null} if only the timeout ends it
+     * @param ordered whether the spliterator reports {@code ORDERED}
+     * @return A spliterator that drains the queue
+     * @throws NullPointerException if the given queue or unit is {@code null}
+     */
+    public static <T> Spliterator<T> blockingSpliterator(BlockingQueue<T> queue, long timeout,
+            TimeUnit unit, T endOfStream, boolean ordered) {
+        Objects.requireNonNull(queue);
+        Objects.requireNonNull(unit);
+        return new BlockingQueueSpliterator<T>(queue, timeout, unit, endOfStream, ordered);
+    }
+
     // Iterators from Spliterators
 
     /**
@@ -1888,7 +2052,7 @@ public final class Spliterators {
      * A Spliterator.OfInt designed for use by sources that traverse and split
      * elements maintained in an unmodifiable {@code int[]} array.
      */
-    static final class IntArraySpliterator implements Spliterator.OfInt {
+    static final class IntArraySpliterator implements Spliterator.OfInt, ChunkSpliterator<int[]> {
         private final int[] array;
         private int index;        // current index, modified on advance/split
         private final int fence;  // one past last index
@@ -1963,6 +2127,16 @@ public final class Spliterators {
             return false;
         }
 
+        @Override
+        public void forEachChunk(ChunkConsumer<int[]> action) {
+            int[] a; int i, hi; // hoist accesses and checks
+            Objects.requireNonNull(action);
+            if ((a = array).length >= (hi = fence) &&
+                (i = index) >= 0 && i < (index = hi)) {
+                action.accept(a, i, hi);
+            }
+        }
+
         @Override
         public boolean tryAdvance(Consumer<? super Integer> action) {
             return Spliterators.OfInt.tryAdvance(this, action);
@@ -2005,7 +2179,7 @@ public final class Spliterators {
      * A Spliterator.OfLong designed for use by sources that traverse and split
      * elements maintained in an unmodifiable {@code int[]} array.
      */
-    static final class LongArraySpliterator implements Spliterator.OfLong {
+    static final class LongArraySpliterator implements Spliterator.OfLong, ChunkSpliterator<long[]> {
         private final long[] array;
         private int index;        // current index, modified on advance/split
         private final int fence;  // one past last index
@@ -2085,6 +2259,16 @@ public final class Spliterators {
             return false;
         }
 
+        @Override
+        public void forEachChunk(ChunkConsumer<long[]> action) {
+            long[] a; int i, hi; // hoist accesses and checks
+            Objects.requireNonNull(action);
+            if ((a = array).length >= (hi = fence) &&
+                (i = index) >= 0 && i < (index = hi)) {
+                action.accept(a, i, hi);
+            }
+        }
+
         @Override
         public boolean tryAdvance(Consumer<? super Long> action) {
             return Spliterators.OfLong.tryAdvance(this, action);
@@ -2122,7 +2306,7 @@ public final class Spliterators {
      * A Spliterator.OfDouble designed for use by sources that traverse and split
      * elements maintained in an unmodifiable {@code int[]} array.
      */
-    static final class DoubleArraySpliterator implements Spliterator.OfDouble {
+    static final class DoubleArraySpliterator implements Spliterator.OfDouble, ChunkSpliterator<double[]> {
         private final double[] array;
         private int index;        // current index, modified on advance/split
         private final int fence;  // one past last index
@@ -2202,6 +2386,16 @@ public final class Spliterators {
             return false;
         }
 
+        @Override
+        public void forEachChunk(ChunkConsumer<double[]> action) {
+            double[] a; int i, hi; // hoist accesses and checks
+            Objects.requireNonNull(action);
+            if ((a = array).length >= (hi = fence) &&
+                (i = index) >= 0 && i < (index = hi)) {
+                action.accept(a, i, hi);
+            }
+        }
+
         @Override
         public boolean tryAdvance(Consumer<? super Double> action) {
             return Spliterators.OfDouble.tryAdvance(this, action);
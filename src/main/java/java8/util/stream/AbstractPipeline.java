@@ -24,7 +24,15 @@
  */
 package java8.util.stream;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import java8.util.ChunkSpliterator;
 import java8.util.Objects;
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.concurrent.ForkJoinTask;
+import java8.util.concurrent.ForkJoinWorkerThread;
 import java8.util.function.Consumer;
 import java8.util.function.IntFunction;
 import java8.util.function.Supplier;
@@ -149,6 +157,37 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      */
     private boolean parallel;
 
+    /**
+     * The pool in which parallel terminal operations are executed, or
+     * {@code null} if the caller's pool (or the common pool) should be used;
+     * only valid for the source stage.
+     */
+    private ForkJoinPool executionPool;
+
+    /**
+     * The policy deciding the leaf size of parallel tasks, or {@code null}
+     * for the default; only valid for the source stage.
+     */
+    private SplitPolicy splitPolicy;
+
+    /**
+     * The maximum number of elements a parallel {@code forEachOrdered}
+     * buffers ahead of their turn; only valid for the source stage.
+     */
+    private long orderedBufferLimit = Long.MAX_VALUE;
+
+    /**
+     * The listener to report evaluation statistics to, or {@code null} if
+     * the pipeline is not instrumented; only valid for the source stage.
+     */
+    private PipelineListener listener;
+
+    /**
+     * The recorder of the current evaluation if the pipeline has a
+     * listener; only valid for the source stage.
+     */
+    private PipelineRecorder recorder;
+
     /**
      * Constructor for the head of a stream pipeline.
      *
@@ -229,9 +268,24 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             throw new IllegalStateException(MSG_STREAM_LINKED);
         linkedOrConsumed = true;
 
-        return isParallel()
-               ? terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()))
-               : terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
+        PipelineRecorder recorder = startRecording(terminalOp);
+        R result = evaluateTerminal(terminalOp);
+        if (recorder != null) {
+            recorder.evaluated();
+        }
+        return result;
+    }
+
+    private <R> R evaluateTerminal(TerminalOp<E_OUT, R> terminalOp) {
+        if (isParallel()) {
+            ForkJoinPool pool = foreignExecutionPool();
+            if (pool != null) {
+                return pool.invoke(ForkJoinTask.adapt((Callable<R>) () ->
+                        terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()))));
+            }
+            return terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()));
+        }
+        return terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
     }
 
     /**
@@ -240,13 +294,52 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      * @param generator the array generator to be used to create array instances
      * @return a flat array-backed Node that holds the collected output elements
      */
-    @SuppressWarnings("unchecked")
     final Node<E_OUT> evaluateToArrayNode(IntFunction<E_OUT[]> generator) {
         if (linkedOrConsumed) {
             throw new IllegalStateException(MSG_STREAM_LINKED);
         }
         linkedOrConsumed = true;
 
+        PipelineRecorder recorder = startRecording("toArray");
+        Node<E_OUT> node;
+        ForkJoinPool pool = isParallel() ? foreignExecutionPool() : null;
+        if (pool != null) {
+            node = pool.invoke(ForkJoinTask.adapt((Callable<Node<E_OUT>>) () ->
+                    evaluateToArrayNodeInternal(generator)));
+        }
+        else {
+            node = evaluateToArrayNodeInternal(generator);
+        }
+        if (recorder != null) {
+            recorder.evaluated();
+        }
+        return node;
+    }
+
+    /**
+     * Creates the recorder for an evaluation of this pipeline if it has a
+     * listener.
+     *
+     * @param terminal the terminal operation, or a description of it
+     * @return the recorder, or {@code null} if the pipeline has no listener
+     */
+    private PipelineRecorder startRecording(Object terminal) {
+        if (sourceStage.listener == null) {
+            return null;
+        }
+        List<AbstractPipeline<?, ?, ?>> stages = new ArrayList<>(depth);
+        for (AbstractPipeline<?, ?, ?> p = sourceStage.nextStage; p != null; p = p.nextStage) {
+            stages.add(p);
+            if (p == this) {
+                break;
+            }
+        }
+        return sourceStage.recorder = new PipelineRecorder(sourceStage.listener, isParallel(),
+                stages, terminal);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<E_OUT> evaluateToArrayNodeInternal(IntFunction<E_OUT[]> generator) {
         // If the last intermediate operation is stateful then
         // evaluate directly to avoid an extra collection step
         if (isParallel() && previousStage != null && opIsStateful()) {
@@ -262,6 +355,27 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         }
     }
 
+    /**
+     * Returns the source spliterator for a bulk traversal by a terminal
+     * operation if this is the source stage of a sequential pipeline without
+     * a listener and its spliterator, not yet consumed, is a
+     * {@link ChunkSpliterator}; otherwise returns {@code null}, in which case
+     * the pipeline is left untouched.
+     *
+     * @param sized {@code true} if the spliterator must also report
+     *        {@code SIZED}
+     * @return the consumed source spliterator, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    final <T_ARR> ChunkSpliterator<T_ARR> chunkSource(boolean sized) {
+        if (this == sourceStage && !linkedOrConsumed && !parallel && listener == null
+                && sourceSpliterator instanceof ChunkSpliterator
+                && (!sized || sourceSpliterator.hasCharacteristics(Spliterator.SIZED))) {
+            return (ChunkSpliterator<T_ARR>) sourceStageSpliterator();
+        }
+        return null;
+    }
+
     /**
      * Gets the source stage spliterator if this pipeline stage is the source
      * stage.  The pipeline is consumed after this method is called and
@@ -311,6 +425,77 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return (S) this;
     }
 
+    /**
+     * Sets the pool in which parallel terminal operations of this pipeline
+     * are executed.
+     *
+     * @param pool the pool to use, or {@code null} to execute in the pool of
+     *        the calling worker thread or the common pool
+     */
+    final void setExecutionPool(ForkJoinPool pool) {
+        sourceStage.executionPool = pool;
+    }
+
+    /**
+     * Sets the policy that decides the leaf size of the parallel tasks
+     * evaluating this pipeline.
+     *
+     * @param policy the split policy, or {@code null} for the default
+     */
+    final void setSplitPolicy(SplitPolicy policy) {
+        sourceStage.splitPolicy = policy;
+    }
+
+    /**
+     * Sets the maximum number of elements a parallel {@code forEachOrdered}
+     * of this pipeline buffers ahead of their turn.
+     *
+     * @param limit the maximum number of buffered elements, or
+     *        {@code Long.MAX_VALUE} for no limit
+     */
+    final void setOrderedBufferLimit(long limit) {
+        sourceStage.orderedBufferLimit = limit;
+    }
+
+    /**
+     * Copies the execution pool and the split policy of the given pipeline
+     * to this pipeline.
+     *
+     * @param other the pipeline whose settings are copied
+     */
+    final void inheritExecutionSettings(AbstractPipeline<?, ?, ?> other) {
+        sourceStage.executionPool = other.sourceStage.executionPool;
+        sourceStage.splitPolicy = other.sourceStage.splitPolicy;
+    }
+
+    /**
+     * Sets the listener that is notified with statistics about the
+     * evaluation of this pipeline.
+     *
+     * @param listener the listener, or {@code null} to not instrument the
+     *        pipeline
+     */
+    final void setListener(PipelineListener listener) {
+        sourceStage.listener = listener;
+    }
+
+    /**
+     * Returns the execution pool of this pipeline if one was set and the
+     * calling thread is not already a worker thread of that pool, otherwise
+     * {@code null}.
+     */
+    private ForkJoinPool foreignExecutionPool() {
+        ForkJoinPool pool = sourceStage.executionPool;
+        if (pool != null) {
+            Thread t = Thread.currentThread();
+            if (t instanceof ForkJoinWorkerThread
+                    && ((ForkJoinWorkerThread) t).getPool() == pool) {
+                return null;
+            }
+        }
+        return pool;
+    }
+
     @Override
     public void close() {
         linkedOrConsumed = true;
@@ -383,6 +568,16 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return StreamOpFlag.toStreamFlags(combinedFlags);
     }
 
+    /**
+     * Returns the upstream pipeline stage.
+     *
+     * @return the upstream pipeline stage, or {@code null} if this is the
+     *         source stage
+     */
+    final AbstractPipeline<?, ?, ?> getPreviousStage() {
+        return previousStage;
+    }
+
     /**
      * Get the source spliterator for this pipeline stage.  For a sequential or
      * stateless parallel pipeline, this is the source spliterator.  For a
@@ -462,6 +657,21 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return p.getOutputShape();
     }
 
+    @Override
+    final SplitPolicy getSplitPolicy() {
+        return sourceStage.splitPolicy;
+    }
+
+    @Override
+    final long getOrderedBufferLimit() {
+        return sourceStage.orderedBufferLimit;
+    }
+
+    @Override
+    final PipelineRecorder getRecorder() {
+        return sourceStage.recorder;
+    }
+
     @Override
     final <P_IN> long exactOutputSizeIfKnown(Spliterator<P_IN> spliterator) {
         int flags = getStreamAndOpFlags();
@@ -537,6 +747,18 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return combinedFlags;
     }
 
+    /**
+     * Returns whether this pipeline was built on the given source stage
+     * and has no stateful intermediate operations.
+     *
+     * @param source the source stage
+     * @return {@code true} if this pipeline consists of stateless stages on
+     *         {@code source}
+     */
+    final boolean isStatelessOver(AbstractPipeline<?, ?, ?> source) {
+        return sourceStage == source && !sourceStage.sourceAnyStateful;
+    }
+
     final boolean isOrdered() {
         return StreamOpFlag.ORDERED.isKnown(combinedFlags);
     }
@@ -546,8 +768,16 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     final <P_IN> Sink<P_IN> wrapSink(Sink<E_OUT> sink) {
         Objects.requireNonNull(sink);
 
+        PipelineRecorder recorder = sourceStage.recorder;
+        if (recorder != null) {
+            // the sink consumes the output of this stage
+            sink = recorder.instrument(nextStage, getOutputShape(), sink);
+        }
         for (@SuppressWarnings("rawtypes") AbstractPipeline p = AbstractPipeline.this; p.depth > 0; p = p.previousStage) {
             sink = p.opWrapSink(p.previousStage.combinedFlags, sink);
+            if (recorder != null) {
+                sink = recorder.instrument(p, p.previousStage.getOutputShape(), sink);
+            }
         }
         return (Sink<P_IN>) sink;
     }
@@ -585,10 +815,7 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             }
         };
 
-        for (@SuppressWarnings("rawtypes") AbstractPipeline p = AbstractPipeline.this; p.depth > 0; p = p.previousStage) {
-            trampoline = p.opWrapSink(p.previousStage.combinedFlags, trampoline);
-        }
-        return (Sink<P_IN>) trampoline;
+        return wrapSink(trampoline);
     }
 
     @Override
@@ -27,12 +27,21 @@ package java8.util.stream;
 import java.util.concurrent.atomic.AtomicReference;
 
 import java8.util.Spliterator;
+import java8.util.concurrent.CountedCompleter;
 
 /**
  * Abstract class for fork-join tasks used to implement short-circuiting
  * stream ops, which can produce a result without processing all elements of the
  * stream.
  *
+ * <p>Tasks of {@linkplain #isLeftBiased() left-biased} operations process
+ * the source in waves: while the prefix split off the remaining source is
+ * large enough to occupy the pool, the remainder is not forked until the
+ * prefix has been processed, and so is never started if a result is found
+ * in the prefix.  Leaf tasks that traverse their part of the source with
+ * {@link #copyIntoWithEarlyExit(Sink)} stop early once the result has been
+ * found or the task has been canceled.
+ *
  * @param <P_IN> type of input elements to the pipeline
  * @param <P_OUT> type of output elements from the pipeline
  * @param <R> type of intermediate result, may be different from operation
@@ -58,6 +67,24 @@ abstract class AbstractShortCircuitTask<P_IN, P_OUT, R,
      */
     protected volatile boolean canceled;
 
+    /**
+     * The number of elements between two checks whether a leaf traversal
+     * can stop early.
+     */
+    static final int EARLY_EXIT_INTERVAL = 1 << 6;
+
+    /**
+     * Whether this task processes the remainder of the source of its
+     * parent, that is, whether it is the root or the right child of a task
+     * on the right spine.  Only such tasks defer their right child.
+     */
+    boolean onRightSpine;
+
+    /**
+     * The right sibling this task forks on completion, or {@code null}.
+     */
+    K deferredSibling;
+
     /**
      * Constructor for root tasks.
      *
@@ -70,6 +97,7 @@ abstract class AbstractShortCircuitTask<P_IN, P_OUT, R,
                                        Spliterator<P_IN> spliterator) {
         super(helper, spliterator);
         sharedResult = new AtomicReference<R>(null);
+        onRightSpine = true;
     }
 
     /**
@@ -94,6 +122,18 @@ abstract class AbstractShortCircuitTask<P_IN, P_OUT, R,
      */
     protected abstract R getEmptyResult();
 
+    /**
+     * Returns whether the result depends on the encounter order, so that
+     * elements earlier in the encounter order should be processed first.
+     * For example, a find-first operation is left-biased, while a find-any
+     * operation is not.
+     *
+     * @return {@code true} if the source should be processed in waves
+     */
+    protected boolean isLeftBiased() {
+        return false;
+    }
+
     /**
      * Overrides AbstractTask version to include checks for early
      * exits while splitting or computing.
@@ -120,6 +160,17 @@ abstract class AbstractShortCircuitTask<P_IN, P_OUT, R,
             task.leftChild  = leftChild = task.makeChild(ls);
             task.rightChild = rightChild = task.makeChild(rs);
             task.setPendingCount(1);
+            if (task.onRightSpine && task.isLeftBiased()
+                    && ls.estimateSize() / getPoolParallelism() >= sizeThreshold) {
+                // Process the prefix before the remainder, which the left
+                // child forks when it completes
+                rightChild.onRightSpine = true;
+                leftChild.deferredSibling = rightChild;
+                rs = ls;
+                task = leftChild;
+                sizeEstimate = rs.estimateSize();
+                continue;
+            }
             if (forkRight) {
                 forkRight = false;
                 rs = ls;
@@ -139,6 +190,124 @@ abstract class AbstractShortCircuitTask<P_IN, P_OUT, R,
     }
 
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p><b>Implementation Note:</b><br>
+     * Forks the deferred right sibling, if any, before clearing the
+     * spliterator and children fields.  The sibling will find itself
+     * canceled if this task, or the tasks preceding it, found the result.
+     */
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+        K sibling = deferredSibling;
+        if (sibling != null) {
+            deferredSibling = null;
+            sibling.fork();
+        }
+        super.onCompletion(caller);
+    }
+
+    /**
+     * Applies the pipeline stages to the spliterator of this leaf task and
+     * pushes the output into the provided sink, like
+     * {@code helper.wrapAndCopyInto(sink, spliterator)}, but stops the
+     * traversal early if another task has found the result or this task has
+     * been canceled, which is checked every {@link #EARLY_EXIT_INTERVAL}
+     * elements.  The number of elements traversed by a leaf that stopped
+     * early is reported as wasted to the pipeline's recorder, if any.
+     *
+     * @param <S> the type of the sink
+     * @param sink the sink to receive the results
+     * @return the sink
+     */
+    protected final <S extends Sink<P_OUT>> S copyIntoWithEarlyExit(S sink) {
+        EarlyExit exit = new EarlyExit();
+        helper.copyIntoWithCancel(helper.wrapSink(exit.wrap(sink)), spliterator);
+        if (exit.exited) {
+            PipelineRecorder recorder = helper.getRecorder();
+            if (recorder != null) {
+                recorder.wasted(exit.checks);
+            }
+        }
+        return sink;
+    }
+
+    /**
+     * Wraps the sink of a leaf traversal so that its
+     * {@code cancellationRequested} also reports whether the traversal can
+     * stop early, and counts the elements traversed.
+     */
+    private final class EarlyExit {
+        long checks;
+        boolean exited;
+
+        boolean cancellationRequested(Sink<?> downstream) {
+            if (downstream.cancellationRequested()) {
+                return true;
+            }
+            if ((++checks & (EARLY_EXIT_INTERVAL - 1)) == 0
+                    && (sharedResult.get() != null || taskCanceled())) {
+                exited = true;
+            }
+            return exited;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> Sink<T> wrap(Sink<T> sink) {
+            if (sink instanceof Sink.OfInt) {
+                return (Sink<T>) new Sink.ChainedInt<Integer>((Sink<Integer>) sink) {
+                    @Override
+                    public void accept(int value) {
+                        downstream.accept(value);
+                    }
+
+                    @Override
+                    public boolean cancellationRequested() {
+                        return EarlyExit.this.cancellationRequested(downstream);
+                    }
+                };
+            }
+            if (sink instanceof Sink.OfLong) {
+                return (Sink<T>) new Sink.ChainedLong<Long>((Sink<Long>) sink) {
+                    @Override
+                    public void accept(long value) {
+                        downstream.accept(value);
+                    }
+
+                    @Override
+                    public boolean cancellationRequested() {
+                        return EarlyExit.this.cancellationRequested(downstream);
+                    }
+                };
+            }
+            if (sink instanceof Sink.OfDouble) {
+                return (Sink<T>) new Sink.ChainedDouble<Double>((Sink<Double>) sink) {
+                    @Override
+                    public void accept(double value) {
+                        downstream.accept(value);
+                    }
+
+                    @Override
+                    public boolean cancellationRequested() {
+                        return EarlyExit.this.cancellationRequested(downstream);
+                    }
+                };
+            }
+            return new Sink.ChainedReference<T, T>(sink) {
+                @Override
+                public void accept(T t) {
+                    downstream.accept(t);
+                }
+
+                @Override
+                public boolean cancellationRequested() {
+                    return EarlyExit.this.cancellationRequested(downstream);
+                }
+            };
+        }
+    }
+
     /**
      * Declares that a globally valid result has been found.  If another task has
      * not already found the answer, the result is installed in
@@ -168,6 +168,23 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         }
     }
 
+    /**
+     * Returns the parallelism of the pool the calling thread is a worker of,
+     * or the common pool parallelism if the calling thread is not a
+     * {@link ForkJoinWorkerThread}.
+     *
+     * @return the parallelism of the pool executing the current task
+     */
+    static int getPoolParallelism() {
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread) {
+            return ((ForkJoinWorkerThread) t).getPool().getParallelism();
+        }
+        else {
+            return ForkJoinPool.getCommonPoolParallelism();
+        }
+    }
+
     /**
      * Constructs a new node of type T whose parent is the receiver; must call
      * the AbstractTask(T, Spliterator) constructor with the receiver and the
@@ -197,6 +214,34 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         return est > 0L ? est : 1L;
     }
 
+    /**
+     * Returns a suggested target leaf size based on the initial size estimate
+     * and the split policy of the pipeline, if one was set.
+     *
+     * @param helper the pipeline helper of the computation
+     * @param sizeEstimate the initial size estimate
+     * @return suggested target leaf size
+     */
+    static long suggestTargetSize(PipelineHelper<?> helper, long sizeEstimate) {
+        return suggestTargetSize(helper.getSplitPolicy(), sizeEstimate);
+    }
+
+    /**
+     * Returns a suggested target leaf size based on the initial size estimate
+     * and the given split policy.
+     *
+     * @param policy the split policy, or {@code null} for the default
+     * @param sizeEstimate the initial size estimate
+     * @return suggested target leaf size
+     */
+    static long suggestTargetSize(SplitPolicy policy, long sizeEstimate) {
+        if (policy == null) {
+            return suggestTargetSize(sizeEstimate);
+        }
+        long est = policy.targetSize(sizeEstimate, getPoolParallelism());
+        return est > 0L ? est : 1L;
+    }
+
     /**
      * Returns the targetSize, initializing it via the supplied
      * size estimate if not already initialized.
@@ -204,7 +249,7 @@ abstract class AbstractTask<P_IN, P_OUT, R,
     protected final long getTargetSize(long sizeEstimate) {
         long s;
         return ((s = targetSize) != 0 ? s :
-                (targetSize = suggestTargetSize(sizeEstimate)));
+                (targetSize = suggestTargetSize(helper, sizeEstimate)));
     }
 
     /**
@@ -305,8 +350,10 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         long sizeEstimate = rs.estimateSize();
         long sizeThreshold = getTargetSize(sizeEstimate);
         boolean forkRight = false;
+        int splits = 0;
         @SuppressWarnings("unchecked") K task = (K) this;
         while (sizeEstimate > sizeThreshold && (ls = rs.trySplit()) != null) {
+            splits++;
             K leftChild, rightChild, taskToFork;
             task.leftChild  = leftChild = task.makeChild(ls);
             task.rightChild = rightChild = task.makeChild(rs);
@@ -325,7 +372,20 @@ abstract class AbstractTask<P_IN, P_OUT, R,
             taskToFork.fork();
             sizeEstimate = rs.estimateSize();
         }
-        task.setLocalResult(task.doLeaf());
+        SplitPolicy policy = helper.getSplitPolicy();
+        if (policy != null && policy.isTimed()) {
+            long start = System.nanoTime();
+            R result = task.doLeaf();
+            policy.leafCompleted(sizeEstimate, System.nanoTime() - start);
+            task.setLocalResult(result);
+        }
+        else {
+            task.setLocalResult(task.doLeaf());
+        }
+        PipelineRecorder recorder = helper.getRecorder();
+        if (recorder != null) {
+            recorder.leafCompleted(splits);
+        }
         task.tryComplete();
     }
 
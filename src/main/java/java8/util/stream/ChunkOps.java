@@ -0,0 +1,270 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java8.util.ChunkSpliterator;
+import java8.util.DoubleSummaryStatistics;
+import java8.util.IntSummaryStatistics;
+import java8.util.LongSummaryStatistics;
+import java8.util.OptionalDouble;
+import java8.util.OptionalInt;
+import java8.util.OptionalLong;
+import java8.util.Spliterator;
+
+/**
+ * Terminal operations of the primitive streams that traverse a
+ * {@link ChunkSpliterator} source in bulk. Each operation runs a plain loop
+ * over every array segment the spliterator hands out and keeps its state in
+ * local variables for the duration of a segment.
+ *
+ * <p>These are only used for sequential streams without intermediate
+ * operations (see {@link AbstractPipeline#chunkSource(boolean)}), where the
+ * elements reaching the terminal operation are exactly the elements of the
+ * source arrays.
+ */
+final class ChunkOps {
+
+    private ChunkOps() {
+        throw new Error("no instances");
+    }
+
+    static int sumInt(ChunkSpliterator<int[]> chunks) {
+        final class Sum implements ChunkSpliterator.ChunkConsumer<int[]> {
+            int sum;
+
+            @Override
+            public void accept(int[] a, int from, int to) {
+                int s = sum;
+                for (int i = from; i < to; i++) {
+                    s += a[i];
+                }
+                sum = s;
+            }
+        }
+        Sum sum = new Sum();
+        chunks.forEachChunk(sum);
+        return sum.sum;
+    }
+
+    static long sumLong(ChunkSpliterator<long[]> chunks) {
+        final class Sum implements ChunkSpliterator.ChunkConsumer<long[]> {
+            long sum;
+
+            @Override
+            public void accept(long[] a, int from, int to) {
+                long s = sum;
+                for (int i = from; i < to; i++) {
+                    s += a[i];
+                }
+                sum = s;
+            }
+        }
+        Sum sum = new Sum();
+        chunks.forEachChunk(sum);
+        return sum.sum;
+    }
+
+    static IntSummaryStatistics statisticsInt(ChunkSpliterator<int[]> chunks) {
+        IntStatistics stats = new IntStatistics();
+        chunks.forEachChunk(stats);
+        return new IntSummaryStatistics(stats.count, stats.min, stats.max, stats.sum);
+    }
+
+    static OptionalInt minInt(ChunkSpliterator<int[]> chunks) {
+        IntStatistics stats = new IntStatistics();
+        chunks.forEachChunk(stats);
+        return stats.count > 0 ? OptionalInt.of(stats.min) : OptionalInt.empty();
+    }
+
+    static OptionalInt maxInt(ChunkSpliterator<int[]> chunks) {
+        IntStatistics stats = new IntStatistics();
+        chunks.forEachChunk(stats);
+        return stats.count > 0 ? OptionalInt.of(stats.max) : OptionalInt.empty();
+    }
+
+    static LongSummaryStatistics statisticsLong(ChunkSpliterator<long[]> chunks) {
+        LongStatistics stats = new LongStatistics();
+        chunks.forEachChunk(stats);
+        return new LongSummaryStatistics(stats.count, stats.min, stats.max, stats.sum);
+    }
+
+    static OptionalLong minLong(ChunkSpliterator<long[]> chunks) {
+        LongStatistics stats = new LongStatistics();
+        chunks.forEachChunk(stats);
+        return stats.count > 0 ? OptionalLong.of(stats.min) : OptionalLong.empty();
+    }
+
+    static OptionalLong maxLong(ChunkSpliterator<long[]> chunks) {
+        LongStatistics stats = new LongStatistics();
+        chunks.forEachChunk(stats);
+        return stats.count > 0 ? OptionalLong.of(stats.max) : OptionalLong.empty();
+    }
+
+    static DoubleSummaryStatistics statisticsDouble(ChunkSpliterator<double[]> chunks) {
+        final class Statistics implements ChunkSpliterator.ChunkConsumer<double[]> {
+            final DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+
+            @Override
+            public void accept(double[] a, int from, int to) {
+                // compensated summation, so no shortcut here
+                DoubleSummaryStatistics s = stats;
+                for (int i = from; i < to; i++) {
+                    s.accept(a[i]);
+                }
+            }
+        }
+        Statistics stats = new Statistics();
+        chunks.forEachChunk(stats);
+        return stats.stats;
+    }
+
+    static OptionalDouble minDouble(ChunkSpliterator<double[]> chunks) {
+        final class Min implements ChunkSpliterator.ChunkConsumer<double[]> {
+            boolean empty = true;
+            double min;
+
+            @Override
+            public void accept(double[] a, int from, int to) {
+                if (from < to) {
+                    double m = empty ? a[from] : min;
+                    for (int i = from; i < to; i++) {
+                        m = Math.min(m, a[i]);
+                    }
+                    min = m;
+                    empty = false;
+                }
+            }
+        }
+        Min min = new Min();
+        chunks.forEachChunk(min);
+        return min.empty ? OptionalDouble.empty() : OptionalDouble.of(min.min);
+    }
+
+    static OptionalDouble maxDouble(ChunkSpliterator<double[]> chunks) {
+        final class Max implements ChunkSpliterator.ChunkConsumer<double[]> {
+            boolean empty = true;
+            double max;
+
+            @Override
+            public void accept(double[] a, int from, int to) {
+                if (from < to) {
+                    double m = empty ? a[from] : max;
+                    for (int i = from; i < to; i++) {
+                        m = Math.max(m, a[i]);
+                    }
+                    max = m;
+                    empty = false;
+                }
+            }
+        }
+        Max max = new Max();
+        chunks.forEachChunk(max);
+        return max.empty ? OptionalDouble.empty() : OptionalDouble.of(max.max);
+    }
+
+    static int[] toIntArray(ChunkSpliterator<int[]> chunks) {
+        final int[] array = new int[exactSize(chunks)];
+        chunks.forEachChunk(new ChunkSpliterator.ChunkConsumer<int[]>() {
+            int offset;
+
+            @Override
+            public void accept(int[] a, int from, int to) {
+                System.arraycopy(a, from, array, offset, to - from);
+                offset += to - from;
+            }
+        });
+        return array;
+    }
+
+    static long[] toLongArray(ChunkSpliterator<long[]> chunks) {
+        final long[] array = new long[exactSize(chunks)];
+        chunks.forEachChunk(new ChunkSpliterator.ChunkConsumer<long[]>() {
+            int offset;
+
+            @Override
+            public void accept(long[] a, int from, int to) {
+                System.arraycopy(a, from, array, offset, to - from);
+                offset += to - from;
+            }
+        });
+        return array;
+    }
+
+    static double[] toDoubleArray(ChunkSpliterator<double[]> chunks) {
+        final double[] array = new double[exactSize(chunks)];
+        chunks.forEachChunk(new ChunkSpliterator.ChunkConsumer<double[]>() {
+            int offset;
+
+            @Override
+            public void accept(double[] a, int from, int to) {
+                System.arraycopy(a, from, array, offset, to - from);
+                offset += to - from;
+            }
+        });
+        return array;
+    }
+
+    /**
+     * Returns the size of a source that
+     * {@link AbstractPipeline#chunkSource(boolean)} returned for a sized
+     * traversal.
+     */
+    private static int exactSize(ChunkSpliterator<?> chunks) {
+        long size = ((Spliterator<?>) chunks).getExactSizeIfKnown();
+        if (size < 0 || size >= Nodes.MAX_ARRAY_SIZE) {
+            throw new IllegalArgumentException(Nodes.BAD_SIZE);
+        }
+        return (int) size;
+    }
+
+    /** Count, sum, minimum and maximum of {@code int} chunks */
+    private static final class IntStatistics implements ChunkSpliterator.ChunkConsumer<int[]> {
+        long count;
+        long sum;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        @Override
+        public void accept(int[] a, int from, int to) {
+            long s = sum;
+            int lo = min, hi = max;
+            for (int i = from; i < to; i++) {
+                int v = a[i];
+                s += v;
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            count += to - from;
+            sum = s;
+            min = lo;
+            max = hi;
+        }
+    }
+
+    /** Count, sum, minimum and maximum of {@code long} chunks */
+    private static final class LongStatistics implements ChunkSpliterator.ChunkConsumer<long[]> {
+        long count;
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        @Override
+        public void accept(long[] a, int from, int to) {
+            long s = sum;
+            long lo = min, hi = max;
+            for (int i = from; i < to; i++) {
+                long v = a[i];
+                s += v;
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            count += to - from;
+            sum = s;
+            min = lo;
+            max = hi;
+        }
+    }
+}
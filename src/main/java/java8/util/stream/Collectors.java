@@ -24,6 +24,7 @@
  */
 package java8.util.stream;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
@@ -59,6 +60,7 @@ import java8.util.function.BinaryOperators;
 import java8.util.function.Consumer;
 import java8.util.function.Function;
 import java8.util.function.Functions;
+import java8.util.function.LongFunction;
 import java8.util.function.Predicate;
 import java8.util.function.Supplier;
 import java8.util.function.ToDoubleFunction;
@@ -155,9 +157,17 @@ public final class Collectors {
         return HashSet::new;
     }
 
-    @SuppressWarnings("unchecked")
-    private static final Function<Map<?, ?>, Map<?, ?>> UNMOD_MAP_FINISHER = map -> Maps
-            .ofEntries(map.entrySet().toArray(new Map.Entry[0]));
+    private static <T> LongFunction<List<T>> arrayListSized() {
+        return size -> new ArrayList<>((int) Math.min(size, Nodes.MAX_ARRAY_SIZE));
+    }
+
+    private static <K, V> LongFunction<Map<K, V>> hashMapSized() {
+        // a capacity for which size entries stay below the default load factor
+        return size -> new HashMap<>((int) Math.min(size + size / 3 + 1, 1 << 30));
+    }
+
+    private static final Function<Map<?, ?>, Map<?, ?>> UNMOD_MAP_FINISHER = map -> Collectors
+            .mapFromTrustedMap(map);
 
     @SuppressWarnings("unchecked")
     private static final <K, U> Function<Map<K, U>, Map<K, U>> unmodMapFinisher() {
@@ -179,14 +189,20 @@ public final class Collectors {
 
     private static final Method LIST_FROM_TRUSTED_ARRAY;
     private static final Method LIST_FROM_TRUSTED_ARRAY_NULLS_ALLOWED;
+    private static final Method SET_FROM_TRUSTED_COLLECTION;
+    private static final Method MAP_FROM_TRUSTED_MAP;
     static {
         try {
             Class<?> clazz = Class.forName("java8.util.ImmutableCollections");
             LIST_FROM_TRUSTED_ARRAY = clazz.getDeclaredMethod("listFromTrustedArray", Object[].class);
             LIST_FROM_TRUSTED_ARRAY_NULLS_ALLOWED = clazz.getDeclaredMethod("listFromTrustedArrayNullsAllowed",
                     Object[].class);
+            SET_FROM_TRUSTED_COLLECTION = clazz.getDeclaredMethod("setFromTrustedCollection", Collection.class);
+            MAP_FROM_TRUSTED_MAP = clazz.getDeclaredMethod("mapFromTrustedMap", Map.class);
             LIST_FROM_TRUSTED_ARRAY.setAccessible(true);
             LIST_FROM_TRUSTED_ARRAY_NULLS_ALLOWED.setAccessible(true);
+            SET_FROM_TRUSTED_COLLECTION.setAccessible(true);
+            MAP_FROM_TRUSTED_MAP.setAccessible(true);
         } catch (Exception e) {
             throw new Error(e);
         }
@@ -196,6 +212,8 @@ public final class Collectors {
     static <T> List<T> listFromTrustedArray(Object[] array) {
         try {
             return (List<T>) LIST_FROM_TRUSTED_ARRAY.invoke(null, (Object) array);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
         } catch (Exception e) {
             throw new Error(e);
         }
@@ -205,11 +223,59 @@ public final class Collectors {
     static <T> List<T> listFromTrustedArrayNullsAllowed(Object[] array) {
         try {
             return (List<T>) LIST_FROM_TRUSTED_ARRAY_NULLS_ALLOWED.invoke(null, (Object) array);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Creates an unmodifiable set directly from the elements of a set that
+     * was built by a collector and is not referenced elsewhere.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Set<T> setFromTrustedCollection(Set<?> set) {
+        try {
+            return (Set<T>) SET_FROM_TRUSTED_COLLECTION.invoke(null, set);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
         } catch (Exception e) {
             throw new Error(e);
         }
     }
 
+    /**
+     * Creates an unmodifiable map directly from the mappings of a map that
+     * was built by a collector and is not referenced elsewhere.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Map<K, V> mapFromTrustedMap(Map<?, ?> map) {
+        try {
+            return (Map<K, V>) MAP_FROM_TRUSTED_MAP.invoke(null, map);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Rethrows the unchecked exception (such as the
+     * {@code NullPointerException} for a {@code null} element) thrown by a
+     * reflectively invoked factory.
+     */
+    private static RuntimeException rethrow(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new Error(cause);
+    }
+
     /**
      * Returns a new {@code Collector} described by the given {@code supplier},
      * {@code accumulator}, and {@code combiner} functions.  The resulting
@@ -363,25 +429,45 @@ public final class Collectors {
         private final BinaryOperator<A> combiner;
         private final Function<A, R> finisher;
         private final Set<Characteristics> characteristics;
+        private final LongFunction<A> sizedSupplier;
 
         CollectorImpl(Supplier<A> supplier,
+                      LongFunction<A> sizedSupplier,
                       BiConsumer<A, T> accumulator,
                       BinaryOperator<A> combiner,
                       Function<A,R> finisher,
                       Set<Characteristics> characteristics) {
             this.supplier = supplier;
+            this.sizedSupplier = sizedSupplier;
             this.accumulator = accumulator;
             this.combiner = combiner;
             this.finisher = finisher;
             this.characteristics = characteristics;
         }
 
+        CollectorImpl(Supplier<A> supplier,
+                      BiConsumer<A, T> accumulator,
+                      BinaryOperator<A> combiner,
+                      Function<A,R> finisher,
+                      Set<Characteristics> characteristics) {
+            this(supplier, null, accumulator, combiner, finisher, characteristics);
+        }
+
+        @SuppressWarnings("unchecked")
+        CollectorImpl(Supplier<A> supplier,
+                      LongFunction<A> sizedSupplier,
+                      BiConsumer<A, T> accumulator,
+                      BinaryOperator<A> combiner,
+                      Set<Characteristics> characteristics) {
+            this(supplier, sizedSupplier, accumulator, combiner, a -> (R)a/*castingIdentity()*/, characteristics);
+        }
+
         @SuppressWarnings("unchecked")
         CollectorImpl(Supplier<A> supplier,
                       BiConsumer<A, T> accumulator,
                       BinaryOperator<A> combiner,
                       Set<Characteristics> characteristics) {
-            this(supplier, accumulator, combiner, a -> (R)a/*castingIdentity()*/, characteristics);
+            this(supplier, null, accumulator, combiner, characteristics);
         }
 
         @Override
@@ -410,6 +496,77 @@ public final class Collectors {
         }
     }
 
+    /**
+     * A list collector whose result can also be created from an array that
+     * holds all input elements in encounter order. A parallel stream of known
+     * size collects through {@link Stream#toArray()} instead, whose leaf
+     * tasks write their elements directly into their slices of one array, and
+     * so avoids combining per-leaf lists. If the array finisher wraps the
+     * array rather than copying it, a sequential stream of known size does
+     * the same, since its {@code toArray()} fills an array of the exact size.
+     */
+    static final class ListCollectorImpl<T, R> extends CollectorImpl<T, List<T>, R> {
+        private final Function<Object[], R> arrayFinisher;
+        private final boolean wrapsArray;
+
+        ListCollectorImpl(Function<List<T>, R> finisher,
+                          Function<Object[], R> arrayFinisher,
+                          boolean wrapsArray,
+                          Set<Characteristics> characteristics) {
+            super(Collectors.<T>arrayListNew(), Collectors.<T>arrayListSized(), listAdd(),
+                  (left, right) -> { left.addAll(right); return left; },
+                  finisher, characteristics);
+            this.arrayFinisher = arrayFinisher;
+            this.wrapsArray = wrapsArray;
+        }
+    }
+
+    /**
+     * Returns a function that creates the result of the collector from an
+     * array holding all input elements in encounter order, or {@code null} if
+     * the collector doesn't provide one.
+     *
+     * @param <R> the result type of the collector
+     * @param collector the collector
+     * @return the array finisher of the collector, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    static <R> Function<Object[], R> arrayFinisher(Collector<?, ?, R> collector) {
+        return (collector instanceof ListCollectorImpl)
+                ? ((ListCollectorImpl<?, R>) collector).arrayFinisher : null;
+    }
+
+    /**
+     * Returns whether the {@link #arrayFinisher(Collector) array finisher} of
+     * the collector uses the array as the storage of its result, so that
+     * collecting through an exactly sized array costs no copy.
+     *
+     * @param collector the collector
+     * @return {@code true} if the collector's array finisher doesn't copy
+     */
+    static boolean wrapsArray(Collector<?, ?, ?> collector) {
+        return (collector instanceof ListCollectorImpl)
+                && ((ListCollectorImpl<?, ?>) collector).wrapsArray;
+    }
+
+    /**
+     * Returns a function that creates the result container of the collector
+     * presized for the given number of elements, or {@code null} if the
+     * collector doesn't provide one. A terminal operation that knows the exact
+     * number of elements a container will receive (the size passed to
+     * {@link Sink#begin(long)}) may use it in place of the collector's
+     * supplier, so that the container doesn't have to grow while it is
+     * filled.
+     *
+     * @param <A> the mutable accumulation type of the collector
+     * @param collector the collector
+     * @return the sized supplier of the collector, or {@code null}
+     */
+    static <A> LongFunction<A> sizedSupplier(Collector<?, A, ?> collector) {
+        return (collector instanceof CollectorImpl)
+                ? ((CollectorImpl<?, A, ?>) collector).sizedSupplier : null;
+    }
+
     /**
      * Returns a {@code Collector} that accumulates the input elements into a
      * new {@code Collection}, in encounter order.  The {@code Collection} is
@@ -439,11 +596,12 @@ public final class Collectors {
      * @return a {@code Collector} which collects all the input elements into a
      * {@code List}, in encounter order
      */
+    @SuppressWarnings("unchecked")
     public static <T>
     Collector<T, ?, List<T>> toList() {
-        return new CollectorImpl<>(arrayListNew(), listAdd(),
-                                   (left, right) -> { left.addAll(right); return left; },
-                                   CH_ID);
+        return new ListCollectorImpl<T, List<T>>(list -> list,
+                                   array -> new ArrayList<>(Arrays.asList((T[]) array)),
+                                   false, CH_ID);
     }
 
     /**
@@ -459,16 +617,15 @@ public final class Collectors {
      */
     public static <T>
     Collector<T, ?, List<T>> toUnmodifiableList() {
-        return new CollectorImpl<>(arrayListNew(), listAdd(),
-                                   (left, right) -> { left.addAll(right); return left; },
-                                   list -> {
+        return new ListCollectorImpl<T, List<T>>(list -> {
                                        if (list.getClass() == ArrayList.class) { // ensure it's trusted
                                            return listFromTrustedArray(list.toArray());
                                        } else {
                                            throw new IllegalArgumentException();
                                        }
                                    },
-                                   CH_NOID);
+                                   Collectors::<T>listFromTrustedArray,
+                                   true, CH_NOID);
     }
 
     /**
@@ -524,7 +681,7 @@ public final class Collectors {
                                            left.addAll(right); return left;
                                        }
                                    },
-                                   set -> (Set<T>) Sets.of(set.toArray()),
+                                   set -> Collectors.<T>setFromTrustedCollection(set),
                                    CH_UNORDERED_NOID);
     }
 
@@ -779,6 +936,7 @@ public final class Collectors {
             }
         }
         return new CollectorImpl<>(downstream.supplier(),
+                                   sizedSupplier(downstream),
                                    downstream.accumulator(),
                                    downstream.combiner(),
                                    Functions.andThen(downstream.finisher(), finisher),
@@ -1495,6 +1653,135 @@ public final class Collectors {
         }
     }
 
+    /**
+     * Returns a {@code Collector} that groups input elements by an
+     * {@code int} key and counts the elements of each group, like
+     * {@code groupingBy(classifier, counting())} but without boxing the keys
+     * or the counts during accumulation.
+     *
+     * <p>The groups are held in an open-addressing hash map from {@code int}
+     * keys to {@code long} counts. The returned {@code Map} is a read-only
+     * view of that map: keys and counts are only boxed when they are read
+     * through it. There are no guarantees on the iteration order of the
+     * keys. The {@code Map} is not modifiable, serializable or thread-safe.
+     *
+     * <p>For example, to compute a histogram of word lengths:
+     * <pre>{@code
+     *     Map<Integer, Long> histogram
+     *         = words.stream().collect(groupingByIntCounting(String::length));
+     * }</pre>
+     *
+     * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+     * Collector. For parallel stream pipelines, the {@code combiner} function
+     * merges the smaller of the two maps into the larger one.
+     *
+     * @param <T> the type of the input elements
+     * @param classifier a classifier function mapping input elements to keys
+     * @return a {@code Collector} counting the elements of each key
+     *
+     * @see #groupingByIntSumming(ToIntFunction, ToLongFunction)
+     * @see #groupingByLongCounting(ToLongFunction)
+     */
+    public static <T> Collector<T, ?, Map<Integer, Long>>
+    groupingByIntCounting(ToIntFunction<? super T> classifier) {
+        Objects.requireNonNull(classifier);
+        return new CollectorImpl<T, PrimitiveHashMap.OfInt, Map<Integer, Long>>(
+                PrimitiveHashMap.OfInt::new,
+                (m, t) -> m.add(classifier.applyAsInt(t), 1L),
+                PrimitiveHashMap.OfInt::merge,
+                CH_UNORDERED_ID);
+    }
+
+    /**
+     * Returns a {@code Collector} that groups input elements by an
+     * {@code int} key and sums a {@code long}-valued function of the
+     * elements of each group, like
+     * {@code groupingBy(classifier, summingLong(mapper))} but without boxing
+     * the keys or the sums during accumulation. The returned {@code Map} is
+     * a read-only view as described for
+     * {@link #groupingByIntCounting(ToIntFunction)}.
+     *
+     * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+     * Collector.
+     *
+     * @param <T> the type of the input elements
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapper a function extracting the property to be summed
+     * @return a {@code Collector} summing the property for each key
+     *
+     * @see #groupingByIntCounting(ToIntFunction)
+     * @see #groupingByLongSumming(ToLongFunction, ToLongFunction)
+     */
+    public static <T> Collector<T, ?, Map<Integer, Long>>
+    groupingByIntSumming(ToIntFunction<? super T> classifier, ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapper);
+        return new CollectorImpl<T, PrimitiveHashMap.OfInt, Map<Integer, Long>>(
+                PrimitiveHashMap.OfInt::new,
+                (m, t) -> m.add(classifier.applyAsInt(t), mapper.applyAsLong(t)),
+                PrimitiveHashMap.OfInt::merge,
+                CH_UNORDERED_ID);
+    }
+
+    /**
+     * Returns a {@code Collector} that groups input elements by a
+     * {@code long} key and counts the elements of each group, like
+     * {@code groupingBy(classifier, counting())} but without boxing the keys
+     * or the counts during accumulation. The returned {@code Map} is a
+     * read-only view as described for
+     * {@link #groupingByIntCounting(ToIntFunction)}.
+     *
+     * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+     * Collector.
+     *
+     * @param <T> the type of the input elements
+     * @param classifier a classifier function mapping input elements to keys
+     * @return a {@code Collector} counting the elements of each key
+     *
+     * @see #groupingByLongSumming(ToLongFunction, ToLongFunction)
+     * @see #groupingByIntCounting(ToIntFunction)
+     */
+    public static <T> Collector<T, ?, Map<Long, Long>>
+    groupingByLongCounting(ToLongFunction<? super T> classifier) {
+        Objects.requireNonNull(classifier);
+        return new CollectorImpl<T, PrimitiveHashMap.OfLong, Map<Long, Long>>(
+                PrimitiveHashMap.OfLong::new,
+                (m, t) -> m.add(classifier.applyAsLong(t), 1L),
+                PrimitiveHashMap.OfLong::merge,
+                CH_UNORDERED_ID);
+    }
+
+    /**
+     * Returns a {@code Collector} that groups input elements by a
+     * {@code long} key and sums a {@code long}-valued function of the
+     * elements of each group, like
+     * {@code groupingBy(classifier, summingLong(mapper))} but without boxing
+     * the keys or the sums during accumulation. The returned {@code Map} is
+     * a read-only view as described for
+     * {@link #groupingByIntCounting(ToIntFunction)}.
+     *
+     * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+     * Collector.
+     *
+     * @param <T> the type of the input elements
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapper a function extracting the property to be summed
+     * @return a {@code Collector} summing the property for each key
+     *
+     * @see #groupingByLongCounting(ToLongFunction)
+     * @see #groupingByIntSumming(ToIntFunction, ToLongFunction)
+     */
+    public static <T> Collector<T, ?, Map<Long, Long>>
+    groupingByLongSumming(ToLongFunction<? super T> classifier, ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapper);
+        return new CollectorImpl<T, PrimitiveHashMap.OfLong, Map<Long, Long>>(
+                PrimitiveHashMap.OfLong::new,
+                (m, t) -> m.add(classifier.applyAsLong(t), mapper.applyAsLong(t)),
+                PrimitiveHashMap.OfLong::merge,
+                CH_UNORDERED_ID);
+    }
+
     /**
      * Returns a {@code Collector} which partitions the input elements according
      * to a {@code Predicate}, and organizes them into a
@@ -1631,7 +1918,7 @@ public final class Collectors {
     public static <T, K, U>
     Collector<T, ?, Map<K,U>> toMap(Function<? super T, ? extends K> keyMapper,
                                     Function<? super T, ? extends U> valueMapper) {
-        return new CollectorImpl<>(hashMapNew(),
+        return new CollectorImpl<>(hashMapNew(), Collectors.<K, U>hashMapSized(),
                 uniqKeysMapAccumulator((Function<T, K>) keyMapper, (Function<T, U>) valueMapper),
                 uniqKeysMapMerger(),
                 CH_ID);
@@ -0,0 +1,796 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import java8.util.Objects;
+import java8.util.PrimitiveIterator;
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.function.Consumer;
+import java8.util.function.DoubleConsumer;
+import java8.util.function.IntConsumer;
+import java8.util.function.LongConsumer;
+
+/**
+ * An ordered collection of primitive values, like
+ * {@link SpinedBuffer.OfPrimitive}, whose chunks are allocated outside of
+ * the Java heap: as direct {@link ByteBuffer}s or, once the buffer has
+ * allocated more than a configurable number of bytes, as memory-mapped
+ * regions of (already deleted) temporary files.
+ *
+ * <p>Off-heap buffers are opt-in. If the system property
+ * {@code java8.util.stream.SpinedBuffer.offHeap} is {@code true} they back
+ * the variable size primitive node builders of {@link Nodes}, and thereby
+ * the intermediate results of primitive operations such as
+ * {@code toArray()} or {@code sorted()} on streams of unknown size. The
+ * system property {@code java8.util.stream.SpinedBuffer.mapThreshold}
+ * specifies the number of bytes per buffer beyond which further chunks are
+ * memory-mapped; by default chunks are never mapped.
+ *
+ * <p>The memory of a chunk is released when the chunk is garbage collected.
+ * Direct memory is subject to the {@code -XX:MaxDirectMemorySize} limit of
+ * the virtual machine.
+ *
+ * @param <E> the wrapper type for this primitive type
+ * @param <T_ARR> the array type for this primitive type
+ * @param <T_BUF> the buffer type for this primitive type
+ * @param <T_CONS> the Consumer type for this primitive type
+ */
+abstract class DirectSpinedBuffer<E, T_ARR, T_BUF extends Buffer, T_CONS>
+        extends AbstractSpinedBuffer {
+
+    /**
+     * Whether the variable size primitive node builders are off-heap.
+     */
+    static final boolean ENABLED
+            = getBooleanPropVal("java8.util.stream.SpinedBuffer.offHeap", false);
+
+    /**
+     * The number of bytes per buffer beyond which chunks are memory-mapped,
+     * or -1 if chunks are never memory-mapped.
+     */
+    static final long MAP_THRESHOLD
+            = getLongPropVal("java8.util.stream.SpinedBuffer.mapThreshold", -1L);
+
+    /**
+     * Minimum size for the first chunk. Direct buffers are comparatively
+     * expensive to allocate, so the first chunk is larger than the first
+     * chunk of an on-heap {@code SpinedBuffer}.
+     */
+    static final int MIN_DIRECT_CHUNK_SIZE = 1 << 10;
+
+    /**
+     * Max size of a chunk in bytes, a direct buffer can hold at most
+     * {@code Integer.MAX_VALUE} bytes.
+     */
+    static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    // The size of an element in bytes
+    private final int elementBytes;
+
+    // The number of bytes beyond which chunks are memory-mapped, or -1
+    private final long mapThreshold;
+
+    // The number of bytes allocated for chunks so far
+    private long allocatedBytes;
+
+    // The chunk we're currently writing into
+    T_BUF curChunk;
+
+    // All chunks, or null if there is only one chunk
+    T_BUF[] spine;
+
+    /**
+     * Constructs an empty buffer with the specified initial capacity.
+     *
+     * @param initialCapacity the initial capacity of the buffer
+     * @param elementBytes the size of an element in bytes
+     * @param mapThreshold the number of bytes beyond which chunks are
+     *        memory-mapped, or -1 if chunks should not be memory-mapped
+     */
+    DirectSpinedBuffer(int initialCapacity, int elementBytes, long mapThreshold) {
+        super(Math.min(Math.max(initialCapacity, MIN_DIRECT_CHUNK_SIZE),
+                       MAX_CHUNK_BYTES / elementBytes));
+        this.elementBytes = elementBytes;
+        this.mapThreshold = mapThreshold;
+        curChunk = allocateChunk(1 << initialChunkPower);
+    }
+
+    /** Create a new array-of-chunks of the proper type and size */
+    abstract T_BUF[] newChunkArray(int size);
+
+    /** View the bytes of a chunk as a buffer of the proper type */
+    abstract T_BUF asChunk(ByteBuffer bytes);
+
+    /** Create a new array of the proper type and size */
+    public abstract T_ARR newArray(int size);
+
+    /** Get the length of an array */
+    abstract int arrayLength(T_ARR array);
+
+    /** Copy the first {@code length} elements of a chunk into an array */
+    abstract void chunkCopyInto(T_BUF chunk, int length, T_ARR array, int offset);
+
+    /** Iterate a chunk with the provided consumer */
+    abstract void chunkForEach(T_BUF chunk, int from, int to, T_CONS consumer);
+
+    public abstract void forEach(Consumer<? super E> consumer);
+
+    @Override
+    protected int chunkSize(int n) {
+        return Math.min(super.chunkSize(n), MAX_CHUNK_BYTES / elementBytes);
+    }
+
+    private T_BUF allocateChunk(int size) {
+        int bytes = size * elementBytes;
+        allocatedBytes += bytes;
+        ByteBuffer chunk = null;
+        if (mapThreshold >= 0L && allocatedBytes > mapThreshold) {
+            chunk = mapTempFile(bytes);
+        }
+        if (chunk == null) {
+            chunk = ByteBuffer.allocateDirect(bytes);
+        }
+        return asChunk(chunk.order(ByteOrder.nativeOrder()));
+    }
+
+    /**
+     * Maps a region of a new temporary file, or returns {@code null} if the
+     * file cannot be created (the chunk is then allocated in direct memory
+     * instead). The file is deleted right away if the platform permits,
+     * since the mapping stays valid until it is garbage collected.
+     */
+    static ByteBuffer mapTempFile(int bytes) {
+        try {
+            File file = File.createTempFile("streamsupport", ".buf");
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, bytes);
+                } finally {
+                    raf.close();
+                }
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    long capacity() {
+        return (spineIndex == 0)
+               ? curChunk.capacity()
+               : priorElementCount[spineIndex] + spine[spineIndex].capacity();
+    }
+
+    private void inflateSpine() {
+        if (spine == null) {
+            spine = newChunkArray(MIN_SPINE_SIZE);
+            priorElementCount = new long[MIN_SPINE_SIZE];
+            spine[0] = curChunk;
+        }
+    }
+
+    final void ensureCapacity(long targetSize) {
+        long capacity = capacity();
+        if (targetSize > capacity) {
+            inflateSpine();
+            for (int i=spineIndex+1; targetSize > capacity; i++) {
+                if (i >= spine.length) {
+                    int newSpineSize = spine.length * 2;
+                    spine = Arrays.copyOf(spine, newSpineSize);
+                    priorElementCount = Arrays.copyOf(priorElementCount, newSpineSize);
+                }
+                int nextChunkSize = chunkSize(i);
+                spine[i] = allocateChunk(nextChunkSize);
+                priorElementCount[i] = priorElementCount[i-1] + spine[i - 1].capacity();
+                capacity += nextChunkSize;
+            }
+        }
+    }
+
+    int chunkFor(long index) {
+        if (spineIndex == 0) {
+            if (index < elementIndex)
+                return 0;
+            else
+                throw new IndexOutOfBoundsException(Long.toString(index));
+        }
+
+        if (index >= count())
+            throw new IndexOutOfBoundsException(Long.toString(index));
+
+        for (int j=0; j <= spineIndex; j++)
+            if (index < priorElementCount[j] + spine[j].capacity())
+                return j;
+
+        throw new IndexOutOfBoundsException(Long.toString(index));
+    }
+
+    final void preAccept() {
+        if (elementIndex == curChunk.capacity()) {
+            inflateSpine();
+            if (spineIndex+1 >= spine.length || spine[spineIndex+1] == null)
+                ensureCapacity(capacity() + 1);
+            elementIndex = 0;
+            ++spineIndex;
+            curChunk = spine[spineIndex];
+        }
+    }
+
+    public void copyInto(T_ARR array, int offset) {
+        long finalOffset = offset + count();
+        if (finalOffset > arrayLength(array) || finalOffset < offset) {
+            throw new IndexOutOfBoundsException("does not fit");
+        }
+
+        // full chunks, if any
+        for (int i=0; i < spineIndex; i++) {
+            chunkCopyInto(spine[i], spine[i].capacity(), array, offset);
+            offset += spine[i].capacity();
+        }
+        // current chunk
+        chunkCopyInto(curChunk, elementIndex, array, offset);
+    }
+
+    public T_ARR asPrimitiveArray() {
+        long size = count();
+        if (size >= Nodes.MAX_ARRAY_SIZE)
+            throw new IllegalArgumentException(Nodes.BAD_SIZE);
+        T_ARR result = newArray((int) size);
+        copyInto(result, 0);
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        // drop all chunks except the first one, and with them their memory
+        if (spine != null) {
+            curChunk = spine[0];
+            spine = null;
+            priorElementCount = null;
+            allocatedBytes = curChunk.capacity() * elementBytes;
+        }
+        elementIndex = 0;
+        spineIndex = 0;
+    }
+
+    public void forEach(T_CONS consumer) {
+        // completed chunks, if any
+        for (int j = 0; j < spineIndex; j++) {
+            chunkForEach(spine[j], 0, spine[j].capacity(), consumer);
+        }
+
+        // current chunk
+        chunkForEach(curChunk, 0, elementIndex, consumer);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[length=%d, chunks=%d]",
+                             getClass().getSimpleName(), count(), spineIndex);
+    }
+
+    abstract class BaseSpliterator<T_SPLITR extends Spliterator.OfPrimitive<E, T_CONS, T_SPLITR>>
+            implements Spliterator.OfPrimitive<E, T_CONS, T_SPLITR> {
+        // The current spine index
+        int splSpineIndex;
+
+        // Last spine index
+        final int lastSpineIndex;
+
+        // The current element index into the current spine
+        int splElementIndex;
+
+        // Last spine's last element index + 1
+        final int lastSpineElementFence;
+
+        // The current chunk
+        T_BUF splChunk;
+
+        BaseSpliterator(int firstSpineIndex, int lastSpineIndex,
+                        int firstSpineElementIndex, int lastSpineElementFence) {
+            this.splSpineIndex = firstSpineIndex;
+            this.lastSpineIndex = lastSpineIndex;
+            this.splElementIndex = firstSpineElementIndex;
+            this.lastSpineElementFence = lastSpineElementFence;
+
+            splChunk = (spine == null) ? curChunk : spine[firstSpineIndex];
+        }
+
+        abstract T_SPLITR newSpliterator(int firstSpineIndex, int lastSpineIndex,
+                                         int firstSpineElementIndex, int lastSpineElementFence);
+
+        abstract void chunkForOne(T_BUF chunk, int index, T_CONS consumer);
+
+        @Override
+        public long estimateSize() {
+            return (splSpineIndex == lastSpineIndex)
+                   ? (long) lastSpineElementFence - splElementIndex
+                   : // # of elements prior to end -
+                   priorElementCount[lastSpineIndex] + lastSpineElementFence -
+                   // # of elements prior to current
+                   priorElementCount[splSpineIndex] - splElementIndex;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.ORDERED | Spliterator.SUBSIZED;
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return Spliterators.getExactSizeIfKnown(this);
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return Spliterators.getComparator(this);
+        }
+
+        @Override
+        public boolean tryAdvance(T_CONS consumer) {
+            Objects.requireNonNull(consumer);
+
+            if (splSpineIndex < lastSpineIndex
+                || (splSpineIndex == lastSpineIndex && splElementIndex < lastSpineElementFence)) {
+                chunkForOne(splChunk, splElementIndex++, consumer);
+
+                if (splElementIndex == splChunk.capacity()) {
+                    splElementIndex = 0;
+                    ++splSpineIndex;
+                    if (spine != null && splSpineIndex <= lastSpineIndex)
+                        splChunk = spine[splSpineIndex];
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(T_CONS consumer) {
+            Objects.requireNonNull(consumer);
+
+            if (splSpineIndex < lastSpineIndex
+                || (splSpineIndex == lastSpineIndex && splElementIndex < lastSpineElementFence)) {
+                int i = splElementIndex;
+                // completed chunks, if any
+                for (int sp = splSpineIndex; sp < lastSpineIndex; sp++) {
+                    T_BUF chunk = spine[sp];
+                    chunkForEach(chunk, i, chunk.capacity(), consumer);
+                    i = 0;
+                }
+                // last (or current uncompleted) chunk
+                T_BUF chunk = (splSpineIndex == lastSpineIndex) ? splChunk : spine[lastSpineIndex];
+                chunkForEach(chunk, i, lastSpineElementFence, consumer);
+                // mark consumed
+                splSpineIndex = lastSpineIndex;
+                splElementIndex = lastSpineElementFence;
+            }
+        }
+
+        @Override
+        public T_SPLITR trySplit() {
+            if (splSpineIndex < lastSpineIndex) {
+                // split just before last chunk (if it is full this means 50:50 split)
+                T_SPLITR ret = newSpliterator(splSpineIndex, lastSpineIndex - 1,
+                                              splElementIndex, spine[lastSpineIndex - 1].capacity());
+                // position us to start of last chunk
+                splSpineIndex = lastSpineIndex;
+                splElementIndex = 0;
+                splChunk = spine[splSpineIndex];
+                return ret;
+            }
+            else if (splSpineIndex == lastSpineIndex) {
+                int t = (lastSpineElementFence - splElementIndex) / 2;
+                if (t == 0)
+                    return null;
+                else {
+                    // a range within the current chunk
+                    T_SPLITR ret = newSpliterator(splSpineIndex, splSpineIndex,
+                                                  splElementIndex, splElementIndex + t);
+                    splElementIndex += t;
+                    return ret;
+                }
+            }
+            else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * An ordered off-heap collection of {@code int} values.
+     */
+    static class OfInt extends DirectSpinedBuffer<Integer, int[], IntBuffer, IntConsumer>
+            implements IntConsumer {
+        OfInt() {
+            this(MIN_DIRECT_CHUNK_SIZE, MAP_THRESHOLD);
+        }
+
+        OfInt(int initialCapacity, long mapThreshold) {
+            super(initialCapacity, 4, mapThreshold);
+        }
+
+        @Override
+        IntBuffer[] newChunkArray(int size) {
+            return new IntBuffer[size];
+        }
+
+        @Override
+        IntBuffer asChunk(ByteBuffer bytes) {
+            return bytes.asIntBuffer();
+        }
+
+        @Override
+        public int[] newArray(int size) {
+            return new int[size];
+        }
+
+        @Override
+        int arrayLength(int[] array) {
+            return array.length;
+        }
+
+        @Override
+        void chunkCopyInto(IntBuffer chunk, int length, int[] array, int offset) {
+            IntBuffer src = chunk.duplicate();
+            src.position(0);
+            src.get(array, offset, length);
+        }
+
+        @Override
+        void chunkForEach(IntBuffer chunk, int from, int to, IntConsumer consumer) {
+            for (int i = from; i < to; i++)
+                consumer.accept(chunk.get(i));
+        }
+
+        @Override
+        public void forEach(Consumer<? super Integer> consumer) {
+            if (consumer instanceof IntConsumer) {
+                forEach((IntConsumer) consumer);
+            }
+            else {
+                spliterator().forEachRemaining(consumer);
+            }
+        }
+
+        @Override
+        public void accept(int i) {
+            preAccept();
+            curChunk.put(elementIndex++, i);
+        }
+
+        public int get(long index) {
+            // Casts to int are safe since the spine array index is the index minus
+            // the prior element count from the current spine
+            int ch = chunkFor(index);
+            if (spineIndex == 0 && ch == 0)
+                return curChunk.get((int) index);
+            else
+                return spine[ch].get((int) (index - priorElementCount[ch]));
+        }
+
+        public PrimitiveIterator.OfInt iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        public Spliterator.OfInt spliterator() {
+            class Splitr extends BaseSpliterator<Spliterator.OfInt>
+                    implements Spliterator.OfInt {
+                Splitr(int firstSpineIndex, int lastSpineIndex,
+                       int firstSpineElementIndex, int lastSpineElementFence) {
+                    super(firstSpineIndex, lastSpineIndex,
+                          firstSpineElementIndex, lastSpineElementFence);
+                }
+
+                @Override
+                Splitr newSpliterator(int firstSpineIndex, int lastSpineIndex,
+                                      int firstSpineElementIndex, int lastSpineElementFence) {
+                    return new Splitr(firstSpineIndex, lastSpineIndex,
+                                      firstSpineElementIndex, lastSpineElementFence);
+                }
+
+                @Override
+                void chunkForOne(IntBuffer chunk, int index, IntConsumer consumer) {
+                    consumer.accept(chunk.get(index));
+                }
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Integer> action) {
+                    return Spliterators.OfInt.tryAdvance(this, action);
+                }
+
+                @Override
+                public void forEachRemaining(Consumer<? super Integer> action) {
+                    Spliterators.OfInt.forEachRemaining(this, action);
+                }
+            }
+            return new Splitr(0, spineIndex, 0, elementIndex);
+        }
+    }
+
+    /**
+     * An ordered off-heap collection of {@code long} values.
+     */
+    static class OfLong extends DirectSpinedBuffer<Long, long[], LongBuffer, LongConsumer>
+            implements LongConsumer {
+        OfLong() {
+            this(MIN_DIRECT_CHUNK_SIZE, MAP_THRESHOLD);
+        }
+
+        OfLong(int initialCapacity, long mapThreshold) {
+            super(initialCapacity, 8, mapThreshold);
+        }
+
+        @Override
+        LongBuffer[] newChunkArray(int size) {
+            return new LongBuffer[size];
+        }
+
+        @Override
+        LongBuffer asChunk(ByteBuffer bytes) {
+            return bytes.asLongBuffer();
+        }
+
+        @Override
+        public long[] newArray(int size) {
+            return new long[size];
+        }
+
+        @Override
+        int arrayLength(long[] array) {
+            return array.length;
+        }
+
+        @Override
+        void chunkCopyInto(LongBuffer chunk, int length, long[] array, int offset) {
+            LongBuffer src = chunk.duplicate();
+            src.position(0);
+            src.get(array, offset, length);
+        }
+
+        @Override
+        void chunkForEach(LongBuffer chunk, int from, int to, LongConsumer consumer) {
+            for (int i = from; i < to; i++)
+                consumer.accept(chunk.get(i));
+        }
+
+        @Override
+        public void forEach(Consumer<? super Long> consumer) {
+            if (consumer instanceof LongConsumer) {
+                forEach((LongConsumer) consumer);
+            }
+            else {
+                spliterator().forEachRemaining(consumer);
+            }
+        }
+
+        @Override
+        public void accept(long i) {
+            preAccept();
+            curChunk.put(elementIndex++, i);
+        }
+
+        public long get(long index) {
+            // Casts to int are safe since the spine array index is the index minus
+            // the prior element count from the current spine
+            int ch = chunkFor(index);
+            if (spineIndex == 0 && ch == 0)
+                return curChunk.get((int) index);
+            else
+                return spine[ch].get((int) (index - priorElementCount[ch]));
+        }
+
+        public PrimitiveIterator.OfLong iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        public Spliterator.OfLong spliterator() {
+            class Splitr extends BaseSpliterator<Spliterator.OfLong>
+                    implements Spliterator.OfLong {
+                Splitr(int firstSpineIndex, int lastSpineIndex,
+                       int firstSpineElementIndex, int lastSpineElementFence) {
+                    super(firstSpineIndex, lastSpineIndex,
+                          firstSpineElementIndex, lastSpineElementFence);
+                }
+
+                @Override
+                Splitr newSpliterator(int firstSpineIndex, int lastSpineIndex,
+                                      int firstSpineElementIndex, int lastSpineElementFence) {
+                    return new Splitr(firstSpineIndex, lastSpineIndex,
+                                      firstSpineElementIndex, lastSpineElementFence);
+                }
+
+                @Override
+                void chunkForOne(LongBuffer chunk, int index, LongConsumer consumer) {
+                    consumer.accept(chunk.get(index));
+                }
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Long> action) {
+                    return Spliterators.OfLong.tryAdvance(this, action);
+                }
+
+                @Override
+                public void forEachRemaining(Consumer<? super Long> action) {
+                    Spliterators.OfLong.forEachRemaining(this, action);
+                }
+            }
+            return new Splitr(0, spineIndex, 0, elementIndex);
+        }
+    }
+
+    /**
+     * An ordered off-heap collection of {@code double} values.
+     */
+    static class OfDouble extends DirectSpinedBuffer<Double, double[], DoubleBuffer, DoubleConsumer>
+            implements DoubleConsumer {
+        OfDouble() {
+            this(MIN_DIRECT_CHUNK_SIZE, MAP_THRESHOLD);
+        }
+
+        OfDouble(int initialCapacity, long mapThreshold) {
+            super(initialCapacity, 8, mapThreshold);
+        }
+
+        @Override
+        DoubleBuffer[] newChunkArray(int size) {
+            return new DoubleBuffer[size];
+        }
+
+        @Override
+        DoubleBuffer asChunk(ByteBuffer bytes) {
+            return bytes.asDoubleBuffer();
+        }
+
+        @Override
+        public double[] newArray(int size) {
+            return new double[size];
+        }
+
+        @Override
+        int arrayLength(double[] array) {
+            return array.length;
+        }
+
+        @Override
+        void chunkCopyInto(DoubleBuffer chunk, int length, double[] array, int offset) {
+            DoubleBuffer src = chunk.duplicate();
+            src.position(0);
+            src.get(array, offset, length);
+        }
+
+        @Override
+        void chunkForEach(DoubleBuffer chunk, int from, int to, DoubleConsumer consumer) {
+            for (int i = from; i < to; i++)
+                consumer.accept(chunk.get(i));
+        }
+
+        @Override
+        public void forEach(Consumer<? super Double> consumer) {
+            if (consumer instanceof DoubleConsumer) {
+                forEach((DoubleConsumer) consumer);
+            }
+            else {
+                spliterator().forEachRemaining(consumer);
+            }
+        }
+
+        @Override
+        public void accept(double i) {
+            preAccept();
+            curChunk.put(elementIndex++, i);
+        }
+
+        public double get(long index) {
+            // Casts to int are safe since the spine array index is the index minus
+            // the prior element count from the current spine
+            int ch = chunkFor(index);
+            if (spineIndex == 0 && ch == 0)
+                return curChunk.get((int) index);
+            else
+                return spine[ch].get((int) (index - priorElementCount[ch]));
+        }
+
+        public PrimitiveIterator.OfDouble iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        public Spliterator.OfDouble spliterator() {
+            class Splitr extends BaseSpliterator<Spliterator.OfDouble>
+                    implements Spliterator.OfDouble {
+                Splitr(int firstSpineIndex, int lastSpineIndex,
+                       int firstSpineElementIndex, int lastSpineElementFence) {
+                    super(firstSpineIndex, lastSpineIndex,
+                          firstSpineElementIndex, lastSpineElementFence);
+                }
+
+                @Override
+                Splitr newSpliterator(int firstSpineIndex, int lastSpineIndex,
+                                      int firstSpineElementIndex, int lastSpineElementFence) {
+                    return new Splitr(firstSpineIndex, lastSpineIndex,
+                                      firstSpineElementIndex, lastSpineElementFence);
+                }
+
+                @Override
+                void chunkForOne(DoubleBuffer chunk, int index, DoubleConsumer consumer) {
+                    consumer.accept(chunk.get(index));
+                }
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Double> action) {
+                    return Spliterators.OfDouble.tryAdvance(this, action);
+                }
+
+                @Override
+                public void forEachRemaining(Consumer<? super Double> action) {
+                    Spliterators.OfDouble.forEachRemaining(this, action);
+                }
+            }
+            return new Splitr(0, spineIndex, 0, elementIndex);
+        }
+    }
+
+    private static boolean getBooleanPropVal(String prop, boolean defVal) {
+        return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+            @Override
+            public Boolean run() {
+                boolean val = defVal;
+                try {
+                    String s = System.getProperty(prop, Boolean.toString(defVal));
+                    val = Boolean.parseBoolean(s.trim());
+                } catch (IllegalArgumentException ignore) {
+                } catch (NullPointerException ignore) {
+                }
+                return val;
+            }
+        });
+    }
+
+    private static long getLongPropVal(String prop, long defVal) {
+        return AccessController.doPrivileged(new PrivilegedAction<Long>() {
+            @Override
+            public Long run() {
+                long val = defVal;
+                try {
+                    String s = System.getProperty(prop);
+                    if (s != null) {
+                        val = Long.parseLong(s.trim());
+                    }
+                } catch (IllegalArgumentException ignore) {
+                } catch (NullPointerException ignore) {
+                }
+                return val;
+            }
+        });
+    }
+}
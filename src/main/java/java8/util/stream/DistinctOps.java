@@ -24,17 +24,12 @@
  */
 package java8.util.stream;
 
-import java.util.AbstractSet;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import java8.util.Objects;
-import java8.util.concurrent.ForkJoinPool;
+import java8.util.concurrent.RecursiveTask;
 import java8.util.function.IntFunction;
 import java8.util.Spliterator;
 
@@ -81,36 +76,14 @@ final class DistinctOps {
                     return reduce(helper, spliterator);
                 }
                 else {
-                    // Holder of null state since ConcurrentHashMap does not support null values
-                    AtomicBoolean seenNull = new AtomicBoolean();
-                    // Pre-size map to reduce concurrent re-sizes
-                    ConcurrentMap<T, Boolean> map = new ConcurrentHashMap<T, Boolean>(512, 0.75f,
-                            ForkJoinPool.getCommonPoolParallelism() + 1);
-                    TerminalOp<T, Void> forEachOp = ForEachOps.makeRef(t -> {
-                        if (t == null) {
-                            seenNull.set(true);
-                        } else {
-                            map.putIfAbsent(t, Boolean.TRUE);
-                        }
-                    }, false);
-                    forEachOp.evaluateParallel(helper, spliterator);
-
-                    // If null has been seen then copy the key set into a HashSet that supports null values
-                    // and add null
-                    Set<T> keys = map.keySet();
-                    if (seenNull.get()) {
-                        int size = keys.size();
-                        if (size >= 127) {
-                            // a more efficient set-union view, rather than copying
-                            keys = new KeysAndNullSet<>(keys, size);
-                        } else {
-                            HashSet<T> tmp = new HashSet<>(Math.max((int) ((size + 1) / 0.75f) + 1, 16));
-                            tmp.addAll(keys);
-                            tmp.add(null);
-                            keys = tmp;
-                        }
-                    }
-                    return Nodes.node(keys);
+                    // Hash-partitioned sets per leaf, rather than a single
+                    // shared ConcurrentHashMap, united partition by partition
+                    int partitionCount = PrimitiveHashSet.stripeCount();
+                    TerminalOp<T, PartitionedSet.OfRef<T>> reduceOp
+                            = ReduceOps.<T, PartitionedSet.OfRef<T>>makeRef(() -> new PartitionedSet.OfRef<T>(partitionCount),
+                                                                          PartitionedSet.OfRef::add,
+                                                                          PartitionedSet.OfRef::combine);
+                    return reduceOp.evaluateParallel(helper, spliterator).unite();
                 }
             }
 
@@ -195,46 +168,475 @@ final class DistinctOps {
         };
     }
 
-    static final class KeysAndNullSet<E> extends AbstractSet<E> {
+    /**
+     * Appends a "distinct" operation to the provided {@code IntStream},
+     * and returns the new stream. The elements seen are recorded in a
+     * primitive hash set, so no elements are boxed.
+     *
+     * @param upstream an int stream
+     * @return the new stream
+     */
+    static IntStream makeInt(AbstractPipeline<?, Integer, ?> upstream) {
+        return new IntPipeline.StatefulOp<Integer>(upstream, StreamShape.INT_VALUE,
+                                                  StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Integer> reduce(PipelineHelper<Integer> helper, Spliterator<P_IN> spliterator) {
+                // If the stream is SORTED then it should also be ORDERED so
+                // merging the sets in encounter order will also preserve the
+                // sort order
+                TerminalOp<Integer, PrimitiveHashSet.OfInt> reduceOp
+                        = ReduceOps.<PrimitiveHashSet.OfInt>makeInt(() -> new PrimitiveHashSet.OfInt(-1),
+                                                                   PrimitiveHashSet.OfInt::add,
+                                                                   PrimitiveHashSet.OfInt::addAll);
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).toArray());
+            }
+
+            @Override
+            <P_IN> Node<Integer> opEvaluateParallel(PipelineHelper<Integer> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<Integer[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    return reduce(helper, spliterator);
+                }
+                else {
+                    int partitionCount = PrimitiveHashSet.stripeCount();
+                    TerminalOp<Integer, PartitionedSet.OfInt> reduceOp
+                            = ReduceOps.<PartitionedSet.OfInt>makeInt(() -> new PartitionedSet.OfInt(partitionCount),
+                                                                   PartitionedSet.OfInt::add,
+                                                                   (left, right) -> {
+                                                                       left.combine(right);
+                                                                       return left;
+                                                                   });
+                    return reduceOp.evaluateParallel(helper, spliterator).unite();
+                }
+            }
+
+            @Override
+            <P_IN> Spliterator<Integer> opEvaluateParallelLazy(PipelineHelper<Integer> helper,
+                                                            Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.IntDistinctSpliterator(
+                            IntPipeline.adapt(helper.wrapSpliterator(spliterator)));
+                }
+            }
+
+            @Override
+            Sink<Integer> opWrapSink(int flags, Sink<Integer> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedInt<Integer>(sink) {
+                        boolean seenAny;
+                        int lastSeen;
+
+                        @Override
+                        public void begin(long size) {
+                            seenAny = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seenAny = false;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(int t) {
+                            if (!seenAny || t != lastSeen) {
+                                seenAny = true;
+                                downstream.accept(lastSeen = t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedInt<Integer>(sink) {
+                        PrimitiveHashSet.OfInt seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new PrimitiveHashSet.OfInt(size);
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(int t) {
+                            if (seen.add(t)) {
+                                downstream.accept(t);
+                            }
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    /**
+     * Appends a "distinct" operation to the provided {@code LongStream},
+     * and returns the new stream. The elements seen are recorded in a
+     * primitive hash set, so no elements are boxed.
+     *
+     * @param upstream a long stream
+     * @return the new stream
+     */
+    static LongStream makeLong(AbstractPipeline<?, Long, ?> upstream) {
+        return new LongPipeline.StatefulOp<Long>(upstream, StreamShape.LONG_VALUE,
+                                                  StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Long> reduce(PipelineHelper<Long> helper, Spliterator<P_IN> spliterator) {
+                // If the stream is SORTED then it should also be ORDERED so
+                // merging the sets in encounter order will also preserve the
+                // sort order
+                TerminalOp<Long, PrimitiveHashSet.OfLong> reduceOp
+                        = ReduceOps.<PrimitiveHashSet.OfLong>makeLong(() -> new PrimitiveHashSet.OfLong(-1),
+                                                                   PrimitiveHashSet.OfLong::add,
+                                                                   PrimitiveHashSet.OfLong::addAll);
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).toArray());
+            }
+
+            @Override
+            <P_IN> Node<Long> opEvaluateParallel(PipelineHelper<Long> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<Long[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    return reduce(helper, spliterator);
+                }
+                else {
+                    int partitionCount = PrimitiveHashSet.stripeCount();
+                    TerminalOp<Long, PartitionedSet.OfLong> reduceOp
+                            = ReduceOps.<PartitionedSet.OfLong>makeLong(() -> new PartitionedSet.OfLong(partitionCount),
+                                                                   PartitionedSet.OfLong::add,
+                                                                   (left, right) -> {
+                                                                       left.combine(right);
+                                                                       return left;
+                                                                   });
+                    return reduceOp.evaluateParallel(helper, spliterator).unite();
+                }
+            }
 
-        final Set<E> keys;
-        final int size;
+            @Override
+            <P_IN> Spliterator<Long> opEvaluateParallelLazy(PipelineHelper<Long> helper,
+                                                            Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.LongDistinctSpliterator(
+                            LongPipeline.adapt(helper.wrapSpliterator(spliterator)));
+                }
+            }
+
+            @Override
+            Sink<Long> opWrapSink(int flags, Sink<Long> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedLong<Long>(sink) {
+                        boolean seenAny;
+                        long lastSeen;
 
-        KeysAndNullSet(Set<E> keys, int size) {
-            this.keys = keys;
-            this.size = size + 1;
+                        @Override
+                        public void begin(long size) {
+                            seenAny = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seenAny = false;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(long t) {
+                            if (!seenAny || t != lastSeen) {
+                                seenAny = true;
+                                downstream.accept(lastSeen = t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedLong<Long>(sink) {
+                        PrimitiveHashSet.OfLong seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new PrimitiveHashSet.OfLong(size);
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(long t) {
+                            if (seen.add(t)) {
+                                downstream.accept(t);
+                            }
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    /**
+     * The state of an unordered parallel distinct computation: the distinct
+     * elements seen by a leaf task, partitioned by hash into disjoint sets.
+     * Combining the states of two tasks just links them, and once all leaves
+     * completed the sets of each partition are united independently of the
+     * other partitions, in parallel. The result is the concatenation of the
+     * united partitions.
+     *
+     * <p>Compared to a single {@code ConcurrentHashMap} shared by all leaves
+     * there is no contention and no concurrent resizing, and each element is
+     * hashed into a set only once per leaf and once when uniting.
+     *
+     * @param <T> the type of the elements
+     * @param <S> the type of the partition sets
+     */
+    abstract static class PartitionedSet<T, S> {
+        // The partition sets, created on demand
+        private final Object[] partitions;
+
+        // Shift selecting the partition from the high bits of a hash
+        private final int shift;
+
+        // The states of further leaves, linked by combine
+        private PartitionedSet<T, S> next;
+        private PartitionedSet<T, S> last;
+
+        PartitionedSet(int partitionCount) {
+            partitions = new Object[partitionCount];
+            shift = 32 - Integer.numberOfTrailingZeros(partitionCount);
+            last = this;
+        }
+
+        abstract StreamShape shape();
+
+        abstract S newSet();
+
+        abstract int size(S set);
+
+        /** Adds the elements of source to target and returns target */
+        abstract S addAll(S target, S source);
+
+        abstract Node<T> node(S set);
+
+        @SuppressWarnings("unchecked")
+        final S partition(int hash) {
+            int i = partitions.length == 1 ? 0 : hash >>> shift;
+            Object set = partitions[i];
+            if (set == null) {
+                partitions[i] = set = newSet();
+            }
+            return (S) set;
         }
 
-        @Override
-        public Iterator<E> iterator() {
-            return new Iterator<E>() {
-                boolean nullDelivered = false;
-                Iterator<E> it = keys.iterator();
-                @Override
-                public boolean hasNext() {
-                    if (!nullDelivered) {
-                        return true;
-                    }
-                    return it.hasNext();
-                }
-                @Override
-                public E next() {
-                    if (!nullDelivered) {
-                        nullDelivered = true;
-                        return null;
-                    }
-                    return it.next();
-                }
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-            };
+        final void combine(PartitionedSet<T, S> other) {
+            last.next = other;
+            last = other.last;
         }
 
-        @Override
-        public int size() {
-            return size;
+        /**
+         * Unites the partitions of all linked states and returns the
+         * distinct elements.
+         *
+         * @return a node holding the distinct elements
+         */
+        final Node<T> unite() {
+            Node<T> node = new Union(0, partitions.length).invoke();
+            return node != null ? node : Nodes.<T>emptyNode(shape());
+        }
+
+        @SuppressWarnings("unchecked")
+        final Node<T> unite(int partition) {
+            // add all sets to the largest one
+            S target = null;
+            for (PartitionedSet<T, S> p = this; p != null; p = p.next) {
+                S set = (S) p.partitions[partition];
+                if (set != null && (target == null || size(set) > size(target))) {
+                    target = set;
+                }
+            }
+            if (target == null) {
+                return null;
+            }
+            for (PartitionedSet<T, S> p = this; p != null; p = p.next) {
+                S set = (S) p.partitions[partition];
+                if (set != null && set != target) {
+                    addAll(target, set);
+                }
+            }
+            return node(target);
+        }
+
+        @SuppressWarnings("serial")
+        private final class Union extends RecursiveTask<Node<T>> {
+            private final int lo, hi;
+
+            Union(int lo, int hi) {
+                this.lo = lo;
+                this.hi = hi;
+            }
+
+            @Override
+            protected Node<T> compute() {
+                if (hi - lo == 1) {
+                    return unite(lo);
+                }
+                int mid = (lo + hi) >>> 1;
+                Union right = new Union(mid, hi);
+                right.fork();
+                Node<T> leftNode = new Union(lo, mid).compute();
+                Node<T> rightNode = right.join();
+                if (leftNode == null) {
+                    return rightNode;
+                }
+                return rightNode == null ? leftNode : Nodes.conc(shape(), leftNode, rightNode);
+            }
+        }
+
+        static final class OfRef<T> extends PartitionedSet<T, HashSet<T>> {
+            OfRef(int partitionCount) {
+                super(partitionCount);
+            }
+
+            void add(T t) {
+                partition(PrimitiveHashSet.hash(Objects.hashCode(t))).add(t);
+            }
+
+            @Override
+            StreamShape shape() {
+                return StreamShape.REFERENCE;
+            }
+
+            @Override
+            HashSet<T> newSet() {
+                return new HashSet<>();
+            }
+
+            @Override
+            int size(HashSet<T> set) {
+                return set.size();
+            }
+
+            @Override
+            HashSet<T> addAll(HashSet<T> target, HashSet<T> source) {
+                target.addAll(source);
+                return target;
+            }
+
+            @Override
+            Node<T> node(HashSet<T> set) {
+                return Nodes.node(set);
+            }
+        }
+
+        static final class OfInt extends PartitionedSet<Integer, PrimitiveHashSet.OfInt> {
+            OfInt(int partitionCount) {
+                super(partitionCount);
+            }
+
+            void add(int value) {
+                partition(PrimitiveHashSet.hash(value)).add(value);
+            }
+
+            @Override
+            StreamShape shape() {
+                return StreamShape.INT_VALUE;
+            }
+
+            @Override
+            PrimitiveHashSet.OfInt newSet() {
+                return new PrimitiveHashSet.OfInt(-1);
+            }
+
+            @Override
+            int size(PrimitiveHashSet.OfInt set) {
+                return set.size();
+            }
+
+            @Override
+            PrimitiveHashSet.OfInt addAll(PrimitiveHashSet.OfInt target, PrimitiveHashSet.OfInt source) {
+                return target.addAll(source);
+            }
+
+            @Override
+            Node<Integer> node(PrimitiveHashSet.OfInt set) {
+                return Nodes.node(set.toArray());
+            }
+        }
+
+        static final class OfLong extends PartitionedSet<Long, PrimitiveHashSet.OfLong> {
+            OfLong(int partitionCount) {
+                super(partitionCount);
+            }
+
+            void add(long value) {
+                partition(PrimitiveHashSet.hash(value)).add(value);
+            }
+
+            @Override
+            StreamShape shape() {
+                return StreamShape.LONG_VALUE;
+            }
+
+            @Override
+            PrimitiveHashSet.OfLong newSet() {
+                return new PrimitiveHashSet.OfLong(-1);
+            }
+
+            @Override
+            int size(PrimitiveHashSet.OfLong set) {
+                return set.size();
+            }
+
+            @Override
+            PrimitiveHashSet.OfLong addAll(PrimitiveHashSet.OfLong target, PrimitiveHashSet.OfLong source) {
+                return target.addAll(source);
+            }
+
+            @Override
+            Node<Long> node(PrimitiveHashSet.OfLong set) {
+                return Nodes.node(set.toArray());
+            }
         }
     }
 }
@@ -24,6 +24,7 @@
  */
 package java8.util.stream;
 
+import java8.util.ChunkSpliterator;
 import java8.util.DoubleSummaryStatistics;
 import java8.util.Objects;
 import java8.util.PrimitiveIterator;
@@ -462,11 +463,19 @@ abstract class DoublePipeline<E_IN>
 
     @Override
     public final OptionalDouble min() {
+        ChunkSpliterator<double[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.minDouble(chunks);
+        }
         return reduce(Math::min);
     }
 
     @Override
     public final OptionalDouble max() {
+        ChunkSpliterator<double[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.maxDouble(chunks);
+        }
         return reduce(Math::max);
     }
 
@@ -512,6 +521,10 @@ abstract class DoublePipeline<E_IN>
 
     @Override
     public final DoubleSummaryStatistics summaryStatistics() {
+        ChunkSpliterator<double[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.statisticsDouble(chunks);
+        }
         return collect(Collectors.DBL_SUM_STATS, DoubleSummaryStatistics::accept,
                        DoubleSummaryStatistics::combine);
     }
@@ -565,6 +578,10 @@ abstract class DoublePipeline<E_IN>
 
     @Override
     public final double[] toArray() {
+        ChunkSpliterator<double[]> chunks = chunkSource(true);
+        if (chunks != null) {
+            return ChunkOps.toDoubleArray(chunks);
+        }
         return Nodes.flattenDouble((Node.OfDouble) evaluateToArrayNode(WhileOps.DOUBLE_ARR_GEN))
                         .asPrimitiveArray();
     }
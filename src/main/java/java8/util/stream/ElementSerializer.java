@@ -0,0 +1,45 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes stream elements to, and reads them back from, a binary
+ * representation. Used by
+ * {@link StreamSupport#externalSorted(Stream, java.util.Comparator, int, ElementSerializer)}
+ * to spill sorted runs of elements to temporary files.
+ *
+ * <p>{@link #read(DataInput)} must return an element that is equal, with
+ * respect to the ordering of the sort, to the element that has been
+ * written. Implementations must be thread-safe if the stream is evaluated
+ * in parallel.
+ *
+ * @param <T> the type of the elements
+ */
+public interface ElementSerializer<T> {
+
+    /**
+     * Writes an element.
+     *
+     * @param element the element to write, which may be {@code null} if the
+     *        stream contains {@code null} elements
+     * @param out the output to write to
+     * @throws IOException if an I/O error occurs
+     */
+    void write(T element, DataOutput out) throws IOException;
+
+    /**
+     * Reads an element that has been written by {@link #write}.
+     *
+     * @param in the input to read from
+     * @return the element read
+     * @throws IOException if an I/O error occurs
+     */
+    T read(DataInput in) throws IOException;
+}
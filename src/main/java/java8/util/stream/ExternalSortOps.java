@@ -0,0 +1,1861 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java8.io.UncheckedIOException;
+import java8.lang.Integers;
+import java8.lang.Longs;
+import java8.util.Comparators;
+import java8.util.Objects;
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.concurrent.CountedCompleter;
+import java8.util.function.Consumer;
+import java8.util.function.DoubleConsumer;
+import java8.util.function.IntConsumer;
+import java8.util.function.IntFunction;
+import java8.util.function.LongConsumer;
+import java8.util.function.Supplier;
+
+/**
+ * Factory methods for sorting streams whose elements need not fit into
+ * memory at once. Runs of at most a given number of elements are sorted in
+ * memory and spilled to temporary files; the sorted runs are then merged
+ * while the elements are pushed downstream. If all elements fit into a
+ * single run nothing is spilled.
+ *
+ * <p>A parallel evaluation sorts and spills the runs in the leaf tasks,
+ * each leaf using an equal share of the run size. The merge itself is
+ * sequential.
+ */
+final class ExternalSortOps {
+
+    /**
+     * The maximum number of runs that are merged at once. If there are more
+     * runs, consecutive runs are merged into larger runs first.
+     */
+    static final int MAX_FAN_IN = 64;
+
+    /** The buffer size for writing a run */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /** The buffer size for reading a run, once for every run of a merge */
+    private static final int READ_BUFFER_SIZE = 1 << 13;
+
+    private ExternalSortOps() { }
+
+    /**
+     * Appends an "external sorted" operation to the provided stream.
+     *
+     * @param <T> the type of both input and output elements
+     * @param upstream a reference stream with element type T
+     * @param comparator the comparator to order elements by
+     * @param maxRunSize the maximum number of elements held in memory
+     * @param serializer the serializer for the spilled elements
+     */
+    static <T> Stream<T> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                 Comparator<? super T> comparator, int maxRunSize,
+                                 ElementSerializer<T> serializer) {
+        return new OfRef<>(upstream, comparator, maxRunSize, serializer);
+    }
+
+    /**
+     * Appends an "external sorted" operation to the provided stream.
+     *
+     * @param upstream an int stream
+     * @param maxRunSize the maximum number of elements held in memory
+     */
+    static IntStream makeInt(AbstractPipeline<?, Integer, ?> upstream, int maxRunSize) {
+        return new OfInt(upstream, maxRunSize);
+    }
+
+    /**
+     * Appends an "external sorted" operation to the provided stream.
+     *
+     * @param upstream a long stream
+     * @param maxRunSize the maximum number of elements held in memory
+     */
+    static LongStream makeLong(AbstractPipeline<?, Long, ?> upstream, int maxRunSize) {
+        return new OfLong(upstream, maxRunSize);
+    }
+
+    /**
+     * Appends an "external sorted" operation to the provided stream.
+     *
+     * @param upstream a double stream
+     * @param maxRunSize the maximum number of elements held in memory
+     */
+    static DoubleStream makeDouble(AbstractPipeline<?, Double, ?> upstream, int maxRunSize) {
+        return new OfDouble(upstream, maxRunSize);
+    }
+
+    /**
+     * Returns the maximum buffer size of a leaf task, such that the leaves
+     * running concurrently in a pool each get a share of the
+     * {@code maxRunSize} elements held in memory.
+     */
+    static int leafRunSize(int maxRunSize) {
+        return Math.max(1, maxRunSize / AbstractTask.getPoolParallelism());
+    }
+
+    /**
+     * Spills the runs of a parallel evaluation and returns the merger of
+     * all runs. If this fails, the pending runs of the stage are closed.
+     */
+    static <T_CONS> Merger<T_CONS> merger(SpillTask<?, ?, T_CONS, ?> task, PendingRuns pending) {
+        boolean merged = false;
+        try {
+            Merger<T_CONS> merger = task.invoke().merger();
+            merged = true;
+            return merger;
+        } finally {
+            if (!merged) {
+                pending.run();
+            }
+        }
+    }
+
+    static <T_CONS> void close(List<Run<T_CONS>> runs) {
+        for (Run<T_CONS> run : runs) {
+            run.close();
+        }
+    }
+
+    static DataInputStream open(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file), READ_BUFFER_SIZE));
+    }
+
+    static void delete(File file) {
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Collects the output of a parallel evaluation into a node, for
+     * {@code toArray()} directly after the sort.
+     */
+    static <T> Node<T> toNode(Spliterator<T> spliterator, IntFunction<T[]> generator) {
+        long size = spliterator.getExactSizeIfKnown();
+        Node.Builder<T> builder = Nodes.builder(size, generator);
+        builder.begin(size);
+        spliterator.forEachRemaining(builder);
+        builder.end();
+        return builder.build();
+    }
+
+    static Node.OfInt toNode(Spliterator.OfInt spliterator) {
+        long size = spliterator.getExactSizeIfKnown();
+        Node.Builder.OfInt builder = Nodes.intBuilder(size);
+        builder.begin(size);
+        spliterator.forEachRemaining((IntConsumer) builder);
+        builder.end();
+        return builder.build();
+    }
+
+    static Node.OfLong toNode(Spliterator.OfLong spliterator) {
+        long size = spliterator.getExactSizeIfKnown();
+        Node.Builder.OfLong builder = Nodes.longBuilder(size);
+        builder.begin(size);
+        spliterator.forEachRemaining((LongConsumer) builder);
+        builder.end();
+        return builder.build();
+    }
+
+    static Node.OfDouble toNode(Spliterator.OfDouble spliterator) {
+        long size = spliterator.getExactSizeIfKnown();
+        Node.Builder.OfDouble builder = Nodes.doubleBuilder(size);
+        builder.begin(size);
+        spliterator.forEachRemaining((DoubleConsumer) builder);
+        builder.end();
+        return builder.build();
+    }
+
+    /**
+     * Specialized subtype for sorting reference streams
+     */
+    private static final class OfRef<T> extends ReferencePipeline.StatefulOp<T, T> {
+        private final boolean isNaturalSort;
+        private final Comparator<? super T> comparator;
+        private final int maxRunSize;
+        private final ElementSerializer<T> serializer;
+        private final PendingRuns pending = new PendingRuns();
+
+        OfRef(AbstractPipeline<?, T, ?> upstream, Comparator<? super T> comparator,
+              int maxRunSize, ElementSerializer<T> serializer) {
+            super(upstream, StreamShape.REFERENCE,
+                  StreamOpFlag.IS_ORDERED | (isNaturalOrder(comparator)
+                                             ? StreamOpFlag.IS_SORTED : StreamOpFlag.NOT_SORTED));
+            this.isNaturalSort = isNaturalOrder(comparator);
+            this.comparator = comparator;
+            this.maxRunSize = maxRunSize;
+            this.serializer = serializer;
+            onClose(pending);
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private static boolean isNaturalOrder(Comparator<?> comparator) {
+            return comparator == (Comparator) Comparators.naturalOrder();
+        }
+
+        @Override
+        public Sink<T> opWrapSink(int flags, Sink<T> sink) {
+            Objects.requireNonNull(sink);
+
+            // If the input is already naturally sorted and this operation
+            // also naturally sorts then this is a no-op
+            if (StreamOpFlag.SORTED.isKnown(flags) && isNaturalSort)
+                return sink;
+            else
+                return new RefSortingSink<>(sink, new RefSpill<>(comparator, serializer, maxRunSize, pending, null));
+        }
+
+        @Override
+        public <P_IN> Spliterator<T> opEvaluateParallelLazy(PipelineHelper<T> helper,
+                                                            Spliterator<P_IN> spliterator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags()) && isNaturalSort) {
+                return helper.wrapSpliterator(spliterator);
+            }
+            int leafRunSize = leafRunSize(maxRunSize);
+            Budget budget = new Budget(maxRunSize);
+            return new RefMergeSpliterator<>(merger(new SpillTask<P_IN, T, Consumer<? super T>, RefSpill<T>>(
+                    helper, spliterator, () -> new RefSpill<>(comparator, serializer, leafRunSize, pending, budget)),
+                    pending));
+        }
+
+        @Override
+        public <P_IN> Node<T> opEvaluateParallel(PipelineHelper<T> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<T[]> generator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags()) && isNaturalSort) {
+                return helper.evaluate(spliterator, false, generator);
+            }
+            return toNode(opEvaluateParallelLazy(helper, spliterator), generator);
+        }
+    }
+
+    /**
+     * Specialized subtype for sorting int streams.
+     */
+    private static final class OfInt extends IntPipeline.StatefulOp<Integer> {
+        private final int maxRunSize;
+        private final PendingRuns pending = new PendingRuns();
+
+        OfInt(AbstractPipeline<?, Integer, ?> upstream, int maxRunSize) {
+            super(upstream, StreamShape.INT_VALUE,
+                  StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
+            this.maxRunSize = maxRunSize;
+            onClose(pending);
+        }
+
+        @Override
+        public Sink<Integer> opWrapSink(int flags, Sink<Integer> sink) {
+            Objects.requireNonNull(sink);
+
+            if (StreamOpFlag.SORTED.isKnown(flags))
+                return sink;
+            else
+                return new IntSortingSink(sink, new IntSpill(maxRunSize, pending, null));
+        }
+
+        @Override
+        public <P_IN> Spliterator<Integer> opEvaluateParallelLazy(PipelineHelper<Integer> helper,
+                                                                  Spliterator<P_IN> spliterator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
+                return helper.wrapSpliterator(spliterator);
+            }
+            int leafRunSize = leafRunSize(maxRunSize);
+            Budget budget = new Budget(maxRunSize);
+            return new IntMergeSpliterator(merger(new SpillTask<P_IN, Integer, IntConsumer, IntSpill>(
+                    helper, spliterator, () -> new IntSpill(leafRunSize, pending, budget)), pending));
+        }
+
+        @Override
+        public <P_IN> Node<Integer> opEvaluateParallel(PipelineHelper<Integer> helper,
+                                                       Spliterator<P_IN> spliterator,
+                                                       IntFunction<Integer[]> generator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
+                return helper.evaluate(spliterator, false, generator);
+            }
+            return toNode((Spliterator.OfInt) opEvaluateParallelLazy(helper, spliterator));
+        }
+    }
+
+    /**
+     * Specialized subtype for sorting long streams.
+     */
+    private static final class OfLong extends LongPipeline.StatefulOp<Long> {
+        private final int maxRunSize;
+        private final PendingRuns pending = new PendingRuns();
+
+        OfLong(AbstractPipeline<?, Long, ?> upstream, int maxRunSize) {
+            super(upstream, StreamShape.LONG_VALUE,
+                  StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
+            this.maxRunSize = maxRunSize;
+            onClose(pending);
+        }
+
+        @Override
+        public Sink<Long> opWrapSink(int flags, Sink<Long> sink) {
+            Objects.requireNonNull(sink);
+
+            if (StreamOpFlag.SORTED.isKnown(flags))
+                return sink;
+            else
+                return new LongSortingSink(sink, new LongSpill(maxRunSize, pending, null));
+        }
+
+        @Override
+        public <P_IN> Spliterator<Long> opEvaluateParallelLazy(PipelineHelper<Long> helper,
+                                                               Spliterator<P_IN> spliterator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
+                return helper.wrapSpliterator(spliterator);
+            }
+            int leafRunSize = leafRunSize(maxRunSize);
+            Budget budget = new Budget(maxRunSize);
+            return new LongMergeSpliterator(merger(new SpillTask<P_IN, Long, LongConsumer, LongSpill>(
+                    helper, spliterator, () -> new LongSpill(leafRunSize, pending, budget)), pending));
+        }
+
+        @Override
+        public <P_IN> Node<Long> opEvaluateParallel(PipelineHelper<Long> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<Long[]> generator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
+                return helper.evaluate(spliterator, false, generator);
+            }
+            return toNode((Spliterator.OfLong) opEvaluateParallelLazy(helper, spliterator));
+        }
+    }
+
+    /**
+     * Specialized subtype for sorting double streams.
+     */
+    private static final class OfDouble extends DoublePipeline.StatefulOp<Double> {
+        private final int maxRunSize;
+        private final PendingRuns pending = new PendingRuns();
+
+        OfDouble(AbstractPipeline<?, Double, ?> upstream, int maxRunSize) {
+            super(upstream, StreamShape.DOUBLE_VALUE,
+                  StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
+            this.maxRunSize = maxRunSize;
+            onClose(pending);
+        }
+
+        @Override
+        public Sink<Double> opWrapSink(int flags, Sink<Double> sink) {
+            Objects.requireNonNull(sink);
+
+            if (StreamOpFlag.SORTED.isKnown(flags))
+                return sink;
+            else
+                return new DoubleSortingSink(sink, new DoubleSpill(maxRunSize, pending, null));
+        }
+
+        @Override
+        public <P_IN> Spliterator<Double> opEvaluateParallelLazy(PipelineHelper<Double> helper,
+                                                                 Spliterator<P_IN> spliterator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
+                return helper.wrapSpliterator(spliterator);
+            }
+            int leafRunSize = leafRunSize(maxRunSize);
+            Budget budget = new Budget(maxRunSize);
+            return new DoubleMergeSpliterator(merger(new SpillTask<P_IN, Double, DoubleConsumer, DoubleSpill>(
+                    helper, spliterator, () -> new DoubleSpill(leafRunSize, pending, budget)), pending));
+        }
+
+        @Override
+        public <P_IN> Node<Double> opEvaluateParallel(PipelineHelper<Double> helper,
+                                                      Spliterator<P_IN> spliterator,
+                                                      IntFunction<Double[]> generator) {
+            if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
+                return helper.evaluate(spliterator, false, generator);
+            }
+            return toNode((Spliterator.OfDouble) opEvaluateParallelLazy(helper, spliterator));
+        }
+    }
+
+    // Sorting sinks
+
+    /**
+     * {@link Sink} for implementing an external sort on reference streams.
+     */
+    private static final class RefSortingSink<T> extends Sink.ChainedReference<T, T> {
+        private final RefSpill<T> spill;
+        // true if cancellationRequested() has been called
+        private boolean cancellationRequestedCalled;
+
+        RefSortingSink(Sink<? super T> sink, RefSpill<T> spill) {
+            super(sink);
+            this.spill = spill;
+        }
+
+        @Override
+        public void begin(long size) {
+            spill.begin(size);
+        }
+
+        @Override
+        public void end() {
+            spill.finish(downstream, downstream, cancellationRequestedCalled);
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            cancellationRequestedCalled = true;
+            return false;
+        }
+
+        @Override
+        public void accept(T t) {
+            spill.accept(t);
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing an external sort on int streams.
+     */
+    private static final class IntSortingSink extends Sink.ChainedInt<Integer> {
+        private final IntSpill spill;
+        // true if cancellationRequested() has been called
+        private boolean cancellationRequestedCalled;
+
+        IntSortingSink(Sink<? super Integer> sink, IntSpill spill) {
+            super(sink);
+            this.spill = spill;
+        }
+
+        @Override
+        public void begin(long size) {
+            spill.begin(size);
+        }
+
+        @Override
+        public void end() {
+            spill.finish((IntConsumer) downstream::accept, downstream, cancellationRequestedCalled);
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            cancellationRequestedCalled = true;
+            return false;
+        }
+
+        @Override
+        public void accept(int t) {
+            spill.accept(t);
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing an external sort on long streams.
+     */
+    private static final class LongSortingSink extends Sink.ChainedLong<Long> {
+        private final LongSpill spill;
+        // true if cancellationRequested() has been called
+        private boolean cancellationRequestedCalled;
+
+        LongSortingSink(Sink<? super Long> sink, LongSpill spill) {
+            super(sink);
+            this.spill = spill;
+        }
+
+        @Override
+        public void begin(long size) {
+            spill.begin(size);
+        }
+
+        @Override
+        public void end() {
+            spill.finish((LongConsumer) downstream::accept, downstream, cancellationRequestedCalled);
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            cancellationRequestedCalled = true;
+            return false;
+        }
+
+        @Override
+        public void accept(long t) {
+            spill.accept(t);
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing an external sort on double streams.
+     */
+    private static final class DoubleSortingSink extends Sink.ChainedDouble<Double> {
+        private final DoubleSpill spill;
+        // true if cancellationRequested() has been called
+        private boolean cancellationRequestedCalled;
+
+        DoubleSortingSink(Sink<? super Double> sink, DoubleSpill spill) {
+            super(sink);
+            this.spill = spill;
+        }
+
+        @Override
+        public void begin(long size) {
+            spill.begin(size);
+        }
+
+        @Override
+        public void end() {
+            spill.finish((DoubleConsumer) downstream::accept, downstream, cancellationRequestedCalled);
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            cancellationRequestedCalled = true;
+            return false;
+        }
+
+        @Override
+        public void accept(double t) {
+            spill.accept(t);
+        }
+    }
+
+    // Spilling
+
+    /**
+     * Buffers elements in memory and spills the buffer as a sorted run to a
+     * temporary file whenever it holds {@code maxRunSize} elements.
+     *
+     * <p>As a {@code Sink} in a leaf task of a parallel evaluation, the
+     * buffer is reserved from a {@link Budget} shared by all leaves as it
+     * grows, and it is spilled as well if the budget is exhausted, after
+     * the in-memory runs of completed leaves have been spilled. At the end
+     * the remaining elements are sorted and kept in memory as the last run
+     * of the leaf, so that nothing is written if all elements fit into the
+     * budget.
+     *
+     * <p>A run only holds the name of its file until the merge of its group
+     * of runs begins, so that at most {@link #MAX_FAN_IN} run files are open
+     * at a time, and the file is deleted as soon as the run has been
+     * consumed. The runs are closed and their files deleted if spilling or
+     * merging fails; runs left over by an abandoned evaluation are closed
+     * when the stream is closed.
+     *
+     * @param <T_CONS> the consumer type of the elements
+     */
+    abstract static class Spill<T_CONS> {
+        final int maxRunSize;
+
+        // The runs of the stage that have not been consumed yet
+        final PendingRuns pending;
+
+        // The budget shared by the leaves of a parallel evaluation, or null
+        final Budget budget;
+
+        // The number of elements reserved from the budget for the buffer
+        long reserved;
+
+        // The spilled runs in encounter order
+        final List<Run<T_CONS>> runs = new ArrayList<>();
+
+        // The number of spilled elements
+        long spilledCount;
+
+        // The number of buffered elements
+        int count;
+
+        Spill(int maxRunSize, PendingRuns pending, Budget budget) {
+            this.maxRunSize = maxRunSize;
+            this.pending = pending;
+            this.budget = budget;
+        }
+
+        /** Creates the buffer, for the given size estimate of the input */
+        abstract void newBuffer(int capacity);
+
+        /** Grows the buffer to the given capacity */
+        abstract void growBuffer(int capacity);
+
+        /** Sorts the buffered elements */
+        abstract void sortBuffer();
+
+        /** Writes the buffered elements */
+        abstract void writeBuffer(DataOutput out) throws IOException;
+
+        /** Pushes a buffered element to the consumer */
+        abstract void emitBuffered(int index, T_CONS consumer);
+
+        /** Creates a run of {@code count} elements written to the file */
+        abstract Run<T_CONS> newRun(File file, long count);
+
+        /**
+         * Creates a run of the buffered elements, which are reserved from
+         * the budget, and hands the buffer over to it
+         */
+        abstract Run<T_CONS> bufferedRun();
+
+        /** Releases the buffered elements after they have been spilled */
+        void clearBuffer() {
+        }
+
+        /** Releases the buffer */
+        abstract void releaseBuffer();
+
+        public void begin(long size) {
+            int capacity = (size >= 0L && size < maxRunSize) ? (int) size : Math.min(maxRunSize, 1 << 10);
+            if (budget != null && capacity > 0) {
+                capacity = (int) budget.reserve(capacity, 1L);
+                reserved = capacity;
+            }
+            newBuffer(capacity);
+        }
+
+        public void end() {
+            if (count > 0) {
+                if (budget != null && reserved >= count) {
+                    // Keep the last run of the leaf in memory
+                    sortBuffer();
+                    Run<T_CONS> run = bufferedRun();
+                    runs.add(run);
+                    budget.release(reserved - count);
+                    reserved = 0L;
+                    budget.retain(run);
+                    count = 0;
+                }
+                else {
+                    spill();
+                }
+            }
+            if (budget != null) {
+                budget.release(reserved);
+                reserved = 0L;
+            }
+            releaseBuffer();
+        }
+
+        public boolean cancellationRequested() {
+            return false;
+        }
+
+        /**
+         * Makes room for another element in a full buffer of the given
+         * capacity, either by growing the buffer or by spilling it. A leaf
+         * spills its buffer if it cannot reserve at least half of the
+         * growth; an empty buffer grows by a few elements regardless, so
+         * that the leaf makes progress.
+         */
+        final void makeRoom(int capacity) {
+            if (capacity >= maxRunSize) {
+                spill();
+                return;
+            }
+            int target = (int) Math.min(maxRunSize, Math.max(16L, 2L * capacity));
+            if (budget != null) {
+                int growth = target - capacity;
+                long extra = budget.reserve(growth, Math.max(1, growth >>> 1));
+                if (extra > 0L) {
+                    reserved += extra;
+                    target = capacity + (int) extra;
+                }
+                else if (capacity > 0) {
+                    spill();
+                    return;
+                }
+                else {
+                    target = Math.min(maxRunSize, 16);
+                }
+            }
+            growBuffer(target);
+        }
+
+        /**
+         * Sorts the buffered elements and spills them to a new run. If this
+         * fails, the runs spilled before are closed as well.
+         */
+        final void spill() {
+            boolean spilled = false;
+            File file = null;
+            try {
+                sortBuffer();
+                file = File.createTempFile("streamsupport", ".run");
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE));
+                try {
+                    writeBuffer(out);
+                } finally {
+                    out.close();
+                }
+                runs.add(newRun(file, count));
+                spilled = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (!spilled) {
+                    delete(file);
+                    close(runs);
+                }
+            }
+            clearBuffer();
+            spilledCount += count;
+            count = 0;
+        }
+
+        /** Adds the runs of a spill that follows this one in encounter order */
+        final void addRuns(Spill<T_CONS> other) {
+            runs.addAll(other.runs);
+            spilledCount += other.spilledCount;
+        }
+
+        /**
+         * Pushes the sorted elements downstream, from the buffer if nothing
+         * has been spilled, otherwise by merging the runs.
+         */
+        final void finish(T_CONS consumer, Sink<?> downstream, boolean cancellable) {
+            if (runs.isEmpty()) {
+                sortBuffer();
+                downstream.begin(count);
+                for (int i = 0; i < count; i++) {
+                    if (cancellable && downstream.cancellationRequested()) break;
+                    emitBuffered(i, consumer);
+                }
+                releaseBuffer();
+            }
+            else {
+                if (count > 0) {
+                    spill();
+                }
+                releaseBuffer();
+                Merger<T_CONS> merger = merger();
+                try {
+                    downstream.begin(merger.remaining());
+                    while ((!cancellable || !downstream.cancellationRequested())
+                           && merger.next(consumer)) { }
+                } finally {
+                    merger.close();
+                }
+            }
+            downstream.end();
+        }
+
+        /**
+         * Returns a merger of all runs, after merging groups of consecutive
+         * runs if there are more than {@link #MAX_FAN_IN} runs. If this
+         * fails, all runs are closed.
+         */
+        final Merger<T_CONS> merger() {
+            List<Run<T_CONS>> level = new ArrayList<>(runs);
+            runs.clear();
+            List<Run<T_CONS>> next = null;
+            boolean merged = false;
+            try {
+                while (level.size() > MAX_FAN_IN) {
+                    next = new ArrayList<>();
+                    for (int i = 0; i < level.size(); i += MAX_FAN_IN) {
+                        List<Run<T_CONS>> group = level.subList(i, Math.min(i + MAX_FAN_IN, level.size()));
+                        next.add(group.size() == 1 ? group.get(0) : mergeToRun(group));
+                    }
+                    level = next;
+                    next = null;
+                }
+                Merger<T_CONS> merger = new Merger<>(level);
+                merged = true;
+                return merger;
+            } finally {
+                if (!merged) {
+                    close(level);
+                    if (next != null) {
+                        close(next);
+                    }
+                }
+            }
+        }
+
+        private Run<T_CONS> mergeToRun(List<Run<T_CONS>> group) {
+            Merger<T_CONS> merger = new Merger<>(group);
+            long total = merger.remaining();
+            boolean merged = false;
+            File file = null;
+            try {
+                file = File.createTempFile("streamsupport", ".run");
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE));
+                try {
+                    while (merger.writeNext(out)) { }
+                } finally {
+                    out.close();
+                }
+                Run<T_CONS> run = newRun(file, total);
+                merged = true;
+                return run;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                merger.close();
+                if (!merged) {
+                    delete(file);
+                }
+            }
+        }
+    }
+
+    static final class RefSpill<T> extends Spill<Consumer<? super T>> implements Sink<T> {
+        private final Comparator<? super T> comparator;
+        private final ElementSerializer<T> serializer;
+        private T[] buffer;
+
+        RefSpill(Comparator<? super T> comparator, ElementSerializer<T> serializer, int maxRunSize,
+                 PendingRuns pending, Budget budget) {
+            super(maxRunSize, pending, budget);
+            this.comparator = comparator;
+            this.serializer = serializer;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void newBuffer(int capacity) {
+            buffer = (T[]) new Object[capacity];
+        }
+
+        @Override
+        void growBuffer(int capacity) {
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+
+        @Override
+        void sortBuffer() {
+            Arrays.sort(buffer, 0, count, comparator);
+        }
+
+        @Override
+        void writeBuffer(DataOutput out) throws IOException {
+            for (int i = 0; i < count; i++) {
+                serializer.write(buffer[i], out);
+            }
+        }
+
+        @Override
+        void emitBuffered(int index, Consumer<? super T> consumer) {
+            consumer.accept(buffer[index]);
+        }
+
+        @Override
+        Run<Consumer<? super T>> newRun(File file, long count) {
+            return new RefRun<>(file, count, pending, comparator, serializer);
+        }
+
+        @Override
+        Run<Consumer<? super T>> bufferedRun() {
+            Run<Consumer<? super T>> run = new RefRun<>(buffer, count, pending, budget, comparator, serializer);
+            buffer = null;
+            return run;
+        }
+
+        @Override
+        void clearBuffer() {
+            Arrays.fill(buffer, 0, count, null);
+        }
+
+        @Override
+        void releaseBuffer() {
+            buffer = null;
+        }
+
+        @Override
+        public void accept(T t) {
+            if (count == buffer.length) {
+                makeRoom(count);
+            }
+            buffer[count++] = t;
+        }
+
+        @Override
+        public void accept(int value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(long value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(double value) {
+            SinkDefaults.reject();
+        }
+    }
+
+    static final class IntSpill extends Spill<IntConsumer> implements Sink.OfInt {
+        private int[] buffer;
+
+        IntSpill(int maxRunSize, PendingRuns pending, Budget budget) {
+            super(maxRunSize, pending, budget);
+        }
+
+        @Override
+        void newBuffer(int capacity) {
+            buffer = new int[capacity];
+        }
+
+        @Override
+        void growBuffer(int capacity) {
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+
+        @Override
+        void sortBuffer() {
+            Arrays.sort(buffer, 0, count);
+        }
+
+        @Override
+        void writeBuffer(DataOutput out) throws IOException {
+            for (int i = 0; i < count; i++) {
+                out.writeInt(buffer[i]);
+            }
+        }
+
+        @Override
+        void emitBuffered(int index, IntConsumer consumer) {
+            consumer.accept(buffer[index]);
+        }
+
+        @Override
+        Run<IntConsumer> newRun(File file, long count) {
+            return new IntRun(file, count, pending);
+        }
+
+        @Override
+        Run<IntConsumer> bufferedRun() {
+            Run<IntConsumer> run = new IntRun(buffer, count, pending, budget);
+            buffer = null;
+            return run;
+        }
+
+        @Override
+        void releaseBuffer() {
+            buffer = null;
+        }
+
+        @Override
+        public void accept(int t) {
+            if (count == buffer.length) {
+                makeRoom(count);
+            }
+            buffer[count++] = t;
+        }
+
+        @Override
+        public void accept(Integer i) {
+            SinkDefaults.OfInt.accept(this, i);
+        }
+
+        @Override
+        public void accept(long value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(double value) {
+            SinkDefaults.reject();
+        }
+    }
+
+    static final class LongSpill extends Spill<LongConsumer> implements Sink.OfLong {
+        private long[] buffer;
+
+        LongSpill(int maxRunSize, PendingRuns pending, Budget budget) {
+            super(maxRunSize, pending, budget);
+        }
+
+        @Override
+        void newBuffer(int capacity) {
+            buffer = new long[capacity];
+        }
+
+        @Override
+        void growBuffer(int capacity) {
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+
+        @Override
+        void sortBuffer() {
+            Arrays.sort(buffer, 0, count);
+        }
+
+        @Override
+        void writeBuffer(DataOutput out) throws IOException {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(buffer[i]);
+            }
+        }
+
+        @Override
+        void emitBuffered(int index, LongConsumer consumer) {
+            consumer.accept(buffer[index]);
+        }
+
+        @Override
+        Run<LongConsumer> newRun(File file, long count) {
+            return new LongRun(file, count, pending);
+        }
+
+        @Override
+        Run<LongConsumer> bufferedRun() {
+            Run<LongConsumer> run = new LongRun(buffer, count, pending, budget);
+            buffer = null;
+            return run;
+        }
+
+        @Override
+        void releaseBuffer() {
+            buffer = null;
+        }
+
+        @Override
+        public void accept(long t) {
+            if (count == buffer.length) {
+                makeRoom(count);
+            }
+            buffer[count++] = t;
+        }
+
+        @Override
+        public void accept(Long i) {
+            SinkDefaults.OfLong.accept(this, i);
+        }
+
+        @Override
+        public void accept(int value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(double value) {
+            SinkDefaults.reject();
+        }
+    }
+
+    static final class DoubleSpill extends Spill<DoubleConsumer> implements Sink.OfDouble {
+        private double[] buffer;
+
+        DoubleSpill(int maxRunSize, PendingRuns pending, Budget budget) {
+            super(maxRunSize, pending, budget);
+        }
+
+        @Override
+        void newBuffer(int capacity) {
+            buffer = new double[capacity];
+        }
+
+        @Override
+        void growBuffer(int capacity) {
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+
+        @Override
+        void sortBuffer() {
+            Arrays.sort(buffer, 0, count);
+        }
+
+        @Override
+        void writeBuffer(DataOutput out) throws IOException {
+            for (int i = 0; i < count; i++) {
+                out.writeDouble(buffer[i]);
+            }
+        }
+
+        @Override
+        void emitBuffered(int index, DoubleConsumer consumer) {
+            consumer.accept(buffer[index]);
+        }
+
+        @Override
+        Run<DoubleConsumer> newRun(File file, long count) {
+            return new DoubleRun(file, count, pending);
+        }
+
+        @Override
+        Run<DoubleConsumer> bufferedRun() {
+            Run<DoubleConsumer> run = new DoubleRun(buffer, count, pending, budget);
+            buffer = null;
+            return run;
+        }
+
+        @Override
+        void releaseBuffer() {
+            buffer = null;
+        }
+
+        @Override
+        public void accept(double t) {
+            if (count == buffer.length) {
+                makeRoom(count);
+            }
+            buffer[count++] = t;
+        }
+
+        @Override
+        public void accept(Double i) {
+            SinkDefaults.OfDouble.accept(this, i);
+        }
+
+        @Override
+        public void accept(int value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(long value) {
+            SinkDefaults.reject();
+        }
+    }
+
+    /**
+     * Task that spills the sorted runs of the leaves of a parallel
+     * evaluation. The runs of the children are concatenated in encounter
+     * order on completion.
+     */
+    @SuppressWarnings("serial")
+    static final class SpillTask<P_IN, P_OUT, T_CONS, S extends Spill<T_CONS> & Sink<P_OUT>>
+            extends AbstractTask<P_IN, P_OUT, S, SpillTask<P_IN, P_OUT, T_CONS, S>> {
+        private final Supplier<S> spillFactory;
+
+        SpillTask(PipelineHelper<P_OUT> helper, Spliterator<P_IN> spliterator,
+                  Supplier<S> spillFactory) {
+            super(helper, spliterator);
+            this.spillFactory = spillFactory;
+        }
+
+        SpillTask(SpillTask<P_IN, P_OUT, T_CONS, S> parent, Spliterator<P_IN> spliterator) {
+            super(parent, spliterator);
+            this.spillFactory = parent.spillFactory;
+        }
+
+        @Override
+        protected SpillTask<P_IN, P_OUT, T_CONS, S> makeChild(Spliterator<P_IN> spliterator) {
+            return new SpillTask<>(this, spliterator);
+        }
+
+        @Override
+        protected S doLeaf() {
+            return helper.wrapAndCopyInto(spillFactory.get(), spliterator);
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (!isLeaf()) {
+                S left = leftChild.getLocalResult();
+                left.addRuns(rightChild.getLocalResult());
+                setLocalResult(left);
+            }
+            super.onCompletion(caller);
+        }
+    }
+
+    /**
+     * The runs of the evaluation of an external sort stage that have been
+     * spilled but not consumed yet. Running it closes them, which deletes
+     * their files; it is registered as a close handler of the stage, so
+     * that the files of an abandoned evaluation are deleted when the stream
+     * is closed.
+     */
+    static final class PendingRuns implements Runnable {
+        private final Set<Run<?>> runs =
+                Collections.newSetFromMap(new ConcurrentHashMap<Run<?>, Boolean>());
+
+        void add(Run<?> run) {
+            runs.add(run);
+        }
+
+        void remove(Run<?> run) {
+            runs.remove(run);
+        }
+
+        @Override
+        public void run() {
+            for (Run<?> run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * The number of elements the leaves of a parallel evaluation may hold
+     * in memory, and the in-memory runs of the completed leaves, which are
+     * spilled when the budget is exhausted.
+     */
+    static final class Budget {
+        private final AtomicLong available;
+        private final ConcurrentLinkedQueue<Run<?>> retained = new ConcurrentLinkedQueue<>();
+
+        Budget(long size) {
+            available = new AtomicLong(size);
+        }
+
+        /**
+         * Reserves up to {@code max} elements, but not less than
+         * {@code min}, spilling in-memory runs if not enough elements are
+         * available.
+         *
+         * @return the number of elements reserved, or 0 if fewer than
+         *         {@code min} elements are available after all in-memory
+         *         runs have been spilled
+         */
+        long reserve(long max, long min) {
+            for (;;) {
+                long avail = available.get();
+                if (avail >= min) {
+                    long n = Math.min(avail, max);
+                    if (available.compareAndSet(avail, avail - n)) {
+                        return n;
+                    }
+                }
+                else {
+                    Run<?> run = retained.poll();
+                    if (run == null) {
+                        return 0L;
+                    }
+                    run.spill();
+                }
+            }
+        }
+
+        void release(long n) {
+            if (n > 0L) {
+                available.addAndGet(n);
+            }
+        }
+
+        /** Keeps an in-memory run until its elements are needed */
+        void retain(Run<?> run) {
+            retained.add(run);
+        }
+    }
+
+    // Merging
+
+    /**
+     * A sorted run in a temporary file or in memory, with its current
+     * element (the head) read ahead for comparison with the heads of the
+     * other runs of a merge. The file is opened when the first element is
+     * read, and closed and deleted when the last element has been read or
+     * the run is closed. An in-memory run is written to a file if its
+     * elements are needed for the budget before the merge begins.
+     *
+     * @param <T_CONS> the consumer type of the elements
+     */
+    abstract static class Run<T_CONS> implements Comparable<Run<T_CONS>> {
+        private final PendingRuns pending;
+
+        // Null once the run has been closed, or while it is in memory
+        private File file;
+
+        // Null until the first element is read from the file
+        private DataInputStream in;
+
+        // The budget of the elements of an in-memory run, otherwise null
+        private Budget budget;
+
+        // The number of elements not yet read
+        long remaining;
+
+        // The position of the run in encounter order among the runs of a
+        // merge; equal elements are taken from the earlier run first
+        int index;
+
+        Run(File file, long count, PendingRuns pending) {
+            this.file = file;
+            this.remaining = count;
+            this.pending = pending;
+            pending.add(this);
+        }
+
+        Run(long count, PendingRuns pending, Budget budget) {
+            this.remaining = count;
+            this.pending = pending;
+            this.budget = budget;
+        }
+
+        abstract void readHead(DataInput in) throws IOException;
+
+        /** Takes the next element of an in-memory run into the head */
+        abstract void takeHead();
+
+        /** Writes the elements of an in-memory run */
+        abstract void writeElements(DataOutput out) throws IOException;
+
+        /** Releases the elements of an in-memory run */
+        abstract void releaseElements();
+
+        abstract void writeHead(DataOutput out) throws IOException;
+
+        abstract void emitHead(T_CONS consumer);
+
+        abstract int compareHead(Run<T_CONS> other);
+
+        /**
+         * Reads the next element into the head, or closes the run and
+         * returns {@code false} if there are no more elements.
+         */
+        final boolean advance() {
+            if (remaining == 0L) {
+                close();
+                return false;
+            }
+            if (budget != null) {
+                takeHead();
+            }
+            else {
+                try {
+                    if (in == null) {
+                        in = open(file);
+                    }
+                    readHead(in);
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException(e);
+                }
+            }
+            remaining--;
+            return true;
+        }
+
+        /**
+         * Writes the elements of an in-memory run to a temporary file and
+         * returns them to the budget, unless the run has been written or
+         * closed already. Only called before the merge begins.
+         */
+        final synchronized void spill() {
+            Budget b = budget;
+            if (b == null) {
+                return;
+            }
+            boolean spilled = false;
+            File f = null;
+            try {
+                f = File.createTempFile("streamsupport", ".run");
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(f), WRITE_BUFFER_SIZE));
+                try {
+                    writeElements(out);
+                } finally {
+                    out.close();
+                }
+                file = f;
+                budget = null;
+                pending.add(this);
+                spilled = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (!spilled) {
+                    delete(f);
+                }
+            }
+            releaseElements();
+            b.release(remaining);
+        }
+
+        /** Closes and deletes the file of the run, if not done yet */
+        final synchronized void close() {
+            if (budget != null) {
+                releaseElements();
+                budget = null;
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                }
+                in = null;
+            }
+            if (file != null) {
+                delete(file);
+                file = null;
+                pending.remove(this);
+            }
+        }
+
+        @Override
+        public final int compareTo(Run<T_CONS> other) {
+            int c = compareHead(other);
+            return (c != 0) ? c : Integers.compare(index, other.index);
+        }
+    }
+
+    private static final class RefRun<T> extends Run<Consumer<? super T>> {
+        private final Comparator<? super T> comparator;
+        private final ElementSerializer<T> serializer;
+        private T head;
+
+        // The elements of an in-memory run, null otherwise
+        private T[] elements;
+        private int position;
+
+        RefRun(File file, long count, PendingRuns pending,
+               Comparator<? super T> comparator, ElementSerializer<T> serializer) {
+            super(file, count, pending);
+            this.comparator = comparator;
+            this.serializer = serializer;
+        }
+
+        RefRun(T[] elements, int count, PendingRuns pending, Budget budget,
+               Comparator<? super T> comparator, ElementSerializer<T> serializer) {
+            super(count, pending, budget);
+            this.elements = elements;
+            this.comparator = comparator;
+            this.serializer = serializer;
+        }
+
+        @Override
+        void readHead(DataInput in) throws IOException {
+            head = serializer.read(in);
+        }
+
+        @Override
+        void takeHead() {
+            head = elements[position];
+            elements[position++] = null;
+        }
+
+        @Override
+        void writeElements(DataOutput out) throws IOException {
+            for (int i = position, n = position + (int) remaining; i < n; i++) {
+                serializer.write(elements[i], out);
+            }
+        }
+
+        @Override
+        void releaseElements() {
+            elements = null;
+        }
+
+        @Override
+        void writeHead(DataOutput out) throws IOException {
+            serializer.write(head, out);
+        }
+
+        @Override
+        void emitHead(Consumer<? super T> consumer) {
+            T t = head;
+            head = null;
+            consumer.accept(t);
+        }
+
+        @Override
+        int compareHead(Run<Consumer<? super T>> other) {
+            return comparator.compare(head, ((RefRun<T>) other).head);
+        }
+    }
+
+    private static final class IntRun extends Run<IntConsumer> {
+        private int head;
+
+        // The elements of an in-memory run, null otherwise
+        private int[] elements;
+        private int position;
+
+        IntRun(File file, long count, PendingRuns pending) {
+            super(file, count, pending);
+        }
+
+        IntRun(int[] elements, int count, PendingRuns pending, Budget budget) {
+            super(count, pending, budget);
+            this.elements = elements;
+        }
+
+        @Override
+        void readHead(DataInput in) throws IOException {
+            head = in.readInt();
+        }
+
+        @Override
+        void takeHead() {
+            head = elements[position++];
+        }
+
+        @Override
+        void writeElements(DataOutput out) throws IOException {
+            for (int i = position, n = position + (int) remaining; i < n; i++) {
+                out.writeInt(elements[i]);
+            }
+        }
+
+        @Override
+        void releaseElements() {
+            elements = null;
+        }
+
+        @Override
+        void writeHead(DataOutput out) throws IOException {
+            out.writeInt(head);
+        }
+
+        @Override
+        void emitHead(IntConsumer consumer) {
+            consumer.accept(head);
+        }
+
+        @Override
+        int compareHead(Run<IntConsumer> other) {
+            return Integers.compare(head, ((IntRun) other).head);
+        }
+    }
+
+    private static final class LongRun extends Run<LongConsumer> {
+        private long head;
+
+        // The elements of an in-memory run, null otherwise
+        private long[] elements;
+        private int position;
+
+        LongRun(File file, long count, PendingRuns pending) {
+            super(file, count, pending);
+        }
+
+        LongRun(long[] elements, int count, PendingRuns pending, Budget budget) {
+            super(count, pending, budget);
+            this.elements = elements;
+        }
+
+        @Override
+        void readHead(DataInput in) throws IOException {
+            head = in.readLong();
+        }
+
+        @Override
+        void takeHead() {
+            head = elements[position++];
+        }
+
+        @Override
+        void writeElements(DataOutput out) throws IOException {
+            for (int i = position, n = position + (int) remaining; i < n; i++) {
+                out.writeLong(elements[i]);
+            }
+        }
+
+        @Override
+        void releaseElements() {
+            elements = null;
+        }
+
+        @Override
+        void writeHead(DataOutput out) throws IOException {
+            out.writeLong(head);
+        }
+
+        @Override
+        void emitHead(LongConsumer consumer) {
+            consumer.accept(head);
+        }
+
+        @Override
+        int compareHead(Run<LongConsumer> other) {
+            return Longs.compare(head, ((LongRun) other).head);
+        }
+    }
+
+    private static final class DoubleRun extends Run<DoubleConsumer> {
+        private double head;
+
+        // The elements of an in-memory run, null otherwise
+        private double[] elements;
+        private int position;
+
+        DoubleRun(File file, long count, PendingRuns pending) {
+            super(file, count, pending);
+        }
+
+        DoubleRun(double[] elements, int count, PendingRuns pending, Budget budget) {
+            super(count, pending, budget);
+            this.elements = elements;
+        }
+
+        @Override
+        void readHead(DataInput in) throws IOException {
+            head = in.readDouble();
+        }
+
+        @Override
+        void takeHead() {
+            head = elements[position++];
+        }
+
+        @Override
+        void writeElements(DataOutput out) throws IOException {
+            for (int i = position, n = position + (int) remaining; i < n; i++) {
+                out.writeDouble(elements[i]);
+            }
+        }
+
+        @Override
+        void releaseElements() {
+            elements = null;
+        }
+
+        @Override
+        void writeHead(DataOutput out) throws IOException {
+            out.writeDouble(head);
+        }
+
+        @Override
+        void emitHead(DoubleConsumer consumer) {
+            consumer.accept(head);
+        }
+
+        @Override
+        int compareHead(Run<DoubleConsumer> other) {
+            return Double.compare(head, ((DoubleRun) other).head);
+        }
+    }
+
+    /**
+     * A k-way merge of sorted runs, stable with respect to the encounter
+     * order of the runs.
+     *
+     * @param <T_CONS> the consumer type of the elements
+     */
+    static final class Merger<T_CONS> {
+        private final List<Run<T_CONS>> runs;
+        private final PriorityQueue<Run<T_CONS>> queue;
+
+        // The number of elements not yet merged
+        private long remaining;
+
+        /**
+         * Creates the merger and reads the heads of the runs. If reading
+         * fails, the caller remains responsible for closing the runs.
+         */
+        Merger(List<Run<T_CONS>> runs) {
+            this.runs = new ArrayList<>(runs);
+            queue = new PriorityQueue<>(Math.max(runs.size(), 1));
+            for (int i = 0; i < runs.size(); i++) {
+                Run<T_CONS> run = runs.get(i);
+                run.index = i;
+                remaining += run.remaining;
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+        }
+
+        long remaining() {
+            return remaining;
+        }
+
+        /**
+         * Pushes the next element of the merge to the consumer, or returns
+         * {@code false} if all elements have been merged.
+         */
+        boolean next(T_CONS consumer) {
+            Run<T_CONS> run = queue.poll();
+            if (run == null) {
+                return false;
+            }
+            remaining--;
+            run.emitHead(consumer);
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return true;
+        }
+
+        boolean writeNext(DataOutput out) throws IOException {
+            Run<T_CONS> run = queue.poll();
+            if (run == null) {
+                return false;
+            }
+            remaining--;
+            run.writeHead(out);
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return true;
+        }
+
+        void close() {
+            ExternalSortOps.close(runs);
+            queue.clear();
+        }
+    }
+
+    /**
+     * The spliterator returned by a lazy parallel evaluation, which yields
+     * the elements of a merge. It does not split, since the merge is
+     * sequential.
+     */
+    private abstract static class MergeSpliterator<T, T_CONS> {
+        final Merger<T_CONS> merger;
+
+        MergeSpliterator(Merger<T_CONS> merger) {
+            this.merger = merger;
+        }
+
+        public long estimateSize() {
+            return merger.remaining();
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        public Comparator<? super T> getComparator() {
+            throw new IllegalStateException();
+        }
+
+        public long getExactSizeIfKnown() {
+            return merger.remaining();
+        }
+
+        public boolean hasCharacteristics(int characteristics) {
+            return (characteristics() & characteristics) == characteristics;
+        }
+    }
+
+    private static final class RefMergeSpliterator<T>
+            extends MergeSpliterator<T, Consumer<? super T>> implements Spliterator<T> {
+        RefMergeSpliterator(Merger<Consumer<? super T>> merger) {
+            super(merger);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            return merger.next(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            while (merger.next(action)) { }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+    }
+
+    private static final class IntMergeSpliterator
+            extends MergeSpliterator<Integer, IntConsumer> implements Spliterator.OfInt {
+        IntMergeSpliterator(Merger<IntConsumer> merger) {
+            super(merger);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            return merger.next(action);
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            while (merger.next(action)) { }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Integer> action) {
+            return Spliterators.OfInt.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Integer> action) {
+            Spliterators.OfInt.forEachRemaining(this, action);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return null;
+        }
+    }
+
+    private static final class LongMergeSpliterator
+            extends MergeSpliterator<Long, LongConsumer> implements Spliterator.OfLong {
+        LongMergeSpliterator(Merger<LongConsumer> merger) {
+            super(merger);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            return merger.next(action);
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            while (merger.next(action)) { }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Long> action) {
+            return Spliterators.OfLong.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Long> action) {
+            Spliterators.OfLong.forEachRemaining(this, action);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return null;
+        }
+    }
+
+    private static final class DoubleMergeSpliterator
+            extends MergeSpliterator<Double, DoubleConsumer> implements Spliterator.OfDouble {
+        DoubleMergeSpliterator(Merger<DoubleConsumer> merger) {
+            super(merger);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            return merger.next(action);
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            while (merger.next(action)) { }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Double> action) {
+            return Spliterators.OfDouble.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Double> action) {
+            Spliterators.OfDouble.forEachRemaining(this, action);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return null;
+        }
+    }
+}
@@ -328,6 +328,11 @@ final class FindOps {
             return op.emptyValue;
         }
 
+        @Override
+        protected boolean isLeftBiased() {
+            return mustFindFirst;
+        }
+
         private void foundResult(O answer) {
             if (isLeftmostNode())
                 shortCircuit(answer);
@@ -337,7 +342,7 @@ final class FindOps {
 
         @Override
         protected O doLeaf() {
-            O result = helper.wrapAndCopyInto(op.sinkSupplier.get(), spliterator).get();
+            O result = copyIntoWithEarlyExit(op.sinkSupplier.get()).get();
             if (!mustFindFirst) {
                 if (result != null)
                     shortCircuit(result);
@@ -0,0 +1,425 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java8.util.Objects;
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.function.Consumer;
+import java8.util.function.DoubleConsumer;
+import java8.util.function.IntConsumer;
+import java8.util.function.LongConsumer;
+import java8.util.function.Supplier;
+
+/**
+ * A Spliterator over the concatenated elements of a sequence of inner
+ * streams, which, unlike the sink of a {@code flatMap} stage, splits the
+ * inner streams themselves.
+ * <p>
+ * The inner streams are obtained from a supplier, by mapping all elements of
+ * the outer stream, when the spliterator is first traversed, split, or
+ * queried for estimated size. Each inner stream is switched to the mode of
+ * the stream over this spliterator before its spliterator is taken: if that
+ * stream is parallel, the inner stream is switched to parallel and inherits
+ * its execution pool and split policy, so that the spliterator of an inner
+ * pipeline with intermediate operations can split as well; otherwise the
+ * inner stream is switched to sequential, as for {@code flatMap}.
+ * <p>
+ * {@code trySplit} divides a range of several inner spliterators where the
+ * estimated sizes of both halves are about equal. A range of a single inner
+ * spliterator is split by that spliterator's {@code trySplit}. The estimated
+ * size is the sum of the estimated sizes of the remaining inner
+ * spliterators, so that a parallel evaluation keeps splitting a large inner
+ * stream until its parts fall below the leaf size of the pipeline.
+ * <p>
+ * An inner stream is closed as soon as all parts of its spliterator have
+ * been exhausted. The inner streams that have not been exhausted, for
+ * example because of a short-circuiting operation, are closed by
+ * {@link #close()}.
+ *
+ * @param <T> the type of elements
+ * @param <T_SPLITR> the type of the inner spliterators
+ */
+abstract class FlatMapSpliterator<T, T_SPLITR extends Spliterator<T>> {
+    // Null after binding
+    private Supplier<Object[]> supplier;
+    // The stream over this spliterator, set before it is bound
+    AbstractPipeline<?, ?, ?> owner;
+    // The spliterators of the inner streams, shared with all splits
+    Object[] spliterators;
+    // The inner streams, null for an empty one; shared with all splits
+    Inner[] inners;
+    // The range of inner spliterators of this spliterator
+    int lo, hi;
+    final int characteristics;
+
+    FlatMapSpliterator(Supplier<Object[]> supplier, int characteristics) {
+        this.supplier = supplier;
+        this.characteristics = characteristics;
+    }
+
+    FlatMapSpliterator(Object[] spliterators, Inner[] inners, int lo, int hi, int characteristics) {
+        this.spliterators = spliterators;
+        this.inners = inners;
+        this.lo = lo;
+        this.hi = hi;
+        this.characteristics = characteristics;
+    }
+
+    /**
+     * An inner stream and the number of parts of its spliterator that have
+     * not been exhausted yet.
+     */
+    static final class Inner {
+        final BaseStream<?, ?> stream;
+        final AtomicInteger parts = new AtomicInteger(1);
+
+        Inner(BaseStream<?, ?> stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * Closes the stream when the last part of its spliterator has been
+         * exhausted.
+         */
+        void release() {
+            if (parts.decrementAndGet() == 0) {
+                stream.close();
+            }
+        }
+
+        /**
+         * Closes the stream unless it has been closed already.
+         */
+        void close() {
+            if (parts.getAndSet(0) > 0) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Creates the spliterator over the given range of inner spliterators.
+     */
+    abstract T_SPLITR makeSpliterator(Object[] spliterators, Inner[] inners, int lo, int hi);
+
+    /**
+     * Returns an empty spliterator of the inner type.
+     */
+    abstract T_SPLITR emptySpliterator();
+
+    final void bind() {
+        if (spliterators == null) {
+            Object[] s = supplier.get();
+            supplier = null;
+            Inner[] in = new Inner[s.length];
+            for (int i = 0; i < s.length; i++) {
+                if (s[i] != null) {
+                    in[i] = new Inner((BaseStream<?, ?>) s[i]);
+                }
+            }
+            inners = in;
+            boolean parallel = owner.isParallel();
+            Object[] a = new Object[s.length];
+            for (int i = 0; i < s.length; i++) {
+                if (in[i] == null) {
+                    a[i] = emptySpliterator();
+                }
+                else if (parallel) {
+                    BaseStream<?, ?> stream = in[i].stream;
+                    if (stream instanceof AbstractPipeline) {
+                        ((AbstractPipeline<?, ?, ?>) stream).inheritExecutionSettings(owner);
+                    }
+                    a[i] = stream.parallel().spliterator();
+                }
+                else {
+                    a[i] = in[i].stream.sequential().spliterator();
+                }
+            }
+            spliterators = a;
+            hi = a.length;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    final T_SPLITR inner(int i) {
+        return (T_SPLITR) spliterators[i];
+    }
+
+    /**
+     * Marks the part of the i-th inner spliterator of this spliterator as
+     * exhausted.
+     */
+    final void release(int i) {
+        Inner inner = inners[i];
+        if (inner != null) {
+            inner.release();
+        }
+    }
+
+    public final T_SPLITR trySplit() {
+        bind();
+        int lo = this.lo, hi = this.hi;
+        if (hi - lo > 1) {
+            long half = estimateSize() >>> 1;
+            int mid = lo + 1;
+            long prefix = inner(lo).estimateSize();
+            while (mid < hi - 1 && prefix < half) {
+                prefix += inner(mid++).estimateSize();
+            }
+            this.lo = mid;
+            return makeSpliterator(spliterators, inners, lo, mid);
+        }
+        if (hi - lo == 1) {
+            Object prefix = inner(lo).trySplit();
+            if (prefix != null) {
+                // The prefix is another part of the same inner stream
+                Inner inner = inners[lo];
+                if (inner != null) {
+                    inner.parts.incrementAndGet();
+                }
+                return makeSpliterator(new Object[] { prefix }, new Inner[] { inner }, 0, 1);
+            }
+        }
+        return null;
+    }
+
+    public final long estimateSize() {
+        bind();
+        long size = 0L;
+        for (int i = lo; i < hi; i++) {
+            size += inner(i).estimateSize();
+            if (size < 0L) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return size;
+    }
+
+    public final int characteristics() {
+        return characteristics;
+    }
+
+    public final long getExactSizeIfKnown() {
+        return -1L;
+    }
+
+    public final boolean hasCharacteristics(int characteristics) {
+        return (this.characteristics & characteristics) == characteristics;
+    }
+
+    public final Comparator<? super T> getComparator() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Closes the inner streams that have been created but not closed yet,
+     * even if closing one of them throws. The first exception is rethrown,
+     * later ones are ignored, as in
+     * {@link Streams#composeWithExceptions(Runnable, Runnable)}.
+     */
+    final void close() {
+        Inner[] in = inners;
+        if (in != null) {
+            RuntimeException failure = null;
+            for (Inner inner : in) {
+                if (inner != null) {
+                    try {
+                        inner.close();
+                    } catch (RuntimeException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    static final class OfRef<T> extends FlatMapSpliterator<T, Spliterator<T>>
+            implements Spliterator<T> {
+
+        OfRef(Supplier<Object[]> supplier, int characteristics) {
+            super(supplier, characteristics);
+        }
+
+        private OfRef(Object[] spliterators, Inner[] inners, int lo, int hi, int characteristics) {
+            super(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator<T> makeSpliterator(Object[] spliterators, Inner[] inners, int lo, int hi) {
+            return new OfRef<>(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator<T> emptySpliterator() {
+            return Spliterators.emptySpliterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            bind();
+            while (lo < hi) {
+                if (inner(lo).tryAdvance(action)) {
+                    return true;
+                }
+                release(lo++);
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            bind();
+            while (lo < hi) {
+                inner(lo).forEachRemaining(action);
+                release(lo++);
+            }
+        }
+    }
+
+    abstract static class OfPrimitive<T, T_CONS,
+            T_SPLITR extends Spliterator.OfPrimitive<T, T_CONS, T_SPLITR>>
+            extends FlatMapSpliterator<T, T_SPLITR>
+            implements Spliterator.OfPrimitive<T, T_CONS, T_SPLITR> {
+
+        OfPrimitive(Supplier<Object[]> supplier, int characteristics) {
+            super(supplier, characteristics);
+        }
+
+        OfPrimitive(Object[] spliterators, Inner[] inners, int lo, int hi, int characteristics) {
+            super(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(T_CONS action) {
+            Objects.requireNonNull(action);
+            bind();
+            while (lo < hi) {
+                if (inner(lo).tryAdvance(action)) {
+                    return true;
+                }
+                release(lo++);
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(T_CONS action) {
+            Objects.requireNonNull(action);
+            bind();
+            while (lo < hi) {
+                inner(lo).forEachRemaining(action);
+                release(lo++);
+            }
+        }
+    }
+
+    static final class OfInt extends OfPrimitive<Integer, IntConsumer, Spliterator.OfInt>
+            implements Spliterator.OfInt {
+
+        OfInt(Supplier<Object[]> supplier, int characteristics) {
+            super(supplier, characteristics);
+        }
+
+        private OfInt(Object[] spliterators, Inner[] inners, int lo, int hi, int characteristics) {
+            super(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator.OfInt makeSpliterator(Object[] spliterators, Inner[] inners, int lo, int hi) {
+            return new FlatMapSpliterator.OfInt(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator.OfInt emptySpliterator() {
+            return Spliterators.emptyIntSpliterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Integer> action) {
+            return Spliterators.OfInt.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Integer> action) {
+            Spliterators.OfInt.forEachRemaining(this, action);
+        }
+    }
+
+    static final class OfLong extends OfPrimitive<Long, LongConsumer, Spliterator.OfLong>
+            implements Spliterator.OfLong {
+
+        OfLong(Supplier<Object[]> supplier, int characteristics) {
+            super(supplier, characteristics);
+        }
+
+        private OfLong(Object[] spliterators, Inner[] inners, int lo, int hi, int characteristics) {
+            super(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator.OfLong makeSpliterator(Object[] spliterators, Inner[] inners, int lo, int hi) {
+            return new FlatMapSpliterator.OfLong(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator.OfLong emptySpliterator() {
+            return Spliterators.emptyLongSpliterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Long> action) {
+            return Spliterators.OfLong.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Long> action) {
+            Spliterators.OfLong.forEachRemaining(this, action);
+        }
+    }
+
+    static final class OfDouble extends OfPrimitive<Double, DoubleConsumer, Spliterator.OfDouble>
+            implements Spliterator.OfDouble {
+
+        OfDouble(Supplier<Object[]> supplier, int characteristics) {
+            super(supplier, characteristics);
+        }
+
+        private OfDouble(Object[] spliterators, Inner[] inners, int lo, int hi, int characteristics) {
+            super(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator.OfDouble makeSpliterator(Object[] spliterators, Inner[] inners, int lo, int hi) {
+            return new FlatMapSpliterator.OfDouble(spliterators, inners, lo, hi, characteristics);
+        }
+
+        @Override
+        Spliterator.OfDouble emptySpliterator() {
+            return Spliterators.emptyDoubleSpliterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Double> action) {
+            return Spliterators.OfDouble.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Double> action) {
+            Spliterators.OfDouble.forEachRemaining(this, action);
+        }
+    }
+}
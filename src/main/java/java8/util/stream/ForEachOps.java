@@ -26,11 +26,11 @@ package java8.util.stream;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java8.util.Objects;
 import java8.util.Spliterator;
 import java8.util.concurrent.CountedCompleter;
-import java8.util.concurrent.ForkJoinPool;
 import java8.util.function.Consumer;
 import java8.util.function.DoubleConsumer;
 import java8.util.function.IntConsumer;
@@ -331,18 +331,32 @@ final class ForEachOps {
             Spliterator<S> rightSplit = spliterator, leftSplit;
             long sizeEstimate = rightSplit.estimateSize(), sizeThreshold;
             if ((sizeThreshold = targetSize) == 0L) {
-                targetSize = sizeThreshold = AbstractTask.suggestTargetSize(sizeEstimate);
+                targetSize = sizeThreshold = AbstractTask.suggestTargetSize(helper, sizeEstimate);
             }
             boolean isShortCircuit = StreamOpFlag.SHORT_CIRCUIT.isKnown(helper.getStreamAndOpFlags());
             boolean forkRight = false;
+            int splits = 0;
             Sink<S> taskSink = sink;
             ForEachTask<S, T> task = this;
             while (!isShortCircuit || !taskSink.cancellationRequested()) {
                 if (sizeEstimate <= sizeThreshold ||
                     (leftSplit = rightSplit.trySplit()) == null) {
-                    task.helper.copyInto(taskSink, rightSplit);
+                    SplitPolicy policy = helper.getSplitPolicy();
+                    if (policy != null && policy.isTimed()) {
+                        long start = System.nanoTime();
+                        task.helper.copyInto(taskSink, rightSplit);
+                        policy.leafCompleted(sizeEstimate, System.nanoTime() - start);
+                    }
+                    else {
+                        task.helper.copyInto(taskSink, rightSplit);
+                    }
+                    PipelineRecorder recorder = helper.getRecorder();
+                    if (recorder != null) {
+                        recorder.leafCompleted(splits);
+                    }
                     break;
                 }
+                splits++;
                 ForEachTask<S, T> leftTask = new ForEachTask<>(task, leftSplit);
                 task.addToPendingCount(1);
                 ForEachTask<S, T> taskToFork;
@@ -412,6 +426,22 @@ final class ForEachOps {
          * Thus overall the "happens-before" relationship holds for the
          * reporting of elements, covered by tasks d, e, f and g, as specified
          * by the forEachOrdered operation.
+         *
+         * A leaf task that cannot complete yet buffers its elements in a
+         * Node.  If the pipeline has an ordered buffer limit, the leaf
+         * reserves room for its output from the budget shared by all tasks.
+         * If the exact output size is known the leaf buffers only if all of
+         * its output fits.  Otherwise the output elements are counted into
+         * the Node builder while the source elements are pushed one at a
+         * time, reserving more room as needed, and buffering stops when the
+         * budget runs out; the budget may be exceeded by the output of the
+         * last source element, such as the inner stream of a flatMap.  A
+         * leaf that doesn't run ahead, or doesn't run to the end, keeps its
+         * spliterator, and the remaining elements are pulled from it into
+         * the action on completion, when all elements preceding them have
+         * been processed.  The reservation is corrected to the actual size
+         * of the Node once it is built, and released when the Node has been
+         * dumped into the action.
          */
 
         private final PipelineHelper<T> helper;
@@ -420,7 +450,12 @@ final class ForEachOps {
         private final ConcurrentMap<ForEachOrderedTask<S, T>, ForEachOrderedTask<S, T>> completionMap;
         private final Sink<T> action;
         private final ForEachOrderedTask<S, T> leftPredecessor;
+        private final long bufferLimit;
+        // The number of elements buffered by all tasks
+        private final AtomicLong buffered;
         private Node<T> node;
+        // The number of elements accounted for node in buffered
+        private long reserved;
 
         protected ForEachOrderedTask(PipelineHelper<T> helper,
                                      Spliterator<S> spliterator,
@@ -428,12 +463,14 @@ final class ForEachOps {
             super(null);
             this.helper = helper;
             this.spliterator = spliterator;
-            this.targetSize = AbstractTask.suggestTargetSize(spliterator.estimateSize());
+            this.targetSize = AbstractTask.suggestTargetSize(helper, spliterator.estimateSize());
             // Size map to avoid concurrent re-sizes
             this.completionMap = new ConcurrentHashMap<>(Math.max(16, AbstractTask.getLeafTarget() << 1),
-                    0.75f, ForkJoinPool.getCommonPoolParallelism() + 1);
+                    0.75f, AbstractTask.getPoolParallelism() + 1);
             this.action = action;
             this.leftPredecessor = null;
+            this.bufferLimit = helper.getOrderedBufferLimit();
+            this.buffered = new AtomicLong();
         }
 
         ForEachOrderedTask(ForEachOrderedTask<S, T> parent,
@@ -446,6 +483,8 @@ final class ForEachOps {
             this.completionMap = parent.completionMap;
             this.action = parent.action;
             this.leftPredecessor = leftPredecessor;
+            this.bufferLimit = parent.bufferLimit;
+            this.buffered = parent.buffered;
         }
 
         @Override
@@ -457,8 +496,10 @@ final class ForEachOps {
             Spliterator<S> rightSplit = task.spliterator, leftSplit;
             long sizeThreshold = task.targetSize;
             boolean forkRight = false;
+            int splits = 0;
             while (rightSplit.estimateSize() > sizeThreshold &&
                    (leftSplit = rightSplit.trySplit()) != null) {
+                splits++;
                 ForEachOrderedTask<S, T> leftChild =
                     new ForEachOrderedTask<>(task, leftSplit, task.leftPredecessor);
                 ForEachOrderedTask<S, T> rightChild =
@@ -522,28 +563,125 @@ final class ForEachOps {
              * onCompletion.  Therefore there is no data race within the if
              * block.
              */
+            PipelineRecorder recorder = task.helper.getRecorder();
             if (task.getPendingCount() > 0) {
                 // Cannot complete just yet so buffer elements into a Node
-                // for use when completion occurs
+                // for use when completion occurs, unless that would exceed
+                // the buffer limit
+                long exactSize = task.helper.exactOutputSizeIfKnown(rightSplit);
                 @SuppressWarnings("unchecked")
                 IntFunction<T[]> generator = size -> (T[]) new Object[size];
-                Node.Builder<T> nb = task.helper.makeNodeBuilder(
-                        task.helper.exactOutputSizeIfKnown(rightSplit),
-                        generator);
-                task.node = task.helper.wrapAndCopyInto(nb, rightSplit).build();
-                task.spliterator = null;
+                boolean buffered = false;
+                if (exactSize >= 0L || task.bufferLimit == Long.MAX_VALUE) {
+                    if (task.reserve(exactSize)) {
+                        Node.Builder<T> nb = task.helper.makeNodeBuilder(exactSize, generator);
+                        task.node = task.helper.wrapAndCopyInto(nb, rightSplit).build();
+                        task.spliterator = null;
+                        buffered = true;
+                    }
+                }
+                else {
+                    buffered = task.bufferWithinLimit(task.helper.makeNodeBuilder(-1L, generator), rightSplit);
+                }
+                if (buffered) {
+                    long count = task.node.count();
+                    long total = task.buffered.addAndGet(count - task.reserved);
+                    task.reserved = count;
+                    if (recorder != null) {
+                        recorder.buffered(total);
+                    }
+                }
+            }
+            if (recorder != null) {
+                recorder.leafCompleted(splits);
             }
             task.tryComplete();
         }
 
+        /**
+         * Reserves room for the given number of elements in the buffer,
+         * if the buffer is bounded.
+         *
+         * @return {@code false} if the elements don't fit into the buffer
+         */
+        private boolean reserve(long size) {
+            if (bufferLimit == Long.MAX_VALUE) {
+                return true;
+            }
+            long current;
+            do {
+                current = buffered.get();
+                if (size > bufferLimit - current) {
+                    return false;
+                }
+            } while (!buffered.compareAndSet(current, current + size));
+            reserved = size;
+            return true;
+        }
+
+        /**
+         * Reserves room for at most the given number of elements in the
+         * buffer, as many as are left of the limit.
+         *
+         * @return {@code false} if the buffer is full
+         */
+        private boolean reserveUpTo(long size) {
+            long current, n;
+            do {
+                current = buffered.get();
+                n = Math.min(size, bufferLimit - current);
+                if (n <= 0L) {
+                    return false;
+                }
+            } while (!buffered.compareAndSet(current, current + n));
+            reserved += n;
+            return true;
+        }
+
+        /**
+         * Buffers the output of the given spliterator of unknown output
+         * size into a node, pushing one source element at a time until the
+         * spliterator is exhausted or the buffer is full. The spliterator is
+         * kept if elements are left.
+         *
+         * @return {@code true} if any elements have been buffered
+         */
+        private boolean bufferWithinLimit(Node.Builder<T> nb, Spliterator<S> spliterator) {
+            // Reserve room in chunks of the estimated source size
+            long chunk = Math.max(1L, spliterator.estimateSize());
+            CountingSink<T> counter = new CountingSink<>(nb);
+            Sink<S> wrapped = helper.wrapSink(counter);
+            boolean exhausted = false;
+            wrapped.begin(-1L);
+            while (counter.count < reserved || reserveUpTo(chunk)) {
+                if (!spliterator.tryAdvance(wrapped)) {
+                    exhausted = true;
+                    break;
+                }
+            }
+            wrapped.end();
+            if (exhausted) {
+                this.spliterator = null;
+            }
+            if (counter.count == 0L) {
+                buffered.addAndGet(-reserved);
+                reserved = 0L;
+                return false;
+            }
+            node = nb.build();
+            return true;
+        }
+
         @Override
         public void onCompletion(CountedCompleter<?> caller) {
             if (node != null) {
                 // Dump buffered elements from this leaf into the sink
                 node.forEach(action);
                 node = null;
+                buffered.addAndGet(-reserved);
+                reserved = 0L;
             }
-            else if (spliterator != null) {
+            if (spliterator != null) {
                 // Dump elements output from this leaf's pipeline into the sink
                 helper.wrapAndCopyInto(action, spliterator);
                 spliterator = null;
@@ -558,5 +696,57 @@ final class ForEachOps {
                 leftDescendant.tryComplete();
             }
         }
+
+        /**
+         * A sink that counts the elements it passes on to a node builder of
+         * any shape.
+         */
+        private static final class CountingSink<T> implements Sink<T> {
+            private final Sink<T> downstream;
+            long count;
+
+            CountingSink(Sink<T> downstream) {
+                this.downstream = downstream;
+            }
+
+            @Override
+            public void begin(long size) {
+                downstream.begin(size);
+            }
+
+            @Override
+            public void end() {
+                downstream.end();
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return false;
+            }
+
+            @Override
+            public void accept(T t) {
+                count++;
+                downstream.accept(t);
+            }
+
+            @Override
+            public void accept(int value) {
+                count++;
+                downstream.accept(value);
+            }
+
+            @Override
+            public void accept(long value) {
+                count++;
+                downstream.accept(value);
+            }
+
+            @Override
+            public void accept(double value) {
+                count++;
+                downstream.accept(value);
+            }
+        }
     }
 }
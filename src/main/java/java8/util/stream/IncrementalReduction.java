@@ -0,0 +1,192 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import java8.util.Objects;
+import java8.util.function.BiConsumer;
+import java8.util.function.BinaryOperator;
+import java8.util.function.Function;
+
+/**
+ * A reduction of the elements of an append-only {@code List} through a
+ * stream pipeline that is evaluated incrementally: each evaluation only
+ * processes the elements appended to the list since the previous evaluation
+ * and combines their reduction with the retained state of the previous ones.
+ *
+ * <p>An {@code IncrementalReduction} is created by
+ * {@link StreamSupport#incremental(List, Function, Collector)} from a
+ * function that builds the pipeline on a stream of elements of the list, and
+ * a {@link Collector}. On {@link #evaluate()} the function is applied to a
+ * stream over the new elements, the resulting stream is collected into a
+ * fresh result container, which is then merged into the retained container
+ * with the collector's combiner. The collector's finisher is applied to yet
+ * another fresh container into which the retained container has been
+ * merged, since finishers may transform the container they are given in
+ * place. This yields the same result as collecting the whole list, provided
+ * that
+ * <ul>
+ * <li>the pipeline consists of stateless intermediate operations only, such
+ * as {@code map}, {@code filter} or {@code flatMap}: sorting, distinct,
+ * limit, skip, takeWhile and dropWhile depend on the elements of earlier
+ * evaluations and are rejected;</li>
+ * <li>the collector's combiner is associative, as required for any
+ * collector; an associative {@code reduce} is expressed with
+ * {@link Collectors#reducing(Object, BinaryOperator)};</li>
+ * <li>the finisher doesn't modify containers nested in the container it is
+ * given, which holds for the collectors of {@link Collectors} unless
+ * grouping or partitioning collectors are nested over a downstream
+ * collector with a finisher, as in
+ * {@code groupingBy(f, groupingBy(g, counting()))};</li>
+ * <li>elements are only ever appended to the list, never removed, replaced
+ * or inserted before the elements already processed.</li>
+ * </ul>
+ * If the combiner hands back the retained container rather than the fresh
+ * one, the retained state is discarded after finishing it and the next
+ * evaluation processes the whole list again.
+ *
+ * <p>The new elements are processed in parallel if the function makes the
+ * stream parallel. Evaluations are serialized; appends to the list must be
+ * made safely visible to the evaluating thread, for example by using a
+ * {@code java.util.concurrent.CopyOnWriteArrayList} or by synchronizing on
+ * the list around appends and calls of {@code evaluate()}. If an evaluation
+ * fails, the retained state is left unchanged and the next evaluation
+ * processes the same elements again.
+ *
+ * <p>If the collector has the
+ * {@link Collector.Characteristics#IDENTITY_FINISH IDENTITY_FINISH}
+ * characteristic, for example {@link Collectors#toList()} or
+ * {@link Collectors#groupingBy(Function)}, the result of an evaluation is
+ * the retained container itself and will be updated by subsequent
+ * evaluations. Such results must not be modified, and should be copied if a
+ * snapshot is needed.
+ *
+ * @param <T> the type of the elements of the list
+ * @param <R> the type of the result
+ */
+public final class IncrementalReduction<T, R> {
+
+    private final List<T> source;
+    private final Reducer<T, ?, ?, R> reducer;
+    private int processed;
+
+    <U, A> IncrementalReduction(List<T> source, Function<? super Stream<T>, ? extends Stream<U>> pipeline,
+                                Collector<? super U, A, R> collector) {
+        this.source = Objects.requireNonNull(source);
+        this.reducer = new Reducer<T, U, A, R>(Objects.requireNonNull(pipeline),
+                Objects.requireNonNull(collector));
+        // reject unsuitable pipelines early
+        reducer.pipeline(source.subList(0, 0));
+    }
+
+    /**
+     * Processes the elements appended to the list since the previous
+     * evaluation and returns the reduction of all elements processed so far.
+     *
+     * @return the result of the reduction of all elements of the list
+     * @throws ConcurrentModificationException if the list has fewer
+     *         elements than have already been processed
+     */
+    public synchronized R evaluate() {
+        int size = source.size();
+        if (size < processed) {
+            throw new ConcurrentModificationException("the list shrank from "
+                    + processed + " to " + size + " elements");
+        }
+        if (size > processed) {
+            reducer.add(source.subList(processed, size));
+            processed = size;
+        }
+        R result = reducer.result();
+        if (reducer.state == null) {
+            // the state has been handed to the finisher
+            processed = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of elements of the list that have been processed,
+     * that is, the size of the list at the last evaluation.
+     *
+     * @return the number of processed elements
+     */
+    public synchronized int processedCount() {
+        return processed;
+    }
+
+    /**
+     * Discards the retained state, so that the next evaluation processes
+     * the whole list again. This is necessary if elements of the list have
+     * been removed or replaced.
+     */
+    public synchronized void reset() {
+        reducer.reset();
+        processed = 0;
+    }
+
+    /**
+     * Holds the pipeline, the collector and the retained result container.
+     */
+    private static final class Reducer<T, U, A, R> {
+        private final Function<? super Stream<T>, ? extends Stream<U>> pipeline;
+        private final Collector<? super U, A, R> collector;
+        private final Collector<U, A, A> accumulating;
+        private final boolean identityFinish;
+        A state; // null before the first evaluation
+
+        @SuppressWarnings("unchecked")
+        Reducer(Function<? super Stream<T>, ? extends Stream<U>> pipeline,
+                Collector<? super U, A, R> collector) {
+            this.pipeline = pipeline;
+            this.collector = collector;
+            // the collector, without its finisher
+            this.accumulating = Collectors.of(collector.supplier(),
+                    (BiConsumer<A, U>) collector.accumulator(),
+                    collector.combiner(),
+                    collector.characteristics().toArray(new Collector.Characteristics[0]));
+            this.identityFinish = collector.characteristics().contains(
+                    Collector.Characteristics.IDENTITY_FINISH);
+        }
+
+        Stream<U> pipeline(List<T> elements) {
+            Stream<T> in = StreamSupport.stream(elements);
+            Stream<U> out = pipeline.apply(in);
+            if (!(out instanceof AbstractPipeline)
+                    || !((AbstractPipeline<?, ?, ?>) out).isStatelessOver((AbstractPipeline<?, ?, ?>) in)) {
+                throw new IllegalArgumentException(
+                        "the pipeline must consist of stateless operations on the given stream");
+            }
+            return out;
+        }
+
+        void add(List<T> elements) {
+            A delta = pipeline(elements).collect(accumulating);
+            state = (state == null) ? delta : collector.combiner().apply(state, delta);
+        }
+
+        @SuppressWarnings("unchecked")
+        R result() {
+            if (state == null) {
+                state = collector.supplier().get();
+            }
+            if (identityFinish) {
+                return (R) state;
+            }
+            A copy = collector.combiner().apply(collector.supplier().get(), state);
+            if (copy == state) {
+                state = null;
+            }
+            return collector.finisher().apply(copy);
+        }
+
+        void reset() {
+            state = null;
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package java8.util.stream;
 
 import java8.lang.Integers;
+import java8.util.ChunkSpliterator;
 import java8.util.IntSummaryStatistics;
 import java8.util.Objects;
 import java8.util.PrimitiveIterator;
@@ -451,9 +452,7 @@ abstract class IntPipeline<E_IN>
 
     @Override
     public final IntStream distinct() {
-        // While functional and quick to implement, this approach is not very efficient.
-        // An efficient version requires an int-specific map/set implementation.
-        return boxed().distinct().mapToInt(i -> i);
+        return DistinctOps.makeInt(this);
     }
 
     // Terminal ops from IntStream
@@ -470,16 +469,28 @@ abstract class IntPipeline<E_IN>
 
     @Override
     public final int sum() {
+        ChunkSpliterator<int[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.sumInt(chunks);
+        }
         return reduce(0, Integers::sum);
     }
 
     @Override
     public final OptionalInt min() {
+        ChunkSpliterator<int[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.minInt(chunks);
+        }
         return reduce(Math::min);
     }
 
     @Override
     public final OptionalInt max() {
+        ChunkSpliterator<int[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.maxInt(chunks);
+        }
         return reduce(Math::max);
     }
 
@@ -506,6 +517,10 @@ abstract class IntPipeline<E_IN>
 
     @Override
     public final IntSummaryStatistics summaryStatistics() {
+        ChunkSpliterator<int[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.statisticsInt(chunks);
+        }
         return collect(Collectors.INT_SUM_STATS, IntSummaryStatistics::accept,
                        IntSummaryStatistics::combine);
     }
@@ -559,6 +574,10 @@ abstract class IntPipeline<E_IN>
 
     @Override
     public final int[] toArray() {
+        ChunkSpliterator<int[]> chunks = chunkSource(true);
+        if (chunks != null) {
+            return ChunkOps.toIntArray(chunks);
+        }
         return Nodes.flattenInt((Node.OfInt) evaluateToArrayNode(WhileOps.INT_ARR_GEN))
                         .asPrimitiveArray();
     }
@@ -25,6 +25,7 @@
 package java8.util.stream;
 
 import java8.lang.Longs;
+import java8.util.ChunkSpliterator;
 import java8.util.LongSummaryStatistics;
 import java8.util.Objects;
 import java8.util.PrimitiveIterator;
@@ -434,9 +435,7 @@ abstract class LongPipeline<E_IN>
 
     @Override
     public final LongStream distinct() {
-        // While functional and quick to implement, this approach is not very efficient.
-        // An efficient version requires a long-specific map/set implementation.
-        return boxed().distinct().mapToLong(i -> (long) i);
+        return DistinctOps.makeLong(this);
     }
 
     // Terminal ops from LongStream
@@ -453,17 +452,29 @@ abstract class LongPipeline<E_IN>
 
     @Override
     public final long sum() {
+        ChunkSpliterator<long[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.sumLong(chunks);
+        }
         // use better algorithm to compensate for intermediate overflow?
         return reduce(0, Longs::sum);
     }
 
     @Override
     public final OptionalLong min() {
+        ChunkSpliterator<long[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.minLong(chunks);
+        }
         return reduce(Math::min);
     }
 
     @Override
     public final OptionalLong max() {
+        ChunkSpliterator<long[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.maxLong(chunks);
+        }
         return reduce(Math::max);
     }
 
@@ -490,6 +501,10 @@ abstract class LongPipeline<E_IN>
 
     @Override
     public final LongSummaryStatistics summaryStatistics() {
+        ChunkSpliterator<long[]> chunks = chunkSource(false);
+        if (chunks != null) {
+            return ChunkOps.statisticsLong(chunks);
+        }
         return collect(Collectors.LNG_SUM_STATS, LongSummaryStatistics::accept,
                        LongSummaryStatistics::combine);
     }
@@ -543,6 +558,10 @@ abstract class LongPipeline<E_IN>
 
     @Override
     public final long[] toArray() {
+        ChunkSpliterator<long[]> chunks = chunkSource(true);
+        if (chunks != null) {
+            return ChunkOps.toLongArray(chunks);
+        }
         return Nodes.flattenLong((Node.OfLong) evaluateToArrayNode(WhileOps.LONG_ARR_GEN))
                 .asPrimitiveArray();
     }
@@ -0,0 +1,579 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Comparator;
+
+import java8.io.UncheckedIOException;
+import java8.util.Objects;
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.function.Consumer;
+import java8.util.function.DoubleConsumer;
+import java8.util.function.IntConsumer;
+import java8.util.function.LongConsumer;
+
+/**
+ * Spliterators over the contents of a file that map the file into memory
+ * with {@link FileChannel#map(FileChannel.MapMode, long, long)}.
+ *
+ * <p>A spliterator covers a byte range of the file and maps it lazily, one
+ * window of at most {@link #MAP_WINDOW} bytes at a time, so that files
+ * larger than a single {@code MappedByteBuffer} can be traversed and a
+ * spliterator that is split off but never traversed maps nothing. The
+ * delimited record spliterator splits its range after a delimiter near the
+ * middle, the fixed-size record spliterators split at a record boundary
+ * near the middle. Ranges smaller than {@link #MIN_SPLIT} bytes are not
+ * split.
+ *
+ * <p>An {@code IOException} while mapping or reading the file is rethrown
+ * as an {@link UncheckedIOException}.
+ */
+final class MappedFileSpliterators {
+
+    /** The maximum number of bytes mapped at once */
+    static final int MAP_WINDOW = 1 << 26;
+
+    /** The minimum number of bytes of a range that is split */
+    static final int MIN_SPLIT = 1 << 16;
+
+    /** The buffer size for finding a delimiter at a split */
+    private static final int SCAN_BUFFER_SIZE = 1 << 13;
+
+    private MappedFileSpliterators() {
+        throw new Error("no instances");
+    }
+
+    static ByteBuffer map(FileChannel channel, long position, long size) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the bytes {@code from} (inclusive) to {@code to} (exclusive)
+     * of the given buffer as a new buffer that shares its content.
+     */
+    static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.limit(to);
+        dup.position(from);
+        return dup.slice();
+    }
+
+    /**
+     * Returns whether the line feed byte of the given charset can only
+     * occur as a line feed, so that the encoded file can be split at line
+     * feed bytes.
+     */
+    static boolean isLineSplittable(Charset cs) {
+        String name = cs.name();
+        return "UTF-8".equals(name) || "ISO-8859-1".equals(name) || "US-ASCII".equals(name);
+    }
+
+    /**
+     * Decodes a line that was delimited by a line feed, dropping a
+     * trailing carriage return.
+     */
+    static String decodeLine(ByteBuffer line, Charset cs) {
+        int limit = line.limit();
+        if (limit > 0 && line.get(limit - 1) == '\r') {
+            line.limit(limit - 1);
+        }
+        return cs.decode(line).toString();
+    }
+
+    /**
+     * A spliterator over the records of a file that are separated by a
+     * delimiter byte. Each record is a read-only buffer over the record's
+     * bytes, without the delimiter. The last record need not be followed by
+     * a delimiter.
+     */
+    static final class Delimited implements Spliterator<ByteBuffer> {
+        private final FileChannel channel;
+        private final byte delimiter;
+        private final int windowSize;
+        private long from;    // start of the next record, modified on advance/split
+        private final long to; // one past the last byte
+        private ByteBuffer window; // the mapped bytes starting at windowStart
+        private long windowStart;
+
+        Delimited(FileChannel channel, byte delimiter, long from, long to, int windowSize) {
+            this.channel = channel;
+            this.delimiter = delimiter;
+            this.from = from;
+            this.to = to;
+            this.windowSize = windowSize;
+        }
+
+        private void map(long position) {
+            window = MappedFileSpliterators.map(channel, position,
+                    Math.min(windowSize, to - position));
+            windowStart = position;
+        }
+
+        /**
+         * Returns the next record, or {@code null} if there is none.
+         */
+        private ByteBuffer next() {
+            long pos = from;
+            if (pos >= to) {
+                return null;
+            }
+            if (window == null || pos < windowStart || pos >= windowStart + window.limit()) {
+                map(pos);
+            }
+            for (;;) {
+                ByteBuffer w = window;
+                byte delim = delimiter;
+                int start = (int) (pos - windowStart);
+                int limit = w.limit();
+                for (int i = start; i < limit; i++) {
+                    if (w.get(i) == delim) {
+                        from = windowStart + i + 1;
+                        return slice(w, start, i);
+                    }
+                }
+                if (windowStart + limit >= to) {
+                    // the last record is not followed by a delimiter
+                    from = to;
+                    return slice(w, start, limit);
+                }
+                if (start == 0) {
+                    throw new IllegalStateException("record at position " + pos
+                            + " is longer than " + windowSize + " bytes");
+                }
+                // the record continues beyond the window
+                map(pos);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ByteBuffer> action) {
+            Objects.requireNonNull(action);
+            ByteBuffer record = next();
+            if (record != null) {
+                action.accept(record);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super ByteBuffer> action) {
+            Objects.requireNonNull(action);
+            ByteBuffer record;
+            while ((record = next()) != null) {
+                action.accept(record);
+            }
+        }
+
+        /**
+         * Returns the position of the first delimiter at or after
+         * {@code pos} and before {@code to}, or {@code -1} if there is none.
+         */
+        private long indexOfDelimiter(long pos) {
+            ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            byte delim = delimiter;
+            try {
+                while (pos < to) {
+                    buf.clear();
+                    if (to - pos < buf.capacity()) {
+                        buf.limit((int) (to - pos));
+                    }
+                    int n = channel.read(buf, pos);
+                    if (n <= 0) {
+                        return -1L;
+                    }
+                    for (int i = 0; i < n; i++) {
+                        if (buf.get(i) == delim) {
+                            return pos + i;
+                        }
+                    }
+                    pos += n;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return -1L;
+        }
+
+        @Override
+        public Spliterator<ByteBuffer> trySplit() {
+            long lo = from;
+            if (to - lo < MIN_SPLIT) {
+                return null;
+            }
+            long d = indexOfDelimiter(lo + ((to - lo) >>> 1));
+            if (d < 0L || d + 1L >= to) {
+                return null;
+            }
+            from = d + 1L;
+            return new Delimited(channel, delimiter, lo, from, windowSize);
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return -1L;
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public Comparator<? super ByteBuffer> getComparator() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Base class of the spliterators over the fixed-size records of a file.
+     * The records are addressed by their index; a trailing partial record
+     * is not covered.
+     */
+    abstract static class FixedSize {
+        final FileChannel channel;
+        final int recordSize;
+        final ByteOrder order;
+        final int windowSize;
+        long index;       // current record index, modified on advance/split
+        final long fence; // one past the last record index
+        ByteBuffer window; // the mapped records windowOrigin to windowFence
+        long windowOrigin;
+        long windowFence;
+
+        FixedSize(FileChannel channel, int recordSize, ByteOrder order,
+                  long origin, long fence, int windowSize) {
+            this.channel = channel;
+            this.recordSize = recordSize;
+            this.order = order;
+            this.index = origin;
+            this.fence = fence;
+            this.windowSize = windowSize;
+        }
+
+        /**
+         * Maps the window that contains record {@code i} unless it is
+         * mapped already, and returns the byte offset of the record in it.
+         */
+        final int offset(long i) {
+            if (window == null || i < windowOrigin || i >= windowFence) {
+                long hi = Math.min(fence, i + Math.max(1, windowSize / recordSize));
+                window = map(channel, i * recordSize, (hi - i) * recordSize).order(order);
+                windowOrigin = i;
+                windowFence = hi;
+            }
+            return (int) ((i - windowOrigin) * recordSize);
+        }
+
+        /**
+         * Returns the record index at which this spliterator is split, and
+         * makes it its new origin, or returns {@code -1} if it is too small
+         * to be split.
+         */
+        final long split() {
+            long lo = index;
+            if ((fence - lo) * recordSize < MIN_SPLIT) {
+                return -1L;
+            }
+            return index = (lo + fence) >>> 1;
+        }
+
+        public final long estimateSize() {
+            return fence - index;
+        }
+
+        public final int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * A spliterator over the fixed-size records of a file. Each record is a
+     * read-only buffer over the record's bytes.
+     */
+    static final class Records extends FixedSize implements Spliterator<ByteBuffer> {
+
+        Records(FileChannel channel, int recordSize, long origin, long fence, int windowSize) {
+            super(channel, recordSize, ByteOrder.BIG_ENDIAN, origin, fence, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ByteBuffer> action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                int off = offset(index++);
+                action.accept(slice(window, off, off + recordSize));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super ByteBuffer> action) {
+            Objects.requireNonNull(action);
+            long i = index, hi = fence;
+            index = hi;
+            int size = recordSize;
+            while (i < hi) {
+                int off = offset(i);
+                ByteBuffer w = window;
+                long end = Math.min(hi, windowFence);
+                for (; i < end; i++, off += size) {
+                    action.accept(slice(w, off, off + size));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<ByteBuffer> trySplit() {
+            long lo = index, mid = split();
+            return mid < 0L ? null : new Records(channel, recordSize, lo, mid, windowSize);
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return estimateSize();
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public Comparator<? super ByteBuffer> getComparator() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * A spliterator over a file of binary {@code int} values.
+     */
+    static final class Ints extends FixedSize implements Spliterator.OfInt {
+
+        Ints(FileChannel channel, ByteOrder order, long origin, long fence, int windowSize) {
+            super(channel, 4, order, origin, fence, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                int off = offset(index++);
+                action.accept(window.getInt(off));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            long i = index, hi = fence;
+            index = hi;
+            while (i < hi) {
+                int off = offset(i);
+                ByteBuffer w = window;
+                long end = Math.min(hi, windowFence);
+                int last = off + (int) (end - i) * 4;
+                for (; off < last; off += 4) {
+                    action.accept(w.getInt(off));
+                }
+                i = end;
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            long lo = index, mid = split();
+            return mid < 0L ? null : new Ints(channel, order, lo, mid, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Integer> action) {
+            return Spliterators.OfInt.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Integer> action) {
+            Spliterators.OfInt.forEachRemaining(this, action);
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return estimateSize();
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * A spliterator over a file of binary {@code long} values.
+     */
+    static final class Longs extends FixedSize implements Spliterator.OfLong {
+
+        Longs(FileChannel channel, ByteOrder order, long origin, long fence, int windowSize) {
+            super(channel, 8, order, origin, fence, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                int off = offset(index++);
+                action.accept(window.getLong(off));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            long i = index, hi = fence;
+            index = hi;
+            while (i < hi) {
+                int off = offset(i);
+                ByteBuffer w = window;
+                long end = Math.min(hi, windowFence);
+                int last = off + (int) (end - i) * 8;
+                for (; off < last; off += 8) {
+                    action.accept(w.getLong(off));
+                }
+                i = end;
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long lo = index, mid = split();
+            return mid < 0L ? null : new Longs(channel, order, lo, mid, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Long> action) {
+            return Spliterators.OfLong.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Long> action) {
+            Spliterators.OfLong.forEachRemaining(this, action);
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return estimateSize();
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * A spliterator over a file of binary {@code double} values.
+     */
+    static final class Doubles extends FixedSize implements Spliterator.OfDouble {
+
+        Doubles(FileChannel channel, ByteOrder order, long origin, long fence, int windowSize) {
+            super(channel, 8, order, origin, fence, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                int off = offset(index++);
+                action.accept(window.getDouble(off));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            long i = index, hi = fence;
+            index = hi;
+            while (i < hi) {
+                int off = offset(i);
+                ByteBuffer w = window;
+                long end = Math.min(hi, windowFence);
+                int last = off + (int) (end - i) * 8;
+                for (; off < last; off += 8) {
+                    action.accept(w.getDouble(off));
+                }
+                i = end;
+            }
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            long lo = index, mid = split();
+            return mid < 0L ? null : new Doubles(channel, order, lo, mid, windowSize);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Double> action) {
+            return Spliterators.OfDouble.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Double> action) {
+            Spliterators.OfDouble.forEachRemaining(this, action);
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return estimateSize();
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public Comparator<? super Double> getComparator() {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -341,7 +341,7 @@ final class MatchOps {
 
         @Override
         protected Boolean doLeaf() {
-            boolean b = helper.wrapAndCopyInto(op.sinkSupplier.get(), spliterator).getAndClearState();
+            boolean b = copyIntoWithEarlyExit(op.sinkSupplier.get()).getAndClearState();
             if (b == op.matchKind.shortCircuitResult)
                 shortCircuit(b);
             return null;
@@ -509,12 +509,13 @@ final class Nodes {
     }
 
     /**
-     * Produces a variable size {@link Node.Builder.OfInt}.
+     * Produces a variable size {@link Node.Builder.OfInt}, whose elements
+     * are kept off-heap if {@link DirectSpinedBuffer#ENABLED enabled}.
      *
      * @return a {@code Node.Builder.OfInt}
      */
     static Node.Builder.OfInt intBuilder() {
-        return new IntSpinedNodeBuilder();
+        return DirectSpinedBuffer.ENABLED ? new DirectIntSpinedNodeBuilder() : new IntSpinedNodeBuilder();
     }
 
     // Long nodes
@@ -546,12 +547,13 @@ final class Nodes {
     }
 
     /**
-     * Produces a variable size {@link Node.Builder.OfLong}.
+     * Produces a variable size {@link Node.Builder.OfLong}, whose elements
+     * are kept off-heap if {@link DirectSpinedBuffer#ENABLED enabled}.
      *
      * @return a {@code Node.Builder.OfLong}
      */
     static Node.Builder.OfLong longBuilder() {
-        return new LongSpinedNodeBuilder();
+        return DirectSpinedBuffer.ENABLED ? new DirectLongSpinedNodeBuilder() : new LongSpinedNodeBuilder();
     }
 
     // Double nodes
@@ -583,12 +585,13 @@ final class Nodes {
     }
 
     /**
-     * Produces a variable size {@link Node.Builder.OfDouble}.
+     * Produces a variable size {@link Node.Builder.OfDouble}, whose elements
+     * are kept off-heap if {@link DirectSpinedBuffer#ENABLED enabled}.
      *
      * @return a {@code Node.Builder.OfDouble}
      */
     static Node.Builder.OfDouble doubleBuilder() {
-        return new DoubleSpinedNodeBuilder();
+        return DirectSpinedBuffer.ENABLED ? new DirectDoubleSpinedNodeBuilder() : new DoubleSpinedNodeBuilder();
     }
 
     // Parallel evaluation of pipelines to nodes
@@ -627,7 +630,7 @@ final class Nodes {
             return node(array);
         } else {
             Node<P_OUT> node = new CollectorTask.OfRef<>(helper, generator, spliterator).invoke();
-            return flattenTree ? flatten(node, generator) : node;
+            return flattenTree ? flatten(node, generator, helper.getSplitPolicy()) : node;
         }
     }
 
@@ -665,7 +668,7 @@ final class Nodes {
         }
         else {
             Node.OfInt node = new CollectorTask.OfInt<>(helper, spliterator).invoke();
-            return flattenTree ? flattenInt(node) : node;
+            return flattenTree ? flattenInt(node, helper.getSplitPolicy()) : node;
         }
     }
 
@@ -703,7 +706,7 @@ final class Nodes {
         }
         else {
             Node.OfLong node = new CollectorTask.OfLong<>(helper, spliterator).invoke();
-            return flattenTree ? flattenLong(node) : node;
+            return flattenTree ? flattenLong(node, helper.getSplitPolicy()) : node;
         }
     }
 
@@ -741,7 +744,7 @@ final class Nodes {
         }
         else {
             Node.OfDouble node = new CollectorTask.OfDouble<>(helper, spliterator).invoke();
-            return flattenTree ? flattenDouble(node) : node;
+            return flattenTree ? flattenDouble(node, helper.getSplitPolicy()) : node;
         }
     }
 
@@ -763,12 +766,26 @@ final class Nodes {
      * @return a flat {@code Node}
      */
     public static <T> Node<T> flatten(Node<T> node, IntFunction<T[]> generator) {
+        return flatten(node, generator, null);
+    }
+
+    /**
+     * Flatten, in parallel, a {@link Node}, copying subtrees no larger than
+     * the target leaf size suggested by the given split policy directly.
+     *
+     * @param <T> type of elements contained by the node
+     * @param node the node to flatten
+     * @param generator the array factory used to create array instances
+     * @param policy the split policy, or {@code null} for the default
+     * @return a flat {@code Node}
+     */
+    static <T> Node<T> flatten(Node<T> node, IntFunction<T[]> generator, SplitPolicy policy) {
         if (node.getChildCount() > 0) {
             long size = node.count();
             if (size >= MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(BAD_SIZE);
             T[] array = generator.apply((int) size);
-            new ToArrayTask.OfRef<>(node, array, 0).invoke();
+            new ToArrayTask.OfRef<>(node, array, 0, AbstractTask.suggestTargetSize(policy, size)).invoke();
             return node(array);
         } else {
             return node;
@@ -789,12 +806,24 @@ final class Nodes {
      * @return a flat {@code Node.OfInt}
      */
     public static Node.OfInt flattenInt(Node.OfInt node) {
+        return flattenInt(node, null);
+    }
+
+    /**
+     * Flatten, in parallel, a {@link Node.OfInt}, copying subtrees no larger
+     * than the target leaf size suggested by the given split policy directly.
+     *
+     * @param node the node to flatten
+     * @param policy the split policy, or {@code null} for the default
+     * @return a flat {@code Node.OfInt}
+     */
+    static Node.OfInt flattenInt(Node.OfInt node, SplitPolicy policy) {
         if (node.getChildCount() > 0) {
             long size = node.count();
             if (size >= MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(BAD_SIZE);
             int[] array = new int[(int) size];
-            new ToArrayTask.OfInt(node, array, 0).invoke();
+            new ToArrayTask.OfInt(node, array, 0, AbstractTask.suggestTargetSize(policy, size)).invoke();
             return node(array);
         } else {
             return node;
@@ -815,12 +844,24 @@ final class Nodes {
      * @return a flat {@code Node.OfLong}
      */
     public static Node.OfLong flattenLong(Node.OfLong node) {
+        return flattenLong(node, null);
+    }
+
+    /**
+     * Flatten, in parallel, a {@link Node.OfLong}, copying subtrees no larger
+     * than the target leaf size suggested by the given split policy directly.
+     *
+     * @param node the node to flatten
+     * @param policy the split policy, or {@code null} for the default
+     * @return a flat {@code Node.OfLong}
+     */
+    static Node.OfLong flattenLong(Node.OfLong node, SplitPolicy policy) {
         if (node.getChildCount() > 0) {
             long size = node.count();
             if (size >= MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(BAD_SIZE);
             long[] array = new long[(int) size];
-            new ToArrayTask.OfLong(node, array, 0).invoke();
+            new ToArrayTask.OfLong(node, array, 0, AbstractTask.suggestTargetSize(policy, size)).invoke();
             return node(array);
         } else {
             return node;
@@ -841,12 +882,24 @@ final class Nodes {
      * @return a flat {@code Node.OfDouble}
      */
     public static Node.OfDouble flattenDouble(Node.OfDouble node) {
+        return flattenDouble(node, null);
+    }
+
+    /**
+     * Flatten, in parallel, a {@link Node.OfDouble}, copying subtrees no larger
+     * than the target leaf size suggested by the given split policy directly.
+     *
+     * @param node the node to flatten
+     * @param policy the split policy, or {@code null} for the default
+     * @return a flat {@code Node.OfDouble}
+     */
+    static Node.OfDouble flattenDouble(Node.OfDouble node, SplitPolicy policy) {
         if (node.getChildCount() > 0) {
             long size = node.count();
             if (size >= MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(BAD_SIZE);
             double[] array = new double[(int) size];
-            new ToArrayTask.OfDouble(node, array, 0).invoke();
+            new ToArrayTask.OfDouble(node, array, 0, AbstractTask.suggestTargetSize(policy, size)).invoke();
             return node(array);
         } else {
             return node;
@@ -2536,6 +2589,106 @@ final class Nodes {
         }
     }
 
+    private static final class DirectIntSpinedNodeBuilder
+            extends DirectSpinedBuffer.OfInt
+            implements Node.OfInt, Node.Builder.OfInt {
+
+        DirectIntSpinedNodeBuilder() {} // Avoid creation of special accessor
+
+        @Override
+        public Spliterator.OfInt spliterator() {
+            return super.spliterator();
+        }
+
+        @Override
+        public void forEach(IntConsumer consumer) {
+            super.forEach(consumer);
+        }
+
+        //
+        @Override
+        public void begin(long size) {
+            clear();
+            ensureCapacity(size);
+        }
+
+        @Override
+        public void accept(int i) {
+            super.accept(i);
+        }
+
+        @Override
+        public void accept(Integer t) {
+            SinkDefaults.OfInt.accept(this, t);
+        }
+
+        @Override
+        public void end() {
+            // @@@ check begin(size) and size
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            return false;
+        }
+
+        @Override
+        public void accept(long value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(double value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void copyInto(int[] array, int offset) throws IndexOutOfBoundsException {
+            super.copyInto(array, offset);
+        }
+
+        @Override
+        public void copyInto(Integer[] boxed, int offset) {
+            Nodes.OfInt.copyInto(this, boxed, offset);
+        }
+
+        @Override
+        public Node.OfInt truncate(long from, long to,
+                IntFunction<Integer[]> generator) {
+            return Nodes.OfInt.truncate(this, from, to, generator);
+        }
+
+        @Override
+        public int[] asPrimitiveArray() {
+            return super.asPrimitiveArray();
+        }
+
+        @Override
+        public Integer[] asArray(IntFunction<Integer[]> generator) {
+            return Nodes.OfPrimitive.asArray(this, generator);
+        }
+
+        @Override
+        public StreamShape getShape() {
+            return Nodes.OfInt.getShape();
+        }
+
+        @Override
+        public Node.OfInt build() {
+            return this;
+        }
+
+        @Override
+        public int getChildCount() {
+            return Nodes.getChildCount();
+        }
+
+        @Override
+        public java8.util.stream.Node.OfInt getChild(int i) {
+            return Nodes.OfPrimitive.getChild();
+        }
+    }
+
     private static final class LongSpinedNodeBuilder
             extends SpinedBuffer.OfLong
             implements Node.OfLong, Node.Builder.OfLong {
@@ -2635,6 +2788,105 @@ final class Nodes {
         }
     }
 
+    private static final class DirectLongSpinedNodeBuilder
+            extends DirectSpinedBuffer.OfLong
+            implements Node.OfLong, Node.Builder.OfLong {
+
+        DirectLongSpinedNodeBuilder() {} // Avoid creation of special accessor
+
+        @Override
+        public java8.util.stream.Node.OfLong truncate(long from, long to,
+                IntFunction<Long[]> generator) {
+            return Nodes.OfLong.truncate(this, from, to, generator);
+        }
+
+        @Override
+        public Spliterator.OfLong spliterator() {
+            return super.spliterator();
+        }
+
+        @Override
+        public void forEach(LongConsumer consumer) {
+            super.forEach(consumer);
+        }
+
+        @Override
+        public void begin(long size) {
+            clear();
+            ensureCapacity(size);
+        }
+
+        @Override
+        public void accept(long i) {
+            super.accept(i);
+        }
+
+        @Override
+        public void accept(Long t) {
+            SinkDefaults.OfLong.accept(this, t);
+        }
+
+        @Override
+        public void end() {
+            // @@@ check begin(size) and size
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            return false;
+        }
+
+        @Override
+        public void accept(int value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(double value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void copyInto(long[] array, int offset) {
+            super.copyInto(array, offset);
+        }
+
+        @Override
+        public void copyInto(Long[] boxed, int offset) {
+            Nodes.OfLong.copyInto(this, boxed, offset);
+        }
+
+        @Override
+        public long[] asPrimitiveArray() {
+            return super.asPrimitiveArray();
+        }
+
+        @Override
+        public Long[] asArray(IntFunction<Long[]> generator) {
+            return Nodes.OfPrimitive.asArray(this, generator);
+        }
+
+        @Override
+        public StreamShape getShape() {
+            return Nodes.OfLong.getShape();
+        }
+
+        @Override
+        public Node.OfLong build() {
+            return this;
+        }
+
+        @Override
+        public int getChildCount() {
+            return Nodes.getChildCount();
+        }
+
+        @Override
+        public java8.util.stream.Node.OfLong getChild(int i) {
+            return Nodes.OfPrimitive.getChild();
+        }
+    }
+
     private static final class DoubleSpinedNodeBuilder
             extends SpinedBuffer.OfDouble
             implements Node.OfDouble, Node.Builder.OfDouble {
@@ -2734,6 +2986,105 @@ final class Nodes {
         }
     }
 
+    private static final class DirectDoubleSpinedNodeBuilder
+            extends DirectSpinedBuffer.OfDouble
+            implements Node.OfDouble, Node.Builder.OfDouble {
+
+        DirectDoubleSpinedNodeBuilder() {} // Avoid creation of special accessor
+
+        @Override
+        public Node.OfDouble truncate(long from, long to,
+                IntFunction<Double[]> generator) {
+            return Nodes.OfDouble.truncate(this, from, to, generator);
+        }
+
+        @Override
+        public Spliterator.OfDouble spliterator() {
+            return super.spliterator();
+        }
+
+        @Override
+        public void forEach(DoubleConsumer consumer) {
+            super.forEach(consumer);
+        }
+
+        @Override
+        public void begin(long size) {
+            clear();
+            ensureCapacity(size);
+        }
+
+        @Override
+        public void accept(double i) {
+            super.accept(i);
+        }
+
+        @Override
+        public void accept(Double i) {
+            SinkDefaults.OfDouble.accept(this, i);
+        }
+
+        @Override
+        public void end() {
+            // @@@ check begin(size) and size
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            return false;
+        }
+
+        @Override
+        public void accept(int value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(long value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void copyInto(double[] array, int offset) {
+            super.copyInto(array, offset);
+        }
+
+        @Override
+        public void copyInto(Double[] boxed, int offset) {
+            Nodes.OfDouble.copyInto(this, boxed, offset);
+        }
+
+        @Override
+        public double[] asPrimitiveArray() {
+            return super.asPrimitiveArray();
+        }
+
+        @Override
+        public Double[] asArray(IntFunction<Double[]> generator) {
+            return Nodes.OfPrimitive.asArray(this, generator);
+        }
+
+        @Override
+        public Node.OfDouble build() {
+            return this;
+        }
+
+        @Override
+        public int getChildCount() {
+            return Nodes.getChildCount();
+        }
+
+        @Override
+        public java8.util.stream.Node.OfDouble getChild(int i) {
+            return Nodes.OfPrimitive.getChild();
+        }
+
+        @Override
+        public StreamShape getShape() {
+            return Nodes.OfDouble.getShape();
+        }
+    }
+
     /*
      * This and subclasses are not intended to be serializable
      */
@@ -2756,7 +3107,7 @@ final class Nodes {
 
             this.spliterator = spliterator;
             this.helper = helper;
-            this.targetSize = AbstractTask.suggestTargetSize(spliterator.estimateSize());
+            this.targetSize = AbstractTask.suggestTargetSize(helper, spliterator.estimateSize());
             this.offset = 0;
             this.length = arrayLength;
         }
@@ -2783,8 +3134,10 @@ final class Nodes {
         public void compute() {
             SizedCollectorTask<P_IN, P_OUT, T_SINK, K> task = this;
             Spliterator<P_IN> rightSplit = spliterator, leftSplit;
+            int splits = 0;
             while (rightSplit.estimateSize() > task.targetSize &&
                    (leftSplit = rightSplit.trySplit()) != null) {
+                splits++;
                 task.setPendingCount(1);
                 long leftSplitSize = leftSplit.estimateSize();
                 task.makeChild(leftSplit, task.offset, leftSplitSize).fork();
@@ -2795,7 +3148,19 @@ final class Nodes {
 
             @SuppressWarnings("unchecked")
             T_SINK sink = (T_SINK) task;
-            task.helper.wrapAndCopyInto(sink, rightSplit);
+            SplitPolicy policy = helper.getSplitPolicy();
+            if (policy != null && policy.isTimed()) {
+                long start = System.nanoTime();
+                task.helper.wrapAndCopyInto(sink, rightSplit);
+                policy.leafCompleted(task.length, System.nanoTime() - start);
+            }
+            else {
+                task.helper.wrapAndCopyInto(sink, rightSplit);
+            }
+            PipelineRecorder recorder = helper.getRecorder();
+            if (recorder != null) {
+                recorder.leafCompleted(splits);
+            }
             task.propagateCompletion();
         }
 
@@ -2982,16 +3347,20 @@ final class Nodes {
             extends CountedCompleter<Void> {
         protected final T_NODE node;
         protected final int offset;
+        /** Subtrees with at most this many elements are copied directly */
+        protected final long targetSize;
 
-        ToArrayTask(T_NODE node, int offset) {
+        ToArrayTask(T_NODE node, int offset, long targetSize) {
             this.node = node;
             this.offset = offset;
+            this.targetSize = targetSize;
         }
 
         ToArrayTask(K parent, T_NODE node, int offset) {
             super(parent);
             this.node = node;
             this.offset = offset;
+            this.targetSize = parent.targetSize;
         }
 
         abstract void copyNodeToArray();
@@ -3002,7 +3371,7 @@ final class Nodes {
         public void compute() {
             ToArrayTask<T, T_NODE, K> task = this;
             while (true) {
-                if (task.node.getChildCount() == 0) {
+                if (task.node.getChildCount() == 0 || task.node.count() <= task.targetSize) {
                     task.copyNodeToArray();
                     task.propagateCompletion();
                     return;
@@ -3026,8 +3395,8 @@ final class Nodes {
                 extends ToArrayTask<T, Node<T>, OfRef<T>> {
             private final T[] array;
 
-            OfRef(Node<T> node, T[] array, int offset) {
-                super(node, offset);
+            OfRef(Node<T> node, T[] array, int offset, long targetSize) {
+                super(node, offset, targetSize);
                 this.array = array;
             }
 
@@ -3053,8 +3422,8 @@ final class Nodes {
                 extends ToArrayTask<T, T_NODE, OfPrimitive<T, T_CONS, T_ARR, T_SPLITR, T_NODE>> {
             private final T_ARR array;
 
-            OfPrimitive(T_NODE node, T_ARR array, int offset) {
-                super(node, offset);
+            OfPrimitive(T_NODE node, T_ARR array, int offset, long targetSize) {
+                super(node, offset, targetSize);
                 this.array = array;
             }
 
@@ -3076,22 +3445,22 @@ final class Nodes {
 
         private static final class OfInt
                 extends OfPrimitive<Integer, IntConsumer, int[], Spliterator.OfInt, Node.OfInt> {
-            OfInt(Node.OfInt node, int[] array, int offset) {
-                super(node, array, offset);
+            OfInt(Node.OfInt node, int[] array, int offset, long targetSize) {
+                super(node, array, offset, targetSize);
             }
         }
 
         private static final class OfLong
                 extends OfPrimitive<Long, LongConsumer, long[], Spliterator.OfLong, Node.OfLong> {
-            OfLong(Node.OfLong node, long[] array, int offset) {
-                super(node, array, offset);
+            OfLong(Node.OfLong node, long[] array, int offset, long targetSize) {
+                super(node, array, offset, targetSize);
             }
         }
 
         private static final class OfDouble
                 extends OfPrimitive<Double, DoubleConsumer, double[], Spliterator.OfDouble, Node.OfDouble> {
-            OfDouble(Node.OfDouble node, double[] array, int offset) {
-                super(node, array, offset);
+            OfDouble(Node.OfDouble node, double[] array, int offset, long targetSize) {
+                super(node, array, offset, targetSize);
             }
         }
     }
@@ -72,6 +72,33 @@ abstract class PipelineHelper<P_OUT> {
      */
     abstract int getStreamAndOpFlags();
 
+    /**
+     * Gets the split policy that parallel tasks evaluating the pipeline
+     * should consult for their target leaf size.
+     *
+     * @return the split policy, or {@code null} if the default policy applies
+     */
+    abstract SplitPolicy getSplitPolicy();
+
+    /**
+     * Gets the maximum number of elements that a parallel
+     * {@code forEachOrdered} may buffer while their predecessors in
+     * encounter order are still being processed.
+     *
+     * @return the maximum number of buffered elements, or
+     *         {@code Long.MAX_VALUE} if the buffer is not bounded
+     */
+    abstract long getOrderedBufferLimit();
+
+    /**
+     * Gets the recorder of the current evaluation if the pipeline is
+     * instrumented for a {@link PipelineListener}.
+     *
+     * @return the recorder, or {@code null} if the pipeline is not
+     *         instrumented
+     */
+    abstract PipelineRecorder getRecorder();
+
     /**
      * Returns the exact output size of the portion of the output resulting from
      * applying the pipeline stages described by this {@code PipelineHelper} to
@@ -0,0 +1,57 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+/**
+ * A listener that is notified with {@link PipelineStatistics statistics}
+ * about the evaluation of a stream pipeline: the number of elements that
+ * entered and left each stage, the time spent in each stage, the number of
+ * short-circuit cancellations and, for a parallel evaluation, the number of
+ * leaf tasks and splits.
+ *
+ * <p>A {@code PipelineListener} is attached to a stream with
+ * {@link StreamSupport#withListener(BaseStream, PipelineListener)}. Without a
+ * listener a pipeline is not instrumented at all. With a listener every
+ * stage of the pipeline is wrapped by a counting (and, if
+ * {@link #isTimed()}, timing) stage, so the measured pipeline runs slower
+ * than an uninstrumented one; the proportions between the stages are what
+ * the statistics are good for.
+ *
+ * <p>Only evaluations by a terminal operation that completes normally are
+ * reported. Traversals through {@link BaseStream#iterator() iterator()} or
+ * {@link BaseStream#spliterator() spliterator()} are not instrumented.
+ * Implementations must be thread-safe if they are shared between pipelines
+ * that are evaluated concurrently.
+ */
+public abstract class PipelineListener {
+
+    /**
+     * Constructor for use by subclasses.
+     */
+    protected PipelineListener() {
+    }
+
+    /**
+     * Returns {@code true} if the time spent in each stage should be
+     * measured. Measuring takes two {@link System#nanoTime()} calls per
+     * element and stage; if this method returns {@code false} only elements
+     * are counted. The default implementation returns {@code true}.
+     *
+     * @return {@code true} if stage times should be measured
+     */
+    public boolean isTimed() {
+        return true;
+    }
+
+    /**
+     * Reports the statistics of a completed pipeline evaluation. Invoked in
+     * the thread that invoked the terminal operation, after the result has
+     * been computed and before it is returned.
+     *
+     * @param statistics the statistics of the evaluation
+     */
+    public abstract void evaluated(PipelineStatistics statistics);
+}
@@ -0,0 +1,373 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the statistics of a single evaluation of a pipeline that has a
+ * {@link PipelineListener}. The sink of every stage (and the sink of the
+ * terminal operation) is wrapped by a sink that counts, and optionally
+ * times, the elements entering the stage.
+ *
+ * <p>Since the wrapped sinks of a parallel {@code forEach} are shared by
+ * all leaf tasks, the counters are striped by thread rather than kept in
+ * the sinks.
+ */
+final class PipelineRecorder {
+
+    /** The number of longs between two stripes, to keep them on different cache lines */
+    private static final int PAD = 8;
+
+    private final PipelineListener listener;
+    private final boolean parallel;
+    private final boolean timed;
+    private final int stripes;
+    private final long startNanos;
+
+    // The intermediate stages in pipeline order, followed by the terminal operation
+    private final Stage[] stages;
+    private final Map<AbstractPipeline<?, ?, ?>, Stage> stageOf;
+
+    private final AtomicInteger leafTasks = new AtomicInteger();
+    private final AtomicInteger splits = new AtomicInteger();
+    private final AtomicLong peakBuffered = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+
+    /**
+     * @param listener the listener to notify
+     * @param parallel whether the pipeline is evaluated in parallel
+     * @param pipeline the intermediate stages in pipeline order
+     * @param terminal the terminal operation or a description of it
+     */
+    PipelineRecorder(PipelineListener listener, boolean parallel,
+                     List<AbstractPipeline<?, ?, ?>> pipeline, Object terminal) {
+        this.listener = listener;
+        this.parallel = parallel;
+        this.timed = listener.isTimed();
+        this.stripes = parallel
+                ? Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1
+                : 1;
+        this.stages = new Stage[pipeline.size() + 1];
+        this.stageOf = new IdentityHashMap<>();
+        for (int i = 0; i < pipeline.size(); i++) {
+            AbstractPipeline<?, ?, ?> p = pipeline.get(i);
+            stageOf.put(p, stages[i] = new Stage(nameOf(p), stripes));
+        }
+        stages[pipeline.size()] = new Stage(terminal instanceof String
+                ? (String) terminal : nameOf(terminal), stripes);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns a descriptive name of a stage or terminal operation: the name
+     * of the method that created it if it is an anonymous class (which is
+     * the case for most operations of {@code ReferencePipeline} and the
+     * primitive pipelines), otherwise its class name without the package.
+     */
+    static String nameOf(Object op) {
+        Class<?> c = op.getClass();
+        Method m = c.getEnclosingMethod();
+        if (m != null) {
+            String enclosing = m.getDeclaringClass().getSimpleName();
+            return enclosing.endsWith("Pipeline") ? m.getName() : enclosing + "." + m.getName();
+        }
+        String name = c.getName();
+        return name.substring(name.lastIndexOf('.') + 1).replace('$', '.');
+    }
+
+    /**
+     * Wraps the sink of a stage, or of the consumer of the output of the
+     * last stage if {@code stage} is {@code null}, with a sink that records
+     * the elements entering it.
+     *
+     * @param stage the stage whose sink is wrapped, or {@code null} for the
+     *        terminal operation
+     * @param inputShape the shape of the elements entering the sink
+     * @param sink the sink to wrap
+     * @return the recording sink
+     */
+    @SuppressWarnings("unchecked")
+    <T> Sink<T> instrument(AbstractPipeline<?, ?, ?> stage, StreamShape inputShape, Sink<T> sink) {
+        Stage s = (stage == null) ? stages[stages.length - 1] : stageOf.get(stage);
+        if (s == null) {
+            return sink;
+        }
+        switch (inputShape) {
+            case REFERENCE:
+                return new RefStageSink<>(sink, s, timed);
+            case INT_VALUE:
+                return (Sink<T>) new IntStageSink((Sink<Integer>) sink, s, timed);
+            case LONG_VALUE:
+                return (Sink<T>) new LongStageSink((Sink<Long>) sink, s, timed);
+            case DOUBLE_VALUE:
+                return (Sink<T>) new DoubleStageSink((Sink<Double>) sink, s, timed);
+            default:
+                throw new IllegalStateException("unknown shape: " + inputShape);
+        }
+    }
+
+    /**
+     * Records a leaf task of a parallel evaluation.
+     *
+     * @param splits the number of splits the leaf task (and the tasks it
+     *        continued) performed before evaluating its part of the source
+     */
+    void leafCompleted(int splits) {
+        leafTasks.incrementAndGet();
+        if (splits > 0) {
+            this.splits.addAndGet(splits);
+        }
+    }
+
+    /**
+     * Records the number of elements currently buffered by an ordered
+     * parallel evaluation.
+     *
+     * @param buffered the number of buffered elements
+     */
+    void buffered(long buffered) {
+        long peak;
+        while ((peak = peakBuffered.get()) < buffered
+                && !peakBuffered.compareAndSet(peak, buffered)) {
+        }
+    }
+
+    /**
+     * Records the elements traversed by a leaf task of a parallel
+     * short-circuiting evaluation that stopped early because the result was
+     * found elsewhere.
+     *
+     * @param elements the number of elements the leaf task traversed
+     */
+    void wasted(long elements) {
+        wasted.addAndGet(elements);
+    }
+
+    /**
+     * Reports the statistics to the listener.
+     */
+    void evaluated() {
+        long elapsed = System.nanoTime() - startNanos;
+        PipelineStatistics.Stage[] result = new PipelineStatistics.Stage[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            Stage s = stages[i];
+            boolean last = (i == stages.length - 1);
+            long nanos = s.nanos.sum();
+            long selfNanos = last ? nanos : nanos - stages[i + 1].nanos.sum();
+            result[i] = new PipelineStatistics.Stage(s.name, s.elements.sum(),
+                    last ? -1L : stages[i + 1].elements.sum(),
+                    nanos, Math.max(0L, selfNanos), s.cancellations.get());
+        }
+        listener.evaluated(new PipelineStatistics(parallel, elapsed, leafTasks.get(),
+                splits.get(), peakBuffered.get(), wasted.get(), result));
+    }
+
+    /**
+     * A sum that is updated concurrently, kept in one cell per stripe of
+     * threads.
+     */
+    static final class Counter {
+        private final AtomicLongArray cells;
+        private final int mask;
+
+        Counter(int stripes) {
+            cells = new AtomicLongArray(stripes * PAD);
+            mask = stripes - 1;
+        }
+
+        void add(long x) {
+            cells.getAndAdd(((int) Thread.currentThread().getId() & mask) * PAD, x);
+        }
+
+        long sum() {
+            long sum = 0L;
+            for (int i = 0; i < cells.length(); i += PAD) {
+                sum += cells.get(i);
+            }
+            return sum;
+        }
+    }
+
+    /** The counters of a stage */
+    static final class Stage {
+        final String name;
+        final Counter elements;
+        final Counter nanos;
+        final AtomicLong cancellations = new AtomicLong();
+
+        Stage(String name, int stripes) {
+            this.name = name;
+            this.elements = new Counter(stripes);
+            this.nanos = new Counter(stripes);
+        }
+    }
+
+    /**
+     * Base class for the sinks recording the elements entering a stage.
+     */
+    private abstract static class StageSink<T> implements Sink<T> {
+        final Sink<T> downstream;
+        final Stage stage;
+        final boolean timed;
+
+        StageSink(Sink<T> downstream, Stage stage, boolean timed) {
+            this.downstream = downstream;
+            this.stage = stage;
+            this.timed = timed;
+        }
+
+        @Override
+        public void begin(long size) {
+            if (timed) {
+                long start = System.nanoTime();
+                downstream.begin(size);
+                stage.nanos.add(System.nanoTime() - start);
+            }
+            else {
+                downstream.begin(size);
+            }
+        }
+
+        @Override
+        public void end() {
+            if (timed) {
+                long start = System.nanoTime();
+                downstream.end();
+                stage.nanos.add(System.nanoTime() - start);
+            }
+            else {
+                downstream.end();
+            }
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            boolean cancel = downstream.cancellationRequested();
+            if (cancel) {
+                stage.cancellations.incrementAndGet();
+            }
+            return cancel;
+        }
+
+        @Override
+        public void accept(T t) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(int value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(long value) {
+            SinkDefaults.reject();
+        }
+
+        @Override
+        public void accept(double value) {
+            SinkDefaults.reject();
+        }
+    }
+
+    private static final class RefStageSink<T> extends StageSink<T> {
+        RefStageSink(Sink<T> downstream, Stage stage, boolean timed) {
+            super(downstream, stage, timed);
+        }
+
+        @Override
+        public void accept(T t) {
+            stage.elements.add(1L);
+            if (timed) {
+                long start = System.nanoTime();
+                downstream.accept(t);
+                stage.nanos.add(System.nanoTime() - start);
+            }
+            else {
+                downstream.accept(t);
+            }
+        }
+    }
+
+    private static final class IntStageSink extends StageSink<Integer> implements Sink.OfInt {
+        IntStageSink(Sink<Integer> downstream, Stage stage, boolean timed) {
+            super(downstream, stage, timed);
+        }
+
+        @Override
+        public void accept(int t) {
+            stage.elements.add(1L);
+            if (timed) {
+                long start = System.nanoTime();
+                downstream.accept(t);
+                stage.nanos.add(System.nanoTime() - start);
+            }
+            else {
+                downstream.accept(t);
+            }
+        }
+
+        @Override
+        public void accept(Integer i) {
+            SinkDefaults.OfInt.accept(this, i);
+        }
+    }
+
+    private static final class LongStageSink extends StageSink<Long> implements Sink.OfLong {
+        LongStageSink(Sink<Long> downstream, Stage stage, boolean timed) {
+            super(downstream, stage, timed);
+        }
+
+        @Override
+        public void accept(long t) {
+            stage.elements.add(1L);
+            if (timed) {
+                long start = System.nanoTime();
+                downstream.accept(t);
+                stage.nanos.add(System.nanoTime() - start);
+            }
+            else {
+                downstream.accept(t);
+            }
+        }
+
+        @Override
+        public void accept(Long i) {
+            SinkDefaults.OfLong.accept(this, i);
+        }
+    }
+
+    private static final class DoubleStageSink extends StageSink<Double> implements Sink.OfDouble {
+        DoubleStageSink(Sink<Double> downstream, Stage stage, boolean timed) {
+            super(downstream, stage, timed);
+        }
+
+        @Override
+        public void accept(double t) {
+            stage.elements.add(1L);
+            if (timed) {
+                long start = System.nanoTime();
+                downstream.accept(t);
+                stage.nanos.add(System.nanoTime() - start);
+            }
+            else {
+                downstream.accept(t);
+            }
+        }
+
+        @Override
+        public void accept(Double i) {
+            SinkDefaults.OfDouble.accept(this, i);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics about the evaluation of a stream pipeline, as reported to a
+ * {@link PipelineListener}.
+ *
+ * <p>The {@link #stages() stages} are listed in pipeline order, from the
+ * first intermediate operation to the terminal operation. Element counts
+ * are exact. Times are the sum over all threads of the time spent in the
+ * {@code Sink} of a stage and all stages downstream of it, so the time spent
+ * in a stage itself is its {@link Stage#nanos() nanos} minus those of the
+ * next stage (see {@link Stage#selfNanos()}).
+ *
+ * <p>In a parallel evaluation a stateful operation (such as
+ * {@code sorted()}) that acts as a barrier collects its input in the leaf
+ * tasks and pushes its output only after all input has been collected. The
+ * work it does in between, for example merging sorted partitions, is not
+ * part of any stage's time.
+ */
+public final class PipelineStatistics {
+
+    /**
+     * Statistics of a single stage of a stream pipeline.
+     */
+    public static final class Stage {
+        private final String name;
+        private final long elementsIn;
+        private final long elementsOut;
+        private final long nanos;
+        private final long selfNanos;
+        private final long cancellations;
+
+        Stage(String name, long elementsIn, long elementsOut, long nanos,
+              long selfNanos, long cancellations) {
+            this.name = name;
+            this.elementsIn = elementsIn;
+            this.elementsOut = elementsOut;
+            this.nanos = nanos;
+            this.selfNanos = selfNanos;
+            this.cancellations = cancellations;
+        }
+
+        /**
+         * Returns a descriptive name of the operation of this stage, usually
+         * the name of the {@code Stream} method that created it.
+         *
+         * @return the name of the operation
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the number of elements that entered this stage.
+         *
+         * @return the number of input elements
+         */
+        public long elementsIn() {
+            return elementsIn;
+        }
+
+        /**
+         * Returns the number of elements that this stage passed on to the
+         * next stage, or {@code -1} for the terminal operation.
+         *
+         * @return the number of output elements
+         */
+        public long elementsOut() {
+            return elementsOut;
+        }
+
+        /**
+         * Returns the time, in nanoseconds, spent in this stage and in all
+         * stages downstream of it, or {@code 0} if the evaluation was not
+         * timed.
+         *
+         * @return the inclusive time of this stage
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the time, in nanoseconds, spent in this stage excluding
+         * the stages downstream of it, or {@code 0} if the evaluation was not
+         * timed.
+         *
+         * @return the exclusive time of this stage
+         */
+        public long selfNanos() {
+            return selfNanos;
+        }
+
+        /**
+         * Returns how often this stage answered a cancellation check with
+         * {@code true}, that is, how often a traversal was cut short on
+         * behalf of this stage or a stage downstream of it.
+         *
+         * @return the number of short-circuit cancellations
+         */
+        public long cancellations() {
+            return cancellations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s in=%d out=%d nanos=%d self=%d cancellations=%d",
+                    name, elementsIn, elementsOut, nanos, selfNanos, cancellations);
+        }
+    }
+
+    private final boolean parallel;
+    private final long elapsedNanos;
+    private final int leafTasks;
+    private final int splits;
+    private final long peakBufferedElements;
+    private final long wastedElements;
+    private final List<Stage> stages;
+
+    PipelineStatistics(boolean parallel, long elapsedNanos, int leafTasks, int splits,
+                       long peakBufferedElements, long wastedElements, Stage[] stages) {
+        this.parallel = parallel;
+        this.elapsedNanos = elapsedNanos;
+        this.leafTasks = leafTasks;
+        this.splits = splits;
+        this.peakBufferedElements = peakBufferedElements;
+        this.wastedElements = wastedElements;
+        this.stages = Collections.unmodifiableList(Arrays.asList(stages));
+    }
+
+    /**
+     * Returns {@code true} if the pipeline was evaluated in parallel.
+     *
+     * @return {@code true} for a parallel evaluation
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Returns the elapsed time of the terminal operation in nanoseconds.
+     *
+     * @return the elapsed time of the evaluation
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of leaf tasks of a parallel evaluation, that is,
+     * the number of tasks that traversed a part of the source, or {@code 0}
+     * for a sequential evaluation.
+     *
+     * @return the number of leaf tasks
+     */
+    public int leafTasks() {
+        return leafTasks;
+    }
+
+    /**
+     * Returns the number of times the source spliterator (or a part of it)
+     * was split in a parallel evaluation.
+     *
+     * @return the number of splits
+     */
+    public int splits() {
+        return splits;
+    }
+
+    /**
+     * Returns the largest number of elements that a parallel
+     * {@code forEachOrdered} held in memory at the same time because the
+     * elements preceding them in encounter order had not been processed
+     * yet, or {@code 0} for other evaluations.
+     *
+     * @return the peak number of buffered elements
+     * @see StreamSupport#withOrderedBufferLimit(BaseStream, long)
+     */
+    public long peakBufferedElements() {
+        return peakBufferedElements;
+    }
+
+    /**
+     * Returns the number of elements that the leaf tasks of a parallel
+     * short-circuiting operation, such as {@code findFirst} or
+     * {@code limit}, traversed in vain: the elements seen by leaf tasks that
+     * stopped early because the result had been found elsewhere, or
+     * {@code 0} for other evaluations.
+     *
+     * @return the number of elements traversed by canceled leaf tasks
+     */
+    public long wastedElements() {
+        return wastedElements;
+    }
+
+    /**
+     * Returns the statistics of the stages of the pipeline, in pipeline
+     * order, ending with the terminal operation.
+     *
+     * @return an unmodifiable list of the stage statistics
+     */
+    public List<Stage> stages() {
+        return stages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(parallel ? "parallel" : "sequential")
+          .append(" pipeline: elapsed=").append(elapsedNanos)
+          .append(" leafTasks=").append(leafTasks)
+          .append(" splits=").append(splits);
+        if (peakBufferedElements > 0L) {
+            sb.append(" peakBuffered=").append(peakBufferedElements);
+        }
+        if (wastedElements > 0L) {
+            sb.append(" wasted=").append(wastedElements);
+        }
+        for (Stage stage : stages) {
+            sb.append("\n  ").append(stage);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Hash maps from primitive keys to {@code long} values, used by the
+ * primitive grouping collectors to count or sum without boxing.
+ *
+ * <p>The keys are held in a {@link PrimitiveHashSet}, the values in an
+ * array that runs parallel to the insertion-ordered elements of that set.
+ * Towards users a map is an unmodifiable {@code Map} whose entries iterate
+ * in insertion order; keys and values are only boxed when they are read
+ * through the {@code Map} interface.
+ *
+ * @param <K> the boxed type of the keys
+ */
+abstract class PrimitiveHashMap<K> extends AbstractMap<K, Long> {
+
+    /** The values, indexed like the elements of the key set */
+    long[] values;
+
+    private Set<Entry<K, Long>> entrySet;
+
+    /**
+     * Returns the key at the given index in insertion order.
+     */
+    abstract K keyAt(int index);
+
+    /**
+     * Returns the index of the key, or {@code -1} if the key is not present
+     * or not of the key type of this map.
+     */
+    abstract int indexOfKey(Object key);
+
+    /**
+     * Returns the index of a new or existing key after ensuring that the
+     * value array covers it.
+     */
+    final int valueIndex(int index, int capacity) {
+        if (index == values.length) {
+            values = Arrays.copyOf(values, capacity);
+        }
+        return index;
+    }
+
+    @Override
+    public final Long get(Object key) {
+        int index = indexOfKey(key);
+        return (index < 0) ? null : values[index];
+    }
+
+    @Override
+    public final boolean containsKey(Object key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    @Override
+    public final Set<Entry<K, Long>> entrySet() {
+        Set<Entry<K, Long>> es = entrySet;
+        if (es == null) {
+            es = entrySet = new AbstractSet<Entry<K, Long>>() {
+                @Override
+                public Iterator<Entry<K, Long>> iterator() {
+                    return new Iterator<Entry<K, Long>>() {
+                        int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size();
+                        }
+
+                        @Override
+                        public Entry<K, Long> next() {
+                            if (next >= size()) {
+                                throw new NoSuchElementException();
+                            }
+                            int index = next++;
+                            return new SimpleImmutableEntry<>(keyAt(index), values[index]);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return PrimitiveHashMap.this.size();
+                }
+            };
+        }
+        return es;
+    }
+
+    /** A hash map from {@code int} keys to {@code long} values */
+    static final class OfInt extends PrimitiveHashMap<Integer> {
+        private final PrimitiveHashSet.OfInt keys = new PrimitiveHashSet.OfInt(-1L);
+
+        OfInt() {
+            values = new long[keys.elements.length];
+        }
+
+        /**
+         * Adds {@code delta} to the value of the key, which is {@code 0} if
+         * the key is not yet present.
+         *
+         * @param key the key
+         * @param delta the value to add
+         */
+        void add(int key, long delta) {
+            int index = valueIndex(keys.insert(key), keys.elements.length);
+            values[index] += delta;
+        }
+
+        /**
+         * Adds the values of the other map to the values of this map, or
+         * the other way round if the other map is larger.
+         *
+         * @param other the map to merge with this map
+         * @return the merged map, either this map or {@code other}
+         */
+        OfInt merge(OfInt other) {
+            if (other.size() > size()) {
+                return other.merge(this);
+            }
+            int[] ks = other.keys.elements;
+            long[] vs = other.values;
+            for (int i = 0, n = other.size(); i < n; i++) {
+                add(ks[i], vs[i]);
+            }
+            return this;
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        Integer keyAt(int index) {
+            return keys.elements[index];
+        }
+
+        @Override
+        int indexOfKey(Object key) {
+            return (key instanceof Integer) ? keys.indexOf(((Integer) key).intValue()) : -1;
+        }
+    }
+
+    /** A hash map from {@code long} keys to {@code long} values */
+    static final class OfLong extends PrimitiveHashMap<Long> {
+        private final PrimitiveHashSet.OfLong keys = new PrimitiveHashSet.OfLong(-1L);
+
+        OfLong() {
+            values = new long[keys.elements.length];
+        }
+
+        /**
+         * Adds {@code delta} to the value of the key, which is {@code 0} if
+         * the key is not yet present.
+         *
+         * @param key the key
+         * @param delta the value to add
+         */
+        void add(long key, long delta) {
+            int index = valueIndex(keys.insert(key), keys.elements.length);
+            values[index] += delta;
+        }
+
+        /**
+         * Adds the values of the other map to the values of this map, or
+         * the other way round if the other map is larger.
+         *
+         * @param other the map to merge with this map
+         * @return the merged map, either this map or {@code other}
+         */
+        OfLong merge(OfLong other) {
+            if (other.size() > size()) {
+                return other.merge(this);
+            }
+            long[] ks = other.keys.elements;
+            long[] vs = other.values;
+            for (int i = 0, n = other.size(); i < n; i++) {
+                add(ks[i], vs[i]);
+            }
+            return this;
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        Long keyAt(int index) {
+            return keys.elements[index];
+        }
+
+        @Override
+        int indexOfKey(Object key) {
+            return (key instanceof Long) ? keys.indexOf(((Long) key).longValue()) : -1;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash sets of primitive values, used to deduplicate
+ * primitive streams without boxing.
+ *
+ * <p>The elements are kept in insertion order in a dense array, while the
+ * hash table (probed linearly) only holds indices into that array. This
+ * allows a set to be turned into an array of its elements, in encounter
+ * order, by a single copy.
+ *
+ * <p>The sets are not thread-safe, except for the {@code Striped} variants
+ * which guard a number of partitions with their own locks.
+ */
+abstract class PrimitiveHashSet {
+
+    /** The minimum capacity of the hash table */
+    static final int MIN_CAPACITY = 16;
+
+    /** The maximum capacity of the hash table */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum capacity of a table that is presized from a size
+     * estimate. An estimate is an upper bound of the number of distinct
+     * elements, so larger tables are only allocated on demand.
+     */
+    static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    /** Indices (plus 1) of the elements, 0 marks an empty slot */
+    int[] table;
+
+    /** The number of elements */
+    int size;
+
+    /** The size at which the table is grown, 3/4 of its capacity */
+    int threshold;
+
+    PrimitiveHashSet(long expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        table = new int[capacity];
+        threshold = capacity - (capacity >>> 2);
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return the number of elements
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * Returns the capacity of a table that can hold {@code expectedSize}
+     * elements without being grown, bounded by {@link #MAX_INITIAL_CAPACITY}.
+     */
+    static int tableSizeFor(long expectedSize) {
+        int capacity = MIN_CAPACITY;
+        long max = Math.min(expectedSize, MAX_INITIAL_CAPACITY - (MAX_INITIAL_CAPACITY >>> 2));
+        while (capacity - (capacity >>> 2) < max) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Doubles the capacity of the table and re-inserts the indices of all
+     * elements.
+     */
+    final void grow() {
+        int capacity = table.length;
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalArgumentException(Nodes.BAD_SIZE);
+        }
+        int newCapacity = capacity << 1;
+        int[] tab = new int[newCapacity];
+        int mask = newCapacity - 1;
+        for (int index = 0; index < size; index++) {
+            int i = hashAt(index) & mask;
+            while (tab[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            tab[i] = index + 1;
+        }
+        table = tab;
+        threshold = newCapacity - (newCapacity >>> 2);
+        resizeElements(threshold);
+    }
+
+    /**
+     * Returns the hash of the element at the given index.
+     */
+    abstract int hashAt(int index);
+
+    /**
+     * Resizes the element array to the given length.
+     */
+    abstract void resizeElements(int length);
+
+    /**
+     * Returns the number of stripes of a striped set, or of partitions of a
+     * partitioned set, such that the threads of the executing pool rarely
+     * contend for the same stripe and have enough partitions to balance the
+     * load.
+     */
+    static int stripeCount() {
+        int n = (AbstractTask.getPoolParallelism() + 1) << 2;
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /** A hash set of {@code int} values */
+    static final class OfInt extends PrimitiveHashSet {
+        /** The elements in insertion order */
+        int[] elements;
+
+        OfInt(long expectedSize) {
+            super(expectedSize);
+            elements = new int[threshold];
+        }
+
+        /**
+         * Adds the value to this set if it is not already present.
+         *
+         * @param value the value to add
+         * @return {@code true} if the value was added
+         */
+        boolean add(int value) {
+            int n = size;
+            return insert(value) == n;
+        }
+
+        /**
+         * Adds the value to this set if it is not already present and
+         * returns its index in insertion order.
+         *
+         * @param value the value to add
+         * @return the index of the value
+         */
+        int insert(int value) {
+            int h = hash(value);
+            int[] tab = table;
+            int mask = tab.length - 1;
+            int i = h & mask;
+            for (int e; (e = tab[i]) != 0; i = (i + 1) & mask) {
+                if (elements[e - 1] == value) {
+                    return e - 1;
+                }
+            }
+            if (size == threshold) {
+                grow();
+                tab = table;
+                mask = tab.length - 1;
+                i = h & mask;
+                while (tab[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+            }
+            elements[size] = value;
+            tab[i] = ++size;
+            return size - 1;
+        }
+
+        /**
+         * Returns the index of the value in insertion order.
+         *
+         * @param value the value to look up
+         * @return the index of the value, or {@code -1} if it is not present
+         */
+        int indexOf(int value) {
+            int[] tab = table;
+            int mask = tab.length - 1;
+            for (int i = hash(value) & mask, e; (e = tab[i]) != 0; i = (i + 1) & mask) {
+                if (elements[e - 1] == value) {
+                    return e - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds all values of the other set, in their insertion order.
+         *
+         * @param other the set whose values are added
+         * @return this set
+         */
+        OfInt addAll(OfInt other) {
+            int[] values = other.elements;
+            for (int i = 0, n = other.size; i < n; i++) {
+                add(values[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Returns the values of this set in insertion order.
+         *
+         * @return an array of the values
+         */
+        int[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+
+        @Override
+        int hashAt(int index) {
+            return hash(elements[index]);
+        }
+
+        @Override
+        void resizeElements(int length) {
+            elements = Arrays.copyOf(elements, length);
+        }
+    }
+
+    /** A hash set of {@code long} values */
+    static final class OfLong extends PrimitiveHashSet {
+        /** The elements in insertion order */
+        long[] elements;
+
+        OfLong(long expectedSize) {
+            super(expectedSize);
+            elements = new long[threshold];
+        }
+
+        /**
+         * Adds the value to this set if it is not already present.
+         *
+         * @param value the value to add
+         * @return {@code true} if the value was added
+         */
+        boolean add(long value) {
+            int n = size;
+            return insert(value) == n;
+        }
+
+        /**
+         * Adds the value to this set if it is not already present and
+         * returns its index in insertion order.
+         *
+         * @param value the value to add
+         * @return the index of the value
+         */
+        int insert(long value) {
+            int h = hash(value);
+            int[] tab = table;
+            int mask = tab.length - 1;
+            int i = h & mask;
+            for (int e; (e = tab[i]) != 0; i = (i + 1) & mask) {
+                if (elements[e - 1] == value) {
+                    return e - 1;
+                }
+            }
+            if (size == threshold) {
+                grow();
+                tab = table;
+                mask = tab.length - 1;
+                i = h & mask;
+                while (tab[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+            }
+            elements[size] = value;
+            tab[i] = ++size;
+            return size - 1;
+        }
+
+        /**
+         * Returns the index of the value in insertion order.
+         *
+         * @param value the value to look up
+         * @return the index of the value, or {@code -1} if it is not present
+         */
+        int indexOf(long value) {
+            int[] tab = table;
+            int mask = tab.length - 1;
+            for (int i = hash(value) & mask, e; (e = tab[i]) != 0; i = (i + 1) & mask) {
+                if (elements[e - 1] == value) {
+                    return e - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds all values of the other set, in their insertion order.
+         *
+         * @param other the set whose values are added
+         * @return this set
+         */
+        OfLong addAll(OfLong other) {
+            long[] values = other.elements;
+            for (int i = 0, n = other.size; i < n; i++) {
+                add(values[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Returns the values of this set in insertion order.
+         *
+         * @return an array of the values
+         */
+        long[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+
+        @Override
+        int hashAt(int index) {
+            return hash(elements[index]);
+        }
+
+        @Override
+        void resizeElements(int length) {
+            elements = Arrays.copyOf(elements, length);
+        }
+    }
+
+    /**
+     * A thread-safe set of {@code int} values, partitioned by hash into a
+     * power of two number of stripes that are locked individually.
+     */
+    static final class StripedOfInt {
+        private final OfInt[] stripes;
+        private final int shift;
+
+        StripedOfInt(int stripeCount, long expectedSize) {
+            stripes = new OfInt[stripeCount];
+            long stripeSize = expectedSize < 0L ? -1L : expectedSize / stripeCount;
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new OfInt(stripeSize);
+            }
+            // the stripe is selected by the high bits of the hash, the
+            // slot within a stripe by the low bits
+            shift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+        }
+
+        boolean add(int value) {
+            OfInt stripe = stripes.length == 1 ? stripes[0] : stripes[hash(value) >>> shift];
+            synchronized (stripe) {
+                return stripe.add(value);
+            }
+        }
+    }
+
+    /**
+     * A thread-safe set of {@code long} values, partitioned by hash into a
+     * power of two number of stripes that are locked individually.
+     */
+    static final class StripedOfLong {
+        private final OfLong[] stripes;
+        private final int shift;
+
+        StripedOfLong(int stripeCount, long expectedSize) {
+            stripes = new OfLong[stripeCount];
+            long stripeSize = expectedSize < 0L ? -1L : expectedSize / stripeCount;
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new OfLong(stripeSize);
+            }
+            // the stripe is selected by the high bits of the hash, the
+            // slot within a stripe by the low bits
+            shift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+        }
+
+        boolean add(long value) {
+            OfLong stripe = stripes.length == 1 ? stripes[0] : stripes[hash(value) >>> shift];
+            synchronized (stripe) {
+                return stripe.add(value);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java8.util.function.BinaryOperator;
 import java8.util.function.DoubleBinaryOperator;
 import java8.util.function.IntBinaryOperator;
 import java8.util.function.LongBinaryOperator;
+import java8.util.function.LongFunction;
 import java8.util.function.ObjDoubleConsumer;
 import java8.util.function.ObjIntConsumer;
 import java8.util.function.ObjLongConsumer;
@@ -205,11 +206,14 @@ final class ReduceOps {
         Supplier<I> supplier = Objects.requireNonNull(collector).supplier();
         BiConsumer<I, ? super T> accumulator = collector.accumulator();
         BinaryOperator<I> combiner = collector.combiner();
+        LongFunction<I> sizedSupplier = Collectors.sizedSupplier(collector);
         class ReducingSink extends Box<I>
                 implements AccumulatingSink<T, I, ReducingSink> {
             @Override
             public void begin(long size) {
-                state = supplier.get();
+                state = (sizedSupplier != null && size >= 0)
+                        ? sizedSupplier.apply(size)
+                        : supplier.get();
             }
 
             @Override
@@ -690,6 +690,14 @@ abstract class ReferencePipeline<P_IN, P_OUT>
     @Override
     @SuppressWarnings("unchecked")
     public final <R, A> R collect(Collector<? super P_OUT, A, R> collector) {
+        Function<Object[], R> arrayFinisher;
+        if ((isParallel() || Collectors.wrapsArray(collector))
+                && StreamOpFlag.SIZED.isKnown(getStreamAndOpFlags())
+                && (arrayFinisher = Collectors.arrayFinisher(collector)) != null) {
+            // The leaves write into one array rather than into lists that are combined,
+            // and the exactly sized array of a sequential stream needs no copy
+            return arrayFinisher.apply(toArray());
+        }
         A container;
         if (isParallel()
                 && (collector.characteristics().contains(Collector.Characteristics.CONCURRENT))
@@ -112,8 +112,8 @@ final class SliceOps {
             throw new IllegalArgumentException("Skip must be non-negative: " + skip);
         long normalizedLimit = limit >= 0L ? limit : Long.MAX_VALUE;
 
-        return new ReferencePipeline.StatefulOp<T, T>(upstream, StreamShape.REFERENCE,
-                                                      flags(limit)) {
+        Stream<T> slice = new ReferencePipeline.StatefulOp<T, T>(upstream, StreamShape.REFERENCE,
+                                                                 flags(limit)) {
 
             @Override
             long exactOutputSize(long previousSize) {
@@ -218,6 +218,9 @@ final class SliceOps {
                 };
             }
         };
+        // upstream, if sorted, is now consumed by the slice only
+        SortedOps.limitHint(upstream, skip, limit);
+        return slice;
     }
 
     /**
@@ -235,8 +238,8 @@ final class SliceOps {
             throw new IllegalArgumentException("Skip must be non-negative: " + skip);
         long normalizedLimit = limit >= 0L ? limit : Long.MAX_VALUE;
 
-        return new IntPipeline.StatefulOp<Integer>(upstream, StreamShape.INT_VALUE,
-                                                   flags(limit)) {
+        IntStream slice = new IntPipeline.StatefulOp<Integer>(upstream, StreamShape.INT_VALUE,
+                                                              flags(limit)) {
 
             @Override
             long exactOutputSize(long previousSize) {
@@ -334,6 +337,9 @@ final class SliceOps {
                 };
             }
         };
+        // upstream, if sorted, is now consumed by the slice only
+        SortedOps.limitHint(upstream, skip, limit);
+        return slice;
     }
 
     /**
@@ -351,8 +357,8 @@ final class SliceOps {
             throw new IllegalArgumentException("Skip must be non-negative: " + skip);
         long normalizedLimit = limit >= 0L ? limit : Long.MAX_VALUE;
 
-        return new LongPipeline.StatefulOp<Long>(upstream, StreamShape.LONG_VALUE,
-                                                 flags(limit)) {
+        LongStream slice = new LongPipeline.StatefulOp<Long>(upstream, StreamShape.LONG_VALUE,
+                                                             flags(limit)) {
 
             @Override
             long exactOutputSize(long previousSize) {
@@ -450,6 +456,9 @@ final class SliceOps {
                 };
             }
         };
+        // upstream, if sorted, is now consumed by the slice only
+        SortedOps.limitHint(upstream, skip, limit);
+        return slice;
     }
 
     /**
@@ -467,8 +476,8 @@ final class SliceOps {
             throw new IllegalArgumentException("Skip must be non-negative: " + skip);
         long normalizedLimit = limit >= 0L ? limit : Long.MAX_VALUE;
 
-        return new DoublePipeline.StatefulOp<Double>(upstream, StreamShape.DOUBLE_VALUE,
-                                                     flags(limit)) {
+        DoubleStream slice = new DoublePipeline.StatefulOp<Double>(upstream, StreamShape.DOUBLE_VALUE,
+                                                                   flags(limit)) {
 
             @Override
             long exactOutputSize(long previousSize) {
@@ -566,6 +575,9 @@ final class SliceOps {
                 };
             }
         };
+        // upstream, if sorted, is now consumed by the slice only
+        SortedOps.limitHint(upstream, skip, limit);
+        return slice;
     }
 
     private static int flags(long limit) {
@@ -618,6 +630,11 @@ final class SliceOps {
             return Nodes.emptyNode(op.getOutputShape());
         }
 
+        @Override
+        protected boolean isLeftBiased() {
+            return targetSize >= 0L;
+        }
+
         @Override
         protected final Node<P_OUT> doLeaf() {
             if (isRoot()) {
@@ -634,8 +651,7 @@ final class SliceOps {
             else {
                 Node.Builder<P_OUT> nb = op.makeNodeBuilder(-1, generator);
                 if (targetOffset == 0) { // limit only
-                    Sink<P_OUT> opSink = op.opWrapSink(helper.getStreamAndOpFlags(), nb);
-                    helper.copyIntoWithCancel(helper.wrapSink(opSink), spliterator);
+                    copyIntoWithEarlyExit(op.opWrapSink(helper.getStreamAndOpFlags(), nb));
                 }
                 else {
                     helper.wrapAndCopyInto(nb, spliterator);
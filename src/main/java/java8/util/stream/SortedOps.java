@@ -32,6 +32,8 @@ import java8.lang.Iterables;
 import java8.util.Comparators;
 import java8.util.Lists;
 import java8.util.Objects;
+import java8.util.concurrent.CountedCompleter;
+import java8.util.concurrent.RecursiveAction;
 import java8.util.function.IntFunction;
 import java8.util.Spliterator;
 
@@ -96,6 +98,95 @@ final class SortedOps {
         return new OfDouble(upstream);
     }
 
+    /**
+     * The largest number of leading elements for which a "sorted" operation
+     * switches to top-k sorting when followed by a limit.
+     */
+    private static final long MAX_TOP_K = Nodes.MAX_ARRAY_SIZE >> 2;
+
+    /**
+     * Informs a "sorted" operation that the slice operation following it
+     * only consumes its first {@code skip + limit} elements, as is the case
+     * for {@code sorted().limit(limit)}. The "sorted" operation then only
+     * needs to retain the smallest {@code skip + limit} elements instead of
+     * buffering and sorting all of them. Has no effect if {@code upstream} is
+     * neither a "sorted" operation nor a skip-only slice operation directly
+     * following one.
+     *
+     * <p>A skip-only slice operation directly following a "sorted" operation
+     * is remembered by the "sorted" operation, so that a limit appended to it,
+     * as in {@code sorted().skip(skip).limit(limit)}, still reaches the
+     * "sorted" operation.
+     *
+     * @param upstream the stage which the slice operation is appended to
+     * @param skip the number of elements the slice operation skips
+     * @param limit the maximum number of elements the slice operation
+     *        passes on, or -1 if no limit is imposed
+     */
+    static void limitHint(AbstractPipeline<?, ?, ?> upstream, long skip, long limit) {
+        if (limit < 0L) {
+            setSkip(upstream, skip);
+            return;
+        }
+        AbstractPipeline<?, ?, ?> previous = upstream.getPreviousStage();
+        long skipped = getSkip(previous);
+        if (skipped >= 0L) {
+            // upstream is the skip-only slice directly following "sorted"
+            if (skipped > MAX_TOP_K) {
+                return;
+            }
+            upstream = previous;
+            skip += skipped;
+        }
+        if (limit == 0L || skip > MAX_TOP_K - limit) {
+            return;
+        }
+        int k = (int) (skip + limit);
+        if (upstream instanceof OfRef) {
+            ((OfRef<?>) upstream).limit = k;
+        }
+        else if (upstream instanceof OfInt) {
+            ((OfInt) upstream).limit = k;
+        }
+        else if (upstream instanceof OfLong) {
+            ((OfLong) upstream).limit = k;
+        }
+        else if (upstream instanceof OfDouble) {
+            ((OfDouble) upstream).limit = k;
+        }
+    }
+
+    private static void setSkip(AbstractPipeline<?, ?, ?> stage, long skip) {
+        if (stage instanceof OfRef) {
+            ((OfRef<?>) stage).skip = skip;
+        }
+        else if (stage instanceof OfInt) {
+            ((OfInt) stage).skip = skip;
+        }
+        else if (stage instanceof OfLong) {
+            ((OfLong) stage).skip = skip;
+        }
+        else if (stage instanceof OfDouble) {
+            ((OfDouble) stage).skip = skip;
+        }
+    }
+
+    private static long getSkip(AbstractPipeline<?, ?, ?> stage) {
+        if (stage instanceof OfRef) {
+            return ((OfRef<?>) stage).skip;
+        }
+        else if (stage instanceof OfInt) {
+            return ((OfInt) stage).skip;
+        }
+        else if (stage instanceof OfLong) {
+            return ((OfLong) stage).skip;
+        }
+        else if (stage instanceof OfDouble) {
+            return ((OfDouble) stage).skip;
+        }
+        return -1L;
+    }
+
     /**
      * Specialized subtype for sorting reference streams
      */
@@ -106,6 +197,18 @@ final class SortedOps {
         private final boolean isNaturalSort;
         private final Comparator<? super T> comparator;
 
+        /**
+         * The number of leading sorted elements consumed downstream, or -1
+         * if all elements are consumed
+         */
+        private int limit = -1;
+
+        /**
+         * The number of elements skipped by the skip-only slice operation
+         * directly following this one, or -1 if there is no such operation
+         */
+        private long skip = -1L;
+
         /**
          * Sort using natural order of {@literal <T>} which must be
          * {@code Comparable}.
@@ -140,6 +243,8 @@ final class SortedOps {
             // also naturally sorted then this is a no-op
             if (StreamOpFlag.SORTED.isKnown(flags) && isNaturalSort)
                 return sink;
+            else if (limit >= 0)
+                return new TopKRefSortingSink<>(sink, comparator, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedRefSortingSink<>(sink, comparator);
             else
@@ -156,10 +261,8 @@ final class SortedOps {
                 return helper.evaluate(spliterator, false, generator);
             }
             else {
-                // @@@ Weak two-pass parallel implementation; parallel collect, parallel sort
-                T[] flattenedData = helper.evaluate(spliterator, true, generator).asArray(generator);
-                java8.util.J8Arrays.parallelSort(flattenedData, comparator);
-                return Nodes.node(flattenedData);
+                // Single pass; leaves sort their runs, which are merged on completion
+                return Nodes.node(new SortTask.OfRef<>(helper, spliterator, generator, comparator, limit).invoke());
             }
         }
     }
@@ -168,6 +271,18 @@ final class SortedOps {
      * Specialized subtype for sorting int streams.
      */
     private static final class OfInt extends IntPipeline.StatefulOp<Integer> {
+        /**
+         * The number of leading sorted elements consumed downstream, or -1
+         * if all elements are consumed
+         */
+        private int limit = -1;
+
+        /**
+         * The number of elements skipped by the skip-only slice operation
+         * directly following this one, or -1 if there is no such operation
+         */
+        private long skip = -1L;
+
         OfInt(AbstractPipeline<?, Integer, ?> upstream) {
             super(upstream, StreamShape.INT_VALUE,
                   StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
@@ -179,6 +294,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (limit >= 0)
+                return new TopKIntSortingSink(sink, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedIntSortingSink(sink);
             else
@@ -193,12 +310,7 @@ final class SortedOps {
                 return helper.evaluate(spliterator, false, generator);
             }
             else {
-                Node.OfInt n = (Node.OfInt) helper.evaluate(spliterator, true, generator);
-
-                int[] content = n.asPrimitiveArray();
-                java8.util.J8Arrays.parallelSort(content);
-
-                return Nodes.node(content);
+                return Nodes.node(new SortTask.OfInt<>(helper, spliterator, limit).invoke());
             }
         }
     }
@@ -207,6 +319,18 @@ final class SortedOps {
      * Specialized subtype for sorting long streams.
      */
     private static final class OfLong extends LongPipeline.StatefulOp<Long> {
+        /**
+         * The number of leading sorted elements consumed downstream, or -1
+         * if all elements are consumed
+         */
+        private int limit = -1;
+
+        /**
+         * The number of elements skipped by the skip-only slice operation
+         * directly following this one, or -1 if there is no such operation
+         */
+        private long skip = -1L;
+
         OfLong(AbstractPipeline<?, Long, ?> upstream) {
             super(upstream, StreamShape.LONG_VALUE,
                   StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
@@ -218,6 +342,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (limit >= 0)
+                return new TopKLongSortingSink(sink, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedLongSortingSink(sink);
             else
@@ -232,12 +358,7 @@ final class SortedOps {
                 return helper.evaluate(spliterator, false, generator);
             }
             else {
-                Node.OfLong n = (Node.OfLong) helper.evaluate(spliterator, true, generator);
-
-                long[] content = n.asPrimitiveArray();
-                java8.util.J8Arrays.parallelSort(content);
-
-                return Nodes.node(content);
+                return Nodes.node(new SortTask.OfLong<>(helper, spliterator, limit).invoke());
             }
         }
     }
@@ -246,6 +367,18 @@ final class SortedOps {
      * Specialized subtype for sorting double streams.
      */
     private static final class OfDouble extends DoublePipeline.StatefulOp<Double> {
+        /**
+         * The number of leading sorted elements consumed downstream, or -1
+         * if all elements are consumed
+         */
+        private int limit = -1;
+
+        /**
+         * The number of elements skipped by the skip-only slice operation
+         * directly following this one, or -1 if there is no such operation
+         */
+        private long skip = -1L;
+
         OfDouble(AbstractPipeline<?, Double, ?> upstream) {
             super(upstream, StreamShape.DOUBLE_VALUE,
                   StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
@@ -257,6 +390,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (limit >= 0)
+                return new TopKDoubleSortingSink(sink, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedDoubleSortingSink(sink);
             else
@@ -271,12 +406,7 @@ final class SortedOps {
                 return helper.evaluate(spliterator, false, generator);
             }
             else {
-                Node.OfDouble n = (Node.OfDouble) helper.evaluate(spliterator, true, generator);
-
-                double[] content = n.asPrimitiveArray();
-                java8.util.J8Arrays.parallelSort(content);
-
-                return Nodes.node(content);
+                return Nodes.node(new SortTask.OfDouble<>(helper, spliterator, limit).invoke());
             }
         }
     }
@@ -476,7 +606,7 @@ final class SortedOps {
      * {@link Sink} for implementing sort on int streams.
      */
     private static final class IntSortingSink extends AbstractIntSortingSink {
-        private SpinedBuffer.OfInt b;
+        private Node.Builder.OfInt b;
 
         IntSortingSink(Sink<? super Integer> sink) {
             super(sink);
@@ -486,12 +616,17 @@ final class SortedOps {
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            b = (size > 0) ? new SpinedBuffer.OfInt((int) size) : new SpinedBuffer.OfInt();
+            // a variable size builder, off-heap if enabled, since the
+            // buffered elements are copied into an array for sorting
+            b = Nodes.intBuilder();
+            b.begin(size > 0 ? size : -1);
         }
 
         @Override
         public void end() {
-            int[] ints = b.asPrimitiveArray();
+            b.end();
+            int[] ints = b.build().asPrimitiveArray();
+            b = null;
             Arrays.sort(ints);
             downstream.begin(ints.length);
             if (!cancellationRequestedCalled) {
@@ -575,7 +710,7 @@ final class SortedOps {
      * {@link Sink} for implementing sort on long streams.
      */
     private static final class LongSortingSink extends AbstractLongSortingSink {
-        private SpinedBuffer.OfLong b;
+        private Node.Builder.OfLong b;
 
         LongSortingSink(Sink<? super Long> sink) {
             super(sink);
@@ -585,12 +720,17 @@ final class SortedOps {
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            b = (size > 0) ? new SpinedBuffer.OfLong((int) size) : new SpinedBuffer.OfLong();
+            // a variable size builder, off-heap if enabled, since the
+            // buffered elements are copied into an array for sorting
+            b = Nodes.longBuilder();
+            b.begin(size > 0 ? size : -1);
         }
 
         @Override
         public void end() {
-            long[] longs = b.asPrimitiveArray();
+            b.end();
+            long[] longs = b.build().asPrimitiveArray();
+            b = null;
             Arrays.sort(longs);
             downstream.begin(longs.length);
             if (!cancellationRequestedCalled) {
@@ -674,7 +814,7 @@ final class SortedOps {
      * {@link Sink} for implementing sort on double streams.
      */
     private static final class DoubleSortingSink extends AbstractDoubleSortingSink {
-        private SpinedBuffer.OfDouble b;
+        private Node.Builder.OfDouble b;
 
         DoubleSortingSink(Sink<? super Double> sink) {
             super(sink);
@@ -684,12 +824,17 @@ final class SortedOps {
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
                 throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            b = (size > 0) ? new SpinedBuffer.OfDouble((int) size) : new SpinedBuffer.OfDouble();
+            // a variable size builder, off-heap if enabled, since the
+            // buffered elements are copied into an array for sorting
+            b = Nodes.doubleBuilder();
+            b.begin(size > 0 ? size : -1);
         }
 
         @Override
         public void end() {
-            double[] doubles = b.asPrimitiveArray();
+            b.end();
+            double[] doubles = b.build().asPrimitiveArray();
+            b = null;
             Arrays.sort(doubles);
             downstream.begin(doubles.length);
             if (!cancellationRequestedCalled) {
@@ -710,4 +855,914 @@ final class SortedOps {
             b.accept(t);
         }
     }
+
+    /**
+     * Returns the initial capacity of the buffer of a top-k sorting sink.
+     */
+    private static int topKInitialCapacity(long size, int capacity) {
+        if (size >= 0L && size < capacity)
+            return (int) size;
+        return Math.min(capacity, 64);
+    }
+
+    /**
+     * Returns the new capacity of the buffer of a top-k sorting sink.
+     */
+    private static int topKGrownCapacity(int length, int capacity) {
+        return (int) Math.min((long) capacity, Math.max(16L, (long) length << 1));
+    }
+
+    /**
+     * {@link Sink} for implementing sort on reference streams when only the
+     * first {@code k} elements of the sorted output are required, as for
+     * {@code sorted().limit(k)}.
+     *
+     * <p>Elements are buffered in an array of at most {@code 2 * k} elements.
+     * When the buffer is full it is sorted (stably) and truncated to its first
+     * {@code k} elements, the last of which then serves as a threshold: any
+     * later element that does not compare less than the threshold cannot be
+     * part of the result and is dropped right away. This requires
+     * O(n log k) time and O(k) space instead of O(n log n) time and O(n)
+     * space.
+     */
+    private static final class TopKRefSortingSink<T> extends AbstractRefSortingSink<T> {
+        private final int k;
+        private T[] array;
+        private int offset;
+        // the k-th element once the buffer has been truncated, otherwise null
+        private T kth;
+        private boolean truncated;
+
+        TopKRefSortingSink(Sink<? super T> sink, Comparator<? super T> comparator, int k) {
+            super(sink, comparator);
+            this.k = k;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void begin(long size) {
+            array = (T[]) new Object[topKInitialCapacity(size, k << 1)];
+        }
+
+        @Override
+        public void end() {
+            Arrays.sort(array, 0, offset, comparator);
+            int n = Math.min(offset, k);
+            downstream.begin(n);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < n; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < n && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            array = null;
+            kth = null;
+        }
+
+        @Override
+        public void accept(T t) {
+            if (truncated && comparator.compare(t, kth) >= 0)
+                return;
+            if (offset == array.length) {
+                if (array.length < k << 1) {
+                    array = Arrays.copyOf(array, topKGrownCapacity(array.length, k << 1));
+                }
+                else {
+                    Arrays.sort(array, 0, offset, comparator);
+                    Arrays.fill(array, k, offset, null);
+                    offset = k;
+                    kth = array[k - 1];
+                    truncated = true;
+                    if (comparator.compare(t, kth) >= 0)
+                        return;
+                }
+            }
+            array[offset++] = t;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on int streams when only the first
+     * {@code k} elements of the sorted output are required.
+     *
+     * @see TopKRefSortingSink
+     */
+    private static final class TopKIntSortingSink extends AbstractIntSortingSink {
+        private final int k;
+        private int[] array;
+        private int offset;
+        private int kth;
+        private boolean truncated;
+
+        TopKIntSortingSink(Sink<? super Integer> sink, int k) {
+            super(sink);
+            this.k = k;
+        }
+
+        @Override
+        public void begin(long size) {
+            array = new int[topKInitialCapacity(size, k << 1)];
+        }
+
+        @Override
+        public void end() {
+            Arrays.sort(array, 0, offset);
+            int n = Math.min(offset, k);
+            downstream.begin(n);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < n; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < n && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            array = null;
+        }
+
+        @Override
+        public void accept(int t) {
+            if (truncated && t >= kth)
+                return;
+            if (offset == array.length) {
+                if (array.length < k << 1) {
+                    array = Arrays.copyOf(array, topKGrownCapacity(array.length, k << 1));
+                }
+                else {
+                    Arrays.sort(array, 0, offset);
+                    offset = k;
+                    kth = array[k - 1];
+                    truncated = true;
+                    if (t >= kth)
+                        return;
+                }
+            }
+            array[offset++] = t;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on long streams when only the first
+     * {@code k} elements of the sorted output are required.
+     *
+     * @see TopKRefSortingSink
+     */
+    private static final class TopKLongSortingSink extends AbstractLongSortingSink {
+        private final int k;
+        private long[] array;
+        private int offset;
+        private long kth;
+        private boolean truncated;
+
+        TopKLongSortingSink(Sink<? super Long> sink, int k) {
+            super(sink);
+            this.k = k;
+        }
+
+        @Override
+        public void begin(long size) {
+            array = new long[topKInitialCapacity(size, k << 1)];
+        }
+
+        @Override
+        public void end() {
+            Arrays.sort(array, 0, offset);
+            int n = Math.min(offset, k);
+            downstream.begin(n);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < n; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < n && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            array = null;
+        }
+
+        @Override
+        public void accept(long t) {
+            if (truncated && t >= kth)
+                return;
+            if (offset == array.length) {
+                if (array.length < k << 1) {
+                    array = Arrays.copyOf(array, topKGrownCapacity(array.length, k << 1));
+                }
+                else {
+                    Arrays.sort(array, 0, offset);
+                    offset = k;
+                    kth = array[k - 1];
+                    truncated = true;
+                    if (t >= kth)
+                        return;
+                }
+            }
+            array[offset++] = t;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on double streams when only the
+     * first {@code k} elements of the sorted output are required. Elements
+     * are compared as by {@link Double#compare}.
+     *
+     * @see TopKRefSortingSink
+     */
+    private static final class TopKDoubleSortingSink extends AbstractDoubleSortingSink {
+        private final int k;
+        private double[] array;
+        private int offset;
+        private double kth;
+        private boolean truncated;
+
+        TopKDoubleSortingSink(Sink<? super Double> sink, int k) {
+            super(sink);
+            this.k = k;
+        }
+
+        @Override
+        public void begin(long size) {
+            array = new double[topKInitialCapacity(size, k << 1)];
+        }
+
+        @Override
+        public void end() {
+            Arrays.sort(array, 0, offset);
+            int n = Math.min(offset, k);
+            downstream.begin(n);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < n; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < n && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            array = null;
+        }
+
+        @Override
+        public void accept(double t) {
+            if (truncated && Double.compare(t, kth) >= 0)
+                return;
+            if (offset == array.length) {
+                if (array.length < k << 1) {
+                    array = Arrays.copyOf(array, topKGrownCapacity(array.length, k << 1));
+                }
+                else {
+                    Arrays.sort(array, 0, offset);
+                    offset = k;
+                    kth = array[k - 1];
+                    truncated = true;
+                    if (Double.compare(t, kth) >= 0)
+                        return;
+                }
+            }
+            array[offset++] = t;
+        }
+    }
+
+    // Parallel sorting
+
+    /**
+     * Minimum number of elements of a merge that is performed by more than
+     * one task.
+     */
+    private static final int MIN_MERGE_GRAN = 1 << 12;
+
+    /**
+     * Returns the number of elements below which a merge of
+     * {@code length} elements is performed sequentially.
+     */
+    private static int mergeGranularity(int length) {
+        return Math.max(length / AbstractTask.getLeafTarget(), MIN_MERGE_GRAN);
+    }
+
+    /**
+     * A task that sorts the elements of a parallel pipeline in a single pass.
+     * Each leaf buffers the output elements of its portion of the input and
+     * sorts them. Internal nodes merge the sorted runs of their children
+     * when the children complete, so that the root ends up with the fully
+     * sorted content. For reference elements the merge favors the left run
+     * on ties, which preserves the stability of the sort.
+     *
+     * @param <P_IN> type of input elements to the pipeline
+     * @param <P_OUT> type of output elements from the pipeline
+     * @param <T_ARR> type of the array holding a sorted run
+     * @param <K> type of the concrete task
+     */
+    @SuppressWarnings("serial")
+    private abstract static class SortTask<P_IN, P_OUT, T_ARR,
+                                           K extends SortTask<P_IN, P_OUT, T_ARR, K>>
+            extends AbstractTask<P_IN, P_OUT, T_ARR, K> {
+        /**
+         * The maximum number of leading elements of the sorted output that
+         * are required, or -1 if all elements are required
+         */
+        protected final int limit;
+
+        SortTask(PipelineHelper<P_OUT> helper, Spliterator<P_IN> spliterator, int limit) {
+            super(helper, spliterator);
+            if (limit < 0 && helper.exactOutputSizeIfKnown(spliterator) >= Nodes.MAX_ARRAY_SIZE)
+                throw new IllegalArgumentException(Nodes.BAD_SIZE);
+            this.limit = limit;
+        }
+
+        SortTask(K parent, Spliterator<P_IN> spliterator) {
+            super(parent, spliterator);
+            this.limit = parent.limit;
+        }
+
+        /**
+         * Merges two sorted runs into a new sorted array, which holds at
+         * most {@code limit} elements if a limit is set.
+         */
+        abstract T_ARR merge(T_ARR left, T_ARR right);
+
+        /**
+         * Returns the length of the array holding the merge of two runs,
+         * taking the limit into account.
+         */
+        final int mergedLength(int left, int right) {
+            long length = (long) left + right;
+            if (limit >= 0 && length > limit)
+                return limit;
+            if (length >= Nodes.MAX_ARRAY_SIZE)
+                throw new IllegalArgumentException(Nodes.BAD_SIZE);
+            return (int) length;
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (!isLeaf()) {
+                setLocalResult(merge(leftChild.getLocalResult(), rightChild.getLocalResult()));
+            }
+            super.onCompletion(caller);
+        }
+
+        @SuppressWarnings("serial")
+        private static final class OfRef<P_IN, T>
+                extends SortTask<P_IN, T, T[], OfRef<P_IN, T>> {
+            private final IntFunction<T[]> generator;
+            private final Comparator<? super T> comparator;
+
+            OfRef(PipelineHelper<T> helper, Spliterator<P_IN> spliterator,
+                  IntFunction<T[]> generator, Comparator<? super T> comparator, int limit) {
+                super(helper, spliterator, limit);
+                this.generator = generator;
+                this.comparator = comparator;
+            }
+
+            OfRef(OfRef<P_IN, T> parent, Spliterator<P_IN> spliterator) {
+                super(parent, spliterator);
+                this.generator = parent.generator;
+                this.comparator = parent.comparator;
+            }
+
+            @Override
+            protected OfRef<P_IN, T> makeChild(Spliterator<P_IN> spliterator) {
+                return new OfRef<>(this, spliterator);
+            }
+
+            @Override
+            protected T[] doLeaf() {
+                if (limit >= 0) {
+                    Node.Builder<T> builder = Nodes.builder(-1, generator);
+                    helper.wrapAndCopyInto(new TopKRefSortingSink<>(builder, comparator, limit), spliterator);
+                    return builder.build().asArray(generator);
+                }
+                Node.Builder<T> builder = helper.makeNodeBuilder(
+                        helper.exactOutputSizeIfKnown(spliterator), generator);
+                T[] run = helper.wrapAndCopyInto(builder, spliterator).build().asArray(generator);
+                Arrays.sort(run, comparator);
+                return run;
+            }
+
+            @Override
+            T[] merge(T[] left, T[] right) {
+                int length = mergedLength(left.length, right.length);
+                if (length == left.length + right.length) {
+                    if (left.length == 0) {
+                        return right;
+                    }
+                    if (right.length == 0) {
+                        return left;
+                    }
+                }
+                int aHi = length == left.length + right.length ? left.length
+                          : RefMerger.split(left, right, length, comparator);
+                T[] result = generator.apply(length);
+                if (length < MIN_MERGE_GRAN) {
+                    RefMerger.merge(left, 0, aHi, right, 0, length - aHi,
+                                    result, 0, comparator);
+                }
+                else {
+                    new RefMerger<>(left, 0, aHi, right, 0, length - aHi, result, 0,
+                                    mergeGranularity(length), comparator).invoke();
+                }
+                return result;
+            }
+        }
+
+        @SuppressWarnings("serial")
+        private static final class OfInt<P_IN>
+                extends SortTask<P_IN, Integer, int[], OfInt<P_IN>> {
+            OfInt(PipelineHelper<Integer> helper, Spliterator<P_IN> spliterator, int limit) {
+                super(helper, spliterator, limit);
+            }
+
+            OfInt(OfInt<P_IN> parent, Spliterator<P_IN> spliterator) {
+                super(parent, spliterator);
+            }
+
+            @Override
+            protected OfInt<P_IN> makeChild(Spliterator<P_IN> spliterator) {
+                return new OfInt<>(this, spliterator);
+            }
+
+            @Override
+            protected int[] doLeaf() {
+                if (limit >= 0) {
+                    Node.Builder.OfInt builder = Nodes.intBuilder(-1);
+                    helper.wrapAndCopyInto(new TopKIntSortingSink(builder, limit), spliterator);
+                    return builder.build().asPrimitiveArray();
+                }
+                Node.Builder.OfInt builder = Nodes.intBuilder(helper.exactOutputSizeIfKnown(spliterator));
+                int[] run = helper.wrapAndCopyInto(builder, spliterator).build().asPrimitiveArray();
+                Arrays.sort(run);
+                return run;
+            }
+
+            @Override
+            int[] merge(int[] left, int[] right) {
+                int length = mergedLength(left.length, right.length);
+                if (length == left.length + right.length) {
+                    if (left.length == 0) {
+                        return right;
+                    }
+                    if (right.length == 0) {
+                        return left;
+                    }
+                }
+                int aHi = length == left.length + right.length ? left.length
+                          : IntMerger.split(left, right, length);
+                int[] result = new int[length];
+                if (length < MIN_MERGE_GRAN) {
+                    IntMerger.merge(left, 0, aHi, right, 0, length - aHi, result, 0);
+                }
+                else {
+                    new IntMerger(left, 0, aHi, right, 0, length - aHi, result, 0,
+                                  mergeGranularity(length)).invoke();
+                }
+                return result;
+            }
+        }
+
+        @SuppressWarnings("serial")
+        private static final class OfLong<P_IN>
+                extends SortTask<P_IN, Long, long[], OfLong<P_IN>> {
+            OfLong(PipelineHelper<Long> helper, Spliterator<P_IN> spliterator, int limit) {
+                super(helper, spliterator, limit);
+            }
+
+            OfLong(OfLong<P_IN> parent, Spliterator<P_IN> spliterator) {
+                super(parent, spliterator);
+            }
+
+            @Override
+            protected OfLong<P_IN> makeChild(Spliterator<P_IN> spliterator) {
+                return new OfLong<>(this, spliterator);
+            }
+
+            @Override
+            protected long[] doLeaf() {
+                if (limit >= 0) {
+                    Node.Builder.OfLong builder = Nodes.longBuilder(-1);
+                    helper.wrapAndCopyInto(new TopKLongSortingSink(builder, limit), spliterator);
+                    return builder.build().asPrimitiveArray();
+                }
+                Node.Builder.OfLong builder = Nodes.longBuilder(helper.exactOutputSizeIfKnown(spliterator));
+                long[] run = helper.wrapAndCopyInto(builder, spliterator).build().asPrimitiveArray();
+                Arrays.sort(run);
+                return run;
+            }
+
+            @Override
+            long[] merge(long[] left, long[] right) {
+                int length = mergedLength(left.length, right.length);
+                if (length == left.length + right.length) {
+                    if (left.length == 0) {
+                        return right;
+                    }
+                    if (right.length == 0) {
+                        return left;
+                    }
+                }
+                int aHi = length == left.length + right.length ? left.length
+                          : LongMerger.split(left, right, length);
+                long[] result = new long[length];
+                if (length < MIN_MERGE_GRAN) {
+                    LongMerger.merge(left, 0, aHi, right, 0, length - aHi, result, 0);
+                }
+                else {
+                    new LongMerger(left, 0, aHi, right, 0, length - aHi, result, 0,
+                                   mergeGranularity(length)).invoke();
+                }
+                return result;
+            }
+        }
+
+        @SuppressWarnings("serial")
+        private static final class OfDouble<P_IN>
+                extends SortTask<P_IN, Double, double[], OfDouble<P_IN>> {
+            OfDouble(PipelineHelper<Double> helper, Spliterator<P_IN> spliterator, int limit) {
+                super(helper, spliterator, limit);
+            }
+
+            OfDouble(OfDouble<P_IN> parent, Spliterator<P_IN> spliterator) {
+                super(parent, spliterator);
+            }
+
+            @Override
+            protected OfDouble<P_IN> makeChild(Spliterator<P_IN> spliterator) {
+                return new OfDouble<>(this, spliterator);
+            }
+
+            @Override
+            protected double[] doLeaf() {
+                if (limit >= 0) {
+                    Node.Builder.OfDouble builder = Nodes.doubleBuilder(-1);
+                    helper.wrapAndCopyInto(new TopKDoubleSortingSink(builder, limit), spliterator);
+                    return builder.build().asPrimitiveArray();
+                }
+                Node.Builder.OfDouble builder = Nodes.doubleBuilder(helper.exactOutputSizeIfKnown(spliterator));
+                double[] run = helper.wrapAndCopyInto(builder, spliterator).build().asPrimitiveArray();
+                Arrays.sort(run);
+                return run;
+            }
+
+            @Override
+            double[] merge(double[] left, double[] right) {
+                int length = mergedLength(left.length, right.length);
+                if (length == left.length + right.length) {
+                    if (left.length == 0) {
+                        return right;
+                    }
+                    if (right.length == 0) {
+                        return left;
+                    }
+                }
+                int aHi = length == left.length + right.length ? left.length
+                          : DoubleMerger.split(left, right, length);
+                double[] result = new double[length];
+                if (length < MIN_MERGE_GRAN) {
+                    DoubleMerger.merge(left, 0, aHi, right, 0, length - aHi, result, 0);
+                }
+                else {
+                    new DoubleMerger(left, 0, aHi, right, 0, length - aHi, result, 0,
+                                     mergeGranularity(length)).invoke();
+                }
+                return result;
+            }
+        }
+    }
+
+    /*
+     * The mergers below merge the sorted runs a[aLo, aHi) and b[bLo, bHi)
+     * into w starting at wLo. A merge that is larger than the granularity is
+     * split in two independent merges by taking the middle element of the
+     * larger run and binary searching its position in the other run. Ties
+     * are always resolved in favor of the elements of a, the left run.
+     *
+     * The split methods return the number i of elements of a that belong
+     * to the first k elements of the merge of a and b; the remaining k - i
+     * elements are the leading elements of b.
+     */
+
+    @SuppressWarnings("serial")
+    private static final class RefMerger<T> extends RecursiveAction {
+        private final T[] a, b, w;
+        private final int aLo, aHi, bLo, bHi, wLo, gran;
+        private final Comparator<? super T> comparator;
+
+        RefMerger(T[] a, int aLo, int aHi, T[] b, int bLo, int bHi,
+                  T[] w, int wLo, int gran, Comparator<? super T> comparator) {
+            this.a = a; this.aLo = aLo; this.aHi = aHi;
+            this.b = b; this.bLo = bLo; this.bHi = bHi;
+            this.w = w; this.wLo = wLo; this.gran = gran;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            int aLen = aHi - aLo, bLen = bHi - bLo;
+            if (aLen + bLen <= gran) {
+                merge(a, aLo, aHi, b, bLo, bHi, w, wLo, comparator);
+                return;
+            }
+            int am, bm;
+            if (aLen >= bLen) {
+                am = (aLo + aHi) >>> 1;
+                T x = a[am];
+                // first element of b that is not less than x
+                int lo = bLo, hi = bHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (comparator.compare(b[mid], x) < 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                bm = lo;
+            }
+            else {
+                bm = (bLo + bHi) >>> 1;
+                T y = b[bm];
+                // first element of a that is greater than y
+                int lo = aLo, hi = aHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (comparator.compare(a[mid], y) <= 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                am = lo;
+            }
+            int wm = wLo + (am - aLo) + (bm - bLo);
+            invokeAll(new RefMerger<>(a, aLo, am, b, bLo, bm, w, wLo, gran, comparator),
+                      new RefMerger<>(a, am, aHi, b, bm, bHi, w, wm, gran, comparator));
+        }
+
+        static <T> int split(T[] a, T[] b, int k, Comparator<? super T> comparator) {
+            int lo = Math.max(0, k - b.length), hi = Math.min(k, a.length);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1, j = k - i;
+                // take more of a if a[i] does not come after b[j - 1]
+                if (j > 0 && comparator.compare(a[i], b[j - 1]) <= 0) lo = i + 1;
+                else hi = i;
+            }
+            return lo;
+        }
+
+        static <T> void merge(T[] a, int aLo, int aHi, T[] b, int bLo, int bHi,
+                              T[] w, int k, Comparator<? super T> comparator) {
+            while (aLo < aHi && bLo < bHi) {
+                T x = a[aLo], y = b[bLo];
+                if (comparator.compare(y, x) < 0) {
+                    w[k++] = y;
+                    bLo++;
+                }
+                else {
+                    w[k++] = x;
+                    aLo++;
+                }
+            }
+            if (aLo < aHi)
+                System.arraycopy(a, aLo, w, k, aHi - aLo);
+            else if (bLo < bHi)
+                System.arraycopy(b, bLo, w, k, bHi - bLo);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class IntMerger extends RecursiveAction {
+        private final int[] a, b, w;
+        private final int aLo, aHi, bLo, bHi, wLo, gran;
+
+        IntMerger(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi,
+                  int[] w, int wLo, int gran) {
+            this.a = a; this.aLo = aLo; this.aHi = aHi;
+            this.b = b; this.bLo = bLo; this.bHi = bHi;
+            this.w = w; this.wLo = wLo; this.gran = gran;
+        }
+
+        @Override
+        protected void compute() {
+            int aLen = aHi - aLo, bLen = bHi - bLo;
+            if (aLen + bLen <= gran) {
+                merge(a, aLo, aHi, b, bLo, bHi, w, wLo);
+                return;
+            }
+            int am, bm;
+            if (aLen >= bLen) {
+                am = (aLo + aHi) >>> 1;
+                int x = a[am];
+                int lo = bLo, hi = bHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (b[mid] < x) lo = mid + 1;
+                    else hi = mid;
+                }
+                bm = lo;
+            }
+            else {
+                bm = (bLo + bHi) >>> 1;
+                int y = b[bm];
+                int lo = aLo, hi = aHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (a[mid] <= y) lo = mid + 1;
+                    else hi = mid;
+                }
+                am = lo;
+            }
+            int wm = wLo + (am - aLo) + (bm - bLo);
+            invokeAll(new IntMerger(a, aLo, am, b, bLo, bm, w, wLo, gran),
+                      new IntMerger(a, am, aHi, b, bm, bHi, w, wm, gran));
+        }
+
+        static int split(int[] a, int[] b, int k) {
+            int lo = Math.max(0, k - b.length), hi = Math.min(k, a.length);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1, j = k - i;
+                // take more of a if a[i] does not come after b[j - 1]
+                if (j > 0 && a[i] <= b[j - 1]) lo = i + 1;
+                else hi = i;
+            }
+            return lo;
+        }
+
+        static void merge(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi,
+                          int[] w, int k) {
+            while (aLo < aHi && bLo < bHi) {
+                int x = a[aLo], y = b[bLo];
+                if (y < x) {
+                    w[k++] = y;
+                    bLo++;
+                }
+                else {
+                    w[k++] = x;
+                    aLo++;
+                }
+            }
+            if (aLo < aHi)
+                System.arraycopy(a, aLo, w, k, aHi - aLo);
+            else if (bLo < bHi)
+                System.arraycopy(b, bLo, w, k, bHi - bLo);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class LongMerger extends RecursiveAction {
+        private final long[] a, b, w;
+        private final int aLo, aHi, bLo, bHi, wLo, gran;
+
+        LongMerger(long[] a, int aLo, int aHi, long[] b, int bLo, int bHi,
+                   long[] w, int wLo, int gran) {
+            this.a = a; this.aLo = aLo; this.aHi = aHi;
+            this.b = b; this.bLo = bLo; this.bHi = bHi;
+            this.w = w; this.wLo = wLo; this.gran = gran;
+        }
+
+        @Override
+        protected void compute() {
+            int aLen = aHi - aLo, bLen = bHi - bLo;
+            if (aLen + bLen <= gran) {
+                merge(a, aLo, aHi, b, bLo, bHi, w, wLo);
+                return;
+            }
+            int am, bm;
+            if (aLen >= bLen) {
+                am = (aLo + aHi) >>> 1;
+                long x = a[am];
+                int lo = bLo, hi = bHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (b[mid] < x) lo = mid + 1;
+                    else hi = mid;
+                }
+                bm = lo;
+            }
+            else {
+                bm = (bLo + bHi) >>> 1;
+                long y = b[bm];
+                int lo = aLo, hi = aHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (a[mid] <= y) lo = mid + 1;
+                    else hi = mid;
+                }
+                am = lo;
+            }
+            int wm = wLo + (am - aLo) + (bm - bLo);
+            invokeAll(new LongMerger(a, aLo, am, b, bLo, bm, w, wLo, gran),
+                      new LongMerger(a, am, aHi, b, bm, bHi, w, wm, gran));
+        }
+
+        static int split(long[] a, long[] b, int k) {
+            int lo = Math.max(0, k - b.length), hi = Math.min(k, a.length);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1, j = k - i;
+                // take more of a if a[i] does not come after b[j - 1]
+                if (j > 0 && a[i] <= b[j - 1]) lo = i + 1;
+                else hi = i;
+            }
+            return lo;
+        }
+
+        static void merge(long[] a, int aLo, int aHi, long[] b, int bLo, int bHi,
+                          long[] w, int k) {
+            while (aLo < aHi && bLo < bHi) {
+                long x = a[aLo], y = b[bLo];
+                if (y < x) {
+                    w[k++] = y;
+                    bLo++;
+                }
+                else {
+                    w[k++] = x;
+                    aLo++;
+                }
+            }
+            if (aLo < aHi)
+                System.arraycopy(a, aLo, w, k, aHi - aLo);
+            else if (bLo < bHi)
+                System.arraycopy(b, bLo, w, k, bHi - bLo);
+        }
+    }
+
+    /**
+     * Merges double runs according to the total order of
+     * {@link Double#compare}, which is the order established by
+     * {@link Arrays#sort(double[])}.
+     */
+    @SuppressWarnings("serial")
+    private static final class DoubleMerger extends RecursiveAction {
+        private final double[] a, b, w;
+        private final int aLo, aHi, bLo, bHi, wLo, gran;
+
+        DoubleMerger(double[] a, int aLo, int aHi, double[] b, int bLo, int bHi,
+                     double[] w, int wLo, int gran) {
+            this.a = a; this.aLo = aLo; this.aHi = aHi;
+            this.b = b; this.bLo = bLo; this.bHi = bHi;
+            this.w = w; this.wLo = wLo; this.gran = gran;
+        }
+
+        @Override
+        protected void compute() {
+            int aLen = aHi - aLo, bLen = bHi - bLo;
+            if (aLen + bLen <= gran) {
+                merge(a, aLo, aHi, b, bLo, bHi, w, wLo);
+                return;
+            }
+            int am, bm;
+            if (aLen >= bLen) {
+                am = (aLo + aHi) >>> 1;
+                double x = a[am];
+                int lo = bLo, hi = bHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (Double.compare(b[mid], x) < 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                bm = lo;
+            }
+            else {
+                bm = (bLo + bHi) >>> 1;
+                double y = b[bm];
+                int lo = aLo, hi = aHi;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (Double.compare(a[mid], y) <= 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                am = lo;
+            }
+            int wm = wLo + (am - aLo) + (bm - bLo);
+            invokeAll(new DoubleMerger(a, aLo, am, b, bLo, bm, w, wLo, gran),
+                      new DoubleMerger(a, am, aHi, b, bm, bHi, w, wm, gran));
+        }
+
+        static int split(double[] a, double[] b, int k) {
+            int lo = Math.max(0, k - b.length), hi = Math.min(k, a.length);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1, j = k - i;
+                // take more of a if a[i] does not come after b[j - 1]
+                if (j > 0 && Double.compare(a[i], b[j - 1]) <= 0) lo = i + 1;
+                else hi = i;
+            }
+            return lo;
+        }
+
+        static void merge(double[] a, int aLo, int aHi, double[] b, int bLo, int bHi,
+                          double[] w, int k) {
+            while (aLo < aHi && bLo < bHi) {
+                double x = a[aLo], y = b[bLo];
+                if (Double.compare(y, x) < 0) {
+                    w[k++] = y;
+                    bLo++;
+                }
+                else {
+                    w[k++] = x;
+                    aLo++;
+                }
+            }
+            if (aLo < aHi)
+                System.arraycopy(a, aLo, w, k, aHi - aLo);
+            else if (bLo < bHi)
+                System.arraycopy(b, bLo, w, k, bHi - bLo);
+        }
+    }
 }
@@ -30,6 +30,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
+import java8.util.ChunkSpliterator;
 import java8.util.Objects;
 import java8.util.PrimitiveIterator;
 import java8.util.function.Consumer;
@@ -704,6 +705,31 @@ class SpinedBuffer<E>
                 }
             }
 
+            /**
+             * Bulk traversal for {@link ChunkSpliterator}: passes the
+             * remaining elements to the action as one segment per chunk.
+             */
+            public void forEachChunk(ChunkSpliterator.ChunkConsumer<T_ARR> action) {
+                Objects.requireNonNull(action);
+
+                if (splSpineIndex < lastSpineIndex
+                    || (splSpineIndex == lastSpineIndex && splElementIndex < lastSpineElementFence)) {
+                    int i = splElementIndex;
+                    // completed chunks, if any
+                    for (int sp = splSpineIndex; sp < lastSpineIndex; sp++) {
+                        T_ARR chunk = spine[sp];
+                        action.accept(chunk, i, arrayLength(chunk));
+                        i = 0;
+                    }
+                    // last (or current uncompleted) chunk
+                    T_ARR chunk = (splSpineIndex == lastSpineIndex) ? splChunk : spine[lastSpineIndex];
+                    action.accept(chunk, i, lastSpineElementFence);
+                    // mark consumed
+                    splSpineIndex = lastSpineIndex;
+                    splElementIndex = lastSpineElementFence;
+                }
+            }
+
             @Override
             public T_SPLITR trySplit() {
                 if (splSpineIndex < lastSpineIndex) {
@@ -800,7 +826,7 @@ class SpinedBuffer<E>
 
         public Spliterator.OfInt spliterator() {
             class Splitr extends BaseSpliterator<Spliterator.OfInt>
-                    implements Spliterator.OfInt {
+                    implements Spliterator.OfInt, ChunkSpliterator<int[]> {
                 Splitr(int firstSpineIndex, int lastSpineIndex,
                        int firstSpineElementIndex, int lastSpineElementFence) {
                     super(firstSpineIndex, lastSpineIndex,
@@ -937,7 +963,7 @@ class SpinedBuffer<E>
 
         public Spliterator.OfLong spliterator() {
             class Splitr extends BaseSpliterator<Spliterator.OfLong>
-                    implements Spliterator.OfLong {
+                    implements Spliterator.OfLong, ChunkSpliterator<long[]> {
                 Splitr(int firstSpineIndex, int lastSpineIndex,
                        int firstSpineElementIndex, int lastSpineElementFence) {
                     super(firstSpineIndex, lastSpineIndex,
@@ -1074,7 +1100,7 @@ class SpinedBuffer<E>
 
         public Spliterator.OfDouble spliterator() {
             class Splitr extends BaseSpliterator<Spliterator.OfDouble>
-                    implements Spliterator.OfDouble {
+                    implements Spliterator.OfDouble, ChunkSpliterator<double[]> {
                 Splitr(int firstSpineIndex, int lastSpineIndex,
                        int firstSpineElementIndex, int lastSpineElementFence) {
                     super(firstSpineIndex, lastSpineIndex,
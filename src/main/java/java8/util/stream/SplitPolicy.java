@@ -0,0 +1,282 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+/**
+ * A policy that decides how finely the source of a parallel stream pipeline
+ * is split into leaf tasks.
+ *
+ * <p>The fork-join tasks that evaluate a parallel pipeline keep splitting
+ * their {@link java8.util.Spliterator Spliterator} as long as its size
+ * estimate exceeds a <em>target leaf size</em>. By default that target is
+ * the total size estimate divided by four times the parallelism of the
+ * executing pool, which over-partitions to allow for load balancing. For
+ * very cheap per-element operations this creates many leaves whose task
+ * overhead dominates the useful work; for very expensive operations it may
+ * create too few.
+ *
+ * <p>A {@code SplitPolicy} is attached to a stream with
+ * {@link StreamSupport#withSplitPolicy(BaseStream, SplitPolicy)} and is only
+ * consulted when the stream is evaluated in parallel. Implementations must
+ * be thread-safe since a policy is invoked concurrently from the worker
+ * threads of the computation and may be shared between pipelines.
+ *
+ * <p>Factory methods are provided for the most common policies:
+ * <ul>
+ * <li>{@link #defaultPolicy()}: the built-in behavior</li>
+ * <li>{@link #minLeafSize(long)}: the built-in behavior, but leaves are
+ * never split below a minimum number of elements</li>
+ * <li>{@link #costPerElement(long)}: leaves are sized such that each leaf
+ * performs roughly a fixed amount of work, given a hint of the per-element
+ * cost</li>
+ * <li>{@link #adaptive()}: like {@code costPerElement}, but the per-element
+ * cost is measured from the leaves of previous computations that used the
+ * same policy instance</li>
+ * </ul>
+ */
+public abstract class SplitPolicy {
+
+    /**
+     * The amount of work, in nanoseconds, that the cost based policies aim
+     * to perform in a single leaf task.
+     */
+    static final long DEFAULT_LEAF_NANOS = 100000L;
+
+    private static final SplitPolicy DEFAULT = new DefaultPolicy();
+
+    /**
+     * Constructor for use by subclasses.
+     */
+    protected SplitPolicy() {
+    }
+
+    /**
+     * Returns the target leaf size for a parallel computation, that is, the
+     * number of elements below which a task is no longer split but evaluated
+     * directly. Values less than {@code 1} are treated as {@code 1}.
+     *
+     * @param sizeEstimate the estimated number of elements of the whole
+     *        computation
+     * @param parallelism the parallelism of the {@code ForkJoinPool} that
+     *        executes the computation
+     * @return the target leaf size
+     */
+    public abstract long targetSize(long sizeEstimate, int parallelism);
+
+    /**
+     * Returns {@code true} if this policy wants to be notified through
+     * {@link #leafCompleted(long, long)} about the execution time of leaf
+     * tasks. The default implementation returns {@code false}, so that no
+     * time measurements are taken.
+     *
+     * @return {@code true} if leaf execution times should be reported
+     */
+    public boolean isTimed() {
+        return false;
+    }
+
+    /**
+     * Reports that a leaf task has been evaluated. Only invoked if
+     * {@link #isTimed()} returns {@code true}. The default implementation
+     * does nothing.
+     *
+     * @param leafSize the estimated number of elements processed by the leaf
+     * @param elapsedNanos the elapsed time of the leaf evaluation in
+     *        nanoseconds
+     */
+    public void leafCompleted(long leafSize, long elapsedNanos) {
+    }
+
+    /**
+     * Returns the built-in policy, which targets approximately four leaf
+     * tasks per thread of the executing pool.
+     *
+     * @return the default split policy
+     */
+    public static SplitPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a policy that splits like the {@link #defaultPolicy() default
+     * policy} but never creates leaves with fewer than {@code minLeafSize}
+     * elements (unless the source itself is smaller).
+     *
+     * @param minLeafSize the minimum number of elements in a leaf task
+     * @return a split policy with a minimum leaf size
+     * @throws IllegalArgumentException if {@code minLeafSize} is less than
+     *         {@code 1}
+     */
+    public static SplitPolicy minLeafSize(long minLeafSize) {
+        if (minLeafSize < 1L) {
+            throw new IllegalArgumentException("minLeafSize: " + minLeafSize);
+        }
+        return new MinLeafSizePolicy(minLeafSize);
+    }
+
+    /**
+     * Returns a policy that sizes leaves according to a hint of the average
+     * cost of processing a single element, such that each leaf performs
+     * roughly 100 microseconds of work. Cheap operations thereby get fewer,
+     * larger leaves and expensive operations more, smaller leaves. The
+     * computation is still split into at least as many leaves as the
+     * parallelism of the executing pool.
+     *
+     * @param nanosPerElement the estimated cost of processing one element
+     *        through the pipeline, in nanoseconds
+     * @return a cost based split policy
+     * @throws IllegalArgumentException if {@code nanosPerElement} is less
+     *         than {@code 1}
+     */
+    public static SplitPolicy costPerElement(long nanosPerElement) {
+        if (nanosPerElement < 1L) {
+            throw new IllegalArgumentException("nanosPerElement: " + nanosPerElement);
+        }
+        return new CostPolicy(nanosPerElement);
+    }
+
+    /**
+     * Returns a new adaptive policy that measures the execution time of leaf
+     * tasks and derives the per-element cost from these measurements, such
+     * that leaves of subsequent computations perform roughly 100
+     * microseconds of work. Until the first measurement is available the
+     * policy behaves like the {@link #defaultPolicy() default policy}.
+     *
+     * <p>An adaptive policy is meant to be reused for repeated evaluations
+     * of the same (or a similar) pipeline; it keeps a moving average of the
+     * observed cost.
+     *
+     * @return a new adaptive split policy
+     */
+    public static SplitPolicy adaptive() {
+        return new AdaptivePolicy(DEFAULT_LEAF_NANOS);
+    }
+
+    /**
+     * Returns a new adaptive policy, as by {@link #adaptive()}, that aims for
+     * leaves performing {@code targetLeafNanos} of work.
+     *
+     * @param targetLeafNanos the desired execution time of a single leaf
+     *        task, in nanoseconds
+     * @return a new adaptive split policy
+     * @throws IllegalArgumentException if {@code targetLeafNanos} is less
+     *         than {@code 1}
+     */
+    public static SplitPolicy adaptive(long targetLeafNanos) {
+        if (targetLeafNanos < 1L) {
+            throw new IllegalArgumentException("targetLeafNanos: " + targetLeafNanos);
+        }
+        return new AdaptivePolicy(targetLeafNanos);
+    }
+
+    static long defaultTargetSize(long sizeEstimate, int parallelism) {
+        return sizeEstimate / (Math.max(parallelism, 1) << 2);
+    }
+
+    static long costTargetSize(long sizeEstimate, int parallelism,
+                               long leafNanos, long nanosPerElement) {
+        long target = leafNanos / nanosPerElement;
+        // keep every thread of the pool busy
+        long max = sizeEstimate / Math.max(parallelism, 1);
+        return target < max ? target : max;
+    }
+
+    private static final class DefaultPolicy extends SplitPolicy {
+        @Override
+        public long targetSize(long sizeEstimate, int parallelism) {
+            return defaultTargetSize(sizeEstimate, parallelism);
+        }
+
+        @Override
+        public String toString() {
+            return "SplitPolicy.default";
+        }
+    }
+
+    private static final class MinLeafSizePolicy extends SplitPolicy {
+        private final long minLeafSize;
+
+        MinLeafSizePolicy(long minLeafSize) {
+            this.minLeafSize = minLeafSize;
+        }
+
+        @Override
+        public long targetSize(long sizeEstimate, int parallelism) {
+            return Math.max(defaultTargetSize(sizeEstimate, parallelism), minLeafSize);
+        }
+
+        @Override
+        public String toString() {
+            return "SplitPolicy.minLeafSize[" + minLeafSize + "]";
+        }
+    }
+
+    private static final class CostPolicy extends SplitPolicy {
+        private final long nanosPerElement;
+
+        CostPolicy(long nanosPerElement) {
+            this.nanosPerElement = nanosPerElement;
+        }
+
+        @Override
+        public long targetSize(long sizeEstimate, int parallelism) {
+            return costTargetSize(sizeEstimate, parallelism, DEFAULT_LEAF_NANOS, nanosPerElement);
+        }
+
+        @Override
+        public String toString() {
+            return "SplitPolicy.costPerElement[" + nanosPerElement + "ns]";
+        }
+    }
+
+    private static final class AdaptivePolicy extends SplitPolicy {
+        /** Weight of a new measurement in the moving average */
+        private static final double ALPHA = 0.25;
+
+        private final long targetLeafNanos;
+
+        /**
+         * Moving average of the observed cost per element in nanoseconds,
+         * or 0.0 if nothing has been measured yet. Concurrent updates may
+         * occasionally get lost, which is acceptable for an estimate.
+         */
+        private volatile double nanosPerElement;
+
+        AdaptivePolicy(long targetLeafNanos) {
+            this.targetLeafNanos = targetLeafNanos;
+        }
+
+        @Override
+        public long targetSize(long sizeEstimate, int parallelism) {
+            double cost = nanosPerElement;
+            if (cost <= 0.0) {
+                return defaultTargetSize(sizeEstimate, parallelism);
+            }
+            return costTargetSize(sizeEstimate, parallelism, targetLeafNanos,
+                    Math.max(1L, Math.round(cost)));
+        }
+
+        @Override
+        public boolean isTimed() {
+            return true;
+        }
+
+        @Override
+        public void leafCompleted(long leafSize, long elapsedNanos) {
+            if (leafSize > 0L && elapsedNanos > 0L) {
+                double sample = (double) elapsedNanos / leafSize;
+                double cost = nanosPerElement;
+                nanosPerElement = (cost <= 0.0) ? sample : cost + ALPHA * (sample - cost);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "SplitPolicy.adaptive[" + targetLeafNanos + "ns, ~"
+                    + nanosPerElement + "ns/element]";
+        }
+    }
+}
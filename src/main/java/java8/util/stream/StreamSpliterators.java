@@ -31,7 +31,6 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import java8.util.Objects;
 import java8.util.Spliterators;
-import java8.util.concurrent.ForkJoinPool;
 import java8.util.function.BooleanSupplier;
 import java8.util.function.Consumer;
 import java8.util.function.DoubleConsumer;
@@ -1626,6 +1625,21 @@ class StreamSpliterators {
         }
     }
 
+    /**
+     * The initial capacity of the set of elements seen by a distinct
+     * spliterator. The exact size of the source, if known, only bounds the
+     * number of distinct elements from above, so the capacity is capped as
+     * for a {@link PrimitiveHashSet}.
+     */
+    static int initialDistinctCapacity(Spliterator<?> s) {
+        long size = s.getExactSizeIfKnown();
+        if (size < 0L) {
+            return 512;
+        }
+        int tableSize = PrimitiveHashSet.tableSizeFor(size);
+        return tableSize - (tableSize >>> 2);
+    }
+
     /**
      * A wrapping spliterator that only reports distinct elements of the
      * underlying spliterator. Does not preserve size and encounter order.
@@ -1646,7 +1660,8 @@ class StreamSpliterators {
 
         DistinctSpliterator(Spliterator<T> s) {
             // Pre-size map to reduce concurrent re-sizes
-            this(s, new ConcurrentHashMap<>(512, 0.75f, ForkJoinPool.getCommonPoolParallelism() + 1));
+            this(s, new ConcurrentHashMap<>(initialDistinctCapacity(s), 0.75f,
+                                            AbstractTask.getPoolParallelism() + 1));
         }
 
         private DistinctSpliterator(Spliterator<T> s, ConcurrentMap<T, Boolean> seen) {
@@ -1719,6 +1734,196 @@ class StreamSpliterators {
         }
     }
 
+    /**
+     * A {@code Int} distinct spliterator, like {@link DistinctSpliterator},
+     * that records the elements seen in a striped primitive hash set instead
+     * of a {@code ConcurrentHashMap} of boxed values.
+     */
+    static final class IntDistinctSpliterator implements Spliterator.OfInt, IntConsumer {
+
+        // The underlying spliterator
+        private final Spliterator.OfInt s;
+
+        // Striped set holding the distinct elements
+        private final PrimitiveHashSet.StripedOfInt seen;
+
+        // Temporary element, only used with tryAdvance
+        private int tmpValue;
+
+        IntDistinctSpliterator(Spliterator.OfInt s) {
+            this(s, new PrimitiveHashSet.StripedOfInt(PrimitiveHashSet.stripeCount(),
+                                                     s.getExactSizeIfKnown()));
+        }
+
+        private IntDistinctSpliterator(Spliterator.OfInt s, PrimitiveHashSet.StripedOfInt seen) {
+            this.s = s;
+            this.seen = seen;
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return Spliterators.getExactSizeIfKnown(this);
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public void accept(int value) {
+            this.tmpValue = value;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (s.tryAdvance(this)) {
+                if (seen.add(tmpValue)) {
+                    action.accept(tmpValue);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            s.forEachRemaining((IntConsumer) t -> {
+                if (seen.add(t)) {
+                    action.accept(t);
+                }
+            });
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Integer> action) {
+            return Spliterators.OfInt.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Integer> action) {
+            Spliterators.OfInt.forEachRemaining(this, action);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            Spliterator.OfInt split = s.trySplit();
+            return (split != null) ? new IntDistinctSpliterator(split, seen) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return s.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (s.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED |
+                                            Spliterator.SORTED | Spliterator.ORDERED))
+                   | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return s.getComparator();
+        }
+    }
+
+    /**
+     * A {@code Long} distinct spliterator, like {@link DistinctSpliterator},
+     * that records the elements seen in a striped primitive hash set instead
+     * of a {@code ConcurrentHashMap} of boxed values.
+     */
+    static final class LongDistinctSpliterator implements Spliterator.OfLong, LongConsumer {
+
+        // The underlying spliterator
+        private final Spliterator.OfLong s;
+
+        // Striped set holding the distinct elements
+        private final PrimitiveHashSet.StripedOfLong seen;
+
+        // Temporary element, only used with tryAdvance
+        private long tmpValue;
+
+        LongDistinctSpliterator(Spliterator.OfLong s) {
+            this(s, new PrimitiveHashSet.StripedOfLong(PrimitiveHashSet.stripeCount(),
+                                                     s.getExactSizeIfKnown()));
+        }
+
+        private LongDistinctSpliterator(Spliterator.OfLong s, PrimitiveHashSet.StripedOfLong seen) {
+            this.s = s;
+            this.seen = seen;
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return Spliterators.getExactSizeIfKnown(this);
+        }
+
+        @Override
+        public boolean hasCharacteristics(int characteristics) {
+            return Spliterators.hasCharacteristics(this, characteristics);
+        }
+
+        @Override
+        public void accept(long value) {
+            this.tmpValue = value;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (s.tryAdvance(this)) {
+                if (seen.add(tmpValue)) {
+                    action.accept(tmpValue);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            s.forEachRemaining((LongConsumer) t -> {
+                if (seen.add(t)) {
+                    action.accept(t);
+                }
+            });
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Long> action) {
+            return Spliterators.OfLong.tryAdvance(this, action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Long> action) {
+            Spliterators.OfLong.forEachRemaining(this, action);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            Spliterator.OfLong split = s.trySplit();
+            return (split != null) ? new LongDistinctSpliterator(split, seen) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return s.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (s.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED |
+                                            Spliterator.SORTED | Spliterator.ORDERED))
+                   | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            return s.getComparator();
+        }
+    }
+
     /**
      * A Spliterator that infinitely supplies elements in no particular order.
      *
@@ -24,10 +24,25 @@
  */
 package java8.util.stream;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import java8.util.Objects;
 import java8.util.Spliterators;
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.function.DoubleFunction;
+import java8.util.function.Function;
+import java8.util.function.Functions;
+import java8.util.function.IntFunction;
+import java8.util.function.LongFunction;
 import java8.util.function.Supplier;
 import java8.util.Spliterator;
 
@@ -195,6 +210,27 @@ public final class StreamSupport {
         return stream(Spliterators.spliterator(c), true);
     }
 
+    /**
+     * Creates a new parallel {@code Stream} from the given collection, as by
+     * {@link #parallelStream(Collection)}, whose terminal operation is
+     * executed in the given {@code ForkJoinPool} rather than in the common
+     * pool.
+     *
+     * @param <T>
+     *            Type of elements
+     * @param c
+     *            The collection
+     * @param pool
+     *            The pool in which the terminal operation is executed
+     * @return a new parallel {@code Stream}
+     * @throws NullPointerException
+     *             if the given collection or pool is {@code null}
+     * @see #parallel(BaseStream, ForkJoinPool)
+     */
+    public static <T> Stream<T> parallelStream(Collection<? extends T> c, ForkJoinPool pool) {
+        return parallel(parallelStream(c), pool);
+    }
+
     /**
      * Creates a new sequential {@code Stream} using the given collection's
      * {@link java.util.Collection#iterator()} as the source of elements for an
@@ -277,6 +313,48 @@ public final class StreamSupport {
         return stream(Spliterators.spliterator(c, characteristics), parallel);
     }
 
+    /**
+     * Creates a new sequential or parallel {@code Stream} that takes its
+     * elements from the given blocking queue while the queue is being
+     * filled, as described for
+     * {@link Spliterators#blockingSpliterator(BlockingQueue, long, TimeUnit, Object, boolean)}.
+     * The stream ends when an element equal to {@code endOfStream} is taken
+     * from the queue, when no element arrives within the given timeout, or
+     * when the thread taking elements is interrupted.
+     *
+     * <p>Threads of a parallel stream that wait for the queue do so as
+     * managed blockers of their {@code ForkJoinPool}. An unordered stream
+     * lets operations such as {@code limit}, {@code distinct} or
+     * {@code findAny} skip the bookkeeping for the encounter order.
+     *
+     * @param <T>
+     *            Type of elements
+     * @param queue
+     *            The queue to take the elements from
+     * @param timeout
+     *            how long to wait for the next element before ending the
+     *            stream, in units of {@code unit}
+     * @param unit
+     *            the unit of the {@code timeout} argument
+     * @param endOfStream
+     *            The element that marks the end of the stream, or
+     *            {@code null} if only the timeout ends it
+     * @param ordered
+     *            if {@code true} the stream's encounter order is the order in
+     *            which the elements are taken from the queue; if
+     *            {@code false} the stream is unordered
+     * @param parallel
+     *            if {@code true} then the returned stream is a parallel stream;
+     *            if {@code false} the returned stream is a sequential stream.
+     * @return a new sequential or parallel {@code Stream}
+     * @throws NullPointerException if the given queue or unit is {@code null}
+     */
+    public static <T> Stream<T> stream(BlockingQueue<T> queue, long timeout, TimeUnit unit,
+            T endOfStream, boolean ordered, boolean parallel) {
+        return stream(Spliterators.blockingSpliterator(queue, timeout, unit, endOfStream, ordered),
+                parallel);
+    }
+
     /**
      * Creates a new sequential or parallel {@code Stream} from a
      * {@code Spliterator}.
@@ -551,6 +629,859 @@ public final class StreamSupport {
                                          parallel);
     }
 
+    /**
+     * Creates a new sequential {@code Stream} of the lines of the file that
+     * is read by the given channel. The file is mapped into memory, a window
+     * at a time, rather than read through a buffer, and the lines are the
+     * sequences of bytes separated by a line feed ({@code '\n'}), with a
+     * trailing carriage return ({@code '\r'}) removed, decoded with the
+     * given charset. Malformed input is replaced by the charset's default
+     * replacement.
+     *
+     * <p>The stream covers the file from its start to its size at the time
+     * of this call and does not change the position of the channel. Since
+     * the line feed byte of the supported charsets never occurs within a
+     * multi-byte character, the stream splits the file at the line feed
+     * nearest to the middle of a range, so that a parallel stream scales
+     * with the number of threads. The channel is not closed by the stream.
+     *
+     * <p>An {@code IOException} while mapping the file during the terminal
+     * operation is rethrown as an {@link java8.io.UncheckedIOException}.
+     *
+     * @param channel a channel that is open for reading the file
+     * @param cs the charset of the file, which must be UTF-8, ISO-8859-1
+     *        or US-ASCII
+     * @return a new sequential {@code Stream} of the lines of the file
+     * @throws IOException if the size of the file cannot be determined
+     * @throws NullPointerException if {@code channel} or {@code cs} is
+     *         {@code null}
+     * @throws IllegalArgumentException if the charset is not supported
+     */
+    public static Stream<String> lines(FileChannel channel, final Charset cs) throws IOException {
+        Objects.requireNonNull(cs);
+        if (!MappedFileSpliterators.isLineSplittable(cs)) {
+            throw new IllegalArgumentException("unsupported charset: " + cs.name());
+        }
+        return delimitedRecords(channel, (byte) '\n').map(line -> MappedFileSpliterators.decodeLine(line, cs));
+    }
+
+    /**
+     * Creates a new sequential {@code Stream} of the records of the file
+     * that is read by the given channel, where the records are separated by
+     * the given delimiter byte. Each record is a read-only
+     * {@code ByteBuffer} over the record's bytes, excluding the delimiter,
+     * which shares its content with a mapping of the file. The last record
+     * need not be followed by a delimiter. A record must not be longer than
+     * 64 MiB.
+     *
+     * <p>The stream covers the file from its start to its size at the time
+     * of this call and does not change the position of the channel. A
+     * parallel stream splits the file at the delimiter nearest to the middle
+     * of a range. The channel is not closed by the stream. An
+     * {@code IOException} while mapping the file during the terminal
+     * operation is rethrown as an {@link java8.io.UncheckedIOException}.
+     *
+     * @param channel a channel that is open for reading the file
+     * @param delimiter the byte that separates the records
+     * @return a new sequential {@code Stream} of the records of the file
+     * @throws IOException if the size of the file cannot be determined
+     * @throws NullPointerException if {@code channel} is {@code null}
+     */
+    public static Stream<ByteBuffer> delimitedRecords(FileChannel channel, byte delimiter)
+            throws IOException {
+        return stream(new MappedFileSpliterators.Delimited(channel, delimiter, 0L, channel.size(),
+                MappedFileSpliterators.MAP_WINDOW), false);
+    }
+
+    /**
+     * Creates a new sequential {@code Stream} of the fixed-size records of
+     * the file that is read by the given channel. Each record is a
+     * read-only {@code ByteBuffer} over the record's {@code recordLength}
+     * bytes, which shares its content with a mapping of the file. Trailing
+     * bytes that do not make up a whole record are ignored.
+     *
+     * <p>The stream is {@code SIZED}, covers the file from its start to its
+     * size at the time of this call and does not change the position of the
+     * channel. A parallel stream splits the file at the record boundary
+     * nearest to the middle of a range. The channel is not closed by the
+     * stream. An {@code IOException} while mapping the file during the
+     * terminal operation is rethrown as an
+     * {@link java8.io.UncheckedIOException}.
+     *
+     * @param channel a channel that is open for reading the file
+     * @param recordLength the number of bytes of a record
+     * @return a new sequential {@code Stream} of the records of the file
+     * @throws IOException if the size of the file cannot be determined
+     * @throws NullPointerException if {@code channel} is {@code null}
+     * @throws IllegalArgumentException if {@code recordLength < 1}
+     */
+    public static Stream<ByteBuffer> fixedRecords(FileChannel channel, int recordLength)
+            throws IOException {
+        if (recordLength < 1) {
+            throw new IllegalArgumentException("recordLength: " + recordLength);
+        }
+        return stream(new MappedFileSpliterators.Records(channel, recordLength, 0L,
+                channel.size() / recordLength, MappedFileSpliterators.MAP_WINDOW), false);
+    }
+
+    /**
+     * Creates a new sequential {@code IntStream} of the binary {@code int}
+     * values, four bytes each in the given byte order, of the file that is
+     * read by the given channel. The file is mapped into memory, a window
+     * at a time, and trailing bytes that do not make up a whole value are
+     * ignored.
+     *
+     * <p>The stream is {@code SIZED}, covers the file from its start to its
+     * size at the time of this call and does not change the position of the
+     * channel. A parallel stream splits the file at the value nearest to the
+     * middle of a range. The channel is not closed by the stream. An
+     * {@code IOException} while mapping the file during the terminal
+     * operation is rethrown as an {@link java8.io.UncheckedIOException}.
+     *
+     * @param channel a channel that is open for reading the file
+     * @param order the byte order of the values
+     * @return a new sequential {@code IntStream} of the values of the file
+     * @throws IOException if the size of the file cannot be determined
+     * @throws NullPointerException if {@code channel} or {@code order} is
+     *         {@code null}
+     */
+    public static IntStream intStream(FileChannel channel, ByteOrder order) throws IOException {
+        Objects.requireNonNull(order);
+        return intStream(new MappedFileSpliterators.Ints(channel, order, 0L,
+                channel.size() / 4, MappedFileSpliterators.MAP_WINDOW), false);
+    }
+
+    /**
+     * Creates a new sequential {@code LongStream} of the binary
+     * {@code long} values, eight bytes each in the given byte order, of the
+     * file that is read by the given channel, as described for
+     * {@link #intStream(FileChannel, ByteOrder)}.
+     *
+     * @param channel a channel that is open for reading the file
+     * @param order the byte order of the values
+     * @return a new sequential {@code LongStream} of the values of the file
+     * @throws IOException if the size of the file cannot be determined
+     * @throws NullPointerException if {@code channel} or {@code order} is
+     *         {@code null}
+     */
+    public static LongStream longStream(FileChannel channel, ByteOrder order) throws IOException {
+        Objects.requireNonNull(order);
+        return longStream(new MappedFileSpliterators.Longs(channel, order, 0L,
+                channel.size() / 8, MappedFileSpliterators.MAP_WINDOW), false);
+    }
+
+    /**
+     * Creates a new sequential {@code DoubleStream} of the binary
+     * {@code double} values, eight bytes each in the given byte order, of
+     * the file that is read by the given channel, as described for
+     * {@link #intStream(FileChannel, ByteOrder)}.
+     *
+     * @param channel a channel that is open for reading the file
+     * @param order the byte order of the values
+     * @return a new sequential {@code DoubleStream} of the values of the file
+     * @throws IOException if the size of the file cannot be determined
+     * @throws NullPointerException if {@code channel} or {@code order} is
+     *         {@code null}
+     */
+    public static DoubleStream doubleStream(FileChannel channel, ByteOrder order) throws IOException {
+        Objects.requireNonNull(order);
+        return doubleStream(new MappedFileSpliterators.Doubles(channel, order, 0L,
+                channel.size() / 8, MappedFileSpliterators.MAP_WINDOW), false);
+    }
+
+    /**
+     * Creates an {@link IncrementalReduction} of the elements of an
+     * append-only list, through the stream pipeline built by the given
+     * function, by the given collector. Each
+     * {@link IncrementalReduction#evaluate() evaluation} only processes the
+     * elements appended to the list since the previous evaluation.
+     *
+     * <p>The function is applied to a stream over the new elements on every
+     * evaluation, and once when the reduction is created to check the
+     * pipeline. It must return a stream derived from the given stream by
+     * stateless intermediate operations only, and may make it parallel.
+     *
+     * @param <T> the type of the elements of the list
+     * @param <U> the type of the elements of the pipeline's output
+     * @param <A> the intermediate accumulation type of the {@code Collector}
+     * @param <R> the type of the result of the reduction
+     * @param source the append-only list
+     * @param pipeline a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *                 <a href="package-summary.html#Statelessness">stateless</a>
+     *                 function building the pipeline on a stream over new
+     *                 elements of the list
+     * @param collector the {@code Collector} describing the reduction
+     * @return the incremental reduction
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalArgumentException if the function returns a stream that
+     *         is not derived from its argument, or that contains a stateful
+     *         intermediate operation
+     */
+    public static <T, U, A, R> IncrementalReduction<T, R> incremental(List<T> source,
+            Function<? super Stream<T>, ? extends Stream<U>> pipeline,
+            Collector<? super U, A, R> collector) {
+        return new IncrementalReduction<T, R>(source, pipeline, collector);
+    }
+
+    /**
+     * Creates an {@link IncrementalReduction} of the elements of an
+     * append-only list by the given collector. Each
+     * {@link IncrementalReduction#evaluate() evaluation} only processes the
+     * elements appended to the list since the previous evaluation.
+     *
+     * @param <T> the type of the elements of the list
+     * @param <A> the intermediate accumulation type of the {@code Collector}
+     * @param <R> the type of the result of the reduction
+     * @param source the append-only list
+     * @param collector the {@code Collector} describing the reduction
+     * @return the incremental reduction
+     * @throws NullPointerException if any argument is {@code null}
+     * @see #incremental(List, Function, Collector)
+     */
+    public static <T, A, R> IncrementalReduction<T, R> incremental(List<T> source,
+            Collector<? super T, A, R> collector) {
+        return new IncrementalReduction<T, R>(source, Functions.<Stream<T>>identity(), collector);
+    }
+
+    /**
+     * Returns an equivalent stream that is parallel and whose terminal
+     * operation is executed in the given {@code ForkJoinPool} instead of the
+     * common pool.  Leaf task sizing of the parallel computation is derived
+     * from the parallelism of that pool.
+     *
+     * <p>The thread invoking the terminal operation blocks until the
+     * computation in {@code pool} has completed.  If the terminal operation
+     * is invoked from a worker thread of {@code pool} it simply executes in
+     * that thread, as it would for any parallel stream.  Calling
+     * {@link BaseStream#sequential()} afterwards makes the stream sequential
+     * again and the pool is ignored; the {@code iterator()} and
+     * {@code spliterator()} escape hatches are not executed in the pool.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a> that may return the stream itself, modified to be
+     * parallel.
+     *
+     * @param <T> the type of the stream elements
+     * @param <S> the type of the stream
+     * @param stream the stream, which must have been created by this library
+     * @param pool the pool in which the terminal operation is executed
+     * @return a parallel stream executing in {@code pool}
+     * @throws NullPointerException if {@code stream} or {@code pool} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static <T, S extends BaseStream<T, S>> S parallel(S stream, ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        pipeline(stream).setExecutionPool(pool);
+        return stream.parallel();
+    }
+
+    /**
+     * Returns an equivalent stream whose parallel evaluation splits its
+     * source according to the given {@link SplitPolicy} rather than the
+     * built-in policy. The policy has no effect when the stream is evaluated
+     * sequentially.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a> that may return the stream itself.
+     *
+     * @param <T> the type of the stream elements
+     * @param <S> the type of the stream
+     * @param stream the stream, which must have been created by this library
+     * @param policy the split policy to use
+     * @return a stream using {@code policy} for parallel evaluation
+     * @throws NullPointerException if {@code stream} or {@code policy} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static <T, S extends BaseStream<T, S>> S withSplitPolicy(S stream, SplitPolicy policy) {
+        Objects.requireNonNull(policy);
+        pipeline(stream).setSplitPolicy(policy);
+        return stream;
+    }
+
+    /**
+     * Returns an equivalent stream whose parallel {@code forEachOrdered}
+     * holds at most about {@code maxBufferedElements} elements in memory
+     * ahead of their turn.
+     *
+     * <p>A parallel {@code forEachOrdered} processes the parts of the
+     * source concurrently, but has to pass the elements to the action in
+     * encounter order. By default a part that is done before all parts
+     * preceding it is buffered in full, so that for a slow action, such as a
+     * write to a file, up to the whole output of the pipeline may be held in
+     * memory. With a limit, a part is only processed ahead of its turn as
+     * far as its elements fit into the remaining buffer; the rest of its
+     * elements are produced when its turn comes, in the thread that passes
+     * them to the action. The limit thus trades parallelism for memory.
+     * For pipelines with a known size a part is processed ahead only if all
+     * of its elements fit. For others, such as pipelines with a
+     * {@code filter} or {@code flatMap}, the elements of a part are counted
+     * as they are buffered, and buffering stops when the limit is reached;
+     * the limit may then be exceeded by the elements produced from a single
+     * source element, for example by one inner stream of a {@code flatMap}.
+     * The peak number of buffered elements is reported by
+     * {@link PipelineStatistics#peakBufferedElements()}.
+     *
+     * <p>The limit has no effect on other terminal operations or when the
+     * stream is evaluated sequentially.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a> that may return the stream itself.
+     *
+     * @param <T> the type of the stream elements
+     * @param <S> the type of the stream
+     * @param stream the stream, which must have been created by this library
+     * @param maxBufferedElements the maximum number of elements buffered by
+     *        a parallel {@code forEachOrdered}
+     * @return a stream with a bounded buffer for {@code forEachOrdered}
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if
+     *         {@code maxBufferedElements < 0}
+     */
+    public static <T, S extends BaseStream<T, S>> S withOrderedBufferLimit(S stream,
+            long maxBufferedElements) {
+        if (maxBufferedElements < 0L) {
+            throw new IllegalArgumentException("maxBufferedElements: " + maxBufferedElements);
+        }
+        pipeline(stream).setOrderedBufferLimit(maxBufferedElements);
+        return stream;
+    }
+
+    /**
+     * Returns an equivalent stream whose evaluation by a terminal operation
+     * is instrumented and reported to the given {@link PipelineListener}:
+     * the number of elements entering and leaving each stage, the time spent
+     * in each stage, short-circuit cancellations and, for a parallel
+     * evaluation, the number of leaf tasks and splits.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a> that may return the stream itself. It applies to the
+     * whole pipeline, including the stages that are added after it.
+     *
+     * @param <T> the type of the stream elements
+     * @param <S> the type of the stream
+     * @param stream the stream, which must have been created by this library
+     * @param listener the listener to notify
+     * @return an instrumented stream
+     * @throws NullPointerException if {@code stream} or {@code listener} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static <T, S extends BaseStream<T, S>> S withListener(S stream, PipelineListener listener) {
+        Objects.requireNonNull(listener);
+        pipeline(stream).setListener(listener);
+        return stream;
+    }
+
+    /**
+     * Returns a stream consisting of the results of replacing each element of
+     * the given stream with the contents of the stream produced by applying
+     * the provided mapping function to the element, like
+     * {@link Stream#flatMap(java8.util.function.Function)}.
+     *
+     * <p>Unlike the {@code flatMap} operation, which pushes all elements of
+     * an inner stream into the downstream stages from the leaf task that
+     * maps the outer element, a parallel evaluation of the returned stream
+     * splits the inner streams themselves, so that a single large inner
+     * stream doesn't serialize the pipeline. To that end all elements of the
+     * given stream are mapped up-front, when the terminal operation of the
+     * returned stream begins, and the spliterators of the inner streams are
+     * split according to their estimated sizes. The encounter order is that
+     * of {@code flatMap}. The returned stream is parallel if the given stream
+     * is, and uses its execution pool and split policy. If the returned
+     * stream is parallel when its terminal operation begins, the inner
+     * streams are switched to parallel and use the same execution pool and
+     * split policy; otherwise they are switched to sequential, as for
+     * {@code flatMap}.
+     *
+     * <p>This is meant for an outer stream of a moderate number of elements,
+     * say the partitions of a data set, each of which maps to a stream of
+     * many elements: the inner streams are created all at once, even for a
+     * short-circuiting terminal operation. Each inner stream is closed once
+     * its contents have been consumed; the inner streams whose contents have
+     * not been consumed completely are closed when the returned stream is
+     * closed. A {@code null} inner stream is treated as empty.
+     *
+     * @param <T> the type of the elements of the given stream
+     * @param <R> the type of the elements of the new stream
+     * @param stream the stream, which must have been created by this library
+     * @param mapper a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *               <a href="package-summary.html#Statelessness">stateless</a>
+     *               function to apply to each element which produces a stream
+     *               of new values
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} or {@code mapper} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static <T, R> Stream<R> splittingFlatMap(Stream<T> stream,
+            Function<? super T, ? extends Stream<? extends R>> mapper) {
+        Objects.requireNonNull(mapper);
+        final Stream<T> s = stream;
+        final Function<? super T, ? extends Stream<? extends R>> m = mapper;
+        FlatMapSpliterator.OfRef<R> spliterator = new FlatMapSpliterator.OfRef<>(
+                () -> s.map(m).toArray(), flatMapCharacteristics(stream));
+        return flattened(stream, spliterator, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the results of replacing each element of
+     * the given stream with the contents of the {@code IntStream} produced by applying
+     * the provided mapping function to the element, like
+     * {@link IntStream#flatMap(IntFunction)}.
+     *
+     * <p>The inner streams are split as described for
+     * {@link #splittingFlatMap(Stream, Function)}.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param mapper a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *               <a href="package-summary.html#Statelessness">stateless</a>
+     *               function to apply to each element which produces a stream
+     *               of new values
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} or {@code mapper} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static IntStream splittingFlatMap(IntStream stream, IntFunction<? extends IntStream> mapper) {
+        Objects.requireNonNull(mapper);
+        final IntStream s = stream;
+        final IntFunction<? extends IntStream> m = mapper;
+        FlatMapSpliterator.OfInt spliterator = new FlatMapSpliterator.OfInt(
+                () -> s.mapToObj(m).toArray(), flatMapCharacteristics(stream));
+        return flattened(stream, spliterator, intStream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the results of replacing each element of
+     * the given stream with the contents of the {@code LongStream} produced by applying
+     * the provided mapping function to the element, like
+     * {@link LongStream#flatMap(LongFunction)}.
+     *
+     * <p>The inner streams are split as described for
+     * {@link #splittingFlatMap(Stream, Function)}.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param mapper a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *               <a href="package-summary.html#Statelessness">stateless</a>
+     *               function to apply to each element which produces a stream
+     *               of new values
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} or {@code mapper} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static LongStream splittingFlatMap(LongStream stream,
+            LongFunction<? extends LongStream> mapper) {
+        Objects.requireNonNull(mapper);
+        final LongStream s = stream;
+        final LongFunction<? extends LongStream> m = mapper;
+        FlatMapSpliterator.OfLong spliterator = new FlatMapSpliterator.OfLong(
+                () -> s.mapToObj(m).toArray(), flatMapCharacteristics(stream));
+        return flattened(stream, spliterator, longStream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the results of replacing each element of
+     * the given stream with the contents of the {@code DoubleStream} produced by applying
+     * the provided mapping function to the element, like
+     * {@link DoubleStream#flatMap(DoubleFunction)}.
+     *
+     * <p>The inner streams are split as described for
+     * {@link #splittingFlatMap(Stream, Function)}.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param mapper a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *               <a href="package-summary.html#Statelessness">stateless</a>
+     *               function to apply to each element which produces a stream
+     *               of new values
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} or {@code mapper} is
+     *         {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library
+     */
+    public static DoubleStream splittingFlatMap(DoubleStream stream,
+            DoubleFunction<? extends DoubleStream> mapper) {
+        Objects.requireNonNull(mapper);
+        final DoubleStream s = stream;
+        final DoubleFunction<? extends DoubleStream> m = mapper;
+        FlatMapSpliterator.OfDouble spliterator = new FlatMapSpliterator.OfDouble(
+                () -> s.mapToObj(m).toArray(), flatMapCharacteristics(stream));
+        return flattened(stream, spliterator, doubleStream(spliterator, stream.isParallel()));
+    }
+
+    private static int flatMapCharacteristics(BaseStream<?, ?> stream) {
+        return pipeline(stream).isOrdered() ? Spliterator.ORDERED : 0;
+    }
+
+    private static <S extends BaseStream<?, S>> S flattened(BaseStream<?, ?> stream,
+            FlatMapSpliterator<?, ?> spliterator, S result) {
+        AbstractPipeline<?, ?, ?> p = pipeline(result);
+        p.inheritExecutionSettings(pipeline(stream));
+        spliterator.owner = p;
+        return result.onClose(closeHandler(stream)).onClose(spliterator::close);
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream
+     * grouped into lists of {@code size} consecutive elements, in encounter
+     * order. The last list holds the remaining elements and may be shorter.
+     *
+     * <p>Unlike collecting the stream and splitting the result, the lists
+     * are formed as the elements are traversed, so that a batch can be
+     * processed, for example written to a database, while the next one is
+     * produced. If the given stream has a known size and its spliterator
+     * splits into parts of known size, as for a parallel stream over an
+     * array, a list or a range with stateless intermediate operations that
+     * preserve the size, such as {@code map} or {@code peek}, the returned
+     * stream is sized as well and splits on chunk boundaries: only the
+     * elements of a chunk that straddles a split point are copied. Otherwise
+     * a parallel evaluation splits off batches of chunks, as for a stream
+     * over an iterator. The returned stream is parallel if the given stream
+     * is, and uses its execution pool and split policy. Closing it closes the
+     * given stream.
+     *
+     * <p>The lists are fixed-size lists over fresh arrays, one per chunk.
+     *
+     * @param <T> the type of the elements of the given stream
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per chunk
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0}
+     */
+    public static <T> Stream<List<T>> chunked(Stream<T> stream, int size) {
+        checkWindow(stream, size, size);
+        WindowSpliterator.OfRef<T> spliterator = new WindowSpliterator.OfRef<>(
+                stream.spliterator(), size, size, true);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream
+     * grouped into arrays of {@code size} consecutive elements, like
+     * {@link #chunked(Stream, int)}. The last array may be shorter.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per chunk
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0}
+     */
+    public static Stream<int[]> chunked(IntStream stream, int size) {
+        checkWindow(stream, size, size);
+        WindowSpliterator.OfInt spliterator = new WindowSpliterator.OfInt(
+                stream.spliterator(), size, size, true);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream
+     * grouped into arrays of {@code size} consecutive elements, like
+     * {@link #chunked(Stream, int)}. The last array may be shorter.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per chunk
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0}
+     */
+    public static Stream<long[]> chunked(LongStream stream, int size) {
+        checkWindow(stream, size, size);
+        WindowSpliterator.OfLong spliterator = new WindowSpliterator.OfLong(
+                stream.spliterator(), size, size, true);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream
+     * grouped into arrays of {@code size} consecutive elements, like
+     * {@link #chunked(Stream, int)}. The last array may be shorter.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per chunk
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0}
+     */
+    public static Stream<double[]> chunked(DoubleStream stream, int size) {
+        checkWindow(stream, size, size);
+        WindowSpliterator.OfDouble spliterator = new WindowSpliterator.OfDouble(
+                stream.spliterator(), size, size, true);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the windows of {@code size} consecutive
+     * elements of the given stream, where each window starts {@code step}
+     * elements after the start of the previous one, in encounter order.
+     * Windows overlap if {@code step < size}; if {@code step > size} the
+     * elements between windows are left out. Only complete windows are
+     * included, so that the returned stream is empty if the given stream has
+     * fewer than {@code size} elements.
+     *
+     * <p>The windows are formed as the elements are traversed and a parallel
+     * evaluation splits on window boundaries, as described for
+     * {@link #chunked(Stream, int)}; the elements shared by the windows on
+     * both sides of a split point are copied. The lists are fixed-size lists
+     * over fresh arrays, one per window.
+     *
+     * @param <T> the type of the elements of the given stream
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0} or
+     *         {@code step <= 0}
+     */
+    public static <T> Stream<List<T>> sliding(Stream<T> stream, int size, int step) {
+        checkWindow(stream, size, step);
+        WindowSpliterator.OfRef<T> spliterator = new WindowSpliterator.OfRef<>(
+                stream.spliterator(), size, step, false);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the windows of {@code size} consecutive
+     * elements of the given stream, where each window starts {@code step}
+     * elements after the start of the previous one, like
+     * {@link #sliding(Stream, int, int)}.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0} or
+     *         {@code step <= 0}
+     */
+    public static Stream<int[]> sliding(IntStream stream, int size, int step) {
+        checkWindow(stream, size, step);
+        WindowSpliterator.OfInt spliterator = new WindowSpliterator.OfInt(
+                stream.spliterator(), size, step, false);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the windows of {@code size} consecutive
+     * elements of the given stream, where each window starts {@code step}
+     * elements after the start of the previous one, like
+     * {@link #sliding(Stream, int, int)}.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0} or
+     *         {@code step <= 0}
+     */
+    public static Stream<long[]> sliding(LongStream stream, int size, int step) {
+        checkWindow(stream, size, step);
+        WindowSpliterator.OfLong spliterator = new WindowSpliterator.OfLong(
+                stream.spliterator(), size, step, false);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    /**
+     * Returns a stream consisting of the windows of {@code size} consecutive
+     * elements of the given stream, where each window starts {@code step}
+     * elements after the start of the previous one, like
+     * {@link #sliding(Stream, int, int)}.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param size the number of elements per window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if {@code size <= 0} or
+     *         {@code step <= 0}
+     */
+    public static Stream<double[]> sliding(DoubleStream stream, int size, int step) {
+        checkWindow(stream, size, step);
+        WindowSpliterator.OfDouble spliterator = new WindowSpliterator.OfDouble(
+                stream.spliterator(), size, step, false);
+        return windowed(stream, stream(spliterator, stream.isParallel()));
+    }
+
+    private static void checkWindow(BaseStream<?, ?> stream, int size, int step) {
+        pipeline(stream);
+        if (size <= 0) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("step: " + step);
+        }
+    }
+
+    private static <S extends BaseStream<?, S>> S windowed(BaseStream<?, ?> stream, S result) {
+        pipeline(result).inheritExecutionSettings(pipeline(stream));
+        return result.onClose(closeHandler(stream));
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream,
+     * sorted according to the provided {@code Comparator}, holding at most
+     * {@code maxElementsInMemory} elements in memory while sorting.
+     *
+     * <p>Whenever that many elements have been buffered they are sorted and
+     * written as a run to a temporary file using the given serializer. The
+     * runs are merged when the elements are pushed downstream, so that an
+     * input larger than the available heap can be sorted. If all elements
+     * fit into memory nothing is written. A parallel evaluation sorts the
+     * runs in parallel, sharing the budget among the threads of the pool,
+     * keeps the last run of each task in memory as long as the budget
+     * allows, and merges the runs sequentially.
+     *
+     * <p>The sort is stable. At most 64 runs are merged at once, and only
+     * the files of the runs being merged are open. The temporary files are
+     * deleted once their elements have been merged or the evaluation fails;
+     * the files of an evaluation that is abandoned, for example through
+     * {@code iterator()}, are deleted when the stream is closed. An
+     * {@code IOException} while writing or reading a run is rethrown as an
+     * {@link java8.io.UncheckedIOException}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @param <T> the type of the stream elements
+     * @param stream the stream, which must have been created by this library
+     * @param comparator a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *                   <a href="package-summary.html#Statelessness">stateless</a>
+     *                   {@code Comparator} to be used to compare stream elements
+     * @param maxElementsInMemory the maximum number of elements buffered in
+     *        memory
+     * @param serializer writes and reads back the elements of a run
+     * @return the new stream
+     * @throws NullPointerException if {@code stream}, {@code comparator} or
+     *         {@code serializer} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if
+     *         {@code maxElementsInMemory < 1}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Stream<T> externalSorted(Stream<T> stream, Comparator<? super T> comparator,
+            int maxElementsInMemory, ElementSerializer<T> serializer) {
+        Objects.requireNonNull(comparator);
+        Objects.requireNonNull(serializer);
+        return ExternalSortOps.makeRef((AbstractPipeline<?, T, ?>) pipeline(stream), comparator,
+                checkMaxElements(maxElementsInMemory), serializer);
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream in
+     * sorted order, holding at most {@code maxElementsInMemory} elements in
+     * memory while sorting. Runs of sorted elements are written to temporary
+     * files as described for
+     * {@link #externalSorted(Stream, java.util.Comparator, int, ElementSerializer)}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param maxElementsInMemory the maximum number of elements buffered in
+     *        memory
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if
+     *         {@code maxElementsInMemory < 1}
+     */
+    @SuppressWarnings("unchecked")
+    public static IntStream externalSorted(IntStream stream, int maxElementsInMemory) {
+        return ExternalSortOps.makeInt((AbstractPipeline<?, Integer, ?>) pipeline(stream),
+                checkMaxElements(maxElementsInMemory));
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream in
+     * sorted order, holding at most {@code maxElementsInMemory} elements in
+     * memory while sorting. Runs of sorted elements are written to temporary
+     * files as described for
+     * {@link #externalSorted(Stream, java.util.Comparator, int, ElementSerializer)}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param maxElementsInMemory the maximum number of elements buffered in
+     *        memory
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if
+     *         {@code maxElementsInMemory < 1}
+     */
+    @SuppressWarnings("unchecked")
+    public static LongStream externalSorted(LongStream stream, int maxElementsInMemory) {
+        return ExternalSortOps.makeLong((AbstractPipeline<?, Long, ?>) pipeline(stream),
+                checkMaxElements(maxElementsInMemory));
+    }
+
+    /**
+     * Returns a stream consisting of the elements of the given stream in
+     * sorted order, holding at most {@code maxElementsInMemory} elements in
+     * memory while sorting. The elements are ordered as by
+     * {@link Double#compare(double, double)}. Runs of sorted elements are
+     * written to temporary files as described for
+     * {@link #externalSorted(Stream, java.util.Comparator, int, ElementSerializer)}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @param stream the stream, which must have been created by this library
+     * @param maxElementsInMemory the maximum number of elements buffered in
+     *        memory
+     * @return the new stream
+     * @throws NullPointerException if {@code stream} is {@code null}
+     * @throws IllegalArgumentException if {@code stream} is not a stream
+     *         implementation of this library or if
+     *         {@code maxElementsInMemory < 1}
+     */
+    @SuppressWarnings("unchecked")
+    public static DoubleStream externalSorted(DoubleStream stream, int maxElementsInMemory) {
+        return ExternalSortOps.makeDouble((AbstractPipeline<?, Double, ?>) pipeline(stream),
+                checkMaxElements(maxElementsInMemory));
+    }
+
+    private static int checkMaxElements(int maxElementsInMemory) {
+        if (maxElementsInMemory < 1) {
+            throw new IllegalArgumentException("maxElementsInMemory: " + maxElementsInMemory);
+        }
+        return maxElementsInMemory;
+    }
+
+    private static AbstractPipeline<?, ?, ?> pipeline(BaseStream<?, ?> stream) {
+        Objects.requireNonNull(stream);
+        if (!(stream instanceof AbstractPipeline)) {
+            throw new IllegalArgumentException("not a streamsupport stream: "
+                    + stream.getClass().getName());
+        }
+        return (AbstractPipeline<?, ?, ?>) stream;
+    }
+
     static Runnable closeHandler(BaseStream<?, ?> stream) {
         return stream::close;
     }
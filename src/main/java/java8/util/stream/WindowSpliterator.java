@@ -0,0 +1,511 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import java8.util.Objects;
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.function.Consumer;
+import java8.util.function.DoubleConsumer;
+import java8.util.function.IntConsumer;
+import java8.util.function.LongConsumer;
+
+/**
+ * A Spliterator over the windows of {@code size} consecutive elements of a
+ * source spliterator, the first element of each window following the first
+ * element of the previous window by {@code step} elements. Windows overlap
+ * if {@code step < size} and elements between windows are dropped if
+ * {@code step > size}. A trailing window with fewer than {@code size}
+ * elements is only reported if {@code partial} is set, which requires
+ * {@code step >= size}.
+ * <p>
+ * The elements of a spliterator are those of a head array, followed by those
+ * of the source spliterator, followed by those of a tail array. If the
+ * source is {@code SUBSIZED}, {@code trySplit} splits the source and moves
+ * the elements around the split point from the suffix into arrays such that
+ * the prefix ends with the last window starting in it and the suffix starts
+ * with the next window. Only the elements shared by windows on both sides,
+ * or dropped between them, are copied, so the split preserves
+ * {@code SIZED} and {@code SUBSIZED}. Other sources are split by copying a
+ * batch of windows into an array, as for an iterator.
+ * <p>
+ * The windows are fresh arrays, which are wrapped into lists for
+ * references. The spliterator reports {@code NONNULL} and the
+ * {@code ORDERED}, {@code SIZED} and {@code SUBSIZED} characteristics of
+ * its source.
+ *
+ * @param <R> the type of the windows
+ * @param <T_ARR> the type of the array holding a window
+ * @param <T_SPLITR> the type of the source spliterator
+ */
+abstract class WindowSpliterator<R, T_ARR, T_SPLITR extends Spliterator<?>>
+        implements Spliterator<R> {
+    static final int BATCH_UNIT = 1 << 10;  // batch array size increment
+    static final int MAX_BATCH = 1 << 25;  // max batch array size
+
+    final int size;
+    final int step;
+    final boolean partial;
+    final int characteristics;
+    // Null once exhausted
+    T_SPLITR source;
+    // The elements preceding the source
+    private T_ARR head;
+    private int headFrom, headTo;
+    // The elements following the source
+    private T_ARR tail;
+    private int tailFrom, tailTo;
+    // The start of the next window, which overlaps the previous one
+    private T_ARR pending;
+    private int pendingCount;
+    // The number of elements to drop before the next window
+    private int skip;
+    // The number of windows of the last batch split
+    private int batch;
+
+    WindowSpliterator(T_SPLITR source, int size, int step, boolean partial) {
+        this.source = source;
+        this.size = size;
+        this.step = step;
+        this.partial = partial;
+        this.characteristics = (source.characteristics()
+                & (Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED))
+                | Spliterator.NONNULL;
+    }
+
+    WindowSpliterator(WindowSpliterator<R, T_ARR, T_SPLITR> parent, T_SPLITR source,
+                      T_ARR head, int headFrom, int headTo, T_ARR tail, int tailTo) {
+        this.source = source;
+        this.size = parent.size;
+        this.step = parent.step;
+        this.partial = parent.partial;
+        this.characteristics = parent.characteristics;
+        this.head = head;
+        this.headFrom = headFrom;
+        this.headTo = headTo;
+        this.tail = tail;
+        this.tailTo = tailTo;
+    }
+
+    /**
+     * Creates the spliterator over the elements of the given head array,
+     * followed by those of the given source, followed by those of the given
+     * tail array.
+     */
+    abstract Spliterator<R> makeSpliterator(T_SPLITR source, T_ARR head, int headFrom,
+                                            int headTo, T_ARR tail, int tailTo);
+
+    /**
+     * Creates an array of the given length.
+     */
+    abstract T_ARR newArray(int length);
+
+    /**
+     * Advances the given source, storing its element at index {@code i}
+     * of {@code array}.
+     */
+    abstract boolean advance(T_SPLITR source, T_ARR array, int i);
+
+    /**
+     * Returns the window held by the given array.
+     */
+    abstract R window(T_ARR array);
+
+    /**
+     * Fills the given array from index {@code i} to {@code n} with the next
+     * elements and returns the index following the last element stored.
+     */
+    private int fill(T_ARR array, int i, int n) {
+        if (headFrom < headTo) {
+            int k = Math.min(n - i, headTo - headFrom);
+            System.arraycopy(head, headFrom, array, i, k);
+            headFrom += k;
+            i += k;
+        }
+        T_SPLITR s = source;
+        if (i < n && s != null) {
+            while (i < n && advance(s, array, i)) {
+                i++;
+            }
+            if (i < n) {
+                source = null;
+            }
+        }
+        if (i < n && tailFrom < tailTo) {
+            int k = Math.min(n - i, tailTo - tailFrom);
+            System.arraycopy(tail, tailFrom, array, i, k);
+            tailFrom += k;
+            i += k;
+        }
+        return i;
+    }
+
+    /**
+     * Drops the elements between the previous and the next window, using
+     * the given array of the given length as scratch space, and returns
+     * {@code false} if there are not enough elements.
+     */
+    private boolean drop(T_ARR scratch, int length) {
+        while (skip > 0) {
+            int k = Math.min(skip, length);
+            int dropped = fill(scratch, 0, k);
+            skip -= dropped;
+            if (dropped < k) {
+                skip = 0;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next window, or {@code null} if there is none.
+     */
+    private R nextWindow() {
+        T_ARR w = pending;
+        int i = pendingCount;
+        if (w != null) {
+            pending = null;
+            pendingCount = 0;
+        } else {
+            w = newArray(size);
+            if (skip > 0 && !drop(w, size)) {
+                return null;
+            }
+        }
+        i = fill(w, i, size);
+        if (i < size) {
+            if (partial && i > 0) {
+                T_ARR last = newArray(i);
+                System.arraycopy(w, 0, last, 0, i);
+                return window(last);
+            }
+            return null;
+        }
+        if (step < size) {
+            pending = newArray(size);
+            pendingCount = size - step;
+            System.arraycopy(w, step, pending, 0, pendingCount);
+        } else {
+            skip = step - size;
+        }
+        return window(w);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        Objects.requireNonNull(action);
+        R w = nextWindow();
+        if (w == null) {
+            return false;
+        }
+        action.accept(w);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super R> action) {
+        Objects.requireNonNull(action);
+        for (R w; (w = nextWindow()) != null; ) {
+            action.accept(w);
+        }
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        T_SPLITR s = source;
+        if (s == null) {
+            return null;
+        }
+        if (!s.hasCharacteristics(Spliterator.SUBSIZED)) {
+            return trySplitBatch();
+        }
+        // Start this spliterator at the next window
+        if (skip > 0 && !drop(newArray(Math.min(skip, size)), size)) {
+            return null;
+        }
+        if (pending != null) {
+            int h = headTo - headFrom;
+            T_ARR a = newArray(pendingCount + h);
+            System.arraycopy(pending, 0, a, 0, pendingCount);
+            if (h > 0) {
+                System.arraycopy(head, headFrom, a, pendingCount, h);
+            }
+            head = a;
+            headFrom = 0;
+            headTo = pendingCount + h;
+            pending = null;
+            pendingCount = 0;
+        }
+        if (source == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        T_SPLITR prefixSource = (T_SPLITR) source.trySplit();
+        if (prefixSource == null) {
+            return null;
+        }
+        long p = (headTo - headFrom) + prefixSource.getExactSizeIfKnown();
+        // The number of windows starting in the prefix
+        long windows = (p + step - 1) / step;
+        if (windows == 0L) {
+            // the prefix source is empty
+            return null;
+        }
+        // The elements of the suffix completing the last window of the
+        // prefix and those preceding the first window of the suffix
+        int extra = (int) Math.max(0L, (windows - 1) * step + size - p);
+        int skipped = (int) (windows * step - p);
+        T_ARR buffer = newArray(Math.max(extra, skipped));
+        T_ARR prefixHead = head;
+        int prefixHeadFrom = headFrom, prefixHeadTo = headTo;
+        head = null;
+        headFrom = headTo = 0;
+        int filled = fill(buffer, 0, Math.max(extra, skipped));
+        Spliterator<R> prefix = makeSpliterator(prefixSource, prefixHead, prefixHeadFrom,
+                prefixHeadTo, buffer, Math.min(extra, filled));
+        head = buffer;
+        headFrom = Math.min(skipped, filled);
+        headTo = filled;
+        return prefix;
+    }
+
+    private Spliterator<R> trySplitBatch() {
+        long est = estimateSize();
+        if (est <= 1L) {
+            return null;
+        }
+        int unit = Math.max(1, BATCH_UNIT / size);
+        long n = Math.min(Math.min((long) batch + unit, est), (long) Math.max(1, MAX_BATCH / size));
+        Object[] a = new Object[(int) n];
+        int j = 0;
+        R w;
+        while (j < n && (w = nextWindow()) != null) {
+            a[j++] = w;
+        }
+        if (j == 0) {
+            return null;
+        }
+        batch = j;
+        return Spliterators.spliterator(a, 0, j, characteristics);
+    }
+
+    @Override
+    public long estimateSize() {
+        long n = (long) pendingCount + (headTo - headFrom) + (tailTo - tailFrom) - skip;
+        if (source != null) {
+            n += source.estimateSize();
+            if (n < 0L) {
+                return Long.MAX_VALUE / step;
+            }
+        }
+        if (n <= 0L) {
+            return 0L;
+        }
+        if (partial) {
+            return n / step + ((n % step != 0L) ? 1L : 0L);
+        }
+        return (n < size) ? 0L : (n - size) / step + 1L;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return ((characteristics & Spliterator.SIZED) != 0) ? estimateSize() : -1L;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public boolean hasCharacteristics(int characteristics) {
+        return (this.characteristics & characteristics) == characteristics;
+    }
+
+    @Override
+    public Comparator<? super R> getComparator() {
+        throw new IllegalStateException();
+    }
+
+    static final class OfRef<T> extends WindowSpliterator<List<T>, Object[], Spliterator<T>>
+            implements Consumer<T> {
+        // The array and index the source element is stored to
+        private Object[] array;
+        private int index;
+
+        OfRef(Spliterator<T> source, int size, int step, boolean partial) {
+            super(source, size, step, partial);
+        }
+
+        private OfRef(OfRef<T> parent, Spliterator<T> source, Object[] head, int headFrom,
+                      int headTo, Object[] tail, int tailTo) {
+            super(parent, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        Spliterator<List<T>> makeSpliterator(Spliterator<T> source, Object[] head, int headFrom,
+                                             int headTo, Object[] tail, int tailTo) {
+            return new OfRef<>(this, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        Object[] newArray(int length) {
+            return new Object[length];
+        }
+
+        @Override
+        boolean advance(Spliterator<T> source, Object[] array, int i) {
+            this.array = array;
+            this.index = i;
+            return source.tryAdvance(this);
+        }
+
+        @Override
+        public void accept(T t) {
+            array[index] = t;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        List<T> window(Object[] array) {
+            return (List<T>) Arrays.asList(array);
+        }
+    }
+
+    static final class OfInt extends WindowSpliterator<int[], int[], Spliterator.OfInt>
+            implements IntConsumer {
+        private int[] array;
+        private int index;
+
+        OfInt(Spliterator.OfInt source, int size, int step, boolean partial) {
+            super(source, size, step, partial);
+        }
+
+        private OfInt(OfInt parent, Spliterator.OfInt source, int[] head, int headFrom,
+                      int headTo, int[] tail, int tailTo) {
+            super(parent, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        Spliterator<int[]> makeSpliterator(Spliterator.OfInt source, int[] head, int headFrom,
+                                           int headTo, int[] tail, int tailTo) {
+            return new WindowSpliterator.OfInt(this, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        int[] newArray(int length) {
+            return new int[length];
+        }
+
+        @Override
+        boolean advance(Spliterator.OfInt source, int[] array, int i) {
+            this.array = array;
+            this.index = i;
+            return source.tryAdvance(this);
+        }
+
+        @Override
+        public void accept(int value) {
+            array[index] = value;
+        }
+
+        @Override
+        int[] window(int[] array) {
+            return array;
+        }
+    }
+
+    static final class OfLong extends WindowSpliterator<long[], long[], Spliterator.OfLong>
+            implements LongConsumer {
+        private long[] array;
+        private int index;
+
+        OfLong(Spliterator.OfLong source, int size, int step, boolean partial) {
+            super(source, size, step, partial);
+        }
+
+        private OfLong(OfLong parent, Spliterator.OfLong source, long[] head, int headFrom,
+                       int headTo, long[] tail, int tailTo) {
+            super(parent, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        Spliterator<long[]> makeSpliterator(Spliterator.OfLong source, long[] head, int headFrom,
+                                            int headTo, long[] tail, int tailTo) {
+            return new WindowSpliterator.OfLong(this, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        long[] newArray(int length) {
+            return new long[length];
+        }
+
+        @Override
+        boolean advance(Spliterator.OfLong source, long[] array, int i) {
+            this.array = array;
+            this.index = i;
+            return source.tryAdvance(this);
+        }
+
+        @Override
+        public void accept(long value) {
+            array[index] = value;
+        }
+
+        @Override
+        long[] window(long[] array) {
+            return array;
+        }
+    }
+
+    static final class OfDouble extends WindowSpliterator<double[], double[], Spliterator.OfDouble>
+            implements DoubleConsumer {
+        private double[] array;
+        private int index;
+
+        OfDouble(Spliterator.OfDouble source, int size, int step, boolean partial) {
+            super(source, size, step, partial);
+        }
+
+        private OfDouble(OfDouble parent, Spliterator.OfDouble source, double[] head, int headFrom,
+                         int headTo, double[] tail, int tailTo) {
+            super(parent, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        Spliterator<double[]> makeSpliterator(Spliterator.OfDouble source, double[] head,
+                                              int headFrom, int headTo, double[] tail, int tailTo) {
+            return new WindowSpliterator.OfDouble(this, source, head, headFrom, headTo, tail, tailTo);
+        }
+
+        @Override
+        double[] newArray(int length) {
+            return new double[length];
+        }
+
+        @Override
+        boolean advance(Spliterator.OfDouble source, double[] array, int i) {
+            this.array = array;
+            this.index = i;
+            return source.tryAdvance(this);
+        }
+
+        @Override
+        public void accept(double value) {
+            array[index] = value;
+        }
+
+        @Override
+        double[] window(double[] array) {
+            return array;
+        }
+    }
+}
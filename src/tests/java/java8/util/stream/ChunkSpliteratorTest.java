@@ -0,0 +1,143 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import java8.util.ChunkSpliterator;
+import java8.util.DoubleSummaryStatistics;
+import java8.util.IntSummaryStatistics;
+import java8.util.J8Arrays;
+import java8.util.LongSummaryStatistics;
+import java8.util.Spliterator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ChunkSpliteratorTest {
+
+    static final int SIZE = 10_000;
+
+    static int[] ints(int size) {
+        Random r = new Random(42);
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = r.nextInt();
+        }
+        return a;
+    }
+
+    /** Collects the chunks of an int spliterator into one array */
+    static int[] chunks(Spliterator.OfInt s) {
+        SpinedBuffer.OfInt sb = new SpinedBuffer.OfInt();
+        @SuppressWarnings("unchecked")
+        ChunkSpliterator<int[]> chunks = (ChunkSpliterator<int[]>) s;
+        chunks.forEachChunk((a, from, to) -> {
+            for (int i = from; i < to; i++) {
+                sb.accept(a[i]);
+            }
+        });
+        return sb.asPrimitiveArray();
+    }
+
+    public void testArraySpliterator() {
+        int[] a = ints(SIZE);
+        Spliterator.OfInt s = J8Arrays.spliterator(a, 10, SIZE - 10);
+        assertTrue(s instanceof ChunkSpliterator);
+        assertTrue(s.tryAdvance((int i) -> {}));
+        Spliterator.OfInt prefix = s.trySplit();
+        int[] result = new int[SIZE - 21];
+        int[] p = chunks(prefix);
+        int[] q = chunks(s);
+        System.arraycopy(p, 0, result, 0, p.length);
+        System.arraycopy(q, 0, result, p.length, q.length);
+        assertTrue(Arrays.equals(result, Arrays.copyOfRange(a, 11, SIZE - 10)));
+        // exhausted
+        assertFalse(s.tryAdvance((int i) -> {}));
+        assertEquals(chunks(s).length, 0);
+    }
+
+    public void testSpinedBufferSpliterator() {
+        int[] a = ints(SIZE);
+        SpinedBuffer.OfInt sb = new SpinedBuffer.OfInt();
+        for (int i : a) {
+            sb.accept(i);
+        }
+        Spliterator.OfInt s = sb.spliterator();
+        assertTrue(s instanceof ChunkSpliterator);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(s.tryAdvance((int x) -> {}));
+        }
+        assertTrue(Arrays.equals(chunks(s), Arrays.copyOfRange(a, 100, SIZE)));
+        assertFalse(s.tryAdvance((int i) -> {}));
+
+        SpinedBuffer.OfDouble db = new SpinedBuffer.OfDouble();
+        for (int i = 0; i < SIZE; i++) {
+            db.accept(i);
+        }
+        assertEquals(StreamSupport.doubleStream(db.spliterator(), false).summaryStatistics().getSum(),
+                (double) SIZE * (SIZE - 1) / 2);
+    }
+
+    public void testIntOps() {
+        for (int size : new int[] { 0, 1, SIZE }) {
+            int[] a = ints(size);
+            // map(i -> i) disables the bulk traversal
+            assertEquals(IntStreams.of(a).sum(), IntStreams.of(a).map(i -> i).sum());
+            assertEquals(IntStreams.of(a).min(), IntStreams.of(a).map(i -> i).min());
+            assertEquals(IntStreams.of(a).max(), IntStreams.of(a).map(i -> i).max());
+            assertTrue(Arrays.equals(IntStreams.of(a).toArray(), a));
+            IntSummaryStatistics expected = IntStreams.of(a).map(i -> i).summaryStatistics();
+            IntSummaryStatistics actual = IntStreams.of(a).summaryStatistics();
+            assertEquals(actual.toString(), expected.toString());
+        }
+    }
+
+    public void testLongOps() {
+        for (int size : new int[] { 0, 1, SIZE }) {
+            long[] a = new long[size];
+            for (int i = 0; i < size; i++) {
+                a[i] = (long) i * Integer.MAX_VALUE - size;
+            }
+            assertEquals(LongStreams.of(a).sum(), LongStreams.of(a).map(i -> i).sum());
+            assertEquals(LongStreams.of(a).min(), LongStreams.of(a).map(i -> i).min());
+            assertEquals(LongStreams.of(a).max(), LongStreams.of(a).map(i -> i).max());
+            assertTrue(Arrays.equals(LongStreams.of(a).toArray(), a));
+            LongSummaryStatistics expected = LongStreams.of(a).map(i -> i).summaryStatistics();
+            LongSummaryStatistics actual = LongStreams.of(a).summaryStatistics();
+            assertEquals(actual.toString(), expected.toString());
+        }
+    }
+
+    public void testDoubleOps() {
+        double[] special = { 1.0, -0.0, 0.0, Double.NaN, -1.0 };
+        for (double[] a : new double[][] { {}, { 2.5 }, special, { 0.0, -0.0 }, { -0.0, 0.0 } }) {
+            assertEquals(DoubleStreams.of(a).min(), DoubleStreams.of(a).map(d -> d).min());
+            assertEquals(DoubleStreams.of(a).max(), DoubleStreams.of(a).map(d -> d).max());
+            assertTrue(Arrays.equals(DoubleStreams.of(a).toArray(), a));
+            DoubleSummaryStatistics expected = DoubleStreams.of(a).map(d -> d).summaryStatistics();
+            DoubleSummaryStatistics actual = DoubleStreams.of(a).summaryStatistics();
+            assertEquals(actual.toString(), expected.toString());
+        }
+    }
+
+    public void testParallelAndConsumed() {
+        int[] a = ints(SIZE);
+        assertEquals(IntStreams.of(a).parallel().sum(), IntStreams.of(a).sum());
+        IntStream s = IntStreams.of(a);
+        s.sum();
+        try {
+            s.sum();
+            throw new AssertionError("stream was consumed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -34,17 +34,24 @@ package java8.util.stream;
 
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import java8.util.Spliterator;
 import java8.util.concurrent.ForkJoinPool;
 import java8.util.concurrent.ForkJoinTask;
+import java8.util.concurrent.ForkJoinWorkerThread;
 import java8.util.function.Consumer;
 import java8.util.stream.IntStreams;
 import java8.util.stream.StreamSupport;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 @Test
@@ -136,6 +143,89 @@ public class CustomFJPoolTest {
         }
     }
 
+    public void testExecutionPool() {
+        ForkJoinPool p1 = new ForkJoinPool(1);
+        ForkJoinPool p2 = new ForkJoinPool(2);
+        try {
+            assertEquals(countSplitsIn(p2), countSplitsIn(p1) * 2);
+            assertEquals(countSplitsIn(p1), countSplitsIn(p1));
+        } finally {
+            p1.shutdown();
+            p2.shutdown();
+        }
+    }
+
+    public void testExecutionPoolThreads() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+            List<Integer> list = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                list.add(i);
+            }
+
+            long sum = StreamSupport.parallelStream(list, pool)
+                    .peek(e -> threads.add(Thread.currentThread()))
+                    .mapToLong(e -> e).sum();
+            assertEquals(sum, 10_000L * 9_999L / 2L);
+            assertPoolThreads(threads, pool);
+
+            threads.clear();
+            Object[] sorted = StreamSupport.parallel(IntStreams.range(0, 10_000).boxed(), pool)
+                    .peek(e -> threads.add(Thread.currentThread()))
+                    .sorted(Collections.reverseOrder()).toArray();
+            assertEquals(sorted.length, 10_000);
+            assertEquals(sorted[0], 9_999);
+            assertPoolThreads(threads, pool);
+
+            threads.clear();
+            int[] ints = StreamSupport.parallel(IntStreams.range(0, 10_000), pool)
+                    .peek(e -> threads.add(Thread.currentThread()))
+                    .filter(e -> (e & 1) == 0).toArray();
+            assertEquals(ints.length, 5_000);
+            assertPoolThreads(threads, pool);
+
+            // sequential() disables the pool
+            threads.clear();
+            StreamSupport.parallelStream(list, pool).sequential()
+                    .forEach(e -> threads.add(Thread.currentThread()));
+            assertEquals(threads, Collections.singleton(Thread.currentThread()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testExecutionPoolException() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            StreamSupport.parallel(IntStreams.range(0, 1_000), pool).forEach(e -> {
+                if (e == 500) {
+                    throw new IllegalStateException("boom");
+                }
+            });
+            assertFalse(true, "exception expected");
+        } catch (IllegalStateException expected) {
+            // expected
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static void assertPoolThreads(Set<Thread> threads, ForkJoinPool pool) {
+        assertFalse(threads.isEmpty());
+        for (Thread t : threads) {
+            assertTrue(t instanceof ForkJoinWorkerThread, t.toString());
+            assertTrue(((ForkJoinWorkerThread) t).getPool() == pool, t.toString());
+        }
+    }
+
+    static int countSplitsIn(ForkJoinPool fjp) {
+        Spliterator<Integer> s = IntStreams.range(0, 1024).boxed().parallel().spliterator();
+        SplitCountingSpliterator<Integer> cs = new SplitCountingSpliterator<>(s);
+        StreamSupport.parallel(StreamSupport.stream(cs, false), fjp).forEach(e -> {});
+        return cs.splits();
+    }
+
     static int countSplits(ForkJoinPool fjp) throws Exception {
         ForkJoinTask<Integer> fInteger = fjp.submit(() -> {
             Spliterator<Integer> s = IntStreams.range(0, 1024).boxed().parallel().spliterator();
@@ -0,0 +1,144 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java8.util.J8Arrays;
+import java8.util.PrimitiveIterator;
+import java8.util.Spliterator;
+import java8.util.function.IntConsumer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+
+@Test
+public class DirectSpinedBufferTest {
+
+    // Create sizes around the boundary of spines
+    static final int[] SIZES = IntStreams.range(9, 14)
+            .map(i -> 1 << i)
+            .flatMap(i -> IntStreams.of(i - 1, i, i + 1))
+            .toArray();
+
+    private static final int TEST_SIZE = 5000;
+
+    @DataProvider(name = "IntDirectSpinedBuffer")
+    public Object[][] createIntSpinedBuffer() {
+        List<Object[]> params = new ArrayList<>();
+
+        for (int size : SIZES) {
+            int[] array = IntStreams.range(0, size).toArray();
+            for (long mapThreshold : new long[] {-1L, 4096L}) {
+                DirectSpinedBuffer.OfInt sb = new DirectSpinedBuffer.OfInt(16, mapThreshold);
+                J8Arrays.stream(array).forEach(sb);
+                params.add(new Object[]{array, sb});
+            }
+        }
+        params.add(new Object[]{new int[0], new DirectSpinedBuffer.OfInt()});
+
+        return params.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "IntDirectSpinedBuffer")
+    public void testIntSpliterator(int[] array, DirectSpinedBuffer.OfInt sb) {
+        assertEquals(sb.count(), array.length);
+        assertEquals(sb.count(), sb.spliterator().getExactSizeIfKnown());
+        assertEquals(sb.asPrimitiveArray(), array);
+
+        SpliteratorTestHelper.testIntSpliterator(sb::spliterator);
+    }
+
+    @Test(dataProvider = "IntDirectSpinedBuffer")
+    public void testIntLastSplit(int[] array, DirectSpinedBuffer.OfInt sb) {
+        Spliterator.OfInt spliterator = sb.spliterator();
+        Spliterator.OfInt split = spliterator.trySplit();
+        long splitSizes = (split == null) ? 0 : split.getExactSizeIfKnown();
+        long lastSplitSize = spliterator.getExactSizeIfKnown();
+        splitSizes += lastSplitSize;
+
+        assertEquals(splitSizes, array.length);
+
+        List<Integer> contentOfLastSplit = new ArrayList<>();
+        spliterator.forEachRemaining((IntConsumer) contentOfLastSplit::add);
+
+        assertEquals(contentOfLastSplit.size(), lastSplitSize);
+
+        List<Integer> end = J8Arrays.stream(array)
+                .boxed()
+                .skip(array.length - lastSplitSize)
+                .collect(Collectors.toList());
+        assertEquals(contentOfLastSplit, end);
+    }
+
+    public void testIntSpinedBuffer() {
+        List<Integer> list1 = new ArrayList<>();
+        List<Integer> list2 = new ArrayList<>();
+        DirectSpinedBuffer.OfInt sb = new DirectSpinedBuffer.OfInt();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            list1.add(i);
+            sb.accept(i);
+        }
+        PrimitiveIterator.OfInt it = sb.iterator();
+        for (int i = 0; i < TEST_SIZE; i++)
+            list2.add(it.nextInt());
+        assertFalse(it.hasNext());
+        assertEquals(list1, list2);
+
+        for (int i = 0; i < TEST_SIZE; i++)
+            assertEquals(sb.get(i), i, Integer.toString(i));
+
+        list2.clear();
+        sb.forEach((int i) -> list2.add(i));
+        assertEquals(list1, list2);
+
+        sb.clear();
+        assertEquals(sb.count(), 0);
+        sb.accept(42);
+        assertEquals(sb.asPrimitiveArray(), new int[] {42});
+    }
+
+    public void testLongSpinedBuffer() {
+        for (long mapThreshold : new long[] {-1L, 0L}) {
+            DirectSpinedBuffer.OfLong sb = new DirectSpinedBuffer.OfLong(0, mapThreshold);
+            long[] expected = new long[TEST_SIZE];
+            for (int i = 0; i < TEST_SIZE; i++) {
+                expected[i] = Long.MAX_VALUE - i;
+                sb.accept(expected[i]);
+            }
+            assertEquals(sb.asPrimitiveArray(), expected);
+            for (int i = 0; i < TEST_SIZE; i++)
+                assertEquals(sb.get(i), expected[i]);
+            assertEquals(StreamSupport.longStream(sb.spliterator(), true).toArray(), expected);
+            SpliteratorTestHelper.testLongSpliterator(sb::spliterator);
+        }
+    }
+
+    public void testDoubleSpinedBuffer() {
+        for (long mapThreshold : new long[] {-1L, 0L}) {
+            DirectSpinedBuffer.OfDouble sb = new DirectSpinedBuffer.OfDouble(TEST_SIZE, mapThreshold);
+            double[] expected = new double[TEST_SIZE];
+            for (int i = 0; i < TEST_SIZE; i++) {
+                expected[i] = i / 3.0;
+                sb.accept(expected[i]);
+            }
+            assertEquals(sb.asPrimitiveArray(), expected);
+            for (int i = 0; i < TEST_SIZE; i++)
+                assertEquals(sb.get(i), expected[i]);
+            assertEquals(StreamSupport.doubleStream(sb.spliterator(), true).toArray(), expected);
+            SpliteratorTestHelper.testDoubleSpliterator(sb::spliterator);
+        }
+    }
+
+    public void testMapTempFile() {
+        assertNotNull(DirectSpinedBuffer.mapTempFile(1 << 12));
+    }
+}
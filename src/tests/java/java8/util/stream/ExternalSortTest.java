@@ -0,0 +1,292 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java8.util.Comparators;
+import java8.util.J8Arrays;
+import java8.util.PrimitiveIterator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class ExternalSortTest {
+
+    static final int SIZE = 10_000;
+
+    /** Elements of the form "key:sequence", ordered by key only */
+    static final Comparator<String> BY_KEY = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            return Integer.compare(key(a), key(b));
+        }
+    };
+
+    static final ElementSerializer<String> UTF = new ElementSerializer<String>() {
+        @Override
+        public void write(String element, DataOutput out) throws IOException {
+            out.writeUTF(element);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    static final ElementSerializer<Integer> INT = new ElementSerializer<Integer>() {
+        @Override
+        public void write(Integer element, DataOutput out) throws IOException {
+            out.writeInt(element);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    static int key(String s) {
+        return Integer.parseInt(s.substring(0, s.indexOf(':')));
+    }
+
+    static List<String> keyed(int size, int keys) {
+        Random r = new Random(42);
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(r.nextInt(keys) + ":" + i);
+        }
+        return list;
+    }
+
+    static int[] randomInts(int size) {
+        Random r = new Random(7);
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = r.nextInt();
+        }
+        return a;
+    }
+
+    public void testStableRef() {
+        List<String> list = keyed(SIZE, 100);
+        List<String> expected = new ArrayList<>(list);
+        Collections.sort(expected, BY_KEY);
+        // 1000 runs, more than MAX_FAN_IN, force an intermediate merge pass
+        for (int max : new int[] {10, 1_000, SIZE, Integer.MAX_VALUE}) {
+            for (boolean parallel : new boolean[] {false, true}) {
+                Stream<String> s = parallel ? StreamSupport.parallelStream(list) : StreamSupport.stream(list);
+                List<String> actual = StreamSupport.externalSorted(s, BY_KEY, max, UTF)
+                        .collect(Collectors.<String>toList());
+                assertEquals(actual, expected, "max=" + max + ", parallel=" + parallel);
+            }
+        }
+        assertTrue(SIZE / 10 > ExternalSortOps.MAX_FAN_IN);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testRefToArray() {
+        List<String> list = keyed(SIZE, 1_000);
+        Object[] expected = list.toArray();
+        Arrays.sort(expected, (Comparator) BY_KEY);
+        Object[] actual = StreamSupport.externalSorted(StreamSupport.parallelStream(list), BY_KEY, 100, UTF)
+                .toArray();
+        assertEquals(actual, expected);
+    }
+
+    public void testNaturalOrder() {
+        List<Integer> list = new ArrayList<>();
+        for (int i : randomInts(SIZE)) {
+            list.add(i);
+        }
+        List<Integer> expected = new ArrayList<>(list);
+        Collections.sort(expected);
+        Comparator<Integer> natural = Comparators.naturalOrder();
+        assertEquals(StreamSupport.externalSorted(StreamSupport.stream(list), natural, 100, INT)
+                .collect(Collectors.<Integer>toList()), expected);
+        assertEquals(StreamSupport.externalSorted(StreamSupport.parallelStream(list), natural, 100, INT)
+                .collect(Collectors.<Integer>toList()), expected);
+        // sorting an already sorted stream again is a no-op
+        assertEquals(StreamSupport.externalSorted(StreamSupport.stream(expected).sorted(), natural, 1, INT)
+                .collect(Collectors.<Integer>toList()), expected);
+    }
+
+    public void testPrimitives() {
+        int[] ints = randomInts(SIZE);
+        int[] sortedInts = ints.clone();
+        Arrays.sort(sortedInts);
+        long[] longs = new long[SIZE];
+        double[] doubles = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            longs[i] = (long) ints[i] << 20;
+            doubles[i] = ints[i] / 3.0;
+        }
+        doubles[0] = Double.NaN;
+        doubles[1] = -0.0;
+        doubles[2] = 0.0;
+        long[] sortedLongs = longs.clone();
+        Arrays.sort(sortedLongs);
+        double[] sortedDoubles = doubles.clone();
+        Arrays.sort(sortedDoubles);
+
+        for (int max : new int[] {1, 7, 100, SIZE}) {
+            assertEquals(StreamSupport.externalSorted(J8Arrays.stream(ints), max).toArray(), sortedInts);
+            assertEquals(StreamSupport.externalSorted(J8Arrays.stream(ints).parallel(), max).toArray(), sortedInts);
+            assertEquals(StreamSupport.externalSorted(J8Arrays.stream(longs), max).toArray(), sortedLongs);
+            assertEquals(StreamSupport.externalSorted(J8Arrays.stream(longs).parallel(), max).toArray(), sortedLongs);
+            assertTrue(Arrays.equals(StreamSupport.externalSorted(J8Arrays.stream(doubles), max).toArray(), sortedDoubles));
+            assertTrue(Arrays.equals(StreamSupport.externalSorted(J8Arrays.stream(doubles).parallel(), max).toArray(), sortedDoubles));
+            // lazy evaluation through the spliterator
+            int[] viaIterator = new int[SIZE];
+            PrimitiveIterator.OfInt it = StreamSupport.externalSorted(J8Arrays.stream(ints).parallel(), max).iterator();
+            for (int i = 0; i < SIZE; i++) {
+                viaIterator[i] = it.nextInt();
+            }
+            assertEquals(viaIterator, sortedInts);
+        }
+    }
+
+    public void testShortCircuit() {
+        int[] ints = randomInts(SIZE);
+        int[] sorted = ints.clone();
+        Arrays.sort(sorted);
+        int[] expected = Arrays.copyOf(sorted, 5);
+        assertEquals(StreamSupport.externalSorted(J8Arrays.stream(ints), 50).limit(5).toArray(), expected);
+        assertEquals(StreamSupport.externalSorted(J8Arrays.stream(ints), 50).findFirst().getAsInt(), sorted[0]);
+        assertEquals(StreamSupport.externalSorted(J8Arrays.stream(ints).parallel(), 50).limit(5).toArray(), expected);
+        assertEquals(StreamSupport.externalSorted(J8Arrays.stream(ints), SIZE).limit(5).toArray(), expected);
+    }
+
+    public void testEmpty() {
+        assertEquals(StreamSupport.externalSorted(IntStreams.empty(), 1).toArray().length, 0);
+        assertEquals(StreamSupport.externalSorted(IntStreams.empty().parallel(), 1).toArray().length, 0);
+        assertEquals(StreamSupport.externalSorted(RefStreams.<String>empty(), BY_KEY, 1, UTF).count(), 0);
+    }
+
+    public void testNothingWrittenIfInMemory() {
+        List<String> list = keyed(SIZE, 100);
+        List<String> expected = new ArrayList<>(list);
+        Collections.sort(expected, BY_KEY);
+        AtomicLong written = new AtomicLong();
+        ElementSerializer<String> counting = new ElementSerializer<String>() {
+            @Override
+            public void write(String element, DataOutput out) throws IOException {
+                written.incrementAndGet();
+                UTF.write(element, out);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return UTF.read(in);
+            }
+        };
+        for (boolean parallel : new boolean[] {false, true}) {
+            Stream<String> s = parallel ? StreamSupport.parallelStream(list) : StreamSupport.stream(list);
+            assertEquals(StreamSupport.externalSorted(s, BY_KEY, 1_000_000, counting)
+                    .collect(Collectors.<String>toList()), expected);
+            assertEquals(written.get(), 0L, "parallel=" + parallel);
+        }
+        // the in-memory runs of the leaves are spilled once the budget is exhausted
+        assertEquals(StreamSupport.externalSorted(StreamSupport.parallelStream(list), BY_KEY, SIZE / 4, counting)
+                .collect(Collectors.<String>toList()), expected);
+        assertTrue(written.get() > 0L);
+        assertTrue(written.get() < 2L * SIZE, "written " + written.get());
+    }
+
+    static int runFiles() {
+        File tmp = new File(System.getProperty("java.io.tmpdir"));
+        return tmp.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("streamsupport") && name.endsWith(".run");
+            }
+        }).length;
+    }
+
+    public void testRunFilesDeleted() {
+        int before = runFiles();
+        int[] ints = randomInts(SIZE);
+        StreamSupport.externalSorted(J8Arrays.stream(ints), 10).toArray();
+        StreamSupport.externalSorted(J8Arrays.stream(ints).parallel(), 10).toArray();
+        StreamSupport.externalSorted(J8Arrays.stream(ints), 10).limit(1).toArray();
+        assertEquals(runFiles(), before);
+    }
+
+    public void testOpenFilesBounded() {
+        File fds = new File("/proc/self/fd");
+        if (!fds.isDirectory()) {
+            return;
+        }
+        int before = fds.list().length;
+        int[] maxOpen = { 0 };
+        // 2 * SIZE runs, merged in groups of MAX_FAN_IN
+        StreamSupport.externalSorted(J8Arrays.stream(randomInts(2 * SIZE * 10)), 10)
+                .peek(i -> maxOpen[0] = Math.max(maxOpen[0], fds.list().length - before))
+                .limit(1_000).toArray();
+        assertTrue(maxOpen[0] <= ExternalSortOps.MAX_FAN_IN + 1, "open files " + maxOpen[0]);
+    }
+
+    public void testFailureDeletesRuns() {
+        int before = runFiles();
+        Comparator<String> failing = new Comparator<String>() {
+            int comparisons;
+
+            @Override
+            public synchronized int compare(String a, String b) {
+                if (++comparisons > 50_000) {
+                    throw new IllegalStateException();
+                }
+                return BY_KEY.compare(a, b);
+            }
+        };
+        for (boolean parallel : new boolean[] {false, true}) {
+            List<String> list = keyed(SIZE, 100);
+            Stream<String> s = parallel ? StreamSupport.parallelStream(list) : StreamSupport.stream(list);
+            try {
+                StreamSupport.externalSorted(s, failing, 10, UTF).toArray();
+                fail("expected IllegalStateException");
+            } catch (IllegalStateException expected) {
+            }
+            assertEquals(runFiles(), before);
+        }
+    }
+
+    public void testAbandonedRunsDeletedOnClose() {
+        int before = runFiles();
+        IntStream s = StreamSupport.externalSorted(J8Arrays.stream(randomInts(SIZE)).parallel(), 10);
+        PrimitiveIterator.OfInt it = s.iterator();
+        it.nextInt();
+        assertTrue(runFiles() > before);
+        s.close();
+        assertEquals(runFiles(), before);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testIllegalBudget() {
+        StreamSupport.externalSorted(IntStreams.range(0, 10), 0);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullSerializer() {
+        StreamSupport.externalSorted(RefStreams.of("a"), BY_KEY, 10, null);
+    }
+}
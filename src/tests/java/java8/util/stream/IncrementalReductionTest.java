@@ -0,0 +1,132 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+@Test
+public class IncrementalReductionTest {
+
+    static void append(List<Integer> list, int from, int to) {
+        for (int i = from; i < to; i++) {
+            list.add(i);
+        }
+    }
+
+    public void testOnlyNewElementsAreProcessed() {
+        List<Integer> log = new ArrayList<>();
+        AtomicInteger mapped = new AtomicInteger();
+        IncrementalReduction<Integer, Long> sum = StreamSupport.incremental(log,
+                s -> s.filter(i -> i % 2 == 0).map(i -> {
+                    mapped.incrementAndGet();
+                    return (long) i;
+                }),
+                Collectors.summingLong((Long l) -> l));
+        assertEquals((long) sum.evaluate(), 0L);
+        int size = 0;
+        for (int step : new int[] { 10, 1, 0, 1_000, 37 }) {
+            append(log, size, size + step);
+            size += step;
+            mapped.set(0);
+            assertEquals((long) sum.evaluate(),
+                    StreamSupport.stream(log).filter(i -> i % 2 == 0).mapToLong(i -> i).sum());
+            assertEquals(mapped.get(), (size + 1) / 2 - (size - step + 1) / 2, "mapped " + mapped.get());
+            assertEquals(sum.processedCount(), size);
+        }
+    }
+
+    public void testParallelGrouping() {
+        List<Integer> log = new ArrayList<>();
+        IncrementalReduction<Integer, Map<Integer, Long>> counts = StreamSupport.incremental(log,
+                s -> s.parallel().map(i -> i % 10), Collectors.groupingBy(i -> i, Collectors.counting()));
+        for (int round = 0; round < 5; round++) {
+            append(log, log.size(), log.size() + 10_000 + round);
+            Map<Integer, Long> expected = StreamSupport.stream(log).map(i -> i % 10)
+                    .collect(Collectors.groupingBy(i -> i, Collectors.counting()));
+            assertEquals(counts.evaluate(), expected);
+        }
+    }
+
+    public void testEncounterOrderAndReducing() {
+        List<Integer> log = new ArrayList<>();
+        IncrementalReduction<Integer, List<Integer>> all = StreamSupport.incremental(log, Collectors.toList());
+        IncrementalReduction<Integer, String> joined = StreamSupport.incremental(log,
+                s -> s.parallel().map(String::valueOf), Collectors.joining(","));
+        IncrementalReduction<Integer, Integer> max = StreamSupport.incremental(log,
+                Collectors.reducing(Integer.MIN_VALUE, Math::max));
+        append(log, 0, 5);
+        assertEquals(new ArrayList<>(all.evaluate()), log);
+        assertEquals(joined.evaluate(), "0,1,2,3,4");
+        append(log, 5, 2_000);
+        assertEquals(new ArrayList<>(all.evaluate()), log);
+        assertEquals(joined.evaluate(), StreamSupport.stream(log).map(String::valueOf)
+                .collect(Collectors.joining(",")));
+        assertEquals((int) max.evaluate(), 1_999);
+    }
+
+    public void testFailedEvaluationIsRetried() {
+        List<Integer> log = new ArrayList<>();
+        boolean[] fail = { true };
+        IncrementalReduction<Integer, Long> count = StreamSupport.incremental(log,
+                s -> s.peek(i -> {
+                    if (i == 7 && fail[0]) {
+                        throw new IllegalStateException();
+                    }
+                }), Collectors.counting());
+        append(log, 0, 5);
+        assertEquals((long) count.evaluate(), 5L);
+        append(log, 5, 10);
+        try {
+            count.evaluate();
+            fail("expected failure");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(count.processedCount(), 5);
+        fail[0] = false;
+        assertEquals((long) count.evaluate(), 10L);
+    }
+
+    public void testShrinkAndReset() {
+        List<Integer> log = new ArrayList<>();
+        IncrementalReduction<Integer, Long> count = StreamSupport.incremental(log, Collectors.counting());
+        append(log, 0, 10);
+        assertEquals((long) count.evaluate(), 10L);
+        log.subList(5, 10).clear();
+        try {
+            count.evaluate();
+            fail("expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException expected) {
+        }
+        count.reset();
+        assertEquals((long) count.evaluate(), 5L);
+    }
+
+    public void testStatefulPipelinesAreRejected() {
+        List<java8.util.function.Function<Stream<Integer>, Stream<Integer>>> pipelines = new ArrayList<>();
+        pipelines.add(s -> s.sorted());
+        pipelines.add(s -> s.distinct());
+        pipelines.add(s -> s.limit(3));
+        pipelines.add(s -> s.map(i -> i).skip(3));
+        pipelines.add(s -> s.takeWhile(i -> i < 3));
+        pipelines.add(s -> RefStreams.of(1, 2, 3));
+        for (java8.util.function.Function<Stream<Integer>, Stream<Integer>> pipeline : pipelines) {
+            try {
+                StreamSupport.incremental(new ArrayList<Integer>(), pipeline, Collectors.counting());
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import java8.util.Spliterator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class MappedFileStreamTest {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int LINES = 20_000;
+
+    private final List<File> files = new ArrayList<>();
+    private final List<RandomAccessFile> open = new ArrayList<>();
+
+    @BeforeClass
+    public void setUp() {
+        files.clear();
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        for (RandomAccessFile raf : open) {
+            raf.close();
+        }
+        for (File f : files) {
+            f.delete();
+        }
+    }
+
+    FileChannel channel(byte[] content) throws IOException {
+        File f = File.createTempFile("mapped", ".tmp");
+        files.add(f);
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        open.add(raf);
+        return raf.getChannel();
+    }
+
+    static List<String> lines() {
+        List<String> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            lines.add(i % 100 == 0 ? "" : "line " + i + (i % 7 == 0 ? " \u00e4\u20ac" : ""));
+        }
+        return lines;
+    }
+
+    static byte[] join(List<String> lines, String separator, boolean trailing) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            sb.append(lines.get(i));
+            if (trailing || i < lines.size() - 1) {
+                sb.append(separator);
+            }
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    static String string(ByteBuffer b) {
+        return UTF_8.decode(b).toString();
+    }
+
+    public void testLines() throws IOException {
+        List<String> expected = lines();
+        for (String separator : new String[] { "\n", "\r\n" }) {
+            for (boolean trailing : new boolean[] { true, false }) {
+                FileChannel ch = channel(join(expected, separator, trailing));
+                assertEquals(StreamSupport.lines(ch, UTF_8).collect(Collectors.toList()), expected);
+                assertEquals(StreamSupport.lines(ch, UTF_8).parallel().collect(Collectors.toList()), expected);
+                assertEquals(ch.position(), 0L);
+            }
+        }
+        assertEquals(StreamSupport.lines(channel(new byte[0]), UTF_8).count(), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedCharset() throws IOException {
+        StreamSupport.lines(channel(new byte[0]), Charset.forName("UTF-16"));
+    }
+
+    public void testDelimitedSplitsAtDelimiters() throws IOException {
+        List<String> expected = lines();
+        FileChannel ch = channel(join(expected, "\n", true));
+        Spliterator<ByteBuffer> s = new MappedFileSpliterators.Delimited(ch, (byte) '\n', 0L, ch.size(), 4096);
+        List<Spliterator<ByteBuffer>> parts = new ArrayList<>();
+        parts.add(s);
+        // split the spliterators down to the minimum size
+        for (int i = 0; i < parts.size(); i++) {
+            Spliterator<ByteBuffer> prefix;
+            while ((prefix = parts.get(i).trySplit()) != null) {
+                parts.add(i, prefix);
+            }
+        }
+        assertTrue(parts.size() > 1);
+        List<String> result = new ArrayList<>();
+        for (Spliterator<ByteBuffer> part : parts) {
+            assertTrue(part.estimateSize() < 2 * MappedFileSpliterators.MIN_SPLIT);
+            // small windows, so that records cross the window boundaries
+            while (part.tryAdvance(b -> result.add(string(b)))) {
+            }
+        }
+        assertEquals(result, expected);
+    }
+
+    public void testRecordLongerThanWindow() throws IOException {
+        byte[] content = new byte[100];
+        content[10] = '|';
+        FileChannel ch = channel(content);
+        Spliterator<ByteBuffer> s = new MappedFileSpliterators.Delimited(ch, (byte) '|', 0L, ch.size(), 32);
+        assertTrue(s.tryAdvance(b -> assertEquals(b.remaining(), 10)));
+        try {
+            s.tryAdvance(b -> {});
+            fail("record longer than the window");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testFixedRecords() throws IOException {
+        byte[] content = new byte[10 * 1000 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i / 10);
+        }
+        FileChannel ch = channel(content);
+        List<ByteBuffer> records = StreamSupport.fixedRecords(ch, 10).parallel().collect(Collectors.toList());
+        assertEquals(records.size(), 1000);
+        for (int i = 0; i < records.size(); i++) {
+            ByteBuffer r = records.get(i);
+            assertEquals(r.remaining(), 10);
+            assertTrue(r.isReadOnly());
+            assertEquals(r.get(9), (byte) i);
+        }
+        Spliterator<ByteBuffer> s = new MappedFileSpliterators.Records(ch, 10, 0L, 1000L, 64);
+        assertEquals(s.getExactSizeIfKnown(), 1000L);
+        assertNull(s.trySplit());
+        int[] count = new int[1];
+        s.forEachRemaining(r -> assertEquals(r.get(0), (byte) count[0]++));
+        assertEquals(count[0], 1000);
+    }
+
+    public void testPrimitives() throws IOException {
+        int n = 100_000;
+        ByteBuffer buf = ByteBuffer.allocate(n * 8 + 3).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; i++) {
+            buf.putLong(i * 8, i - 50_000L);
+        }
+        FileChannel ch = channel(buf.array());
+
+        assertEquals(StreamSupport.longStream(ch, ByteOrder.LITTLE_ENDIAN).count(), (long) n);
+        assertEquals(StreamSupport.longStream(ch, ByteOrder.LITTLE_ENDIAN).parallel().sum(), -50_000L);
+        assertEquals(StreamSupport.longStream(ch, ByteOrder.LITTLE_ENDIAN).skip(10).findFirst().getAsLong(),
+                -49_990L);
+        // little endian longs are pairs of (low, high) ints
+        assertEquals(StreamSupport.intStream(ch, ByteOrder.LITTLE_ENDIAN).count(), 2L * n);
+        assertEquals(StreamSupport.intStream(ch, ByteOrder.LITTLE_ENDIAN).skip(2).limit(2).toArray(),
+                new int[] { -49_999, -1 });
+        assertEquals(StreamSupport.doubleStream(ch, ByteOrder.LITTLE_ENDIAN).count(), (long) n);
+
+        // small windows
+        long[] expected = new long[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = i - 50_000L;
+        }
+        long[] actual = StreamSupport.longStream(
+                new MappedFileSpliterators.Longs(ch, ByteOrder.LITTLE_ENDIAN, 0L, n, 1000), true).toArray();
+        assertEquals(actual, expected);
+
+        ByteBuffer dbuf = ByteBuffer.allocate(n * 8);
+        for (int i = 0; i < n; i++) {
+            dbuf.putDouble(i * 8, i / 4.0);
+        }
+        FileChannel dch = channel(dbuf.array());
+        assertEquals(StreamSupport.doubleStream(dch, ByteOrder.BIG_ENDIAN).parallel().max().getAsDouble(),
+                (n - 1) / 4.0);
+        assertEquals(StreamSupport.doubleStream(
+                new MappedFileSpliterators.Doubles(dch, ByteOrder.BIG_ENDIAN, 0L, n, 1000), false).sum(),
+                (double) n * (n - 1) / 8.0);
+        assertEquals(StreamSupport.intStream(
+                new MappedFileSpliterators.Ints(dch, ByteOrder.BIG_ENDIAN, 0L, 2L * n, 1000), true).count(),
+                2L * n);
+    }
+}
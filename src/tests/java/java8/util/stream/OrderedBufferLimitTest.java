@@ -0,0 +1,123 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java8.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class OrderedBufferLimitTest {
+
+    static final int SIZE = 200_000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    static void slowStart(int i) {
+        if (i == 0) {
+            // let the tasks to the right run ahead of the first leaf
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    PipelineStatistics forEachOrdered(long limit, List<Integer> result) {
+        RecordingListener listener = new RecordingListener();
+        Stream<Integer> s = StreamSupport.parallel(IntStreams.range(0, SIZE).boxed(), pool);
+        if (limit >= 0L) {
+            s = StreamSupport.withOrderedBufferLimit(s, limit);
+        }
+        StreamSupport.withListener(s, listener).forEachOrdered(i -> {
+            slowStart(i);
+            result.add(i);
+        });
+        return listener.statistics;
+    }
+
+    static void assertInOrder(List<Integer> result) {
+        assertEquals(result.size(), SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals((int) result.get(i), i);
+        }
+    }
+
+    public void testBounded() {
+        for (long limit : new long[] { 0L, 1_000L, 50_000L }) {
+            List<Integer> result = new ArrayList<>();
+            PipelineStatistics statistics = forEachOrdered(limit, result);
+            assertInOrder(result);
+            assertTrue(statistics.peakBufferedElements() <= limit, statistics.toString());
+        }
+    }
+
+    public void testUnbounded() {
+        List<Integer> result = new ArrayList<>();
+        PipelineStatistics statistics = forEachOrdered(-1L, result);
+        assertInOrder(result);
+        assertTrue(statistics.peakBufferedElements() > 0L, statistics.toString());
+        assertTrue(statistics.peakBufferedElements() < SIZE, statistics.toString());
+    }
+
+    public void testExpandingFlatMap() {
+        int fanOut = 100;
+        long limit = 1_000L;
+        List<Integer> result = new ArrayList<>();
+        RecordingListener listener = new RecordingListener();
+        Stream<Integer> s = StreamSupport.parallel(IntStreams.range(0, SIZE / fanOut).boxed(), pool)
+                .flatMap(i -> IntStreams.range(i * fanOut, (i + 1) * fanOut).boxed());
+        StreamSupport.withListener(StreamSupport.withOrderedBufferLimit(s, limit), listener)
+                .forEachOrdered(i -> {
+                    slowStart(i);
+                    result.add(i);
+                });
+        assertInOrder(result);
+        // each running leaf may exceed its share by one inner stream
+        assertTrue(listener.statistics.peakBufferedElements() <= limit + 4 * fanOut,
+                listener.statistics.toString());
+    }
+
+    public void testPrimitive() {
+        long[] sum = new long[1];
+        long[] last = { -1L };
+        StreamSupport.withOrderedBufferLimit(LongStreams.range(0, SIZE).parallel(), 100L)
+                .filter(l -> l % 3 != 0)
+                .forEachOrdered(l -> {
+                    assertTrue(l > last[0]);
+                    last[0] = l;
+                    sum[0] += l;
+                });
+        assertEquals(sum[0], LongStreams.range(0, SIZE).filter(l -> l % 3 != 0).sum());
+    }
+
+    public void testSequentialIgnoresLimit() {
+        List<Integer> result = new ArrayList<>();
+        RecordingListener listener = new RecordingListener();
+        StreamSupport.withListener(StreamSupport.withOrderedBufferLimit(
+                IntStreams.range(0, SIZE).boxed(), 0L), listener).forEachOrdered(result::add);
+        assertInOrder(result);
+        assertEquals(listener.statistics.peakBufferedElements(), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        StreamSupport.withOrderedBufferLimit(IntStreams.range(0, 10), -1L);
+    }
+}
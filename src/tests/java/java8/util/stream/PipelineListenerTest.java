@@ -0,0 +1,161 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class PipelineListenerTest {
+
+    static final int SIZE = 100_000;
+
+    static List<String> names(PipelineStatistics statistics) {
+        List<String> names = new ArrayList<>();
+        for (PipelineStatistics.Stage stage : statistics.stages()) {
+            names.add(stage.name());
+        }
+        return names;
+    }
+
+    static void assertConsistent(PipelineStatistics statistics) {
+        List<PipelineStatistics.Stage> stages = statistics.stages();
+        for (int i = 0; i < stages.size() - 1; i++) {
+            assertEquals(stages.get(i).elementsOut(), stages.get(i + 1).elementsIn(), statistics.toString());
+            assertTrue(stages.get(i).selfNanos() <= stages.get(i).nanos());
+        }
+        assertEquals(stages.get(stages.size() - 1).elementsOut(), -1L);
+    }
+
+    public void testSequentialCounts() {
+        RecordingListener listener = new RecordingListener(true);
+        long sum = StreamSupport.withListener(IntStreams.range(0, SIZE), listener)
+                .map(i -> i * 2)
+                .filter(i -> i % 3 == 0)
+                .mapToLong(i -> i)
+                .sum();
+        assertEquals(listener.evaluations, 1);
+        PipelineStatistics statistics = listener.statistics;
+        assertNotNull(statistics);
+        assertFalse(statistics.isParallel());
+        assertEquals(statistics.leafTasks(), 0);
+        assertEquals(statistics.splits(), 0);
+        assertConsistent(statistics);
+
+        List<PipelineStatistics.Stage> stages = statistics.stages();
+        assertEquals(stages.size(), 4);
+        assertEquals(names(statistics).subList(0, 3), Arrays.asList("map", "filter", "mapToLong"));
+        assertEquals(stages.get(0).elementsIn(), SIZE);
+        assertEquals(stages.get(1).elementsIn(), SIZE);
+        assertEquals(stages.get(1).elementsOut(), (SIZE + 2) / 3);
+        assertEquals(stages.get(3).elementsIn(), (SIZE + 2) / 3);
+        assertTrue(stages.get(0).nanos() > 0L);
+        assertTrue(statistics.elapsedNanos() >= stages.get(0).nanos());
+
+        long expected = 0L;
+        for (int i = 0; i < SIZE; i++) {
+            if ((2 * i) % 3 == 0) {
+                expected += 2 * i;
+            }
+        }
+        assertEquals(sum, expected);
+    }
+
+    public void testShortCircuit() {
+        RecordingListener listener = new RecordingListener(false);
+        List<Integer> result = StreamSupport.withListener(IntStreams.range(0, SIZE).boxed(), listener)
+                .filter(i -> i % 2 == 0)
+                .limit(10)
+                .collect(Collectors.<Integer>toList());
+        assertEquals(result.size(), 10);
+        PipelineStatistics statistics = listener.statistics;
+        assertConsistent(statistics);
+        List<PipelineStatistics.Stage> stages = statistics.stages();
+        // boxed, filter, limit, collect
+        assertEquals(stages.size(), 4);
+        assertTrue(stages.get(1).elementsIn() < 100, statistics.toString());
+        assertEquals(stages.get(2).elementsOut(), 10);
+        assertTrue(stages.get(0).cancellations() > 0);
+        for (PipelineStatistics.Stage stage : stages) {
+            assertEquals(stage.nanos(), 0L);
+        }
+    }
+
+    public void testParallelReduce() {
+        RecordingListener listener = new RecordingListener(true);
+        long sum = StreamSupport.withListener(LongStreams.range(0, SIZE).parallel(), listener)
+                .filter(i -> (i & 1) == 0)
+                .sum();
+        assertEquals(sum, 2L * ((long) (SIZE / 2) * (SIZE / 2 - 1) / 2));
+        PipelineStatistics statistics = listener.statistics;
+        assertTrue(statistics.isParallel());
+        assertConsistent(statistics);
+        assertEquals(statistics.stages().get(0).elementsIn(), SIZE);
+        assertEquals(statistics.stages().get(0).elementsOut(), SIZE / 2);
+        assertTrue(statistics.leafTasks() > 1 || Runtime.getRuntime().availableProcessors() == 1);
+        assertEquals(statistics.splits(), statistics.leafTasks() - 1);
+    }
+
+    public void testParallelForEach() {
+        RecordingListener listener = new RecordingListener(true);
+        AtomicLong count = new AtomicLong();
+        StreamSupport.withListener(IntStreams.range(0, SIZE).parallel(), listener)
+                .map(i -> i + 1)
+                .forEach(i -> count.incrementAndGet());
+        assertEquals(count.get(), SIZE);
+        PipelineStatistics statistics = listener.statistics;
+        assertConsistent(statistics);
+        assertEquals(statistics.stages().get(0).elementsIn(), SIZE);
+        assertEquals(statistics.stages().get(1).elementsIn(), SIZE);
+        assertEquals(statistics.splits(), statistics.leafTasks() - 1);
+    }
+
+    public void testParallelStateful() {
+        RecordingListener listener = new RecordingListener(true);
+        int[] sorted = StreamSupport.withListener(IntStreams.range(0, SIZE).parallel(), listener)
+                .map(i -> SIZE - i)
+                .sorted()
+                .map(i -> i - 1)
+                .toArray();
+        assertEquals(sorted.length, SIZE);
+        assertEquals(sorted[0], 0);
+        PipelineStatistics statistics = listener.statistics;
+        assertConsistent(statistics);
+        assertEquals(names(statistics), Arrays.asList("map", "SortedOps.OfInt", "map", "toArray"));
+        for (PipelineStatistics.Stage stage : statistics.stages()) {
+            assertEquals(stage.elementsIn(), SIZE, statistics.toString());
+        }
+    }
+
+    public void testListenerAppliesToLaterStages() {
+        RecordingListener listener = new RecordingListener(true);
+        Stream<Integer> s = StreamSupport.withListener(RefStreams.of(1, 2, 3), listener);
+        assertEquals(s.map(i -> i * 2).count(), 3L);
+        assertEquals(listener.evaluations, 1);
+        assertEquals(listener.statistics.stages().size(), 2);
+    }
+
+    public void testNoListener() {
+        Stream<Integer> s = RefStreams.of(1, 2, 3);
+        assertNull(((AbstractPipeline<?, ?, ?>) s).getRecorder());
+        assertEquals(s.map(i -> i * 2).count(), 3L);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullListener() {
+        StreamSupport.withListener(IntStreams.range(0, 10), null);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.concurrent.ForkJoinTask;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class PrimitiveHashSetTest {
+
+    public void testTableSize() {
+        assertEquals(PrimitiveHashSet.tableSizeFor(-1), PrimitiveHashSet.MIN_CAPACITY);
+        assertEquals(PrimitiveHashSet.tableSizeFor(0), PrimitiveHashSet.MIN_CAPACITY);
+        assertEquals(PrimitiveHashSet.tableSizeFor(12), 16);
+        assertEquals(PrimitiveHashSet.tableSizeFor(13), 32);
+        assertEquals(PrimitiveHashSet.tableSizeFor(Long.MAX_VALUE), PrimitiveHashSet.MAX_INITIAL_CAPACITY);
+    }
+
+    public void testOfIntInsertionOrder() {
+        Random r = new Random(42);
+        Set<Integer> expected = new LinkedHashSet<>();
+        PrimitiveHashSet.OfInt set = new PrimitiveHashSet.OfInt(-1);
+        for (int i = 0; i < 100_000; i++) {
+            // many duplicates, negative values and values colliding in the low bits
+            int v = (i & 1) == 0 ? r.nextInt(20_000) - 10_000 : (r.nextInt(1000) << 16);
+            assertEquals(set.add(v), expected.add(v));
+        }
+        assertEquals(set.size(), expected.size());
+        int[] array = set.toArray();
+        int i = 0;
+        for (int v : expected) {
+            assertEquals(array[i++], v);
+        }
+    }
+
+    public void testOfLongInsertionOrder() {
+        Random r = new Random(42);
+        Set<Long> expected = new LinkedHashSet<>();
+        PrimitiveHashSet.OfLong set = new PrimitiveHashSet.OfLong(1000);
+        for (int i = 0; i < 100_000; i++) {
+            long v = (i & 1) == 0 ? r.nextInt(20_000) - 10_000L : ((long) r.nextInt(1000) << 32);
+            assertEquals(set.add(v), expected.add(v));
+        }
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertFalse(set.add(Long.MIN_VALUE));
+        expected.add(Long.MIN_VALUE);
+        long[] array = set.toArray();
+        assertEquals(array.length, expected.size());
+        int i = 0;
+        for (long v : expected) {
+            assertEquals(array[i++], v);
+        }
+    }
+
+    public void testAddAll() {
+        PrimitiveHashSet.OfInt left = new PrimitiveHashSet.OfInt(-1);
+        PrimitiveHashSet.OfInt right = new PrimitiveHashSet.OfInt(-1);
+        for (int i = 0; i < 100; i++) {
+            left.add(i);
+            right.add(200 - i);
+        }
+        int[] array = left.addAll(right).toArray();
+        assertEquals(array.length, 200);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(array[i], i);
+            assertEquals(array[100 + i], 200 - i);
+        }
+    }
+
+    public void testStriped() {
+        PrimitiveHashSet.StripedOfInt ints = new PrimitiveHashSet.StripedOfInt(PrimitiveHashSet.stripeCount(), -1);
+        PrimitiveHashSet.StripedOfLong longs = new PrimitiveHashSet.StripedOfLong(1, 10_000);
+        AtomicInteger added = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> {
+                IntStreams.range(0, 400_000).parallel().forEach(i -> {
+                    if (ints.add(i % 10_000)) {
+                        added.incrementAndGet();
+                    }
+                    longs.add(i % 10_000);
+                });
+            }));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(added.get(), 10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(ints.add(i));
+            assertFalse(longs.add(i));
+        }
+        assertTrue(ints.add(-1));
+    }
+
+    public void testIndexOf() {
+        PrimitiveHashSet.OfLong set = new PrimitiveHashSet.OfLong(-1);
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(set.insert(i * 31), (int) i);
+        }
+        assertEquals(set.insert(31), 1);
+        assertEquals(set.indexOf(62), 2);
+        assertEquals(set.indexOf(1), -1);
+    }
+
+    public void testMap() {
+        Random r = new Random(42);
+        Map<Integer, Long> expected = new HashMap<>();
+        PrimitiveHashMap.OfInt left = new PrimitiveHashMap.OfInt();
+        PrimitiveHashMap.OfInt right = new PrimitiveHashMap.OfInt();
+        for (int i = 0; i < 50_000; i++) {
+            int k = r.nextInt(5_000) - 2_500;
+            Long v = expected.get(k);
+            expected.put(k, v == null ? i : v + i);
+            // the right map only gets a few keys, so merging swaps sides
+            if (k > 2_000) {
+                right.add(k, i);
+            } else {
+                left.add(k, i);
+            }
+        }
+        PrimitiveHashMap.OfInt merged = right.merge(left);
+        assertTrue(merged == left);
+        assertEquals(merged, expected);
+        assertEquals(expected, merged);
+        assertEquals(merged.hashCode(), expected.hashCode());
+        assertEquals(merged.get(-2_500), expected.get(-2_500));
+        assertEquals(merged.get(10_000), null);
+        assertEquals(merged.get(1L), null);
+        assertFalse(merged.containsKey("1"));
+
+        PrimitiveHashMap.OfLong longs = new PrimitiveHashMap.OfLong();
+        longs.add(Long.MIN_VALUE, 1);
+        longs.add(Long.MIN_VALUE, 2);
+        longs.add(0L, 5);
+        assertEquals(longs.size(), 2);
+        assertEquals(longs.get(Long.MIN_VALUE).longValue(), 3L);
+        assertEquals(longs.keySet().iterator().next().longValue(), Long.MIN_VALUE);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapUnmodifiable() {
+        PrimitiveHashMap.OfInt map = new PrimitiveHashMap.OfInt();
+        map.add(1, 1);
+        map.put(2, 2L);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+/**
+ * A {@link PipelineListener} for tests that keeps the statistics of the most
+ * recent evaluation and counts the evaluations.
+ */
+final class RecordingListener extends PipelineListener {
+    final boolean timed;
+    PipelineStatistics statistics;
+    int evaluations;
+
+    RecordingListener() {
+        this(false);
+    }
+
+    RecordingListener(boolean timed) {
+        this.timed = timed;
+    }
+
+    @Override
+    public boolean isTimed() {
+        return timed;
+    }
+
+    @Override
+    public void evaluated(PipelineStatistics statistics) {
+        this.statistics = statistics;
+        evaluations++;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java8.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ShortCircuitWaveTest {
+
+    static final int SIZE = 4_000_000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    IntStream range(RecordingListener listener) {
+        return StreamSupport.withListener(StreamSupport.parallel(IntStreams.range(0, SIZE), pool), listener);
+    }
+
+    public void testFindFirstInPrefix() {
+        for (int target : new int[] { 0, 100, SIZE / 100, SIZE / 2 + 1, SIZE - 1 }) {
+            AtomicLong visited = new AtomicLong();
+            RecordingListener listener = new RecordingListener();
+            int found = range(listener)
+                    .filter(i -> {
+                        visited.incrementAndGet();
+                        return i >= target && i % 7 == target % 7;
+                    })
+                    .findFirst().getAsInt();
+            assertEquals(found, target);
+            if (target <= SIZE / 100) {
+                // the second half of the source is never started
+                assertTrue(visited.get() < SIZE / 2, "visited " + visited.get());
+            }
+            assertTrue(listener.statistics.wastedElements() <= visited.get(), listener.statistics.toString());
+        }
+    }
+
+    static void pause(int i) {
+        if (i % 1_000 == 0) {
+            // keep the leaves of the first wave busy while the result is found
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void testWastedElements() {
+        AtomicLong visited = new AtomicLong();
+        RecordingListener listener = new RecordingListener();
+        int found = range(listener)
+                .filter(i -> {
+                    visited.incrementAndGet();
+                    pause(i);
+                    return i == 5_000;
+                })
+                .findFirst().getAsInt();
+        assertEquals(found, 5_000);
+        // the other leaves of the first wave stopped early
+        assertTrue(listener.statistics.wastedElements() > 0L, listener.statistics.toString());
+        assertTrue(listener.statistics.wastedElements() <= visited.get(), listener.statistics.toString());
+    }
+
+    public void testFindFirstAbsent() {
+        AtomicLong visited = new AtomicLong();
+        RecordingListener listener = new RecordingListener();
+        assertFalse(range(listener).filter(i -> visited.incrementAndGet() < 0).findFirst().isPresent());
+        assertEquals(visited.get(), (long) SIZE);
+        assertEquals(listener.statistics.wastedElements(), 0L);
+    }
+
+    public void testLimit() {
+        AtomicLong visited = new AtomicLong();
+        int[] result = range(new RecordingListener())
+                .filter(i -> {
+                    visited.incrementAndGet();
+                    return i % 3 == 0;
+                })
+                .limit(10).toArray();
+        assertEquals(result, new int[] { 0, 3, 6, 9, 12, 15, 18, 21, 24, 27 });
+        assertTrue(visited.get() < SIZE / 2, "visited " + visited.get());
+    }
+
+    public void testFindAnyAndMatch() {
+        AtomicLong visited = new AtomicLong();
+        RecordingListener listener = new RecordingListener();
+        assertTrue(range(listener).peek(i -> visited.incrementAndGet()).anyMatch(i -> i % 100_000 == 99_999));
+        assertTrue(listener.statistics.wastedElements() <= visited.get());
+        assertTrue(range(new RecordingListener()).filter(i -> i % 1000 == 999).findAny().getAsInt() % 1000 == 999);
+        assertTrue(range(new RecordingListener()).allMatch(i -> i < SIZE));
+    }
+
+    public void testReferenceAndLongShapes() {
+        assertEquals((int) range(new RecordingListener()).boxed().filter(i -> i > 1234).findFirst().get(), 1235);
+        assertEquals(range(new RecordingListener()).asLongStream().filter(l -> l > 99).findFirst().getAsLong(), 100L);
+        assertEquals(range(new RecordingListener()).asDoubleStream().skip(5).limit(2).toArray(),
+                new double[] { 5.0, 6.0 });
+    }
+}
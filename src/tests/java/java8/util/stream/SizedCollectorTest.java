@@ -0,0 +1,222 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java8.util.function.Function;
+import java8.util.function.Functions;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SizedCollectorTest {
+
+    static final int SIZE = 10_000;
+
+    static List<Integer> data() {
+        List<Integer> data = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            data.add(i);
+        }
+        return data;
+    }
+
+    /**
+     * A list collector that records the sizes its containers were created
+     * with.
+     */
+    static final class Recording {
+        final AtomicLong presized = new AtomicLong();
+        final AtomicInteger sizedContainers = new AtomicInteger();
+        final AtomicInteger unsizedContainers = new AtomicInteger();
+
+        Collector<Integer, List<Integer>, List<Integer>> collector() {
+            return new Collectors.CollectorImpl<Integer, List<Integer>, List<Integer>>(
+                    () -> {
+                        unsizedContainers.incrementAndGet();
+                        return new ArrayList<>();
+                    },
+                    size -> {
+                        sizedContainers.incrementAndGet();
+                        presized.addAndGet(size);
+                        return new ArrayList<>((int) size);
+                    },
+                    List::add,
+                    (left, right) -> { left.addAll(right); return left; },
+                    Collectors.CH_ID);
+        }
+    }
+
+    public void testSizedSupplier() {
+        assertNotNull(Collectors.sizedSupplier(Collectors.toList()));
+        assertNotNull(Collectors.sizedSupplier(Collectors.toUnmodifiableList()));
+        assertNotNull(Collectors.sizedSupplier(Collectors.toMap(Functions.identity(), Functions.identity())));
+        assertNotNull(Collectors.sizedSupplier(Collectors.toUnmodifiableMap(Functions.identity(), Functions.identity())));
+        assertNotNull(Collectors.sizedSupplier(Collectors.collectingAndThen(Collectors.toList(),
+                Collections::unmodifiableList)));
+        // elements may collapse, the size is only an upper bound
+        assertNull(Collectors.sizedSupplier(Collectors.toSet()));
+        assertNull(Collectors.sizedSupplier(Collectors.counting()));
+        assertNull(Collectors.sizedSupplier(Collectors.toCollection(ArrayList::new)));
+    }
+
+    public void testSequentialPresized() {
+        Recording r = new Recording();
+        List<Integer> result = StreamSupport.stream(data()).collect(r.collector());
+        assertEquals(result, data());
+        assertEquals(r.sizedContainers.get(), 1);
+        assertEquals(r.unsizedContainers.get(), 0);
+        assertEquals(r.presized.get(), SIZE);
+    }
+
+    public void testParallelPresized() {
+        Recording r = new Recording();
+        List<Integer> result = StreamSupport.parallelStream(data()).map(i -> i + 1).collect(r.collector());
+        assertEquals(result.size(), SIZE);
+        assertEquals(result.get(SIZE - 1).intValue(), SIZE);
+        assertEquals(r.unsizedContainers.get(), 0);
+        // each leaf presizes for its own part
+        assertEquals(r.presized.get(), SIZE);
+        assertTrue(r.sizedContainers.get() >= 1);
+    }
+
+    public void testUnknownSize() {
+        Recording r = new Recording();
+        List<Integer> result = StreamSupport.stream(data()).filter(i -> i % 2 == 0).collect(r.collector());
+        assertEquals(result.size(), SIZE / 2);
+        assertEquals(r.sizedContainers.get(), 0);
+        assertEquals(r.unsizedContainers.get(), 1);
+    }
+
+    public void testCollectors() {
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < SIZE; i++) {
+            expected.put(i, 2 * i);
+        }
+        Function<Integer, Integer> twice = i -> 2 * i;
+        for (boolean parallel : new boolean[] { false, true }) {
+            Stream<Integer> s = parallel ? StreamSupport.parallelStream(data()) : StreamSupport.stream(data());
+            assertEquals(s.collect(Collectors.toList()), data());
+            s = parallel ? StreamSupport.parallelStream(data()) : StreamSupport.stream(data());
+            assertEquals(s.collect(Collectors.toUnmodifiableList()), data());
+            s = parallel ? StreamSupport.parallelStream(data()) : StreamSupport.stream(data());
+            assertEquals(s.collect(Collectors.toMap(Functions.identity(), twice)), expected);
+            s = parallel ? StreamSupport.parallelStream(data()) : StreamSupport.stream(data());
+            assertEquals(s.collect(Collectors.toUnmodifiableMap(Functions.identity(), twice)), expected);
+        }
+    }
+
+    public void testArrayFinisher() {
+        assertNotNull(Collectors.arrayFinisher(Collectors.toList()));
+        assertNotNull(Collectors.arrayFinisher(Collectors.toUnmodifiableList()));
+        assertNull(Collectors.arrayFinisher(Collectors.toSet()));
+        assertNull(Collectors.arrayFinisher(Collectors.collectingAndThen(Collectors.toList(),
+                Collections::unmodifiableList)));
+    }
+
+    public void testParallelSizedToList() {
+        List<Integer> result = StreamSupport.parallelStream(data()).map(i -> i * 2)
+                .collect(Collectors.toList());
+        assertEquals(result.size(), SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(result.get(i).intValue(), 2 * i);
+        }
+        // still a mutable list
+        result.add(-1);
+        assertEquals(result.size(), SIZE + 1);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testParallelSizedToUnmodifiableList() {
+        List<Integer> result = StreamSupport.parallelStream(data()).collect(Collectors.toUnmodifiableList());
+        assertEquals(result, data());
+        result.add(-1);
+    }
+
+    public void testSequentialSizedToUnmodifiableList() {
+        assertTrue(Collectors.wrapsArray(Collectors.toUnmodifiableList()));
+        assertTrue(!Collectors.wrapsArray(Collectors.toList()));
+        for (int size : new int[] { 0, 1, 2, 3, SIZE }) {
+            List<Integer> data = data().subList(0, size);
+            List<Integer> result = StreamSupport.stream(data).collect(Collectors.toUnmodifiableList());
+            assertEquals(result, data);
+            try {
+                result.add(-1);
+                throw new AssertionError("modifiable");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testSequentialSizedToUnmodifiableListNull() {
+        StreamSupport.stream(Arrays.asList(1, null, 3)).collect(Collectors.toUnmodifiableList());
+    }
+
+    public void testTrustedSetAndMap() {
+        for (int size : new int[] { 0, 1, 2, 3, SIZE }) {
+            List<Integer> data = data().subList(0, size);
+            for (boolean parallel : new boolean[] { false, true }) {
+                Set<Integer> set = StreamSupport.stream(data, 0, parallel)
+                        .map(i -> i % 1000).collect(Collectors.toUnmodifiableSet());
+                assertEquals(set, new HashSet<>(StreamSupport.stream(data).map(i -> i % 1000)
+                        .collect(Collectors.toList())));
+                Map<Integer, String> map = StreamSupport.stream(data, 0, parallel)
+                        .collect(Collectors.toUnmodifiableMap(Functions.identity(), i -> "v" + i));
+                assertEquals(map.size(), size);
+                for (Integer i : data) {
+                    assertEquals(map.get(i), "v" + i);
+                }
+                Map<Integer, Integer> merged = StreamSupport.stream(data, 0, parallel)
+                        .collect(Collectors.toUnmodifiableMap(i -> i % 10, i -> 1, Integer::sum));
+                assertEquals(merged.size(), Math.min(size, 10));
+                try {
+                    set.add(-1);
+                    throw new AssertionError("modifiable");
+                } catch (UnsupportedOperationException expected) {
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testTrustedSetNull() {
+        StreamSupport.stream(Arrays.asList(1, 2, null, 4)).collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testTrustedMapNullKey() {
+        StreamSupport.stream(Arrays.asList(1, 2, 3, 4))
+                .collect(Collectors.toUnmodifiableMap(i -> i == 3 ? null : i, i -> i, Integer::sum));
+    }
+
+    public void testParallelUnsizedToList() {
+        List<Integer> result = StreamSupport.parallelStream(data()).filter(i -> i % 2 == 0)
+                .collect(Collectors.toList());
+        assertEquals(result.size(), SIZE / 2);
+        assertEquals(result.get(SIZE / 2 - 1).intValue(), SIZE - 2);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testDuplicateKeys() {
+        StreamSupport.stream(data()).collect(Collectors.toMap(i -> i % 10, Functions.identity()));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java8.util.Spliterator;
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.stream.CustomFJPoolTest.SplitCountingSpliterator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SplitPolicyTest {
+
+    static final int SIZE = 100_000;
+
+    static class CountingPolicy extends SplitPolicy {
+        final SplitPolicy delegate;
+        final AtomicInteger leaves = new AtomicInteger();
+        final AtomicLong elements = new AtomicLong();
+
+        CountingPolicy(SplitPolicy delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long targetSize(long sizeEstimate, int parallelism) {
+            return delegate.targetSize(sizeEstimate, parallelism);
+        }
+
+        @Override
+        public boolean isTimed() {
+            return true;
+        }
+
+        @Override
+        public void leafCompleted(long leafSize, long elapsedNanos) {
+            leaves.incrementAndGet();
+            elements.addAndGet(leafSize);
+        }
+    }
+
+    public void testTargetSizes() {
+        assertEquals(SplitPolicy.defaultPolicy().targetSize(8000, 2), 1000);
+        assertEquals(SplitPolicy.defaultPolicy().targetSize(8000, 0), 2000);
+        assertEquals(SplitPolicy.minLeafSize(5000).targetSize(8000, 2), 5000);
+        assertEquals(SplitPolicy.minLeafSize(10).targetSize(8000, 2), 1000);
+        // 100 microseconds per leaf at 10ns per element
+        assertEquals(SplitPolicy.costPerElement(10).targetSize(1_000_000, 4), 10_000);
+        // but never fewer leaves than threads
+        assertEquals(SplitPolicy.costPerElement(1).targetSize(100_000, 4), 25_000);
+        assertEquals(SplitPolicy.costPerElement(1_000_000).targetSize(100_000, 4), 0);
+    }
+
+    public void testAdaptive() {
+        SplitPolicy p = SplitPolicy.adaptive(1_000_000);
+        assertTrue(p.isTimed());
+        assertEquals(p.targetSize(80_000, 2), SplitPolicy.defaultPolicy().targetSize(80_000, 2));
+        p.leafCompleted(1000, 100_000); // 100ns per element
+        assertEquals(p.targetSize(1_000_000, 2), 10_000);
+        p.leafCompleted(1000, 100_000);
+        assertEquals(p.targetSize(1_000_000, 2), 10_000);
+        p.leafCompleted(1000, 1_000_000); // 1000ns per element
+        assertTrue(p.targetSize(1_000_000, 2) < 10_000);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testIllegalMinLeafSize() {
+        SplitPolicy.minLeafSize(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testIllegalCost() {
+        SplitPolicy.costPerElement(0);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullPolicy() {
+        StreamSupport.withSplitPolicy(IntStreams.range(0, 10), null);
+    }
+
+    public void testMinLeafSizeLimitsSplits() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(countSplits(pool, SplitPolicy.minLeafSize(SIZE / 2)), 2);
+            assertEquals(countSplits(pool, SplitPolicy.minLeafSize(SIZE)), 1);
+            assertTrue(countSplits(pool, SplitPolicy.defaultPolicy()) > 2);
+            assertEquals(countSplits(pool, SplitPolicy.defaultPolicy()), countSplits(pool, null));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testLeafTiming() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            list.add(i);
+        }
+        long expectedSum = (long) SIZE * (SIZE - 1) / 2;
+
+        // AbstractTask based reduction
+        CountingPolicy p = new CountingPolicy(SplitPolicy.minLeafSize(1000));
+        long sum = StreamSupport.withSplitPolicy(StreamSupport.parallelStream(list), p)
+                .mapToLong(i -> i).sum();
+        assertEquals(sum, expectedSum);
+        assertTrue(p.leaves.get() > 0);
+        assertEquals(p.elements.get(), SIZE);
+
+        // ForEachTask
+        p = new CountingPolicy(SplitPolicy.minLeafSize(1000));
+        AtomicLong acc = new AtomicLong();
+        StreamSupport.withSplitPolicy(StreamSupport.parallelStream(list), p)
+                .forEach(acc::addAndGet);
+        assertEquals(acc.get(), expectedSum);
+        assertEquals(p.elements.get(), SIZE);
+
+        // SizedCollectorTask
+        p = new CountingPolicy(SplitPolicy.minLeafSize(1000));
+        Object[] array = StreamSupport.withSplitPolicy(StreamSupport.parallelStream(list), p)
+                .toArray();
+        assertEquals(array.length, SIZE);
+        assertEquals(array[SIZE - 1], SIZE - 1);
+        assertEquals(p.elements.get(), SIZE);
+
+        // sequential evaluation ignores the policy
+        p = new CountingPolicy(SplitPolicy.defaultPolicy());
+        assertEquals(StreamSupport.withSplitPolicy(StreamSupport.stream(list), p).count(), SIZE);
+        assertEquals(p.leaves.get(), 0);
+    }
+
+    public void testAdaptiveResults() {
+        SplitPolicy p = SplitPolicy.adaptive();
+        for (int i = 0; i < 5; i++) {
+            int[] evens = StreamSupport.withSplitPolicy(IntStreams.range(0, SIZE).parallel(), p)
+                    .filter(e -> (e & 1) == 0).toArray();
+            assertEquals(evens.length, SIZE / 2);
+            for (int j = 0; j < evens.length; j++) {
+                assertEquals(evens[j], 2 * j);
+            }
+        }
+        assertNotEquals(p.toString(), SplitPolicy.adaptive().toString());
+    }
+
+    public void testFlattenWithPolicy() {
+        Node<Integer> conc = Nodes.node(new Integer[] {0, 1, 2});
+        for (int i = 1; i < 100; i++) {
+            conc = Nodes.conc(StreamShape.REFERENCE, conc,
+                    Nodes.node(new Integer[] {3 * i, 3 * i + 1, 3 * i + 2}));
+        }
+        for (SplitPolicy policy : new SplitPolicy[] {null, SplitPolicy.minLeafSize(1),
+                SplitPolicy.minLeafSize(50), SplitPolicy.minLeafSize(Long.MAX_VALUE)}) {
+            Node<Integer> flat = Nodes.flatten(conc, Integer[]::new, policy);
+            assertEquals(flat.getChildCount(), 0);
+            Integer[] array = flat.asArray(Integer[]::new);
+            assertEquals(array.length, 300);
+            for (int i = 0; i < array.length; i++) {
+                assertEquals(array[i].intValue(), i);
+            }
+        }
+        Node<Integer> leaf = Nodes.node(new Integer[] {1});
+        assertSame(Nodes.flatten(leaf, Integer[]::new, SplitPolicy.minLeafSize(1)), leaf);
+    }
+
+    static int countSplits(ForkJoinPool pool, SplitPolicy policy) {
+        Spliterator<Integer> s = IntStreams.range(0, SIZE).boxed().parallel().spliterator();
+        SplitCountingSpliterator<Integer> cs = new SplitCountingSpliterator<>(s);
+        Stream<Integer> stream = StreamSupport.parallel(StreamSupport.stream(cs, true), pool);
+        if (policy != null) {
+            stream = StreamSupport.withSplitPolicy(stream, policy);
+        }
+        stream.forEach(e -> {});
+        return cs.splits();
+    }
+}
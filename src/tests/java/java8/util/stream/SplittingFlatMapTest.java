@@ -0,0 +1,180 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java8.util.Comparators;
+import java8.util.Spliterator;
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.concurrent.ForkJoinWorkerThread;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SplittingFlatMapTest {
+
+    // partition sizes of very different magnitude, one dominating
+    static final int[] SIZES = { 3, 0, 200_000, 17, 1, 0, 5_000, 42, 1_000 };
+
+    static Stream<Integer> partitions() {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < SIZES.length; i++) {
+            indexes.add(i);
+        }
+        return StreamSupport.stream(indexes);
+    }
+
+    static Stream<Integer> partition(int index) {
+        return IntStreams.range(0, SIZES[index]).mapToObj(i -> index * 1_000_000 + i);
+    }
+
+    // as if the spliterator were the source of a parallel stream
+    static <S extends FlatMapSpliterator<?, ?>> S parallel(S spliterator) {
+        spliterator.owner = (AbstractPipeline<?, ?, ?>) RefStreams.empty().parallel();
+        return spliterator;
+    }
+
+    public void testRefEncounterOrder() {
+        List<Integer> expected = partitions().flatMap(SplittingFlatMapTest::partition)
+                .collect(Collectors.toList());
+        assertEquals(StreamSupport.splittingFlatMap(partitions(), SplittingFlatMapTest::partition)
+                .collect(Collectors.toList()), expected);
+        assertEquals(StreamSupport.splittingFlatMap(partitions().parallel(), SplittingFlatMapTest::partition)
+                .collect(Collectors.toList()), expected);
+        assertEquals(StreamSupport.splittingFlatMap(partitions().parallel(), SplittingFlatMapTest::partition)
+                .skip(10).findFirst().get(), partition(2).skip(7).findFirst().get());
+    }
+
+    public void testPrimitives() {
+        long sum = 0L;
+        for (int size : SIZES) {
+            sum += (long) size * (size - 1) / 2;
+        }
+        int[] ints = StreamSupport.splittingFlatMap(IntStreams.range(0, SIZES.length).parallel(),
+                i -> IntStreams.range(0, SIZES[i])).toArray();
+        assertEquals(ints, IntStreams.range(0, SIZES.length).flatMap(i -> IntStreams.range(0, SIZES[i])).toArray());
+        assertEquals(StreamSupport.splittingFlatMap(LongStreams.range(0, SIZES.length).parallel(),
+                i -> LongStreams.range(0, SIZES[(int) i])).sum(), sum);
+        assertEquals(StreamSupport.splittingFlatMap(DoubleStreams.of(1.0, 2.0, 3.0).parallel(),
+                d -> DoubleStreams.of(d, d * 10)).toArray(), new double[] { 1.0, 10.0, 2.0, 20.0, 3.0, 30.0 });
+    }
+
+    public void testLargeInnerStreamIsSplit() {
+        Spliterator<Integer> s = parallel(new FlatMapSpliterator.OfRef<Integer>(
+                () -> new Object[] { partition(2).map(i -> i + 1) }, Spliterator.ORDERED));
+        assertEquals(s.estimateSize(), (long) SIZES[2]);
+        Spliterator<Integer> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertTrue(prefix.estimateSize() < SIZES[2]);
+        AtomicInteger count = new AtomicInteger();
+        prefix.forEachRemaining(i -> count.incrementAndGet());
+        s.forEachRemaining(i -> count.incrementAndGet());
+        assertEquals(count.get(), SIZES[2]);
+        assertFalse(s.tryAdvance(i -> {}));
+    }
+
+    public void testSplitBalancesInnerSizes() {
+        Spliterator.OfInt s = parallel(new FlatMapSpliterator.OfInt(() -> new Object[] {
+                IntStreams.range(0, 10), IntStreams.range(0, 10), IntStreams.range(0, 1_000),
+                IntStreams.range(0, 10) }, 0));
+        assertEquals(s.estimateSize(), 1_030L);
+        Spliterator.OfInt prefix = s.trySplit();
+        // the large inner stream goes to the prefix, the last one is left
+        assertEquals(prefix.estimateSize(), 1_020L);
+        assertEquals(s.estimateSize(), 10L);
+        assertNull(parallel(new FlatMapSpliterator.OfInt(() -> new Object[0], 0)).trySplit());
+    }
+
+    public void testNullInnerStreamIsEmpty() {
+        assertEquals(StreamSupport.splittingFlatMap(partitions().parallel(), i -> i == 2 ? null : partition(i))
+                .count(), partitions().flatMap(i -> i == 2 ? null : partition(i)).count());
+    }
+
+    public void testClose() {
+        AtomicInteger closed = new AtomicInteger();
+        Stream<Integer> s = StreamSupport.splittingFlatMap(partitions().onClose(closed::incrementAndGet),
+                i -> partition(i).onClose(closed::incrementAndGet));
+        assertEquals(s.count(), partitions().flatMap(SplittingFlatMapTest::partition).count());
+        // the inner streams are closed once consumed
+        assertEquals(closed.get(), SIZES.length);
+        s.close();
+        assertEquals(closed.get(), SIZES.length + 1);
+    }
+
+    public void testCloseSplitInnerStreams() {
+        AtomicInteger[] closed = new AtomicInteger[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            closed[i] = new AtomicInteger();
+        }
+        Stream<Integer> s = StreamSupport.splittingFlatMap(partitions().parallel(),
+                i -> partition(i).onClose(closed[i]::incrementAndGet));
+        assertEquals(s.filter(i -> i % 3 == 0).count(),
+                partitions().flatMap(SplittingFlatMapTest::partition).filter(i -> i % 3 == 0).count());
+        for (int i = 0; i < SIZES.length; i++) {
+            assertEquals(closed[i].get(), 1, "partition " + i);
+        }
+        s.close();
+        for (int i = 0; i < SIZES.length; i++) {
+            assertEquals(closed[i].get(), 1, "partition " + i);
+        }
+    }
+
+    public void testCloseAfterShortCircuit() {
+        AtomicInteger closed = new AtomicInteger();
+        Stream<Integer> s = StreamSupport.splittingFlatMap(partitions(),
+                i -> partition(i).onClose(closed::incrementAndGet));
+        assertEquals(s.findFirst().get(), Integer.valueOf(0));
+        // the first inner stream is not exhausted
+        assertEquals(closed.get(), 0);
+        s.close();
+        assertEquals(closed.get(), SIZES.length);
+    }
+
+    public void testSequentialInnerStreams() {
+        Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        List<Integer> sorted = StreamSupport.splittingFlatMap(partitions(),
+                i -> partition(i).peek(x -> threads.add(Thread.currentThread())).sorted(Comparators.reverseOrder()))
+                .collect(Collectors.toList());
+        assertEquals(sorted.size(), (int) partitions().flatMap(SplittingFlatMapTest::partition).count());
+        // the stateful inner operations are evaluated in the calling thread
+        assertEquals(threads, Collections.singleton(Thread.currentThread()));
+    }
+
+    public void testParallelInnerStreamsUsePool() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+            long count = StreamSupport.splittingFlatMap(StreamSupport.parallel(partitions(), pool),
+                    i -> partition(i).peek(x -> threads.add(Thread.currentThread())).sorted())
+                    .count();
+            assertEquals(count, partitions().flatMap(SplittingFlatMapTest::partition).count());
+            assertFalse(threads.isEmpty());
+            for (Thread t : threads) {
+                assertTrue(t instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) t).getPool() == pool,
+                        t.getName());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullMapper() {
+        StreamSupport.splittingFlatMap(partitions(), (java8.util.function.Function<Integer, Stream<Integer>>) null);
+    }
+}
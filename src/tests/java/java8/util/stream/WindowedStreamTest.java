@@ -0,0 +1,164 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package java8.util.stream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java8.util.Spliterator;
+import java8.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class WindowedStreamTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    static List<List<Integer>> expected(int n, int size, int step, boolean partial) {
+        List<List<Integer>> windows = new ArrayList<>();
+        for (int start = 0; start < n; start += step) {
+            List<Integer> w = new ArrayList<>();
+            for (int i = start; i < Math.min(n, start + size); i++) {
+                w.add(i);
+            }
+            if (w.size() == size || partial) {
+                windows.add(w);
+            }
+        }
+        return windows;
+    }
+
+    public void testChunked() {
+        for (int n : new int[] { 0, 1, 9, 10, 11, 1_000, 10_007 }) {
+            for (int size : new int[] { 1, 3, 10, 64 }) {
+                List<List<Integer>> expected = expected(n, size, size, true);
+                assertEquals(StreamSupport.chunked(IntStreams.range(0, n).boxed(), size)
+                        .collect(Collectors.toList()), expected);
+                Stream<List<Integer>> parallel = StreamSupport.chunked(
+                        StreamSupport.parallel(IntStreams.range(0, n).boxed(), pool), size);
+                assertTrue(parallel.isParallel());
+                assertEquals(parallel.collect(Collectors.toList()), expected);
+            }
+        }
+    }
+
+    public void testSliding() {
+        for (int n : new int[] { 0, 2, 3, 17, 5_003 }) {
+            for (int[] window : new int[][] { { 3, 1 }, { 3, 2 }, { 3, 3 }, { 2, 5 }, { 50, 7 } }) {
+                List<List<Integer>> expected = expected(n, window[0], window[1], false);
+                assertEquals(StreamSupport.sliding(IntStreams.range(0, n).boxed(), window[0], window[1])
+                        .collect(Collectors.toList()), expected);
+                assertEquals(StreamSupport.sliding(StreamSupport.parallel(
+                        IntStreams.range(0, n).boxed(), pool), window[0], window[1])
+                        .collect(Collectors.toList()), expected);
+            }
+        }
+    }
+
+    public void testSplitOnChunkBoundaries() {
+        Spliterator<int[]> s = new WindowSpliterator.OfInt(IntStreams.range(0, 1_003).spliterator(), 10, 10, true);
+        assertTrue(s.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        assertEquals(s.getExactSizeIfKnown(), 101L);
+        Spliterator<int[]> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertEquals(prefix.getExactSizeIfKnown() + s.getExactSizeIfKnown(), 101L);
+        List<int[]> chunks = new ArrayList<>();
+        prefix.forEachRemaining(chunks::add);
+        s.forEachRemaining(chunks::add);
+        assertEquals(chunks.size(), 101);
+        for (int i = 0; i < chunks.size(); i++) {
+            int[] chunk = chunks.get(i);
+            assertEquals(chunk.length, (i < 100) ? 10 : 3);
+            assertEquals(chunk[0], i * 10);
+        }
+    }
+
+    public void testSplitAfterTraversal() {
+        Spliterator<long[]> s = new WindowSpliterator.OfLong(LongStreams.range(0, 100).spliterator(), 4, 3, false);
+        assertEquals(s.getExactSizeIfKnown(), 33L);
+        List<long[]> windows = new ArrayList<>();
+        assertTrue(s.tryAdvance(windows::add));
+        assertTrue(s.tryAdvance(windows::add));
+        assertEquals(s.getExactSizeIfKnown(), 31L);
+        Spliterator<long[]> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertEquals(prefix.getExactSizeIfKnown() + s.getExactSizeIfKnown(), 31L);
+        prefix.forEachRemaining(windows::add);
+        s.forEachRemaining(windows::add);
+        assertEquals(windows.size(), 33);
+        for (int i = 0; i < windows.size(); i++) {
+            assertEquals(windows.get(i), new long[] { 3 * i, 3 * i + 1, 3 * i + 2, 3 * i + 3 });
+        }
+        assertFalse(s.tryAdvance(w -> {}));
+    }
+
+    public void testUnsizedSource() {
+        List<List<Integer>> expected = new ArrayList<>();
+        for (List<Integer> chunk : expected(30_000, 7, 7, true)) {
+            List<Integer> even = new ArrayList<>();
+            for (int i : chunk) {
+                even.add(2 * i);
+            }
+            expected.add(even);
+        }
+        Stream<List<Integer>> chunks = StreamSupport.chunked(StreamSupport.parallel(
+                IntStreams.range(0, 60_000).filter(i -> i % 2 == 0).boxed(), pool), 7);
+        assertEquals(chunks.collect(Collectors.toList()), expected);
+    }
+
+    public void testPrimitives() {
+        assertEquals(StreamSupport.chunked(IntStreams.range(0, 5), 2).toArray(),
+                new Object[] { new int[] { 0, 1 }, new int[] { 2, 3 }, new int[] { 4 } });
+        assertEquals(StreamSupport.chunked(LongStreams.range(0, 100_000).parallel(), 100)
+                .mapToLong(a -> a[a.length - 1] - a[0]).sum(), 99L * 1_000);
+        assertEquals(StreamSupport.sliding(DoubleStreams.of(1.0, 2.0, 3.0, 4.0), 2, 1)
+                .mapToDouble(a -> a[0] * a[1]).toArray(), new double[] { 2.0, 6.0, 12.0 });
+        assertEquals(StreamSupport.sliding(IntStreams.range(0, 1_000_000).parallel(), 3, 1)
+                .mapToLong(a -> a[0] + a[1] + a[2]).sum(),
+                IntStreams.range(1, 999_999).mapToLong(i -> 3L * i).sum());
+        assertEquals(Arrays.asList(StreamSupport.sliding(LongStreams.range(0, 10), 1, 4)
+                .map(a -> a[0]).toArray()), Arrays.<Object>asList(0L, 4L, 8L));
+    }
+
+    public void testShortCircuitAndCount() {
+        assertEquals(StreamSupport.chunked(IntStreams.range(0, 1_000_000).boxed().parallel(), 1_000)
+                .skip(500).findFirst().get().get(0), Integer.valueOf(500_000));
+        assertEquals(StreamSupport.sliding(IntStreams.range(0, 1_000).boxed(), 10, 3).count(), 331L);
+    }
+
+    public void testClose() {
+        AtomicInteger closed = new AtomicInteger();
+        Stream<List<Integer>> s = StreamSupport.chunked(
+                IntStreams.range(0, 10).boxed().onClose(closed::incrementAndGet), 3);
+        assertEquals(s.count(), 4L);
+        s.close();
+        assertEquals(closed.get(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroSize() {
+        StreamSupport.chunked(IntStreams.range(0, 10), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroStep() {
+        StreamSupport.sliding(RefStreams.of(1, 2, 3), 2, 0);
+    }
+}
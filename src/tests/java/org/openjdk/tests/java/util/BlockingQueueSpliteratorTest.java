@@ -0,0 +1,145 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.tests.java.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.concurrent.ForkJoinPool;
+import java8.util.stream.Collectors;
+import java8.util.stream.StreamSupport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class BlockingQueueSpliteratorTest {
+
+    static final int SIZE = 10_000;
+    static final Integer EOS = -1;
+
+    static List<Integer> range(int from, int to) {
+        List<Integer> list = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    /** Starts a thread that puts SIZE elements and then EOS into the queue */
+    static Thread produce(final BlockingQueue<Integer> queue) {
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < SIZE; i++) {
+                    queue.put(i);
+                    if (i % 1000 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+                queue.put(EOS);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        producer.start();
+        return producer;
+    }
+
+    public void testCharacteristics() {
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        Spliterator<Integer> s = Spliterators.blockingSpliterator(queue, 1, TimeUnit.SECONDS, EOS, true);
+        assertTrue(s.hasCharacteristics(Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.ORDERED));
+        assertEquals(s.getExactSizeIfKnown(), -1L);
+        s = Spliterators.blockingSpliterator(queue, 1, TimeUnit.SECONDS, EOS, false);
+        assertFalse(s.hasCharacteristics(Spliterator.ORDERED));
+    }
+
+    public void testEndOfStream() {
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>(range(0, 10));
+        queue.add(EOS);
+        Spliterator<Integer> s = Spliterators.blockingSpliterator(queue, 1, TimeUnit.MINUTES, EOS, true);
+        List<Integer> result = new ArrayList<>();
+        assertTrue(s.tryAdvance(result::add));
+        Spliterator<Integer> prefix = s.trySplit();
+        assertNotNull(prefix);
+        prefix.forEachRemaining(result::add);
+        s.forEachRemaining(result::add);
+        assertEquals(result, range(0, 10));
+        assertTrue(queue.isEmpty());
+        assertFalse(s.tryAdvance(result::add));
+        assertNull(s.trySplit());
+        assertEquals(s.estimateSize(), 0L);
+    }
+
+    public void testTimeout() {
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>(range(0, 10));
+        long start = System.nanoTime();
+        assertEquals(StreamSupport.stream(queue, 10, TimeUnit.MILLISECONDS, null, true, false)
+                .collect(Collectors.toList()), range(0, 10));
+        assertTrue(System.nanoTime() - start < TimeUnit.MINUTES.toNanos(1));
+    }
+
+    public void testInterrupted() {
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(StreamSupport.stream(queue, 1, TimeUnit.HOURS, EOS, true, false).count(), 0L);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    public void testSequentialWithProducer() throws InterruptedException {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(100);
+        Thread producer = produce(queue);
+        List<Integer> result = StreamSupport.stream(queue, 1, TimeUnit.MINUTES, EOS, true, false)
+                .collect(Collectors.toList());
+        producer.join();
+        assertEquals(result, range(0, SIZE));
+    }
+
+    public void testOrderedParallelWithProducer() throws InterruptedException {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(100);
+        Thread producer = produce(queue);
+        List<Integer> result = StreamSupport.stream(queue, 1, TimeUnit.MINUTES, EOS, true, true)
+                .map(i -> i + 0).collect(Collectors.toList());
+        producer.join();
+        assertEquals(result, range(0, SIZE));
+    }
+
+    public void testUnorderedParallelInSmallPool() throws InterruptedException {
+        // workers waiting for the queue must not exhaust a pool of one thread
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+            Thread producer = produce(queue);
+            long sum = StreamSupport.parallel(
+                    StreamSupport.stream(queue, 1, TimeUnit.MINUTES, EOS, false, true), pool)
+                    .mapToLong(i -> i).sum();
+            producer.join();
+            assertEquals(sum, (long) SIZE * (SIZE - 1) / 2);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullQueue() {
+        StreamSupport.stream(null, 1, TimeUnit.SECONDS, EOS, true, false);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Written by the streamsupport contributors and released to the
+ * public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package org.openjdk.tests.java.util;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java8.util.Spliterator;
+import java8.util.Spliterators;
+import java8.util.stream.Collectors;
+import java8.util.stream.StreamSupport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class QueueDrainingSpliteratorTest {
+
+    static final int SIZE = 10_000;
+
+    @DataProvider(name = "queues")
+    public static Object[][] queues() {
+        return new Object[][] {
+            { new ConcurrentLinkedQueue<Integer>() },
+            { new LinkedBlockingQueue<Integer>() },
+            { new ArrayBlockingQueue<Integer>(SIZE) },
+        };
+    }
+
+    static void fill(Queue<Integer> queue) {
+        queue.clear();
+        for (int i = 0; i < SIZE; i++) {
+            queue.add(i);
+        }
+    }
+
+    static List<Integer> expected() {
+        List<Integer> list = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Test(dataProvider = "queues")
+    public void testCharacteristics(Queue<Integer> queue) {
+        Spliterator<Integer> s = Spliterators.drainingSpliterator(queue);
+        assertTrue(s.hasCharacteristics(Spliterator.CONCURRENT));
+        assertTrue(s.hasCharacteristics(Spliterator.NONNULL));
+        assertFalse(s.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(s.getExactSizeIfKnown(), -1L);
+    }
+
+    @Test(dataProvider = "queues")
+    public void testSequentialDrain(Queue<Integer> queue) {
+        fill(queue);
+        Spliterator<Integer> s = Spliterators.drainingSpliterator(queue);
+        List<Integer> result = new ArrayList<>();
+        assertTrue(s.tryAdvance(result::add));
+        assertEquals(queue.size(), SIZE - 1);
+        s.forEachRemaining(result::add);
+        assertEquals(result, expected());
+        assertTrue(queue.isEmpty());
+        assertFalse(s.tryAdvance(result::add));
+    }
+
+    @Test(dataProvider = "queues")
+    public void testSplit(Queue<Integer> queue) {
+        fill(queue);
+        Spliterator<Integer> s = Spliterators.drainingSpliterator(queue);
+        Spliterator<Integer> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertTrue(prefix.hasCharacteristics(Spliterator.SIZED));
+        long n = prefix.getExactSizeIfKnown();
+        assertTrue(n > 0 && n <= SIZE / 2, "batch of " + n);
+        assertEquals(queue.size(), SIZE - n);
+        List<Integer> result = new ArrayList<>();
+        prefix.forEachRemaining(result::add);
+        s.forEachRemaining(result::add);
+        assertEquals(result, expected());
+        assertNull(s.trySplit());
+    }
+
+    @Test(dataProvider = "queues")
+    public void testParallelStream(Queue<Integer> queue) {
+        fill(queue);
+        List<Integer> result = StreamSupport.stream(Spliterators.drainingSpliterator(queue), true)
+                .map(i -> i + 0).collect(Collectors.toList());
+        Collections.sort(result);
+        assertEquals(result, expected());
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testConcurrentProducer() throws InterruptedException {
+        LinkedBlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        fill(queue);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            started.countDown();
+            for (int i = 0; i < SIZE; i++) {
+                queue.add(SIZE + i);
+            }
+        });
+        AtomicLong count = new AtomicLong();
+        producer.start();
+        started.await();
+        StreamSupport.stream(Spliterators.drainingSpliterator(queue), true)
+                .forEach(i -> count.incrementAndGet());
+        producer.join();
+        // whatever the stream didn't see is still in the queue
+        assertEquals(count.get() + queue.size(), 2L * SIZE);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullQueue() {
+        Spliterators.drainingSpliterator(null);
+    }
+}
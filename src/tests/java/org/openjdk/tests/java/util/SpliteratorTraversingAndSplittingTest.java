@@ -181,6 +181,15 @@ public class SpliteratorTraversingAndSplittingTest extends SpliteratorTestHelper
             db.add("Spliterators.spliteratorUnknownSize(Iterator, ...)",
                    () -> Spliterators.spliteratorUnknownSize(exp.iterator(), 0));
 
+            db.add("Spliterators.adaptiveSpliterator(Iterator, null, ...)",
+                   () -> Spliterators.adaptiveSpliterator(exp.iterator(), null, 0, 1, 4));
+
+            db.add("Spliterators.adaptiveSpliterator(Iterator, LongSupplier, ...)",
+                   () -> Spliterators.adaptiveSpliterator(exp.iterator(), () -> exp.size(), 0, 1, 4));
+
+            db.add("Spliterators.adaptiveSpliterator(Iterable, LongSupplier, ...)",
+                   () -> Spliterators.adaptiveSpliterator(exp, () -> exp.size(), 0, 3, 1 << 25));
+
             db.add("Spliterators.spliterator(Spliterators.iteratorFromSpliterator(Spliterator ), ...)",
                    () -> Spliterators.spliterator(Spliterators.iterator(Spliterators.spliterator(exp)), exp.size(), 0));
 
@@ -342,6 +351,10 @@ public class SpliteratorTraversingAndSplittingTest extends SpliteratorTestHelper
             }
             db.add("new Iterable.spliterator()",
                    () -> Iterables.spliterator(new IterableWrapper(exp)));
+            db.add("Iterables.adaptiveSpliterator(Iterable)",
+                   () -> Iterables.adaptiveSpliterator(new IterableWrapper(exp)));
+            db.add("Iterables.adaptiveSpliterator(Collection)",
+                   () -> Iterables.adaptiveSpliterator(exp));
 
             //
 
@@ -71,6 +71,10 @@ import static java8.util.stream.Collectors.flatMapping;
 import static java8.util.stream.Collectors.filtering;
 import static java8.util.stream.Collectors.groupingBy;
 import static java8.util.stream.Collectors.groupingByConcurrent;
+import static java8.util.stream.Collectors.groupingByIntCounting;
+import static java8.util.stream.Collectors.groupingByIntSumming;
+import static java8.util.stream.Collectors.groupingByLongCounting;
+import static java8.util.stream.Collectors.groupingByLongSumming;
 import static java8.util.stream.Collectors.mapping;
 import static java8.util.stream.Collectors.partitioningBy;
 import static java8.util.stream.Collectors.reducing;
@@ -736,6 +740,31 @@ public class CollectorsTest extends OpTestCase {
                                                         new ReducingAssertion<>(0, mDoubler, Integers::sum)));
     }
 
+    @Test(dataProvider = "StreamTestData<Integer>", dataProviderClass = StreamTestDataProvider.class)
+    public void testPrimitiveGroupingBy(String name, TestData.OfRef<Integer> data) throws Exception {
+        Function<Integer, Integer> classifier = i -> i % 3;
+        Function<Integer, Long> longClassifier = i -> (long) i << 33;
+
+        exerciseMapCollection(data, groupingByIntCounting(i -> i % 3),
+                              new GroupingByAssertion<>(classifier, Map.class,
+                                                        new ReducingAssertion<>(0L, i -> 1L, Longs::sum)));
+        exerciseMapCollection(data, groupingByIntSumming(i -> i % 3, i -> 2L * i),
+                              new GroupingByAssertion<>(classifier, Map.class,
+                                                        new ReducingAssertion<>(0L, i -> 2L * i, Longs::sum)));
+        exerciseMapCollection(data, groupingByLongCounting(i -> (long) i << 33),
+                              new GroupingByAssertion<>(longClassifier, Map.class,
+                                                        new ReducingAssertion<>(0L, i -> 1L, Longs::sum)));
+        exerciseMapCollection(data, groupingByLongSumming(i -> (long) i << 33, i -> (long) i),
+                              new GroupingByAssertion<>(longClassifier, Map.class,
+                                                        new ReducingAssertion<>(0L, i -> (long) i, Longs::sum)));
+
+        // same contents as the boxing collectors
+        assertEquals(data.stream().collect(groupingByIntCounting(i -> i)),
+                     data.stream().collect(groupingBy(i -> i, Collectors.counting())));
+        assertEquals(data.parallelStream().collect(groupingByLongCounting(i -> i / 7)),
+                     data.stream().collect(groupingBy(i -> (long) (i / 7), Collectors.counting())));
+    }
+
     @Test(dataProvider = "StreamTestData<Integer>", dataProviderClass = StreamTestDataProvider.class)
     public void testSimplePartitioningBy(String name, TestData.OfRef<Integer> data) throws Exception {
         Predicate<Integer> classifier = i -> i % 3 == 0;
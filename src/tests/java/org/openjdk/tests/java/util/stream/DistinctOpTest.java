@@ -27,7 +27,9 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import java8.lang.Iterables;
 
@@ -70,6 +72,34 @@ public class DistinctOpTest extends OpTestCase {
         assertTrue(oi.isPresent());
     }
 
+    public void testUnorderedParallelLarge() {
+        // Enough elements for many leaves, each leaf with many partitions
+        List<Integer> input = new ArrayList<>();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            Integer e = (i % 1000 == 0) ? null : (i * 7919) % 50_021;
+            input.add(e);
+            expected.add(e);
+        }
+
+        List<Integer> result = StreamSupport.parallelStream(input).unordered().distinct()
+                .collect(Collectors.toList());
+        assertEquals(result.size(), expected.size());
+        assertEquals(new HashSet<>(result), expected);
+
+        // lazy evaluation since a stateful operation follows
+        result = StreamSupport.parallelStream(input).unordered().distinct().sorted(cNullInteger)
+                .collect(Collectors.toList());
+        assertEquals(result.size(), expected.size());
+        assertEquals(new HashSet<>(result), expected);
+        assertSorted(result, cNullInteger);
+
+        assertEquals(StreamSupport.parallelStream(input).unordered().distinct().count(),
+                     expected.size());
+        assertEquals(StreamSupport.parallelStream(input).unordered().filter(e -> false)
+                     .distinct().count(), 0);
+    }
+
     @Test(dataProvider = "StreamTestData<Integer>", dataProviderClass = StreamTestDataProvider.class)
     public void testOp(String name, TestData.OfRef<Integer> data) {
         Collection<Integer> result = exerciseOpsInt(
@@ -22,8 +22,13 @@
  */
 package org.openjdk.tests.java.util.stream;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
+import java8.util.OptionalInt;
+import java8.util.concurrent.ThreadLocalRandom;
 import java8.util.stream.*;
 
 import org.testng.annotations.Test;
@@ -45,6 +50,42 @@ public class IntUniqOpTest extends OpTestCase {
         assertCountSum(IntStreams.range(1, 11).distinct().boxed(), 10, 55);
     }
 
+    public void testWithUnorderedInfiniteStream() {
+        // These tests should short-circuit, otherwise will fail with a time-out
+        // or an OOME
+        OptionalInt oi = IntStreams.iterate(1, i -> i + 1).unordered().parallel().distinct().findAny();
+        assertTrue(oi.isPresent());
+
+        oi = ThreadLocalRandom.current().ints().parallel().distinct().findAny();
+        assertTrue(oi.isPresent());
+
+        long count = LongStreams.iterate(1, i -> i + 1).unordered().parallel().distinct().limit(100).count();
+        assertEquals(count, 100);
+    }
+
+    public void testEncounterOrder() {
+        int[] data = new int[200_000];
+        Set<Integer> expected = new LinkedHashSet<>();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 7919) % 50_021 - 25_000;
+            expected.add(data[i]);
+        }
+        int[] expectedArray = new int[expected.size()];
+        int i = 0;
+        for (int e : expected) {
+            expectedArray[i++] = e;
+        }
+        long[] expectedLongs = IntStreams.of(expectedArray).asLongStream().toArray();
+
+        assertTrue(Arrays.equals(IntStreams.of(data).distinct().toArray(), expectedArray));
+        assertTrue(Arrays.equals(IntStreams.of(data).parallel().distinct().toArray(), expectedArray));
+        assertTrue(Arrays.equals(IntStreams.of(data).asLongStream().parallel().distinct().toArray(),
+                                 expectedLongs));
+        assertEquals(IntStreams.of(data).parallel().unordered().distinct().count(), expected.size());
+        assertEquals(IntStreams.of(data).asLongStream().parallel().unordered().distinct().sorted().toArray(),
+                     LongStreams.of(expectedLongs).sorted().toArray());
+    }
+
     @Test(dataProvider = "IntStreamTestData", dataProviderClass = IntStreamTestDataProvider.class)
     public void testOp(String name, TestData.OfInt data) {
         Collection<Integer> result = exerciseOps(data, (IntStream s) -> s.distinct().boxed());
@@ -169,6 +169,29 @@ public class SortedOpTest extends OpTestCase {
         assertContentsUnordered(data, result);
     }
 
+    @Test(dataProvider = "StreamTestData<Integer>", dataProviderClass = StreamTestDataProvider.class)
+    public void testSortedLimit(String name, TestData.OfRef<Integer> data) {
+        List<Integer> sorted = StreamSupport.stream(data.stream().collect(Collectors.toList())).sorted()
+                .collect(Collectors.toList());
+        for (int limit : new int[] {1, 2, 10, 100, 1000, 2000}) {
+            List<Integer> expected = sorted.subList(0, Math.min(limit, sorted.size()));
+            Collection<Integer> result = exerciseOpsInt(data,
+                    s -> s.sorted().limit(limit),
+                    s -> s.sorted().limit(limit),
+                    s -> s.sorted().limit(limit),
+                    s -> s.sorted().limit(limit));
+            assertEquals(result, expected);
+
+            int skip = limit / 2;
+            expected = sorted.subList(Math.min(skip, sorted.size()), Math.min(skip + limit, sorted.size()));
+            result = exerciseOps(data, s -> s.sorted(cInteger).skip(skip).limit(limit));
+            assertEquals(result, expected);
+        }
+        Collection<Integer> result = exerciseOps(data, s -> s.sorted(Comparators.reversed(cInteger)).limit(5));
+        assertSorted(result, Comparators.reversed(cInteger));
+        assertEquals(result.size(), Math.min(5, sorted.size()));
+    }
+
     @Test(dataProvider = "StreamTestData<Integer>", dataProviderClass = StreamTestDataProvider.class)
     public void testSortSort(String name, TestData.OfRef<Integer> data) {
         // For parallel cases ensure the size is known
@@ -333,4 +356,151 @@ public class SortedOpTest extends OpTestCase {
         assertSorted(result);
         assertContentsUnordered(data, result);
     }
+
+    public void testParallelSortStability() {
+        // Large enough to require parallel merges of sorted runs
+        int size = 200_000;
+        java8.util.SplittableRandom rnd = new java8.util.SplittableRandom(42L);
+        int[][] pairs = new int[size][];
+        for (int i = 0; i < size; i++) {
+            pairs[i] = new int[] {rnd.nextInt(100), i};
+        }
+        java.util.Comparator<int[]> byKey = (a, b) -> Integer.compare(a[0], b[0]);
+        for (boolean sized : new boolean[] {true, false}) {
+            Stream<int[]> s = StreamSupport.stream(Arrays.asList(pairs)).parallel();
+            if (!sized) {
+                s = s.filter(p -> true);
+            }
+            Object[] sorted = s.sorted(byKey).toArray();
+            assertEquals(sorted.length, size);
+            for (int i = 1; i < size; i++) {
+                int[] prev = (int[]) sorted[i - 1], cur = (int[]) sorted[i];
+                assertTrue(prev[0] < cur[0] || (prev[0] == cur[0] && prev[1] < cur[1]),
+                           "unstable at " + i);
+            }
+        }
+    }
+
+    public void testParallelSortLargePrimitive() {
+        int size = 200_000;
+        java8.util.SplittableRandom rnd = new java8.util.SplittableRandom(4711L);
+        int[] ints = new int[size];
+        long[] longs = new long[size];
+        double[] doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            ints[i] = rnd.nextInt();
+            longs[i] = rnd.nextLong();
+            doubles[i] = rnd.nextDouble() - 0.5;
+        }
+        // special values are ordered as by Double.compare
+        doubles[0] = Double.NaN;
+        doubles[1] = -0.0d;
+        doubles[2] = 0.0d;
+        doubles[3] = Double.NEGATIVE_INFINITY;
+        doubles[size - 1] = -0.0d;
+        doubles[size / 2] = Double.NaN;
+
+        int[] expectedInts = ints.clone();
+        Arrays.sort(expectedInts);
+        long[] expectedLongs = longs.clone();
+        Arrays.sort(expectedLongs);
+        double[] expectedDoubles = doubles.clone();
+        Arrays.sort(expectedDoubles);
+
+        assertTrue(Arrays.equals(J8Arrays.stream(ints).parallel().sorted().toArray(), expectedInts));
+        assertTrue(Arrays.equals(J8Arrays.stream(ints).parallel().filter(i -> true).sorted().toArray(),
+                                 expectedInts));
+        assertTrue(Arrays.equals(J8Arrays.stream(longs).parallel().sorted().toArray(), expectedLongs));
+        assertTrue(Arrays.equals(J8Arrays.stream(longs).parallel().filter(i -> true).sorted().toArray(),
+                                 expectedLongs));
+        assertTrue(Arrays.equals(J8Arrays.stream(doubles).parallel().sorted().toArray(), expectedDoubles));
+        assertTrue(Arrays.equals(J8Arrays.stream(doubles).parallel().filter(i -> true).sorted().toArray(),
+                                 expectedDoubles));
+        assertEquals(J8Arrays.stream(ints).parallel().sorted().boxed().collect(Collectors.toList()),
+                     J8Arrays.stream(expectedInts).boxed().collect(Collectors.toList()));
+    }
+
+    public void testSortedLimitLarge() {
+        int size = 100_000;
+        java8.util.SplittableRandom rnd = new java8.util.SplittableRandom(7L);
+        int[][] pairs = new int[size][];
+        double[] doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            pairs[i] = new int[] {rnd.nextInt(1000), i};
+            doubles[i] = rnd.nextInt(1000) - 500;
+        }
+        doubles[10] = -0.0d;
+        doubles[20] = 0.0d;
+        doubles[30] = Double.NaN;
+        double[] sortedDoubles = doubles.clone();
+        Arrays.sort(sortedDoubles);
+        java.util.Comparator<int[]> byKey = (a, b) -> Integer.compare(a[0], b[0]);
+        int[][] sortedPairs = pairs.clone();
+        Arrays.sort(sortedPairs, byKey);
+
+        for (int k : new int[] {1, 7, 100, 5000, 60_000, size, 2 * size}) {
+            int n = Math.min(k, size);
+            for (boolean parallel : new boolean[] {false, true}) {
+                // unsized and sized, ties must keep encounter order
+                for (boolean sized : new boolean[] {false, true}) {
+                    Stream<int[]> s = StreamSupport.stream(Arrays.asList(pairs), 0, parallel);
+                    if (!sized) {
+                        s = s.filter(p -> true);
+                    }
+                    Object[] top = s.sorted(byKey).limit(k).toArray();
+                    assertEquals(top.length, n);
+                    for (int i = 0; i < n; i++) {
+                        assertTrue(top[i] == sortedPairs[i], "at " + i + " for k = " + k);
+                    }
+
+                    DoubleStream ds = J8Arrays.stream(doubles);
+                    if (parallel) {
+                        ds = ds.parallel();
+                    }
+                    if (!sized) {
+                        ds = ds.filter(d -> true);
+                    }
+                    assertTrue(Arrays.equals(ds.sorted().limit(k).toArray(),
+                                             Arrays.copyOf(sortedDoubles, n)), "k = " + k);
+                }
+            }
+        }
+    }
+
+    public void testSortedLimitLinkedTwice() {
+        Stream<Integer> sorted = StreamSupport.stream(countTo(100)).sorted(Comparators.reversed(cInteger));
+        Stream<Integer> top10 = sorted.limit(10);
+        try {
+            sorted.limit(2);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+            // a stream can only be linked once
+        }
+        assertEquals(top10.count(), 10L);
+    }
+
+    public void testSortedSkipLimit() {
+        int size = 100_000;
+        java8.util.SplittableRandom rnd = new java8.util.SplittableRandom(11L);
+        List<Integer> data = new java.util.ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            data.add(rnd.nextInt());
+        }
+        List<Integer> sorted = new java.util.ArrayList<>(data);
+        Collections.sort(sorted);
+        java.util.concurrent.atomic.AtomicLong comparisons = new java.util.concurrent.atomic.AtomicLong();
+        java.util.Comparator<Integer> counting = (a, b) -> {
+            comparisons.incrementAndGet();
+            return a.compareTo(b);
+        };
+        // the limit is seen through the skip-only slice, so only the
+        // smallest 10 elements are retained instead of sorting all of them
+        assertEquals(StreamSupport.stream(data).sorted(counting).skip(5).limit(5).collect(Collectors.toList()),
+                     sorted.subList(5, 10));
+        assertTrue(comparisons.get() < 2L * size, "comparisons " + comparisons.get());
+        assertEquals(StreamSupport.stream(data).sorted(counting).skip(3).skip(2).limit(5).collect(Collectors.toList()),
+                     sorted.subList(5, 10));
+        assertEquals(StreamSupport.parallelStream(data).sorted(counting).skip(size - 1).limit(5)
+                     .collect(Collectors.toList()), sorted.subList(size - 1, size));
+    }
 }